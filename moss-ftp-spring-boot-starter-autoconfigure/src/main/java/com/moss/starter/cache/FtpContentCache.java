@@ -0,0 +1,528 @@
+package com.moss.starter.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 文件内容缓存（堆外内存 + 本地磁盘两级，线程安全）
+ * <p>
+ * 不超过memoryMaxEntryBytes的文件缓存在堆外内存（DirectByteBuffer）中，更大的文件缓存在本地磁盘目录中，
+ * 两级各自按字节数上限做LRU淘汰。每个条目记录文件的大小（SIZE）和修改时间（MDTM），
+ * 距上次验证超过revalidateAfterMillis的条目在使用前与服务器比对，一致时继续使用，否则移除后重新下载；
+ * 服务器不支持SIZE或MDTM的文件不缓存。
+ * <p>
+ * 被淘汰的内存条目在正在读取的流关闭后由GC回收，堆外内存的实际占用受-XX:MaxDirectMemorySize限制；
+ * 磁盘目录只在当前进程内使用，创建缓存和clear()时删除目录中的缓存文件。
+ *
+ * @author lwj
+ */
+@Slf4j
+public class FtpContentCache {
+
+    private static final String FILE_SUFFIX = ".cache";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final long memoryMaxBytes;
+    private final long memoryMaxEntryBytes;
+    private final Path directory;
+    private final long diskMaxBytes;
+    private final long diskMaxEntryBytes;
+    private final long revalidateAfterMillis;
+    private final LinkedHashMap<String, Entry> memoryEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Entry> diskEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+    private long tempCounter;
+    /**
+     * 每次invalidate()时递增，写入期间发生过失效的内容不加入缓存
+     */
+    private long generation;
+    private final LongAdder memoryHitCount = new LongAdder();
+    private final LongAdder diskHitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder revalidatedCount = new LongAdder();
+    private final LongAdder staleCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * @param memoryMaxBytes        内存级的字节数上限
+     * @param memoryMaxEntryBytes   缓存在内存级的单个文件大小上限
+     * @param directory             磁盘级的缓存目录
+     * @param diskMaxBytes          磁盘级的字节数上限，小于等于0时不使用磁盘级
+     * @param diskMaxEntryBytes     缓存在磁盘级的单个文件大小上限
+     * @param revalidateAfterMillis 距上次验证多久后需要与服务器比对（毫秒），为0时每次使用都比对
+     */
+    public FtpContentCache(long memoryMaxBytes, long memoryMaxEntryBytes, Path directory, long diskMaxBytes,
+                           long diskMaxEntryBytes, long revalidateAfterMillis) throws IOException {
+        this.memoryMaxBytes = Math.max(memoryMaxBytes, 0);
+        this.memoryMaxEntryBytes = Math.min(Math.max(memoryMaxEntryBytes, 0), Math.min(this.memoryMaxBytes, Integer.MAX_VALUE));
+        this.directory = directory;
+        this.diskMaxBytes = directory != null ? Math.max(diskMaxBytes, 0) : 0;
+        this.diskMaxEntryBytes = Math.min(Math.max(diskMaxEntryBytes, 0), this.diskMaxBytes);
+        this.revalidateAfterMillis = Math.max(revalidateAfterMillis, 0);
+        if (this.diskMaxBytes > 0) {
+            Files.createDirectories(directory);
+            deleteCacheFiles();
+        }
+    }
+
+    /**
+     * 获取缓存条目
+     *
+     * @param path 文件的绝对路径
+     * @return 缓存条目，未缓存时返回null
+     */
+    public synchronized Entry get(String path) {
+        Entry entry = memoryEntries.get(path);
+        if (entry == null) {
+            entry = diskEntries.get(path);
+        }
+        if (entry == null) {
+            missCount.increment();
+        }
+        return entry;
+    }
+
+    /**
+     * @param entry 缓存条目
+     * @return 是否在验证间隔内，可以不与服务器比对直接使用
+     */
+    public boolean isFresh(Entry entry) {
+        return System.currentTimeMillis() - entry.validatedAt < revalidateAfterMillis;
+    }
+
+    /**
+     * 使用服务器上文件当前的大小和修改时间验证缓存条目，不一致时移除该条目
+     *
+     * @param entry            缓存条目
+     * @param size             SIZE应答的文件大小
+     * @param modificationTime MDTM应答的修改时间
+     * @return true：条目仍然有效
+     */
+    public boolean revalidate(Entry entry, long size, String modificationTime) {
+        if (entry.size == size && entry.modificationTime.equals(modificationTime)) {
+            entry.validatedAt = System.currentTimeMillis();
+            revalidatedCount.increment();
+            return true;
+        }
+        staleCount.increment();
+        synchronized (this) {
+            remove(entry);
+        }
+        return false;
+    }
+
+    /**
+     * 打开缓存条目的内容
+     *
+     * @param entry 缓存条目
+     * @return 内容输入流，磁盘文件已被淘汰时返回null
+     */
+    public InputStream open(Entry entry) {
+        if (entry.buffer != null) {
+            memoryHitCount.increment();
+            return new ByteBufferInputStream(entry.buffer.duplicate());
+        }
+        try {
+            InputStream in = Files.newInputStream(entry.file);
+            diskHitCount.increment();
+            return in;
+        } catch (IOException e) {
+            //  读取前被淘汰
+            missCount.increment();
+            return null;
+        }
+    }
+
+    /**
+     * 开始缓存一个文件：写入全部内容后调用commit()生效，失败时调用abort()
+     *
+     * @param path             文件的绝对路径
+     * @param size             文件大小
+     * @param modificationTime 修改时间
+     * @return 写入器，文件大小未知、超过单个文件上限或没有修改时间时返回null（不缓存）
+     */
+    public Writer admit(String path, long size, String modificationTime) {
+        if (size < 0 || modificationTime == null) {
+            return null;
+        }
+        long admittedGeneration;
+        synchronized (this) {
+            admittedGeneration = generation;
+        }
+        try {
+            if (size <= memoryMaxEntryBytes) {
+                return new Writer(path, size, modificationTime, admittedGeneration, ByteBuffer.allocateDirect((int) size), null, null);
+            }
+            if (size <= diskMaxEntryBytes) {
+                Path temp;
+                synchronized (this) {
+                    temp = directory.resolve(Long.toHexString(++tempCounter) + TEMP_SUFFIX);
+                }
+                return new Writer(path, size, modificationTime, admittedGeneration, null, temp, new BufferedOutputStream(Files.newOutputStream(temp)));
+            }
+        } catch (IOException | OutOfMemoryError e) {
+            log.warn("缓存文件[{}]失败：{}", path, e.toString());
+        }
+        return null;
+    }
+
+    /**
+     * 移除文件的缓存（上传、删除该文件时调用）
+     *
+     * @param path 文件的绝对路径
+     */
+    public synchronized void invalidate(String path) {
+        generation++;
+        Entry entry = memoryEntries.get(path);
+        if (entry == null) {
+            entry = diskEntries.get(path);
+        }
+        if (entry != null) {
+            remove(entry);
+        }
+    }
+
+    /**
+     * 清空缓存并删除磁盘缓存文件
+     */
+    public synchronized void clear() {
+        generation++;
+        memoryEntries.clear();
+        diskEntries.clear();
+        memoryBytes = 0;
+        diskBytes = 0;
+        if (diskMaxBytes > 0) {
+            deleteCacheFiles();
+        }
+    }
+
+    private synchronized boolean put(Entry entry, long admittedGeneration) {
+        if (admittedGeneration != generation) {
+            deleteQuietly(entry.file);
+            return false;
+        }
+        Entry previous = memoryEntries.get(entry.path);
+        if (previous == null) {
+            previous = diskEntries.get(entry.path);
+        }
+        if (previous != null) {
+            remove(previous);
+        }
+        if (entry.buffer != null) {
+            memoryEntries.put(entry.path, entry);
+            memoryBytes += entry.size;
+            evict(memoryEntries, memoryMaxBytes, true);
+        } else {
+            Path file = directory.resolve(fileName(entry.path));
+            try {
+                Files.move(entry.file, file, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                log.warn("缓存文件[{}]失败：{}", entry.path, e.toString());
+                deleteQuietly(entry.file);
+                return false;
+            }
+            entry.file = file;
+            diskEntries.put(entry.path, entry);
+            diskBytes += entry.size;
+            evict(diskEntries, diskMaxBytes, false);
+        }
+        return true;
+    }
+
+    private void evict(LinkedHashMap<String, Entry> entries, long maxBytes, boolean memory) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while ((memory ? memoryBytes : diskBytes) > maxBytes && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            release(eldest);
+            evictionCount.increment();
+        }
+    }
+
+    private void remove(Entry entry) {
+        LinkedHashMap<String, Entry> entries = entry.buffer != null ? memoryEntries : diskEntries;
+        if (entries.get(entry.path) == entry) {
+            entries.remove(entry.path);
+            release(entry);
+        }
+    }
+
+    private void release(Entry entry) {
+        if (entry.buffer != null) {
+            memoryBytes -= entry.size;
+        } else {
+            diskBytes -= entry.size;
+            deleteQuietly(entry.file);
+        }
+    }
+
+    private void deleteCacheFiles() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.{cache,tmp}")) {
+            for (Path file : files) {
+                deleteQuietly(file);
+            }
+        } catch (IOException e) {
+            log.warn("清理缓存目录[{}]失败：{}", directory, e.toString());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (NoSuchFileException ignored) {
+            //  已删除
+        } catch (IOException e) {
+            //  文件正在被读取（Windows）时无法删除
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    private static String fileName(String path) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(path.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(digest.length * 2 + FILE_SUFFIX.length());
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return name.append(FILE_SUFFIX).toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    public synchronized int getMemoryEntryCount() {
+        return memoryEntries.size();
+    }
+
+    public synchronized int getDiskEntryCount() {
+        return diskEntries.size();
+    }
+
+    public long getMemoryHitCount() {
+        return memoryHitCount.sum();
+    }
+
+    public long getDiskHitCount() {
+        return diskHitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getRevalidatedCount() {
+        return revalidatedCount.sum();
+    }
+
+    public long getStaleCount() {
+        return staleCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * 缓存条目
+     */
+    public static class Entry {
+        private final String path;
+        private final long size;
+        private final String modificationTime;
+        private final ByteBuffer buffer;
+        private Path file;
+        private volatile long validatedAt;
+
+        Entry(String path, long size, String modificationTime, ByteBuffer buffer, Path file) {
+            this.path = path;
+            this.size = size;
+            this.modificationTime = modificationTime;
+            this.buffer = buffer;
+            this.file = file;
+            this.validatedAt = System.currentTimeMillis();
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getModificationTime() {
+            return modificationTime;
+        }
+    }
+
+    /**
+     * 缓存写入器：写入失败或内容超出文件大小时不抛出异常，只是不再缓存，不影响正在进行的下载
+     */
+    public class Writer extends OutputStream {
+        private final String path;
+        private final long size;
+        private final String modificationTime;
+        private final long admittedGeneration;
+        private final ByteBuffer buffer;
+        private final Path temp;
+        private final OutputStream out;
+        private long written;
+        private boolean failed;
+        private boolean closed;
+
+        private Writer(String path, long size, String modificationTime, long admittedGeneration, ByteBuffer buffer, Path temp, OutputStream out) {
+            this.path = path;
+            this.size = size;
+            this.modificationTime = modificationTime;
+            this.admittedGeneration = admittedGeneration;
+            this.buffer = buffer;
+            this.temp = temp;
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (failed || closed) {
+                return;
+            }
+            if (written + len > size) {
+                failed = true;
+                return;
+            }
+            try {
+                if (buffer != null) {
+                    buffer.put(b, off, len);
+                } else {
+                    out.write(b, off, len);
+                }
+                written += len;
+            } catch (IOException e) {
+                log.warn("缓存文件[{}]失败：{}", path, e.toString());
+                failed = true;
+            }
+        }
+
+        /**
+         * 内容已完整写入，加入缓存
+         *
+         * @return 是否已加入缓存
+         */
+        public boolean commit() {
+            if (closed) {
+                return false;
+            }
+            if (failed || written != size || !closeOut()) {
+                abort();
+                return false;
+            }
+            closed = true;
+            if (buffer != null) {
+                buffer.flip();
+                return put(new Entry(path, size, modificationTime, buffer.asReadOnlyBuffer(), null), admittedGeneration);
+            }
+            return put(new Entry(path, size, modificationTime, null, temp), admittedGeneration);
+        }
+
+        /**
+         * 放弃缓存
+         */
+        public void abort() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (out != null) {
+                closeOut();
+                deleteQuietly(temp);
+            }
+        }
+
+        @Override
+        public void close() {
+            //  由commit()或abort()结束
+        }
+
+        private boolean closeOut() {
+            if (out == null) {
+                return true;
+            }
+            try {
+                out.close();
+                return true;
+            } catch (IOException e) {
+                log.warn("缓存文件[{}]失败：{}", path, e.toString());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 读取ByteBuffer的输入流
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
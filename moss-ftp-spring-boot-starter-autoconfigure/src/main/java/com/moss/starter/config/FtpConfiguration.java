@@ -1,7 +1,25 @@
 package com.moss.starter.config;
 
+import cn.hutool.core.util.StrUtil;
+import com.moss.starter.cache.FtpContentCache;
+import com.moss.starter.cache.FtpTtlCache;
+import com.moss.starter.io.FtpBufferPool;
+import com.moss.starter.metrics.FtpMetricsRecorder;
+import com.moss.starter.metrics.FtpPoolHealthIndicator;
+import com.moss.starter.metrics.FtpPoolMetrics;
+import com.moss.starter.metrics.MicrometerFtpMetricsRecorder;
+import com.moss.starter.pool.FtpBulkhead;
+import com.moss.starter.pool.FtpClientPoolGroup;
+import com.moss.starter.pool.FtpNodeHealth;
+import com.moss.starter.pool.FtpOperationClass;
+import com.moss.starter.pool.FtpServerNode;
+import com.moss.starter.pool.MossFtpClient;
 import com.moss.starter.propeties.FtpOptionProperties;
+import com.moss.starter.service.FtpCompressionPolicy;
+import com.moss.starter.service.FtpServletSupport;
 import com.moss.starter.service.MossFtpService;
+import com.moss.starter.service.ReactiveMossFtpService;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.net.ftp.FTPClient;
@@ -11,16 +29,43 @@ import org.apache.commons.pool2.PooledObject;
 import org.apache.commons.pool2.impl.DefaultPooledObject;
 import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
 import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
  * @author lwj
@@ -41,30 +86,97 @@ import java.io.IOException;
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class FtpConfiguration {
     private final FtpOptionProperties ftpOptionProperties;
-    private GenericObjectPool<FTPClient> pool;
+    private FtpClientPoolGroup pool;
+    private ExecutorService transferExecutor;
+    private ExecutorService asyncExecutor;
+    private ForkJoinPool walkPool;
+    private FtpContentCache contentCache;
 
     /**
-     * 预先加载FTPClient连接到对象池中
+     * 预先加载FTPClient连接到对象池中（使用有界线程池并行建立连接）
      *
      * @param initialSize 初始化连接数
      * @param maxIdle     最大空闲连接数
      */
     private void preLoadingFtpClient(Integer initialSize, int maxIdle) {
+        if (pool == null) {
+            return;
+        }
+        for (FtpServerNode node : pool.getNodes()) {
+            preLoadingFtpClient(node, initialSize, maxIdle);
+        }
+    }
+
+    /**
+     * 预先加载FTPClient连接到服务器节点的对象池中
+     *
+     * @param node        服务器节点
+     * @param initialSize 初始化连接数
+     * @param maxIdle     最大空闲连接数
+     */
+    private void preLoadingFtpClient(FtpServerNode node, Integer initialSize, int maxIdle) {
         if (initialSize == null || initialSize <= 0) {
             return;
         }
         int size = Math.min(initialSize, maxIdle);
-        for (int i = 0; i < size; i++) {
-            try {
-                pool.addObject();
-            } catch (Exception e) {
-                log.error("preLoadingFtpClient error...", e);
+        int parallelism = Math.max(1, Math.min(size, ftpOptionProperties.getPool().getWarmUpParallelism()));
+        long start = System.currentTimeMillis();
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger succeeded = new AtomicInteger();
+        ExecutorService executor = newDaemonExecutor(parallelism, "moss-ftp-warm-up-");
+        try {
+            List<Future<?>> futures = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        node.getPool().addObject();
+                        succeeded.incrementAndGet();
+                    } catch (Exception e) {
+                        log.error("preLoadingFtpClient error...", e);
+                    }
+                    log.debug("预加载FTPClient进度：{}/{}", completed.incrementAndGet(), size);
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("preLoadingFtpClient error...", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        log.info("预加载FTPClient[{}]完成：成功{}/{}个，并行数{}，耗时{}ms", node, succeeded.get(), size, parallelism, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 开启异步预加载时，在应用启动完成后于后台预加载FTPClient，不阻塞应用启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preLoadingFtpClientOnReady() {
+        if (!ftpOptionProperties.getPool().isWarmUpAsync() || pool == null) {
+            return;
         }
+        Thread thread = new Thread(() -> preLoadingFtpClient(ftpOptionProperties.getInitialSize(), ftpOptionProperties.getPool().getMaxIdle()), "moss-ftp-warm-up");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     @PreDestroy
     public void destroy() {
+        if (transferExecutor != null) {
+            transferExecutor.shutdownNow();
+        }
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdownNow();
+        }
+        if (walkPool != null) {
+            walkPool.shutdownNow();
+        }
+        if (contentCache != null) {
+            contentCache.clear();
+        }
         if (pool != null) {
             pool.close();
             log.info("销毁FTPClientPool...");
@@ -81,53 +193,321 @@ public class FtpConfiguration {
      */
     @Bean
     @ConditionalOnMissingBean(MossFtpService.class)
-    public MossFtpService mossFtpService() {
+    public MossFtpService mossFtpService(ObjectProvider<FtpMetricsRecorder> metricsRecorder,
+                                         ObjectProvider<FtpCompressionPolicy> compressionPolicy) {
         log.info("---------------->>>The MossFtpService Not Found, Execute Creat New Bean.----------------------");
+        FtpOptionProperties.Pool poolProperties = ftpOptionProperties.getPool();
         GenericObjectPoolConfig<FTPClient> poolConfig = new GenericObjectPoolConfig<>();
-        poolConfig.setTestOnBorrow(true);
-        poolConfig.setTestOnReturn(true);
-        poolConfig.setTestWhileIdle(true);
-        poolConfig.setMinEvictableIdleTimeMillis(60000);
-        poolConfig.setSoftMinEvictableIdleTimeMillis(50000);
-        poolConfig.setTimeBetweenEvictionRunsMillis(30000);
-        pool = new GenericObjectPool<>(new FtpClientPooledObjectFactory(ftpOptionProperties), poolConfig);
-        preLoadingFtpClient(ftpOptionProperties.getInitialSize(), poolConfig.getMaxIdle());
+        poolConfig.setMaxTotal(poolProperties.getMaxTotal());
+        poolConfig.setMaxIdle(poolProperties.getMaxIdle());
+        poolConfig.setMinIdle(poolProperties.getMinIdle());
+        poolConfig.setMaxWaitMillis(poolProperties.getMaxWaitMillis());
+        poolConfig.setTestOnBorrow(poolProperties.isTestOnBorrow());
+        poolConfig.setTestOnReturn(poolProperties.isTestOnReturn());
+        poolConfig.setTestWhileIdle(poolProperties.isTestWhileIdle());
+        poolConfig.setMinEvictableIdleTimeMillis(poolProperties.getMinEvictableIdleTimeMillis());
+        poolConfig.setSoftMinEvictableIdleTimeMillis(poolProperties.getSoftMinEvictableIdleTimeMillis());
+        poolConfig.setTimeBetweenEvictionRunsMillis(poolProperties.getTimeBetweenEvictionRunsMillis());
+        poolConfig.setFairness(poolProperties.isFairness());
+        pool = newPoolGroup(poolConfig);
+        if (!poolProperties.isWarmUpAsync()) {
+            preLoadingFtpClient(ftpOptionProperties.getInitialSize(), poolConfig.getMaxIdle());
+        }
         MossFtpService mossFtpService = new MossFtpService();
-        mossFtpService.setFtpClientPool(pool);
+        mossFtpService.setFtpClientPools(pool);
+        mossFtpService.setBulkhead(newBulkhead(poolConfig.getMaxTotal() * pool.getNodes().size()));
+        transferExecutor = newTransferExecutor(ftpOptionProperties.getTransferThreads());
+        mossFtpService.setTransferExecutor(transferExecutor);
+        asyncExecutor = newAsyncExecutor(ftpOptionProperties.getAsync());
+        mossFtpService.setAsyncExecutor(asyncExecutor);
+        walkPool = newWalkPool(ftpOptionProperties.getWalk().getConcurrency());
+        mossFtpService.setWalkPool(walkPool);
+        mossFtpService.setMetricsRecorder(metricsRecorder.getIfAvailable(() -> FtpMetricsRecorder.NOOP));
+        FtpOptionProperties.DirectoryCache directoryCache = ftpOptionProperties.getDirectoryCache();
+        if (directoryCache.isEnabled()) {
+            mossFtpService.setDirectoryCache(new FtpTtlCache<>(directoryCache.getMaxSize(), directoryCache.getTtlMillis()));
+        }
+        FtpOptionProperties.ListingCache listingCache = ftpOptionProperties.getListingCache();
+        if (listingCache.isEnabled()) {
+            mossFtpService.setListingCache(new FtpTtlCache<>(listingCache.getMaxSize(), listingCache.getTtlMillis()));
+        }
+        FtpOptionProperties.NameIndex nameIndex = ftpOptionProperties.getNameIndex();
+        mossFtpService.setNameIndexCache(new FtpTtlCache<>(nameIndex.getMaxSize(), nameIndex.getTtlMillis()));
+        contentCache = newContentCache(ftpOptionProperties.getContentCache());
+        mossFtpService.setContentCache(contentCache);
+        FtpOptionProperties.Buffer buffer = ftpOptionProperties.getBuffer();
+        mossFtpService.setBufferPool(new FtpBufferPool(buffer.getMinSize(), buffer.getMaxSize(),
+                ftpOptionProperties.getBufferSize(), buffer.getMaxPooledBytes()));
+        FtpOptionProperties.Compression compression = ftpOptionProperties.getCompression();
+        if (compression.isEnabled()) {
+            mossFtpService.setCompressionPolicy(compressionPolicy.getIfAvailable(
+                    () -> FtpCompressionPolicy.byExtension(compression.getExtensions())));
+        }
         mossFtpService.setHasInit(true);
         log.info("---------------->>>The MossFtpService have bean build.----------------------");
         return mossFtpService;
     }
 
     /**
-     * FtpClient对象工厂类
+     * 创建文件内容缓存，磁盘缓存目录不可用时只使用堆外内存缓存
+     *
+     * @param properties 文件内容缓存配置
+     * @return 文件内容缓存，未开启时返回null
+     */
+    private static FtpContentCache newContentCache(FtpOptionProperties.ContentCache properties) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        Path directory = StrUtil.isNotBlank(properties.getDiskDirectory()) ? Paths.get(properties.getDiskDirectory())
+                : Paths.get(System.getProperty("java.io.tmpdir"), "moss-ftp-cache");
+        try {
+            return new FtpContentCache(properties.getMemoryMaxBytes(), properties.getMemoryMaxEntryBytes(), directory,
+                    properties.getDiskMaxBytes(), properties.getDiskMaxEntryBytes(), properties.getRevalidateAfterMillis());
+        } catch (IOException e) {
+            log.warn("磁盘缓存目录[{}]不可用，只使用堆外内存缓存：{}", directory, e.getMessage());
+            try {
+                return new FtpContentCache(properties.getMemoryMaxBytes(), properties.getMemoryMaxEntryBytes(), null,
+                        0, 0, properties.getRevalidateAfterMillis());
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    /**
+     * 为每台服务器创建独立的连接池；未配置servers时使用host、port连接单台服务器
+     *
+     * @param poolConfig 连接池配置
+     * @return 多服务器连接池
+     */
+    private FtpClientPoolGroup newPoolGroup(GenericObjectPoolConfig<FTPClient> poolConfig) {
+        List<FtpOptionProperties.Server> servers = ftpOptionProperties.getServers();
+        if (servers == null || servers.isEmpty()) {
+            FtpOptionProperties.Server server = new FtpOptionProperties.Server();
+            server.setHost(ftpOptionProperties.getHost());
+            server.setPort(ftpOptionProperties.getPort());
+            servers = Collections.singletonList(server);
+        }
+        FtpOptionProperties.Routing routing = ftpOptionProperties.getRouting();
+        FtpOptionProperties.CircuitBreaker circuitBreaker = ftpOptionProperties.getCircuitBreaker();
+        List<FtpServerNode> nodes = new ArrayList<>(servers.size());
+        for (FtpOptionProperties.Server server : servers) {
+            String name = server.getHost() + ":" + server.getPort();
+            //  多服务器时按路由配置摘除服务器；单服务器时开启熔断才断开
+            FtpNodeHealth health = servers.size() > 1
+                    ? new FtpNodeHealth(name, routing.getFailureThreshold(), routing.getEjectionMillis(), routing.getMaxEjectionMillis())
+                    : new FtpNodeHealth(name, circuitBreaker.isEnabled() ? circuitBreaker.getFailureThreshold() : 0,
+                    circuitBreaker.getOpenMillis(), circuitBreaker.getMaxOpenMillis());
+            GenericObjectPool<FTPClient> nodePool = new GenericObjectPool<>(new FtpClientPooledObjectFactory(ftpOptionProperties, server, health), poolConfig);
+            nodes.add(new FtpServerNode(name, nodePool, health));
+        }
+        if (nodes.size() > 1) {
+            log.info("---------------->>>FTP服务器：{}，路由策略：{}----------------------", nodes, routing.getStrategy());
+        }
+        FtpClientPoolGroup poolGroup = new FtpClientPoolGroup(nodes, routing.getStrategy(), routing.getVirtualNodes());
+        poolGroup.setFailFast(circuitBreaker.isEnabled());
+        return poolGroup;
+    }
+
+    /**
+     * 创建按操作类型隔离的连接额度
+     *
+     * @param maxConnections 所有服务器的最大连接数之和
+     * @return 连接额度，未开启或连接数不限时返回null
+     */
+    private FtpBulkhead newBulkhead(int maxConnections) {
+        FtpOptionProperties.Bulkhead properties = ftpOptionProperties.getBulkhead();
+        if (!properties.isEnabled() || maxConnections <= 0) {
+            return null;
+        }
+        Map<FtpOperationClass, Double> shares = new EnumMap<>(FtpOperationClass.class);
+        shares.put(FtpOperationClass.SMALL, properties.getSmallShare());
+        shares.put(FtpOperationClass.BULK, properties.getBulkShare());
+        shares.put(FtpOperationClass.LISTING, properties.getListingShare());
+        FtpBulkhead bulkhead = new FtpBulkhead(maxConnections, shares);
+        log.info("---------------->>>连接额度：{}----------------------", Arrays.stream(FtpOperationClass.values())
+                .map(operationClass -> operationClass + "=" + bulkhead.getLimit(operationClass)).collect(Collectors.joining(", ")));
+        return bulkhead;
+    }
+
+    /**
+     * 存在Micrometer时注册连接池和传输指标
+     */
+    @Configuration
+    @ConditionalOnClass(MeterRegistry.class)
+    static class FtpMetricsConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(FtpMetricsRecorder.class)
+        public FtpMetricsRecorder ftpMetricsRecorder(ObjectProvider<MeterRegistry> meterRegistry) {
+            MeterRegistry registry = meterRegistry.getIfUnique();
+            return registry != null ? new MicrometerFtpMetricsRecorder(registry) : FtpMetricsRecorder.NOOP;
+        }
+
+        @Bean
+        public FtpPoolMetrics ftpPoolMetrics(MossFtpService mossFtpService) {
+            return new FtpPoolMetrics(mossFtpService);
+        }
+    }
+
+    /**
+     * 存在Actuator时注册连接池健康检查
+     */
+    @Configuration
+    @ConditionalOnClass(HealthIndicator.class)
+    static class FtpHealthConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(name = "mossFtpHealthIndicator")
+        public FtpPoolHealthIndicator mossFtpHealthIndicator(MossFtpService mossFtpService) {
+            return new FtpPoolHealthIndicator(mossFtpService);
+        }
+    }
+
+    /**
+     * 存在Servlet API时注册下载到Response使用的请求、响应；WebFlux等非Servlet应用中不注册
+     */
+    @Configuration
+    @ConditionalOnClass(name = "javax.servlet.http.HttpServletResponse")
+    static class FtpServletConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(FtpServletSupport.class)
+        public FtpServletSupport ftpServletSupport(ObjectProvider<HttpServletRequest> request, ObjectProvider<HttpServletResponse> response) {
+            return new FtpServletSupport(request, response);
+        }
+    }
+
+    /**
+     * 存在Reactor时注册响应式服务，阻塞操作在有界线程池上执行
+     */
+    @Configuration
+    @ConditionalOnClass(Flux.class)
+    static class FtpReactiveConfiguration {
+
+        @Bean(destroyMethod = "dispose")
+        @ConditionalOnMissingBean(ReactiveMossFtpService.class)
+        public ReactiveMossFtpService reactiveMossFtpService(MossFtpService mossFtpService, FtpOptionProperties ftpOptionProperties) {
+            FtpOptionProperties.Reactive reactive = ftpOptionProperties.getReactive();
+            int threads = Math.max(reactive.getThreads(), 2);
+            //  并发操作数小于线程数，保证总有线程可以执行读写和归还连接
+            int maxTotal = ftpOptionProperties.getPool().getMaxTotal() * Math.max(ftpOptionProperties.getServers().size(), 1);
+            int maxConcurrentTransfers = maxTotal > 0 ? Math.min(maxTotal, threads - 1) : threads - 1;
+            ExecutorService executor = newDaemonExecutor(threads, reactive.getQueueCapacity(), "moss-ftp-reactive-");
+            return new ReactiveMossFtpService(mossFtpService, Schedulers.fromExecutorService(executor), maxConcurrentTransfers);
+        }
+    }
+
+    /**
+     * 创建并行传输使用的线程池
+     *
+     * @param threads 线程数
+     * @return 线程池
+     */
+    private static ExecutorService newTransferExecutor(int threads) {
+        return newDaemonExecutor(Math.max(threads, 1), "moss-ftp-transfer-");
+    }
+
+    /**
+     * 创建异步方法使用的线程池
+     * <p>
+     * virtual类型通过反射调用Executors.newVirtualThreadPerTaskExecutor()，以便在JDK 8下编译；
+     * 运行环境不支持虚拟线程时使用bounded类型。
+     *
+     * @param async 异步方法配置
+     * @return 线程池
+     */
+    private static ExecutorService newAsyncExecutor(FtpOptionProperties.Async async) {
+        if ("virtual".equalsIgnoreCase(async.getExecutor())) {
+            try {
+                ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                log.info("异步方法使用虚拟线程执行");
+                return executor;
+            } catch (ReflectiveOperationException e) {
+                log.warn("当前JDK（{}）不支持虚拟线程，异步方法使用bounded线程池", System.getProperty("java.version"));
+            }
+        }
+        return newDaemonExecutor(Math.max(async.getThreads(), 1), async.getQueueCapacity(), "moss-ftp-async-");
+    }
+
+    /**
+     * 创建遍历目录树使用的ForkJoinPool
+     *
+     * @param parallelism 同时列出的目录数
+     * @return ForkJoinPool
+     */
+    private static ForkJoinPool newWalkPool(int parallelism) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ForkJoinPool(Math.max(parallelism, 1), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("moss-ftp-walk-" + counter.incrementAndGet());
+            return thread;
+        }, null, false);
+    }
+
+    private static ExecutorService newDaemonExecutor(int threads, String namePrefix) {
+        return newDaemonExecutor(threads, Integer.MAX_VALUE, namePrefix);
+    }
+
+    /**
+     * 创建固定线程数、有界任务队列的守护线程池，队列已满时拒绝任务
+     *
+     * @param threads       线程数
+     * @param queueCapacity 任务队列长度
+     * @param namePrefix    线程名前缀
+     * @return 线程池
+     */
+    private static ExecutorService newDaemonExecutor(int threads, int queueCapacity, String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(Math.max(queueCapacity, 1)), runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * FtpClient对象工厂类（每台服务器一个），建立和验证连接的结果记录到服务器节点的健康状态中
      */
     @Slf4j
     static class FtpClientPooledObjectFactory extends BasePooledObjectFactory<FTPClient> {
         private FtpOptionProperties props;
+        private FtpOptionProperties.Server server;
+        private FtpNodeHealth health;
 
-        FtpClientPooledObjectFactory(FtpOptionProperties props) {
+        FtpClientPooledObjectFactory(FtpOptionProperties props, FtpOptionProperties.Server server, FtpNodeHealth health) {
             this.props = props;
+            this.server = server;
+            this.health = health;
         }
 
         @Override
         public FTPClient create() throws Exception {
-            FTPClient ftpClient = new FTPClient();
+            MossFtpClient ftpClient = new MossFtpClient();
+            ftpClient.setDeflateLevel(props.getCompression().getLevel());
             ftpClient.setConnectTimeout(props.getConnectTimeout());
+            String username = server.getUsername() != null ? server.getUsername() : props.getUsername();
+            String password = server.getPassword() != null ? server.getPassword() : props.getPassword();
             try {
 
-                ftpClient.connect(props.getHost(), props.getPort());
+                ftpClient.connect(server.getHost(), server.getPort());
                 int replyCode = ftpClient.getReplyCode();
                 if (!FTPReply.isPositiveCompletion(replyCode)) {
                     ftpClient.disconnect();
                     log.warn("FTPServer refused connection,replyCode:{}", replyCode);
+                    health.recordFailure();
                     return null;
                 }
 
-                if (!ftpClient.login(props.getUsername(), props.getPassword())) {
-                    log.warn("ftpClient login failed... username is {}; password: {}", props.getUsername(), props.getPassword());
+                if (!ftpClient.login(username, password)) {
+                    log.warn("ftpClient login failed... username is {}; password: {}", username, password);
                 }
                 ftpClient.setBufferSize(props.getBufferSize());
+                int socketBufferSize = props.getBuffer().getSocketBufferSize();
+                if (socketBufferSize > 0) {
+                    ftpClient.setSendDataSocketBufferSize(socketBufferSize);
+                    ftpClient.setReceieveDataSocketBufferSize(socketBufferSize);
+                }
                 ftpClient.setFileType(props.getTransferFileType());
                 ftpClient.setControlEncoding(props.getEncoding());
                 if (props.isPassiveMode()) {
@@ -136,8 +516,10 @@ public class FtpConfiguration {
                 ftpClient.setSoTimeout(props.getConnectTimeout());
             } catch (IOException e) {
                 log.error("create ftp connection failed...", e);
+                health.recordFailure();
                 throw new Exception("FtpClient 创建失败", e);
             }
+            health.recordSuccess();
             return ftpClient;
         }
 
@@ -175,15 +557,33 @@ public class FtpConfiguration {
 
         /**
          * 验证FtpClient对象
+         * <p>
+         * 距最近一次收到服务器应答不到validationIdleThresholdMillis的连接刚刚使用过，只检查连接状态，不发送NOOP
+         * （按ftpClient记录的时间判断，归还时校验的连接在池中的空闲时间总是接近0，不能作为依据）。
+         * 验证成功同样记录到健康状态中，被服务器空闲超时断开的连接不会累积成连续失败而摘除节点
          */
         @Override
         public boolean validateObject(PooledObject<FTPClient> ftpPooled) {
             try {
                 FTPClient ftpClient = ftpPooled.getObject();
-                return ftpClient.sendNoOp();
+                if (!ftpClient.isConnected() || ftpClient.getReplyCode() == FTPReply.SERVICE_NOT_AVAILABLE) {
+                    health.recordFailure();
+                    return false;
+                }
+                long threshold = props.getPool().getValidationIdleThresholdMillis();
+                if (threshold > 0 && ftpClient instanceof MossFtpClient
+                        && System.currentTimeMillis() - ((MossFtpClient) ftpClient).getLastUsedMillis() < threshold) {
+                    health.recordSuccess();
+                    return true;
+                }
+                if (ftpClient.sendNoOp()) {
+                    health.recordSuccess();
+                    return true;
+                }
             } catch (IOException e) {
                 log.error("Failed to validate client: {0}", e);
             }
+            health.recordFailure();
             return false;
         }
     }
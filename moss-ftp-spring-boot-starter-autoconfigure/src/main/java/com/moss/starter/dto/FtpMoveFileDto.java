@@ -0,0 +1,19 @@
+package com.moss.starter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author lwj
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FtpMoveFileDto {
+
+    /** 源文件路径（path+fileName） */
+    private String source;
+    /** 目标文件路径（path+fileName），目标目录不存在时自动创建 */
+    private String target;
+}
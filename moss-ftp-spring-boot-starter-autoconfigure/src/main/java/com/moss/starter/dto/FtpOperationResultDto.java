@@ -0,0 +1,35 @@
+package com.moss.starter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author lwj
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FtpOperationResultDto {
+
+    /** ftp路径 */
+    private String path;
+    /** 文件名称 */
+    private String fileName;
+    /** true：成功；false：失败 */
+    private boolean success;
+    /** 失败原因 */
+    private String message;
+    /** 传输内容的十六进制摘要（开启moss.ftp.checksum时），未计算时为null */
+    private String checksum;
+    /** true：执行结果未知（命令已发送但连接在收到应答前中断，服务器可能已执行），此时success为false */
+    private boolean unknown;
+
+    public FtpOperationResultDto(String path, String fileName, boolean success, String message) {
+        this(path, fileName, success, message, null);
+    }
+
+    public FtpOperationResultDto(String path, String fileName, boolean success, String message, String checksum) {
+        this(path, fileName, success, message, checksum, false);
+    }
+}
@@ -0,0 +1,30 @@
+package com.moss.starter.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author lwj
+ */
+@Data
+public class FtpSyncPlanDto {
+
+    /** 本地目录 */
+    private String localDirectory;
+    /** ftp目录 */
+    private String remoteDirectory;
+    /** true：远程文件状态来自本地清单，没有列出ftp目录 */
+    private boolean fromManifest;
+    /** ftp上不存在、需要上传的文件（相对路径） */
+    private List<String> added = new ArrayList<>();
+    /** 大小或修改时间发生变化、需要重新上传的文件（相对路径） */
+    private List<String> changed = new ArrayList<>();
+    /** 本地已不存在的ftp文件（相对路径），删除孤立文件时删除 */
+    private List<String> orphans = new ArrayList<>();
+    /** 未发生变化的文件数 */
+    private long unchangedCount;
+    /** 需要上传的字节数 */
+    private long uploadBytes;
+}
@@ -0,0 +1,22 @@
+package com.moss.starter.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author lwj
+ */
+@Data
+public class FtpSyncResultDto {
+
+    /** 执行的同步计划 */
+    private FtpSyncPlanDto plan;
+    /** 每个上传文件的结果，与plan中added、changed的顺序一致 */
+    private List<FtpOperationResultDto> uploads = new ArrayList<>();
+    /** 每个删除文件的结果，与plan中orphans的顺序一致；不删除孤立文件时为空 */
+    private List<FtpOperationResultDto> deletes = new ArrayList<>();
+    /** 失败的文件数 */
+    private long failedCount;
+}
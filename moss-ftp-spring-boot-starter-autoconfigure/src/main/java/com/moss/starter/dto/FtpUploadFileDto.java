@@ -0,0 +1,23 @@
+package com.moss.starter.dto;
+
+import lombok.Data;
+
+import java.io.InputStream;
+
+/**
+ * @author lwj
+ */
+@Data
+public class FtpUploadFileDto {
+
+    /** ftp服务保存地址 */
+    private String path;
+    /** 上传到ftp的文件名 */
+    private String fileName;
+    /** 待上传文件的名称（绝对地址），与inputStream二选一 */
+    private String originFileName;
+    /** 待上传的文件流，上传完成后关闭 */
+    private InputStream inputStream;
+    /** 上传后设置的ftp文件修改时间（毫秒），为null时不设置；服务器不支持MFMT时忽略 */
+    private Long modificationTime;
+}
@@ -0,0 +1,20 @@
+package com.moss.starter.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author lwj
+ */
+@Data
+public class FtpWalkResultDto {
+
+    /** 列出的目录数 */
+    private long directoryCount;
+    /** 输出的文件和目录数 */
+    private long entryCount;
+    /** 列出失败而跳过的目录 */
+    private List<String> failedDirectories = new ArrayList<>();
+}
@@ -0,0 +1,124 @@
+package com.moss.starter.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * 在读取的同时计算摘要的输入流
+ * <p>
+ * 上传时包装本地文件流、下载时包装数据连接的输入流，传输结束时摘要也计算完毕，不需要再读取一遍文件。
+ * skip()会读取并计算跳过的内容，保证摘要覆盖流中的所有字节。
+ *
+ * @author lwj
+ */
+public class ChecksumInputStream extends FilterInputStream {
+
+    private final FtpChecksumAlgorithm algorithm;
+    private final Checksum checksum;
+    private final MessageDigest digest;
+    private String hexDigest;
+
+    public ChecksumInputStream(InputStream in, FtpChecksumAlgorithm algorithm) {
+        super(in);
+        this.algorithm = algorithm;
+        switch (algorithm) {
+            case CRC32:
+                checksum = new CRC32();
+                digest = null;
+                break;
+            case CRC32C:
+                checksum = new Crc32c();
+                digest = null;
+                break;
+            default:
+                checksum = null;
+                digest = newDigest(algorithm);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            update(new byte[]{(byte) b}, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            update(b, off, n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(Math.max(n, 0), 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int len = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (len == -1) {
+                break;
+            }
+            skipped += len;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    public FtpChecksumAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * 结束计算并返回摘要，之后读取的内容不再计入
+     *
+     * @return 小写十六进制摘要
+     */
+    public String getHexDigest() {
+        if (hexDigest == null) {
+            if (checksum != null) {
+                String hex = Long.toHexString(checksum.getValue());
+                hexDigest = "00000000".substring(hex.length()) + hex;
+            } else {
+                StringBuilder hex = new StringBuilder(algorithm.getHexLength());
+                for (byte b : digest.digest()) {
+                    hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+                }
+                hexDigest = hex.toString();
+            }
+        }
+        return hexDigest;
+    }
+
+    private void update(byte[] b, int off, int len) {
+        if (hexDigest != null) {
+            return;
+        }
+        if (checksum != null) {
+            checksum.update(b, off, len);
+        } else {
+            digest.update(b, off, len);
+        }
+    }
+
+    private static MessageDigest newDigest(FtpChecksumAlgorithm algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm.getHashName());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("unsupported checksum algorithm " + algorithm, e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.moss.starter.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 统计写入字节数的输出流
+ *
+ * @author lwj
+ */
+public class CountingOutputStream extends FilterOutputStream {
+
+    private long count;
+
+    public CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        //  FilterOutputStream默认逐字节写入，这里直接写入整段
+        out.write(b, off, len);
+        count += len;
+    }
+
+    /**
+     * @return 已写入的字节数
+     */
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,70 @@
+package com.moss.starter.io;
+
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C（Castagnoli）校验和
+ * <p>
+ * JDK 9才提供java.util.zip.CRC32C，这里使用slicing-by-8查表实现，每次处理8个字节。
+ *
+ * @author lwj
+ */
+final class Crc32c implements Checksum {
+
+    /**
+     * 8张256项的表依次存放在一个数组中，第t张表从t*256开始
+     */
+    private static final int[] TABLE = new int[8 * 256];
+
+    static {
+        for (int n = 0; n < 256; n++) {
+            int crc = n;
+            for (int k = 0; k < 8; k++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0x82F63B78 : crc >>> 1;
+            }
+            TABLE[n] = crc;
+        }
+        for (int n = 0; n < 256; n++) {
+            for (int t = 1; t < 8; t++) {
+                int previous = TABLE[(t - 1) * 256 + n];
+                TABLE[t * 256 + n] = (previous >>> 8) ^ TABLE[previous & 0xff];
+            }
+        }
+    }
+
+    private int crc = 0xFFFFFFFF;
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xff];
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        int[] table = TABLE;
+        int c = crc;
+        int end = off + len;
+        while (end - off >= 8) {
+            c ^= (b[off] & 0xff) | (b[off + 1] & 0xff) << 8 | (b[off + 2] & 0xff) << 16 | (b[off + 3] & 0xff) << 24;
+            c = table[7 * 256 + (c & 0xff)] ^ table[6 * 256 + ((c >>> 8) & 0xff)]
+                    ^ table[5 * 256 + ((c >>> 16) & 0xff)] ^ table[4 * 256 + (c >>> 24)]
+                    ^ table[3 * 256 + (b[off + 4] & 0xff)] ^ table[2 * 256 + (b[off + 5] & 0xff)]
+                    ^ table[256 + (b[off + 6] & 0xff)] ^ table[b[off + 7] & 0xff];
+            off += 8;
+        }
+        while (off < end) {
+            c = (c >>> 8) ^ table[(c ^ b[off++]) & 0xff];
+        }
+        crc = c;
+    }
+
+    @Override
+    public long getValue() {
+        return ~crc & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+}
@@ -0,0 +1,192 @@
+package com.moss.starter.io;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 传输缓冲区池（线程安全）
+ * <p>
+ * 缓冲区按2的幂从minSize到maxSize分级，根据文件大小选择级别：小文件使用小缓冲区，大文件使用大缓冲区减少读写次数，
+ * 传输结束后归还到池中供后续传输复用，避免每次传输都分配新的缓冲区。池中保留的空闲缓冲区总字节数不超过maxPooledBytes，
+ * 超出时归还的缓冲区直接丢弃由GC回收。
+ * <p>
+ * 所有传输都通过commons-net的流接口读写，缓冲区使用堆内字节数组：使用堆外缓冲区时每次读写还需要多复制一次。
+ *
+ * @author lwj
+ */
+public class FtpBufferPool {
+
+    private final int minSize;
+    private final int maxSize;
+    private final int defaultSize;
+    private final long maxPooledBytes;
+    private final ConcurrentLinkedDeque<byte[]>[] free;
+
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final AtomicLong borrowedBytes = new AtomicLong();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder dropCount = new LongAdder();
+
+    /**
+     * @param minSize        最小缓冲区大小
+     * @param maxSize        最大缓冲区大小
+     * @param defaultSize    文件大小未知时的缓冲区大小
+     * @param maxPooledBytes 池中保留的空闲缓冲区总字节数上限，为0时不复用
+     */
+    @SuppressWarnings("unchecked")
+    public FtpBufferPool(int minSize, int maxSize, int defaultSize, long maxPooledBytes) {
+        this.minSize = roundUp(Math.max(minSize, 512));
+        this.maxSize = Math.max(this.minSize, roundUp(maxSize));
+        this.defaultSize = clamp(roundUp(Math.max(defaultSize, 1)));
+        this.maxPooledBytes = Math.max(maxPooledBytes, 0);
+        int classes = Integer.numberOfTrailingZeros(this.maxSize) - Integer.numberOfTrailingZeros(this.minSize) + 1;
+        this.free = new ConcurrentLinkedDeque[classes];
+        for (int i = 0; i < classes; i++) {
+            free[i] = new ConcurrentLinkedDeque<>();
+        }
+    }
+
+    /**
+     * 根据需要传输的字节数选择缓冲区大小
+     *
+     * @param expectedBytes 需要传输的字节数，小于0表示未知
+     * @return 缓冲区大小
+     */
+    public int sizeFor(long expectedBytes) {
+        if (expectedBytes < 0) {
+            return defaultSize;
+        }
+        return expectedBytes >= maxSize ? maxSize : clamp(roundUp((int) expectedBytes));
+    }
+
+    /**
+     * 获取缓冲区，返回的缓冲区长度为不小于size的级别大小（不超过maxSize），使用后需通过release归还
+     *
+     * @param size 需要的缓冲区大小
+     * @return 缓冲区
+     */
+    public byte[] acquire(int size) {
+        int length = clamp(roundUp(Math.max(size, 1)));
+        byte[] buffer = free[classOf(length)].pollFirst();
+        if (buffer != null) {
+            pooledBytes.addAndGet(-length);
+            hitCount.increment();
+        } else {
+            buffer = new byte[length];
+            missCount.increment();
+        }
+        borrowedBytes.addAndGet(length);
+        return buffer;
+    }
+
+    /**
+     * 根据需要传输的字节数获取缓冲区
+     *
+     * @param expectedBytes 需要传输的字节数，小于0表示未知
+     * @return 缓冲区
+     * @see #sizeFor(long)
+     */
+    public byte[] acquireFor(long expectedBytes) {
+        return acquire(sizeFor(expectedBytes));
+    }
+
+    /**
+     * 归还缓冲区，归还后调用方不能再使用该缓冲区；不是由该池分配的缓冲区忽略
+     *
+     * @param buffer 缓冲区，为null时忽略
+     */
+    public void release(byte[] buffer) {
+        if (buffer == null || !isPooledSize(buffer.length)) {
+            return;
+        }
+        borrowedBytes.addAndGet(-buffer.length);
+        if (pooledBytes.addAndGet(buffer.length) > maxPooledBytes) {
+            pooledBytes.addAndGet(-buffer.length);
+            dropCount.increment();
+            return;
+        }
+        //  后进先出，最近使用过的缓冲区更可能还在CPU缓存中
+        free[classOf(buffer.length)].offerFirst(buffer);
+    }
+
+    /**
+     * 清空池中的空闲缓冲区
+     */
+    public void clear() {
+        for (ConcurrentLinkedDeque<byte[]> deque : free) {
+            byte[] buffer;
+            while ((buffer = deque.pollFirst()) != null) {
+                pooledBytes.addAndGet(-buffer.length);
+            }
+        }
+    }
+
+    private boolean isPooledSize(int length) {
+        return length >= minSize && length <= maxSize && Integer.bitCount(length) == 1;
+    }
+
+    private int classOf(int length) {
+        return Integer.numberOfTrailingZeros(length) - Integer.numberOfTrailingZeros(minSize);
+    }
+
+    private int clamp(int size) {
+        return Math.min(Math.max(size, minSize), maxSize);
+    }
+
+    private static int roundUp(int size) {
+        if (size >= 1 << 30) {
+            return 1 << 30;
+        }
+        int highest = Integer.highestOneBit(size);
+        return highest == size ? size : highest << 1;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getDefaultSize() {
+        return defaultSize;
+    }
+
+    /**
+     * @return 池中空闲缓冲区的总字节数
+     */
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    /**
+     * @return 正在使用（已获取未归还）的缓冲区总字节数
+     */
+    public long getBorrowedBytes() {
+        return borrowedBytes.get();
+    }
+
+    /**
+     * @return 从池中获取到空闲缓冲区的次数
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return 池中没有空闲缓冲区、新分配缓冲区的次数
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return 池已满、归还时丢弃缓冲区的次数
+     */
+    public long getDropCount() {
+        return dropCount.sum();
+    }
+}
@@ -0,0 +1,60 @@
+package com.moss.starter.io;
+
+/**
+ * 传输校验使用的摘要算法
+ * <p>
+ * hashName为HASH命令（OPTS HASH）中的算法名称，commands为服务器计算该摘要的非标准命令（XCRC、XMD5等），
+ * 服务器都不支持时把摘要保存在与文件同名、以sidecarSuffix结尾的文件中。
+ *
+ * @author lwj
+ */
+public enum FtpChecksumAlgorithm {
+
+    /**
+     * CRC-32（与XCRC、HASH CRC32的结果相同）
+     */
+    CRC32("CRC32", ".crc32", 8, "XCRC"),
+    /**
+     * CRC-32C（计算更快，但FTP服务器通常不支持，只能保存为sidecar文件）
+     */
+    CRC32C(null, ".crc32c", 8),
+    MD5("MD5", ".md5", 32, "XMD5", "MD5"),
+    SHA_256("SHA-256", ".sha256", 64, "XSHA256");
+
+    private final String hashName;
+    private final String sidecarSuffix;
+    private final int hexLength;
+    private final String[] commands;
+
+    FtpChecksumAlgorithm(String hashName, String sidecarSuffix, int hexLength, String... commands) {
+        this.hashName = hashName;
+        this.sidecarSuffix = sidecarSuffix;
+        this.hexLength = hexLength;
+        this.commands = commands;
+    }
+
+    /**
+     * @return HASH命令中的算法名称，HASH不支持该算法时为null
+     */
+    public String getHashName() {
+        return hashName;
+    }
+
+    /**
+     * @return 服务器计算该摘要的非标准命令，按优先顺序排列
+     */
+    public String[] getCommands() {
+        return commands.clone();
+    }
+
+    public String getSidecarSuffix() {
+        return sidecarSuffix;
+    }
+
+    /**
+     * @return 摘要的十六进制字符数
+     */
+    public int getHexLength() {
+        return hexLength;
+    }
+}
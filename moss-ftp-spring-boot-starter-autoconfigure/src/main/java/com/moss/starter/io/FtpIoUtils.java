@@ -0,0 +1,31 @@
+package com.moss.starter.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 流操作工具
+ *
+ * @author lwj
+ */
+public final class FtpIoUtils {
+
+    private FtpIoUtils() {
+    }
+
+    /**
+     * 关闭流并忽略异常
+     *
+     * @param closeable 需要关闭的流，为null时不做任何处理
+     */
+    public static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            //  关闭失败不影响结果
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.moss.starter.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 使用传输缓冲区池分块存储内容的字节数组输出流
+ * <p>
+ * 内容写满一块后从池中获取下一块，不需要像ByteArrayOutputStream那样扩容复制；
+ * 通过toInputStream()读取内容，读取结束后关闭输入流即把所有块归还到池中。
+ *
+ * @author lwj
+ */
+public class PooledByteArrayOutputStream extends OutputStream {
+
+    private final FtpBufferPool bufferPool;
+    private final int chunkSize;
+    private final List<byte[]> chunks = new ArrayList<>();
+    /**
+     * 最后一块已写入的字节数
+     */
+    private int position;
+    private long size;
+    private boolean released;
+
+    /**
+     * @param bufferPool    传输缓冲区池
+     * @param expectedBytes 预计写入的字节数，小于0表示未知
+     */
+    public PooledByteArrayOutputStream(FtpBufferPool bufferPool, long expectedBytes) {
+        this.bufferPool = bufferPool;
+        this.chunkSize = bufferPool.sizeFor(expectedBytes);
+    }
+
+    @Override
+    public void write(int b) {
+        byte[] chunk = writableChunk();
+        chunk[position++] = (byte) b;
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            byte[] chunk = writableChunk();
+            int n = Math.min(len, chunk.length - position);
+            System.arraycopy(b, off, chunk, position, n);
+            position += n;
+            off += n;
+            len -= n;
+            size += n;
+        }
+    }
+
+    /**
+     * 把输入流的内容直接读入缓冲块，直到输入流结束
+     *
+     * @param in 输入流
+     * @return 读取的字节数
+     */
+    public long readFrom(InputStream in) throws IOException {
+        long total = 0;
+        while (true) {
+            byte[] chunk = writableChunk();
+            int len = in.read(chunk, position, chunk.length - position);
+            if (len == -1) {
+                return total;
+            }
+            position += len;
+            size += len;
+            total += len;
+        }
+    }
+
+    /**
+     * 把全部内容写入输出流
+     *
+     * @param out 输出流
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        checkNotReleased();
+        int last = chunks.size() - 1;
+        for (int i = 0; i <= last; i++) {
+            out.write(chunks.get(i), 0, i == last ? position : chunkSize);
+        }
+    }
+
+    /**
+     * @return 已写入的字节数
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * 读取内容的输入流（不复制缓冲块），关闭后缓冲块归还到池中，之后不能再使用该输出流
+     *
+     * @return 输入流
+     */
+    public InputStream toInputStream() {
+        checkNotReleased();
+        return new ChunkInputStream();
+    }
+
+    /**
+     * 不再读取内容时归还缓冲块
+     */
+    public void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        for (byte[] chunk : chunks) {
+            bufferPool.release(chunk);
+        }
+        chunks.clear();
+    }
+
+    private byte[] writableChunk() {
+        checkNotReleased();
+        if (chunks.isEmpty() || position == chunkSize) {
+            chunks.add(bufferPool.acquire(chunkSize));
+            position = 0;
+        }
+        return chunks.get(chunks.size() - 1);
+    }
+
+    private void checkNotReleased() {
+        if (released) {
+            throw new IllegalStateException("buffer has been released");
+        }
+    }
+
+    /**
+     * 按块读取内容的输入流
+     */
+    private class ChunkInputStream extends InputStream {
+
+        private int chunkIndex;
+        private int chunkOffset;
+        private long remaining = size;
+
+        @Override
+        public int read() {
+            if (remaining <= 0) {
+                return -1;
+            }
+            byte[] chunk = currentChunk();
+            remaining--;
+            return chunk[chunkOffset++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                return -1;
+            }
+            byte[] chunk = currentChunk();
+            int n = (int) Math.min(Math.min(len, chunkSize - chunkOffset), remaining);
+            System.arraycopy(chunk, chunkOffset, b, off, n);
+            chunkOffset += n;
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(Math.min(n, remaining), 0);
+            long target = size - remaining + skipped;
+            chunkIndex = (int) (target / chunkSize);
+            chunkOffset = (int) (target % chunkSize);
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void close() {
+            remaining = 0;
+            release();
+        }
+
+        private byte[] currentChunk() {
+            checkNotReleased();
+            if (chunkOffset == chunkSize) {
+                chunkIndex++;
+                chunkOffset = 0;
+            }
+            return chunks.get(chunkIndex);
+        }
+    }
+}
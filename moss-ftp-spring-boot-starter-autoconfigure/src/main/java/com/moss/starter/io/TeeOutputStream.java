@@ -0,0 +1,42 @@
+package com.moss.starter.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 同时写入两个输出流的输出流（关闭时只关闭第一个输出流）
+ *
+ * @author lwj
+ */
+public class TeeOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private final OutputStream branch;
+
+    public TeeOutputStream(OutputStream out, OutputStream branch) {
+        this.out = out;
+        this.branch = branch;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        branch.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        branch.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,73 @@
+package com.moss.starter.metrics;
+
+/**
+ * FTP操作指标记录器
+ *
+ * @author lwj
+ */
+public interface FtpMetricsRecorder {
+
+    /**
+     * 不记录任何指标
+     */
+    FtpMetricsRecorder NOOP = new FtpMetricsRecorder() {
+    };
+
+    /**
+     * 记录一次操作的耗时和结果
+     *
+     * @param operation     操作名称，如upload、download
+     * @param durationNanos 耗时（纳秒）
+     * @param success       是否成功
+     * @param replyCode     操作结束时FTP服务器的应答码，未知时为0
+     */
+    default void recordOperation(String operation, long durationNanos, boolean success, int replyCode) {
+    }
+
+    /**
+     * 记录传输的字节数
+     *
+     * @param operation 操作名称
+     * @param direction 传输方向：upload、download
+     * @param bytes     字节数
+     */
+    default void recordBytes(String operation, String direction, long bytes) {
+    }
+
+    /**
+     * 记录一次从连接池获取ftpClient的等待时间
+     *
+     * @param waitNanos 等待时间（纳秒）
+     * @param success   是否获取成功
+     */
+    default void recordBorrow(long waitNanos, boolean success) {
+    }
+
+    /**
+     * 记录一次操作在控制连接上发送的命令数（往返次数）
+     *
+     * @param operation  操作名称
+     * @param roundTrips 发送的命令数
+     */
+    default void recordRoundTrips(String operation, int roundTrips) {
+    }
+
+    /**
+     * 记录一次操作中MODE Z压缩传输的字节数
+     *
+     * @param operation    操作名称
+     * @param contentBytes 内容（解压后）字节数
+     * @param wireBytes    数据连接上实际传输（压缩后）的字节数
+     */
+    default void recordCompression(String operation, long contentBytes, long wireBytes) {
+    }
+
+    /**
+     * 记录一次传输校验的结果
+     *
+     * @param operation 操作名称
+     * @param result    verified（与服务器计算的摘要一致）、sidecar（已写入摘要文件）、unverified（无法校验）、mismatch（不一致）
+     */
+    default void recordChecksum(String operation, String result) {
+    }
+}
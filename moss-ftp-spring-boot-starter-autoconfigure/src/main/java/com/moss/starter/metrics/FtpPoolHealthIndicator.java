@@ -0,0 +1,94 @@
+package com.moss.starter.metrics;
+
+import com.moss.starter.pool.FtpBulkhead;
+import com.moss.starter.pool.FtpClientPoolGroup;
+import com.moss.starter.pool.FtpOperationClass;
+import com.moss.starter.pool.FtpServerNode;
+import com.moss.starter.service.MossFtpService;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * FTPClient连接池健康检查
+ * <p>
+ * 只读取连接池的统计数据，不会创建新的连接；连接池已满且有线程在等待时标记为saturated。
+ * 多服务器时同时输出每台服务器的连接池和摘除状态，所有服务器都被摘除（熔断）时为DOWN；开启舱壁隔离时输出每种操作类型占用的连接数。
+ *
+ * @author lwj
+ */
+public class FtpPoolHealthIndicator extends AbstractHealthIndicator {
+
+    private final MossFtpService mossFtpService;
+
+    public FtpPoolHealthIndicator(MossFtpService mossFtpService) {
+        super("FTPClient pool health check failed");
+        this.mossFtpService = mossFtpService;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        FtpClientPoolGroup pools = mossFtpService.getFtpClientPools();
+        if (pools == null || pools.isClosed()) {
+            builder.down().withDetail("reason", "pool is not initialized or closed");
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int active = 0;
+        int idle = 0;
+        int maxTotal = 0;
+        int waiters = 0;
+        int ejected = 0;
+        Map<String, Object> nodes = new LinkedHashMap<>();
+        for (FtpServerNode node : pools.getNodes()) {
+            GenericObjectPool<FTPClient> pool = node.getPool();
+            boolean nodeEjected = node.getHealth().isEjected(now);
+            Map<String, Object> detail = new LinkedHashMap<>();
+            detail.put("active", pool.getNumActive());
+            detail.put("idle", pool.getNumIdle());
+            detail.put("maxTotal", pool.getMaxTotal());
+            detail.put("waiters", pool.getNumWaiters());
+            detail.put("ejected", nodeEjected);
+            detail.put("consecutiveFailures", node.getHealth().getConsecutiveFailures());
+            nodes.put(node.getName(), detail);
+            active += pool.getNumActive();
+            idle += pool.getNumIdle();
+            maxTotal += pool.getMaxTotal();
+            waiters += pool.getNumWaiters();
+            ejected += nodeEjected ? 1 : 0;
+        }
+        if (ejected == pools.getNodes().size()) {
+            builder.down().withDetail("reason", "all ftp servers are ejected");
+        } else {
+            builder.up();
+        }
+        builder.withDetail("active", active)
+                .withDetail("idle", idle)
+                .withDetail("maxTotal", maxTotal)
+                .withDetail("waiters", waiters)
+                .withDetail("usage", maxTotal > 0 ? (double) active / maxTotal : 0)
+                .withDetail("saturated", maxTotal > 0 && active >= maxTotal && waiters > 0)
+                .withDetail("meanBorrowWaitMillis", pools.getNodes().get(0).getPool().getMeanBorrowWaitTimeMillis());
+        if (pools.getNodes().size() > 1) {
+            builder.withDetail("strategy", pools.getStrategy())
+                    .withDetail("nodes", nodes);
+        }
+        FtpBulkhead bulkhead = mossFtpService.getBulkhead();
+        if (bulkhead != null) {
+            Map<String, Object> classes = new LinkedHashMap<>();
+            for (FtpOperationClass operationClass : FtpOperationClass.values()) {
+                Map<String, Object> detail = new LinkedHashMap<>();
+                detail.put("active", bulkhead.getInUse(operationClass));
+                detail.put("limit", bulkhead.getLimit(operationClass));
+                detail.put("waiters", bulkhead.getWaiting(operationClass));
+                classes.put(operationClass.name().toLowerCase(Locale.ROOT), detail);
+            }
+            builder.withDetail("bulkhead", classes);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.moss.starter.metrics;
+
+import com.moss.starter.cache.FtpContentCache;
+import com.moss.starter.cache.FtpTtlCache;
+import com.moss.starter.io.FtpBufferPool;
+import com.moss.starter.pool.FtpBulkhead;
+import com.moss.starter.pool.FtpClientPoolGroup;
+import com.moss.starter.pool.FtpOperationClass;
+import com.moss.starter.pool.FtpServerNode;
+import com.moss.starter.service.MossFtpService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+import java.util.Locale;
+
+/**
+ * FTPClient连接池指标
+ *
+ * @author lwj
+ */
+public class FtpPoolMetrics implements MeterBinder {
+
+    private final MossFtpService mossFtpService;
+
+    public FtpPoolMetrics(MossFtpService mossFtpService) {
+        this.mossFtpService = mossFtpService;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FtpClientPoolGroup pools = mossFtpService.getFtpClientPools();
+        if (pools != null) {
+            for (FtpServerNode node : pools.getNodes()) {
+                bindPool(registry, node);
+            }
+            FunctionCounter.builder("moss.ftp.circuit.rejections", pools, FtpClientPoolGroup::getRejectedCount)
+                    .description("Borrows failed fast because the circuit is open").register(registry);
+        }
+        bindBulkhead(registry, mossFtpService.getBulkhead());
+        bindCache(registry, "directory", mossFtpService.getDirectoryCache());
+        bindCache(registry, "listing", mossFtpService.getListingCache());
+        bindContentCache(registry, mossFtpService.getContentCache());
+        bindBufferPool(registry, mossFtpService.getBufferPool());
+    }
+
+    private static void bindPool(MeterRegistry registry, FtpServerNode node) {
+        GenericObjectPool<FTPClient> pool = node.getPool();
+        Tags tags = Tags.of("node", node.getName());
+        Gauge.builder("moss.ftp.pool.active", pool, GenericObjectPool::getNumActive)
+                .tags(tags).description("FTPClient borrowed from the pool").register(registry);
+        Gauge.builder("moss.ftp.pool.idle", pool, GenericObjectPool::getNumIdle)
+                .tags(tags).description("Idle FTPClient in the pool").register(registry);
+        Gauge.builder("moss.ftp.pool.waiters", pool, GenericObjectPool::getNumWaiters)
+                .tags(tags).description("Threads waiting for an FTPClient").register(registry);
+        Gauge.builder("moss.ftp.pool.max", pool, GenericObjectPool::getMaxTotal)
+                .tags(tags).description("Maximum FTPClient in the pool").register(registry);
+        Gauge.builder("moss.ftp.pool.borrow.wait.mean", pool, GenericObjectPool::getMeanBorrowWaitTimeMillis)
+                .tags(tags).description("Mean borrow wait time of recently borrowed FTPClient").baseUnit("milliseconds").register(registry);
+        Gauge.builder("moss.ftp.pool.borrow.wait.max", pool, GenericObjectPool::getMaxBorrowWaitTimeMillis)
+                .tags(tags).description("Maximum borrow wait time").baseUnit("milliseconds").register(registry);
+        FunctionCounter.builder("moss.ftp.pool.created", pool, GenericObjectPool::getCreatedCount)
+                .tags(tags).description("FTPClient created").register(registry);
+        FunctionCounter.builder("moss.ftp.pool.destroyed", pool, GenericObjectPool::getDestroyedCount)
+                .tags(tags).description("FTPClient destroyed").register(registry);
+        FunctionCounter.builder("moss.ftp.pool.destroyed.validation", pool, GenericObjectPool::getDestroyedByBorrowValidationCount)
+                .tags(tags).description("FTPClient destroyed because borrow validation failed").register(registry);
+        Gauge.builder("moss.ftp.node.ejected", node.getHealth(), health -> health.isEjected(System.currentTimeMillis()) ? 1 : 0)
+                .tags(tags).description("Whether the FTP server is ejected from routing").register(registry);
+    }
+
+    private static void bindBulkhead(MeterRegistry registry, FtpBulkhead bulkhead) {
+        if (bulkhead == null) {
+            return;
+        }
+        for (FtpOperationClass operationClass : FtpOperationClass.values()) {
+            Tags tags = Tags.of("class", operationClass.name().toLowerCase(Locale.ROOT));
+            Gauge.builder("moss.ftp.bulkhead.limit", bulkhead, b -> b.getLimit(operationClass))
+                    .tags(tags).description("Maximum FTPClient the operation class may hold").register(registry);
+            Gauge.builder("moss.ftp.bulkhead.active", bulkhead, b -> b.getInUse(operationClass))
+                    .tags(tags).description("FTPClient held by the operation class").register(registry);
+            Gauge.builder("moss.ftp.bulkhead.waiters", bulkhead, b -> b.getWaiting(operationClass))
+                    .tags(tags).description("Threads waiting for the operation class bulkhead").register(registry);
+            FunctionCounter.builder("moss.ftp.bulkhead.rejections", bulkhead, b -> b.getRejectedCount(operationClass))
+                    .tags(tags).description("Borrows rejected because the bulkhead wait timed out").register(registry);
+        }
+    }
+
+    private static void bindContentCache(MeterRegistry registry, FtpContentCache cache) {
+        if (cache == null) {
+            return;
+        }
+        Gauge.builder("moss.ftp.content.cache.bytes", cache, FtpContentCache::getMemoryBytes)
+                .tag("tier", "memory").baseUnit("bytes").register(registry);
+        Gauge.builder("moss.ftp.content.cache.bytes", cache, FtpContentCache::getDiskBytes)
+                .tag("tier", "disk").baseUnit("bytes").register(registry);
+        Gauge.builder("moss.ftp.content.cache.size", cache, FtpContentCache::getMemoryEntryCount)
+                .tag("tier", "memory").register(registry);
+        Gauge.builder("moss.ftp.content.cache.size", cache, FtpContentCache::getDiskEntryCount)
+                .tag("tier", "disk").register(registry);
+        FunctionCounter.builder("moss.ftp.content.cache.gets", cache, FtpContentCache::getMemoryHitCount)
+                .tag("result", "hit").tag("tier", "memory").register(registry);
+        FunctionCounter.builder("moss.ftp.content.cache.gets", cache, FtpContentCache::getDiskHitCount)
+                .tag("result", "hit").tag("tier", "disk").register(registry);
+        FunctionCounter.builder("moss.ftp.content.cache.gets", cache, FtpContentCache::getMissCount)
+                .tag("result", "miss").tag("tier", "none").register(registry);
+        FunctionCounter.builder("moss.ftp.content.cache.revalidations", cache, FtpContentCache::getRevalidatedCount)
+                .tag("result", "valid").register(registry);
+        FunctionCounter.builder("moss.ftp.content.cache.revalidations", cache, FtpContentCache::getStaleCount)
+                .tag("result", "stale").register(registry);
+        FunctionCounter.builder("moss.ftp.content.cache.evictions", cache, FtpContentCache::getEvictionCount)
+                .register(registry);
+    }
+
+    private static void bindBufferPool(MeterRegistry registry, FtpBufferPool bufferPool) {
+        if (bufferPool == null) {
+            return;
+        }
+        Gauge.builder("moss.ftp.buffer.pool.bytes", bufferPool, FtpBufferPool::getPooledBytes)
+                .tag("state", "idle").description("Idle transfer buffers kept in the pool").baseUnit("bytes").register(registry);
+        Gauge.builder("moss.ftp.buffer.pool.bytes", bufferPool, FtpBufferPool::getBorrowedBytes)
+                .tag("state", "borrowed").description("Transfer buffers in use").baseUnit("bytes").register(registry);
+        FunctionCounter.builder("moss.ftp.buffer.pool.acquires", bufferPool, FtpBufferPool::getHitCount)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("moss.ftp.buffer.pool.acquires", bufferPool, FtpBufferPool::getMissCount)
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("moss.ftp.buffer.pool.drops", bufferPool, FtpBufferPool::getDropCount)
+                .description("Transfer buffers dropped because the pool is full").register(registry);
+    }
+
+    private static void bindCache(MeterRegistry registry, String name, FtpTtlCache<?, ?> cache) {
+        if (cache == null) {
+            return;
+        }
+        Gauge.builder("moss.ftp.cache.size", cache, FtpTtlCache::size)
+                .tag("cache", name).register(registry);
+        FunctionCounter.builder("moss.ftp.cache.gets", cache, FtpTtlCache::getHitCount)
+                .tag("cache", name).tag("result", "hit").register(registry);
+        FunctionCounter.builder("moss.ftp.cache.gets", cache, FtpTtlCache::getMissCount)
+                .tag("cache", name).tag("result", "miss").register(registry);
+        FunctionCounter.builder("moss.ftp.cache.evictions", cache, FtpTtlCache::getEvictionCount)
+                .tag("cache", name).register(registry);
+    }
+}
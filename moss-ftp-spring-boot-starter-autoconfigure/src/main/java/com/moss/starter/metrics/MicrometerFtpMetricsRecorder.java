@@ -0,0 +1,125 @@
+package com.moss.starter.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于Micrometer的FTP操作指标记录器
+ * <ul>
+ * <li>moss.ftp.operation：操作耗时（按operation、outcome区分，带直方图）</li>
+ * <li>moss.ftp.operation.errors：失败次数（按operation、reply.code区分）</li>
+ * <li>moss.ftp.transfer.bytes：传输字节数（按operation、direction区分）</li>
+ * <li>moss.ftp.pool.borrow：从连接池获取连接的等待时间（按outcome区分）</li>
+ * <li>moss.ftp.operation.round.trips：每次操作在控制连接上发送的命令数（按operation区分）</li>
+ * <li>moss.ftp.compression.bytes：MODE Z压缩传输的字节数（按operation、kind区分，kind为content或wire）</li>
+ * <li>moss.ftp.compression.ratio：MODE Z压缩传输的压缩比（内容字节数/实际传输字节数，按operation区分）</li>
+ * <li>moss.ftp.checksum：传输校验次数（按operation、result区分）</li>
+ * </ul>
+ *
+ * @author lwj
+ */
+public class MicrometerFtpMetricsRecorder implements FtpMetricsRecorder {
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    public MicrometerFtpMetricsRecorder(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void recordOperation(String operation, long durationNanos, boolean success, int replyCode) {
+        String outcome = success ? "success" : "failure";
+        timers.computeIfAbsent("operation:" + operation + ":" + outcome, key -> Timer.builder("moss.ftp.operation")
+                .description("FTP operation latency")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry))
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+        if (!success) {
+            String code = String.valueOf(replyCode);
+            counters.computeIfAbsent("errors:" + operation + ":" + code, key -> Counter.builder("moss.ftp.operation.errors")
+                    .description("Failed FTP operations")
+                    .tag("operation", operation)
+                    .tag("reply.code", code)
+                    .register(registry))
+                    .increment();
+        }
+    }
+
+    @Override
+    public void recordBytes(String operation, String direction, long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        counters.computeIfAbsent("bytes:" + operation + ":" + direction, key -> Counter.builder("moss.ftp.transfer.bytes")
+                .description("Bytes transferred")
+                .baseUnit("bytes")
+                .tag("operation", operation)
+                .tag("direction", direction)
+                .register(registry))
+                .increment(bytes);
+    }
+
+    @Override
+    public void recordBorrow(long waitNanos, boolean success) {
+        String outcome = success ? "success" : "failure";
+        timers.computeIfAbsent("borrow:" + outcome, key -> Timer.builder("moss.ftp.pool.borrow")
+                .description("Time spent waiting for a pooled FTPClient")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry))
+                .record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordRoundTrips(String operation, int roundTrips) {
+        summaries.computeIfAbsent(operation, key -> DistributionSummary.builder("moss.ftp.operation.round.trips")
+                .description("FTP commands sent on the control connection per operation")
+                .tag("operation", operation)
+                .register(registry))
+                .record(roundTrips);
+    }
+
+    @Override
+    public void recordCompression(String operation, long contentBytes, long wireBytes) {
+        if (wireBytes <= 0) {
+            return;
+        }
+        compressionCounter(operation, "content").increment(contentBytes);
+        compressionCounter(operation, "wire").increment(wireBytes);
+        summaries.computeIfAbsent("compression:" + operation, key -> DistributionSummary.builder("moss.ftp.compression.ratio")
+                .description("Content bytes per byte on the wire for MODE Z transfers")
+                .tag("operation", operation)
+                .register(registry))
+                .record((double) contentBytes / wireBytes);
+    }
+
+    @Override
+    public void recordChecksum(String operation, String result) {
+        counters.computeIfAbsent("checksum:" + operation + ":" + result, key -> Counter.builder("moss.ftp.checksum")
+                .description("Transfer checksum verifications")
+                .tag("operation", operation)
+                .tag("result", result)
+                .register(registry))
+                .increment();
+    }
+
+    private Counter compressionCounter(String operation, String kind) {
+        return counters.computeIfAbsent("compression:" + operation + ":" + kind, key -> Counter.builder("moss.ftp.compression.bytes")
+                .description("Bytes of MODE Z transfers")
+                .baseUnit("bytes")
+                .tag("operation", operation)
+                .tag("kind", kind)
+                .register(registry));
+    }
+}
@@ -0,0 +1,122 @@
+package com.moss.starter.pool;
+
+import org.apache.commons.net.ftp.FTPClient;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 连接舱壁隔离
+ * <p>
+ * 每种操作类型最多同时占用最大连接数的一定比例，例如批量操作最多占用一半的连接，
+ * 大量打包下载时其余连接仍然可以用于单文件下载，小文件请求的等待时间不受长时间传输的影响。
+ * 获取连接前先获取该类型的额度，额度与借出的ftpClient关联，归还或销毁ftpClient时释放。
+ *
+ * @author lwj
+ */
+public class FtpBulkhead {
+
+    private final Map<FtpOperationClass, Semaphore> permits = new EnumMap<>(FtpOperationClass.class);
+    private final Map<FtpOperationClass, Integer> limits = new EnumMap<>(FtpOperationClass.class);
+    private final Map<FtpOperationClass, LongAdder> rejected = new EnumMap<>(FtpOperationClass.class);
+    private final Map<FTPClient, FtpOperationClass> holders = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxConnections 所有服务器的最大连接数之和
+     * @param shares         每种操作类型最多占用的连接比例（0-1），未配置的类型不限制
+     */
+    public FtpBulkhead(int maxConnections, Map<FtpOperationClass, Double> shares) {
+        for (FtpOperationClass operationClass : FtpOperationClass.values()) {
+            double share = shares.getOrDefault(operationClass, 1.0);
+            int limit = (int) Math.min(Math.max(Math.ceil(maxConnections * share), 1), Math.max(maxConnections, 1));
+            limits.put(operationClass, limit);
+            permits.put(operationClass, new Semaphore(limit, true));
+            rejected.put(operationClass, new LongAdder());
+        }
+    }
+
+    /**
+     * 获取一个连接额度
+     *
+     * @param operationClass 操作类型
+     * @param waitMillis     最长等待时间（毫秒），小于0时一直等待
+     * @return 是否获取到额度
+     */
+    public boolean acquire(FtpOperationClass operationClass, long waitMillis) throws InterruptedException {
+        Semaphore semaphore = permits.get(operationClass);
+        boolean acquired;
+        if (waitMillis < 0) {
+            semaphore.acquire();
+            acquired = true;
+        } else {
+            acquired = semaphore.tryAcquire(waitMillis, TimeUnit.MILLISECONDS);
+        }
+        if (!acquired) {
+            rejected.get(operationClass).increment();
+        }
+        return acquired;
+    }
+
+    /**
+     * 释放未使用的额度（获取额度后没有借出ftpClient）
+     *
+     * @param operationClass 操作类型
+     */
+    public void release(FtpOperationClass operationClass) {
+        permits.get(operationClass).release();
+    }
+
+    /**
+     * 关联额度与借出的ftpClient
+     *
+     * @param ftpClient      借出的ftpClient
+     * @param operationClass 操作类型
+     */
+    public void bind(FTPClient ftpClient, FtpOperationClass operationClass) {
+        holders.put(ftpClient, operationClass);
+    }
+
+    /**
+     * 归还或销毁ftpClient时释放关联的额度，重复调用时忽略
+     *
+     * @param ftpClient 借出的ftpClient
+     */
+    public void release(FTPClient ftpClient) {
+        FtpOperationClass operationClass = holders.remove(ftpClient);
+        if (operationClass != null) {
+            release(operationClass);
+        }
+    }
+
+    /**
+     * @return 操作类型最多同时占用的连接数
+     */
+    public int getLimit(FtpOperationClass operationClass) {
+        return limits.get(operationClass);
+    }
+
+    /**
+     * @return 操作类型当前占用的连接数
+     */
+    public int getInUse(FtpOperationClass operationClass) {
+        return limits.get(operationClass) - permits.get(operationClass).availablePermits();
+    }
+
+    /**
+     * @return 等待该操作类型额度的线程数
+     */
+    public int getWaiting(FtpOperationClass operationClass) {
+        return permits.get(operationClass).getQueueLength();
+    }
+
+    /**
+     * @return 等待额度超时的次数
+     */
+    public long getRejectedCount(FtpOperationClass operationClass) {
+        return rejected.get(operationClass).sum();
+    }
+}
@@ -0,0 +1,15 @@
+package com.moss.starter.pool;
+
+import java.util.NoSuchElementException;
+
+/**
+ * 服务器处于熔断（摘除）状态，获取连接立即失败
+ *
+ * @author lwj
+ */
+public class FtpCircuitOpenException extends NoSuchElementException {
+
+    public FtpCircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,279 @@
+package com.moss.starter.pool;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 多服务器连接池
+ * <p>
+ * 按路由策略从多个服务器节点的连接池中获取ftpClient，并记录每个借出的ftpClient所属的节点，归还时放回对应的连接池。
+ * 最少活跃连接和轮询策略假定各服务器内容相同（复制存储），路由时跳过已摘除的节点（全部摘除时按摘除到期时间依次尝试），
+ * 首选节点获取失败时依次尝试其他节点；一致性哈希策略用于分片存储，按远程目录固定路由到一个节点。
+ * <p>
+ * 开启熔断（failFast）时，节点的健康状态同时作为熔断器：摘除中的节点不再尝试，半开状态的节点只放行一个请求，
+ * 没有可以尝试的节点时立即抛出{@link FtpCircuitOpenException}，而不是等待连接超时。
+ *
+ * @author lwj
+ */
+@Slf4j
+public class FtpClientPoolGroup {
+
+    private final List<FtpServerNode> nodes;
+    private final FtpRoutingStrategy strategy;
+    private final TreeMap<Long, FtpServerNode> ring = new TreeMap<>();
+    private final AtomicInteger counter = new AtomicInteger();
+    private final Map<FTPClient, FtpServerNode> borrowed = new ConcurrentHashMap<>();
+    private final LongAdder rejectedCount = new LongAdder();
+    private volatile boolean failFast;
+
+    /**
+     * @param nodes        服务器节点
+     * @param strategy     路由策略
+     * @param virtualNodes 一致性哈希时每个节点的虚拟节点数
+     */
+    public FtpClientPoolGroup(List<FtpServerNode> nodes, FtpRoutingStrategy strategy, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("at least one ftp server is required");
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        this.strategy = strategy != null ? strategy : FtpRoutingStrategy.LEAST_ACTIVE;
+        if (this.strategy == FtpRoutingStrategy.CONSISTENT_HASH) {
+            for (FtpServerNode node : nodes) {
+                for (int i = 0; i < Math.max(virtualNodes, 1); i++) {
+                    ring.put(hash(node.getName() + "#" + i), node);
+                }
+            }
+        }
+    }
+
+    /**
+     * 单服务器连接池
+     *
+     * @param pool 连接池
+     * @return 只有一个节点、不摘除节点的连接池
+     */
+    public static FtpClientPoolGroup single(GenericObjectPool<FTPClient> pool) {
+        FtpServerNode node = new FtpServerNode("default", pool, new FtpNodeHealth("default", 0, 1, 1));
+        return new FtpClientPoolGroup(Collections.singletonList(node), FtpRoutingStrategy.ROUND_ROBIN, 1);
+    }
+
+    /**
+     * 获取ftpClient
+     *
+     * @param routingKey 路由键（远程目录），一致性哈希时使用，可为null
+     * @param waitMillis 每个节点的最长等待时间，小于0时使用连接池的配置
+     * @return ftpClient
+     */
+    public FTPClient borrowObject(String routingKey, long waitMillis) throws Exception {
+        return borrowObject(routingKey, waitMillis, false);
+    }
+
+    /**
+     * 获取空闲的ftpClient，不等待，也不为此创建新连接（只尝试当前有空闲连接的节点；
+     * 并发借出时空闲连接可能恰好被其他线程取走，此时连接池仍会按maxTotal创建连接）
+     *
+     * @param routingKey 路由键（远程目录），一致性哈希时使用，可为null
+     * @return ftpClient
+     * @throws NoSuchElementException 没有空闲连接
+     */
+    public FTPClient borrowIdleObject(String routingKey) throws Exception {
+        return borrowObject(routingKey, 0, true);
+    }
+
+    private FTPClient borrowObject(String routingKey, long waitMillis, boolean idleOnly) throws Exception {
+        Exception last = null;
+        long now = System.currentTimeMillis();
+        for (FtpServerNode node : candidates(routingKey)) {
+            if (idleOnly && node.getPool().getNumIdle() == 0) {
+                continue;
+            }
+            if (failFast && !node.getHealth().tryAcquire(now)) {
+                continue;
+            }
+            try {
+                FTPClient ftpClient = waitMillis < 0 ? node.getPool().borrowObject() : node.getPool().borrowObject(waitMillis);
+                if (failFast) {
+                    node.getHealth().recordProbeSuccess();
+                }
+                borrowed.put(ftpClient, node);
+                return ftpClient;
+            } catch (Exception e) {
+                if (nodes.size() > 1) {
+                    log.warn("从FTP服务器[{}]获取连接失败：{}", node, e.getMessage());
+                }
+                last = e;
+            } finally {
+                if (failFast) {
+                    node.getHealth().release();
+                }
+            }
+        }
+        if (last != null) {
+            throw last;
+        }
+        if (idleOnly) {
+            throw new NoSuchElementException("no idle ftpClient for [" + routingKey + "]");
+        }
+        rejectedCount.increment();
+        throw new FtpCircuitOpenException("ftp server of [" + routingKey + "] is unavailable, circuit is open");
+    }
+
+    /**
+     * 归还ftpClient
+     *
+     * @param ftpClient 借出的ftpClient
+     */
+    public void returnObject(FTPClient ftpClient) {
+        nodeToRelease(ftpClient).getPool().returnObject(ftpClient);
+    }
+
+    /**
+     * 销毁ftpClient
+     *
+     * @param ftpClient 借出的ftpClient
+     */
+    public void invalidateObject(FTPClient ftpClient) throws Exception {
+        nodeToRelease(ftpClient).getPool().invalidateObject(ftpClient);
+    }
+
+    /**
+     * 判断ftpClient是否属于路由键对应的节点（只有一致性哈希时节点之间内容不同）
+     *
+     * @param ftpClient  借出的ftpClient
+     * @param routingKey 路由键（远程目录）
+     * @return true：可以使用该ftpClient访问路由键对应的文件
+     */
+    public boolean isRoutedTo(FTPClient ftpClient, String routingKey) {
+        if (strategy != FtpRoutingStrategy.CONSISTENT_HASH || routingKey == null || nodes.size() == 1) {
+            return true;
+        }
+        return owner(routingKey) == borrowed.get(ftpClient);
+    }
+
+    /**
+     * 按路由策略排列候选节点：首个为首选节点，其余为获取失败时依次尝试的节点
+     * <p>
+     * 一致性哈希用于分片存储，文件只存在于路由键对应的节点上，因此只返回该节点，不切换到其他节点；
+     * 该节点处于摘除状态时返回空列表，快速失败而不是等待连接超时。
+     *
+     * @param routingKey 路由键
+     * @return 候选节点
+     */
+    List<FtpServerNode> candidates(String routingKey) {
+        long now = System.currentTimeMillis();
+        if (strategy == FtpRoutingStrategy.CONSISTENT_HASH && routingKey != null && nodes.size() > 1) {
+            FtpServerNode owner = owner(routingKey);
+            return owner.getHealth().isEjected(now) ? Collections.emptyList() : Collections.singletonList(owner);
+        }
+        List<FtpServerNode> available = new ArrayList<>(nodes.size());
+        for (FtpServerNode node : nodes) {
+            if (!node.getHealth().isEjected(now)) {
+                available.add(node);
+            }
+        }
+        if (available.isEmpty()) {
+            //  全部摘除时按摘除到期时间依次尝试
+            available.addAll(nodes);
+            available.sort(Comparator.comparingLong(node -> node.getHealth().getEjectedUntil()));
+            return available;
+        }
+        if (available.size() == 1) {
+            return available;
+        }
+        Collections.rotate(available, -Math.floorMod(counter.getAndIncrement(), available.size()));
+        if (strategy == FtpRoutingStrategy.LEAST_ACTIVE) {
+            //  稳定排序，负载相同的节点之间保持轮询顺序
+            available.sort(Comparator.comparingDouble(FtpServerNode::load));
+        }
+        return available;
+    }
+
+    /**
+     * 路由键在哈希环上顺时针方向的第一个节点
+     */
+    private FtpServerNode owner(String routingKey) {
+        Map.Entry<Long, FtpServerNode> entry = ring.ceilingEntry(hash(routingKey));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    private FtpServerNode nodeToRelease(FTPClient ftpClient) {
+        FtpServerNode node = borrowed.remove(ftpClient);
+        if (node == null) {
+            if (nodes.size() == 1) {
+                return nodes.get(0);
+            }
+            throw new IllegalStateException("ftpClient was not borrowed from this pool group");
+        }
+        return node;
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 关闭所有节点的连接池
+     */
+    public void close() {
+        for (FtpServerNode node : nodes) {
+            node.getPool().close();
+        }
+    }
+
+    /**
+     * @return 是否所有节点的连接池都已关闭
+     */
+    public boolean isClosed() {
+        return nodes.stream().allMatch(node -> node.getPool().isClosed());
+    }
+
+    public List<FtpServerNode> getNodes() {
+        return nodes;
+    }
+
+    public FtpRoutingStrategy getStrategy() {
+        return strategy;
+    }
+
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    /**
+     * @param failFast 是否开启熔断：没有可以尝试的节点时立即失败
+     */
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    /**
+     * @return 熔断而立即失败的次数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+}
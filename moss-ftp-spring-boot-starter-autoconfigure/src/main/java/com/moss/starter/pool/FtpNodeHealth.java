@@ -0,0 +1,124 @@
+package com.moss.starter.pool;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 服务器节点健康状态
+ * <p>
+ * 连续建立连接或验证连接失败达到阈值时摘除节点，摘除时间按指数退避（每次摘除翻倍，不超过上限）；
+ * 摘除到期后节点重新参与路由，再次失败时立即以更长的时间摘除，成功一次即恢复。
+ * <p>
+ * 作为熔断器使用时（{@link #tryAcquire(long)}），摘除期间拒绝所有请求；摘除到期后为半开状态，
+ * 同一时刻只放行一个请求尝试连接，其余请求仍然立即失败，避免服务器不可用时所有请求线程同时等待连接超时。
+ *
+ * @author lwj
+ */
+@Slf4j
+public class FtpNodeHealth {
+
+    private final String name;
+    private final int failureThreshold;
+    private final long ejectionMillis;
+    private final long maxEjectionMillis;
+    private int consecutiveFailures;
+    private int ejections;
+    private long ejectedUntil;
+    private boolean probing;
+
+    /**
+     * @param name              节点名称
+     * @param failureThreshold  连续失败多少次后摘除，小于等于0时不摘除
+     * @param ejectionMillis    首次摘除时间（毫秒）
+     * @param maxEjectionMillis 最长摘除时间（毫秒）
+     */
+    public FtpNodeHealth(String name, int failureThreshold, long ejectionMillis, long maxEjectionMillis) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.ejectionMillis = Math.max(ejectionMillis, 1);
+        this.maxEjectionMillis = Math.max(maxEjectionMillis, this.ejectionMillis);
+    }
+
+    /**
+     * 记录一次成功（建立连接或验证连接成功）
+     */
+    public synchronized void recordSuccess() {
+        if (ejections > 0) {
+            log.info("FTP服务器[{}]已恢复", name);
+        }
+        consecutiveFailures = 0;
+        ejections = 0;
+        ejectedUntil = 0;
+        probing = false;
+    }
+
+    /**
+     * 半开状态下放行的尝试请求获取到连接时记录为成功（获取到的空闲连接可能没有经过建立或验证），其他情况不做处理
+     */
+    public synchronized void recordProbeSuccess() {
+        if (probing) {
+            recordSuccess();
+        }
+    }
+
+    /**
+     * 记录一次失败（建立连接或验证连接失败）
+     */
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        probing = false;
+        long now = System.currentTimeMillis();
+        if (failureThreshold <= 0 || consecutiveFailures < failureThreshold || now < ejectedUntil) {
+            return;
+        }
+        ejections++;
+        long backoff = Math.min(maxEjectionMillis, ejectionMillis << Math.min(ejections - 1, 30));
+        ejectedUntil = now + backoff;
+        log.warn("FTP服务器[{}]连续失败{}次，摘除{}ms", name, consecutiveFailures, backoff);
+    }
+
+    /**
+     * @param now 当前时间
+     * @return 是否处于摘除状态
+     */
+    public synchronized boolean isEjected(long now) {
+        return now < ejectedUntil;
+    }
+
+    /**
+     * 熔断器放行判断
+     *
+     * @param now 当前时间
+     * @return 是否允许向该节点发起请求，允许时请求结束后需调用{@link #release()}
+     */
+    public synchronized boolean tryAcquire(long now) {
+        if (now < ejectedUntil) {
+            return false;
+        }
+        if (ejections == 0) {
+            return true;
+        }
+        //  半开状态：只放行一个尝试请求
+        if (probing) {
+            return false;
+        }
+        probing = true;
+        return true;
+    }
+
+    /**
+     * 放行的请求结束（尝试请求没有建立或验证连接时，下一个请求继续尝试）
+     */
+    public synchronized void release() {
+        if (ejections > 0) {
+            probing = false;
+        }
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public synchronized long getEjectedUntil() {
+        return ejectedUntil;
+    }
+}
@@ -0,0 +1,24 @@
+package com.moss.starter.pool;
+
+/**
+ * 操作类型，舱壁隔离时每种类型使用独立的连接额度
+ *
+ * @author lwj
+ */
+public enum FtpOperationClass {
+
+    /**
+     * 单文件上传、下载、删除等短时间占用连接的操作
+     */
+    SMALL,
+
+    /**
+     * 打包下载、批量操作、分段下载、断点续传等长时间或同时占用多个连接的操作
+     */
+    BULK,
+
+    /**
+     * 列出目录、遍历目录树
+     */
+    LISTING
+}
@@ -0,0 +1,36 @@
+package com.moss.starter.pool;
+
+import java.io.IOException;
+
+/**
+ * 连续发送命令时连接中断
+ * <p>
+ * 已发送但未收到应答的命令可能已被服务器执行，执行结果未知；未发送的命令没有执行。
+ *
+ * @author lwj
+ */
+public class FtpPipelineException extends IOException {
+
+    /**
+     * 已写入（或正在写入）控制连接的命令数
+     */
+    private final int sent;
+    /**
+     * 已收到应答的命令数
+     */
+    private final int received;
+
+    public FtpPipelineException(IOException cause, int sent, int received) {
+        super(cause.getMessage(), cause);
+        this.sent = sent;
+        this.received = received;
+    }
+
+    public int getSent() {
+        return sent;
+    }
+
+    public int getReceived() {
+        return received;
+    }
+}
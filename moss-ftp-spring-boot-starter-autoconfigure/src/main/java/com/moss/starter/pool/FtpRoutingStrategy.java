@@ -0,0 +1,24 @@
+package com.moss.starter.pool;
+
+/**
+ * 多服务器路由策略
+ *
+ * @author lwj
+ */
+public enum FtpRoutingStrategy {
+
+    /**
+     * 使用中连接占比最低的服务器（各服务器内容相同）
+     */
+    LEAST_ACTIVE,
+
+    /**
+     * 轮询（各服务器内容相同）
+     */
+    ROUND_ROBIN,
+
+    /**
+     * 按远程目录一致性哈希（各服务器分片存储，同一目录下的文件始终路由到同一台服务器）
+     */
+    CONSISTENT_HASH
+}
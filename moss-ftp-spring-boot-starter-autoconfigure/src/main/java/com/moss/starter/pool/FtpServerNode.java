@@ -0,0 +1,53 @@
+package com.moss.starter.pool;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+/**
+ * FTP服务器节点：每台服务器使用独立的连接池
+ *
+ * @author lwj
+ */
+public class FtpServerNode {
+
+    private final String name;
+    private final GenericObjectPool<FTPClient> pool;
+    private final FtpNodeHealth health;
+
+    /**
+     * @param name   节点名称（host:port）
+     * @param pool   该服务器的连接池
+     * @param health 健康状态，由连接池的对象工厂在建立、验证连接时更新
+     */
+    public FtpServerNode(String name, GenericObjectPool<FTPClient> pool, FtpNodeHealth health) {
+        this.name = name;
+        this.pool = pool;
+        this.health = health;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public GenericObjectPool<FTPClient> getPool() {
+        return pool;
+    }
+
+    public FtpNodeHealth getHealth() {
+        return health;
+    }
+
+    /**
+     * 连接池负载：使用中和等待中的连接数占最大连接数的比例
+     */
+    double load() {
+        int maxTotal = pool.getMaxTotal();
+        int busy = pool.getNumActive() + pool.getNumWaiters();
+        return maxTotal > 0 ? (double) busy / maxTotal : busy;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
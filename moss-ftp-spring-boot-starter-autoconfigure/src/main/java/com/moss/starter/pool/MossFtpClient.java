@@ -0,0 +1,595 @@
+package com.moss.starter.pool;
+
+import com.moss.starter.io.CountingInputStream;
+import com.moss.starter.io.CountingOutputStream;
+import com.moss.starter.io.FtpChecksumAlgorithm;
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPConnectionClosedException;
+import org.apache.commons.net.ftp.FTPReply;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BiConsumer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 记录会话状态的FTPClient
+ * <p>
+ * 记录当前工作目录和传输类型，切换到相同的目录或设置相同的传输类型时不再发送CWD、TYPE命令；
+ * 同时统计发送的命令数（每个命令对应控制连接上的一次往返），用于验证每个操作的往返次数。
+ * 相对路径或包含..的路径无法确定切换后的目录，此时当前工作目录记为未知，下一次CWD一定会发送。
+ * <p>
+ * 支持MODE Z压缩传输：调用{@link #compressNextTransfer()}后，下一次数据连接使用MODE Z，
+ * 数据连接上的内容按zlib格式解压/压缩（commons-net只发送MODE命令，不处理数据连接上的压缩）；
+ * 其余数据连接使用MODE S，只有上一次传输使用了MODE Z时才会发送MODE S。
+ * <p>
+ * 批量删除、移动时可以通过{@link #pipeline}连续发送多个命令，不必每个命令等待一次往返（取决于服务器，默认不开启）。
+ * <p>
+ * 通过{@link #remoteChecksum}由服务器计算文件摘要（HASH、XCRC、XMD5等），用于校验传输的内容。
+ *
+ * @author lwj
+ */
+public class MossFtpClient extends FTPClient {
+
+    /**
+     * MODE Z传输模式（commons-net 3.6没有该模式，取值与新版本的FTP.DEFLATE_TRANSFER_MODE相同）
+     */
+    public static final int DEFLATE_TRANSFER_MODE = 13;
+
+    /**
+     * 当前工作目录，null表示未知
+     */
+    private String workingDirectory;
+    /**
+     * 当前传输类型，-1表示未知
+     */
+    private int fileType = -1;
+    /**
+     * 当前传输模式
+     */
+    private int transferMode = FTP.STREAM_TRANSFER_MODE;
+    /**
+     * 服务器是否支持MODE Z，null表示尚未通过FEAT查询
+     */
+    private Boolean deflateSupported;
+    /**
+     * 下一次数据连接是否使用MODE Z
+     */
+    private boolean compressNext;
+    /**
+     * MODE Z上传时的压缩级别
+     */
+    private int deflateLevel = Deflater.DEFAULT_COMPRESSION;
+    /**
+     * HASH命令当前使用的算法，null表示未知
+     */
+    private String hashAlgorithm;
+    private long commandCount;
+    private long operationStart;
+    /**
+     * 本次操作中压缩传输的内容字节数和实际传输（压缩后）的字节数
+     */
+    private long contentBytes;
+    private long wireBytes;
+    /**
+     * 最近一次收到服务器应答的时间，连接池校验时据此判断是否需要发送NOOP
+     */
+    private volatile long lastUsedMillis = System.currentTimeMillis();
+
+    @Override
+    protected void _connectAction_() throws IOException {
+        resetSessionState();
+        super._connectAction_();
+        lastUsedMillis = System.currentTimeMillis();
+    }
+
+    @Override
+    public int sendCommand(String command, String args) throws IOException {
+        commandCount++;
+        int replyCode = super.sendCommand(command, args);
+        lastUsedMillis = System.currentTimeMillis();
+        return replyCode;
+    }
+
+    @Override
+    public int getReply() throws IOException {
+        //  流水线命令和数据传输完成的应答不经过sendCommand
+        int replyCode = super.getReply();
+        lastUsedMillis = System.currentTimeMillis();
+        return replyCode;
+    }
+
+    @Override
+    public boolean changeWorkingDirectory(String pathname) throws IOException {
+        String target = resolve(pathname);
+        if (target != null && target.equals(workingDirectory)) {
+            return true;
+        }
+        boolean changed = super.changeWorkingDirectory(pathname);
+        //  CWD失败时不确定服务器上的当前目录（如目录已被其他进程删除），下一次CWD一定发送
+        workingDirectory = changed ? target : null;
+        return changed;
+    }
+
+    @Override
+    public boolean makeDirectory(String pathname) throws IOException {
+        boolean made = super.makeDirectory(pathname);
+        if (!made) {
+            workingDirectory = null;
+        }
+        return made;
+    }
+
+    @Override
+    public boolean changeToParentDirectory() throws IOException {
+        workingDirectory = null;
+        return super.changeToParentDirectory();
+    }
+
+    @Override
+    public boolean login(String username, String password) throws IOException {
+        //  登录后进入用户的主目录
+        workingDirectory = null;
+        return super.login(username, password);
+    }
+
+    @Override
+    public boolean reinitialize() throws IOException {
+        resetSessionState();
+        return super.reinitialize();
+    }
+
+    @Override
+    public boolean setFileType(int fileType) throws IOException {
+        if (this.fileType == fileType) {
+            return true;
+        }
+        boolean changed = super.setFileType(fileType);
+        this.fileType = changed ? fileType : -1;
+        return changed;
+    }
+
+    @Override
+    public boolean setFileType(int fileType, int formatOrByteSize) throws IOException {
+        boolean changed = super.setFileType(fileType, formatOrByteSize);
+        this.fileType = -1;
+        return changed;
+    }
+
+    @Override
+    public boolean setFileTransferMode(int mode) throws IOException {
+        if (transferMode == mode) {
+            return true;
+        }
+        boolean changed = mode == DEFLATE_TRANSFER_MODE
+                ? FTPReply.isPositiveCompletion(sendCommand("MODE", "Z"))
+                : super.setFileTransferMode(mode);
+        if (changed) {
+            transferMode = mode;
+        }
+        return changed;
+    }
+
+    @Override
+    protected Socket _openDataConnection_(String command, String arg) throws IOException {
+        //  MODE Z下REST的偏移量含义不明确，带偏移量的传输不压缩
+        boolean compress = compressNext && getRestartOffset() == 0;
+        compressNext = false;
+        if (compress && !setFileTransferMode(DEFLATE_TRANSFER_MODE)) {
+            //  FEAT中声明了但MODE Z被拒绝，之后不再尝试
+            deflateSupported = false;
+            compress = false;
+        }
+        if (!compress && transferMode == DEFLATE_TRANSFER_MODE) {
+            setFileTransferMode(FTP.STREAM_TRANSFER_MODE);
+        }
+        Socket socket = super._openDataConnection_(command, arg);
+        return socket != null && compress ? new DeflateSocket(socket) : socket;
+    }
+
+    /**
+     * 下一次数据连接（RETR、STOR等）使用MODE Z压缩传输；服务器不支持时不做任何处理，按MODE S传输
+     * <p>
+     * 首次调用时通过FEAT查询服务器是否支持MODE Z，结果在连接断开前一直有效。
+     * 设置了REST偏移量的传输（断点续传、分段下载）不使用压缩传输。
+     *
+     * @return 下一次数据连接是否使用MODE Z
+     */
+    public boolean compressNextTransfer() throws IOException {
+        if (deflateSupported == null) {
+            deflateSupported = hasFeature("MODE", "Z");
+        }
+        compressNext = deflateSupported;
+        return compressNext;
+    }
+
+    /**
+     * @return 服务器是否支持MODE Z，尚未查询时为null
+     */
+    public Boolean getDeflateSupported() {
+        return deflateSupported;
+    }
+
+    /**
+     * @param deflateLevel MODE Z上传时的压缩级别（0-9，-1为zlib默认级别）
+     */
+    public void setDeflateLevel(int deflateLevel) {
+        this.deflateLevel = deflateLevel;
+    }
+
+    public int getDeflateLevel() {
+        return deflateLevel;
+    }
+
+    /**
+     * 流水线发送命令：未读取应答的命令最多window个，读取一个应答后再发送下一个命令，
+     * 控制连接上不再每个命令等待一次往返。只用于DELE、RNFR/RNTO这类不改变会话状态的命令。
+     * <p>
+     * RFC 959没有规定服务器必须正确处理未等待应答就连续发送的命令，是否可用取决于服务器：
+     * 部分服务器会丢弃读缓冲区中的后续命令或合并应答，RNFR失败后对紧接着的RNTO的处理也不统一，
+     * 因此只应在确认服务器支持时使用（window大于1），window为1时逐个发送并等待应答。
+     *
+     * @param commands 命令，每项为命令名和参数
+     * @param window   未读取应答的命令数上限，为1时逐个发送
+     * @param replies  每读取一个应答调用一次（应答码和应答内容），按命令顺序调用
+     * @throws FtpPipelineException 连接中断，已发送但未收到应答的命令是否已执行无法确定
+     */
+    public void pipeline(List<String[]> commands, int window, BiConsumer<Integer, String> replies) throws IOException {
+        if (!isConnected()) {
+            throw new FTPConnectionClosedException("Connection unexpectedly closed.");
+        }
+        int depth = Math.max(window, 1);
+        int sent = 0;
+        int received = 0;
+        try {
+            for (; received < commands.size(); received++) {
+                //  补满发送窗口后再flush，窗口内的命令一次写入控制连接
+                boolean written = false;
+                while (sent < commands.size() && sent < received + depth) {
+                    String[] command = commands.get(sent++);
+                    String message = command[0] + (command[1] != null ? " " + command[1] : "") + "\r\n";
+                    _controlOutput_.write(message);
+                    commandCount++;
+                    fireCommandSent(command[0], message);
+                    written = true;
+                }
+                if (written) {
+                    _controlOutput_.flush();
+                }
+                int replyCode = getReply();
+                replies.accept(replyCode, getReplyString());
+            }
+        } catch (IOException e) {
+            throw new FtpPipelineException(e, sent, received);
+        }
+    }
+
+    /**
+     * 由服务器计算文件的摘要
+     * <p>
+     * FEAT中声明了HASH且支持该算法时使用HASH（算法不是当前算法时先发送OPTS HASH），
+     * 否则使用FEAT中声明的XCRC、XMD5等命令；FEAT的结果在连接断开前一直有效，不支持时不会发送任何命令。
+     *
+     * @param algorithm 摘要算法
+     * @param pathname  文件路径（已编码）
+     * @return 小写十六进制摘要，服务器不支持该算法或计算失败时为null
+     */
+    public String remoteChecksum(FtpChecksumAlgorithm algorithm, String pathname) throws IOException {
+        String hashName = algorithm.getHashName();
+        if (hashName != null && selectHashAlgorithm(hashName)) {
+            return FTPReply.isPositiveCompletion(sendCommand("HASH", pathname)) ? parseChecksum(algorithm, "HASH", getReplyString()) : null;
+        }
+        for (String command : algorithm.getCommands()) {
+            if (hasFeature(command)) {
+                return FTPReply.isPositiveCompletion(sendCommand(command, pathname)) ? parseChecksum(algorithm, command, getReplyString()) : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 切换HASH命令使用的算法，FEAT中标记*的算法为服务器的默认算法
+     *
+     * @return 服务器是否支持HASH和该算法
+     */
+    private boolean selectHashAlgorithm(String hashName) throws IOException {
+        if (hashName.equals(hashAlgorithm)) {
+            return true;
+        }
+        String[] values = featureValues("HASH");
+        if (values == null) {
+            return false;
+        }
+        boolean supported = false;
+        for (String value : values) {
+            for (String name : value.split(";")) {
+                boolean selected = name.endsWith("*");
+                if (hashName.equalsIgnoreCase(selected ? name.substring(0, name.length() - 1) : name)) {
+                    supported = true;
+                    if (selected && hashAlgorithm == null) {
+                        hashAlgorithm = hashName;
+                        return true;
+                    }
+                }
+            }
+        }
+        if (!supported || !FTPReply.isPositiveCompletion(sendCommand("OPTS", "HASH " + hashName))) {
+            return false;
+        }
+        hashAlgorithm = hashName;
+        return true;
+    }
+
+    /**
+     * 按命令的应答格式取出摘要：HASH的应答为"213 算法 范围 摘要 文件名"，MD5的应答为"251 文件名 摘要"，
+     * XCRC、XMD5等的应答为"250 摘要"；部分服务器返回的CRC省略了前导0
+     *
+     * @param algorithm 摘要算法
+     * @param command   发送的命令
+     * @param reply     应答
+     * @return 小写十六进制摘要，应答中对应的字段不是该算法的摘要时为null
+     */
+    static String parseChecksum(FtpChecksumAlgorithm algorithm, String command, String reply) {
+        String[] tokens = reply.trim().split("\\s+");
+        int index;
+        if ("HASH".equals(command)) {
+            index = 3;
+        } else if ("MD5".equals(command)) {
+            index = tokens.length - 1;
+        } else {
+            index = 1;
+        }
+        if (index < 1 || index >= tokens.length) {
+            return null;
+        }
+        String token = tokens[index];
+        boolean matches = algorithm.getHexLength() == 8
+                ? !token.isEmpty() && token.length() <= 8 : token.length() == algorithm.getHexLength();
+        for (int j = 0; matches && j < token.length(); j++) {
+            matches = Character.digit(token.charAt(j), 16) >= 0;
+        }
+        if (!matches) {
+            return null;
+        }
+        String hex = token.toLowerCase(Locale.ROOT);
+        return algorithm.getHexLength() == 8 ? "00000000".substring(hex.length()) + hex : hex;
+    }
+
+    /**
+     * 开始一个新的操作，之后发送的命令数、压缩传输的字节数计入该操作
+     */
+    public void markOperation() {
+        operationStart = commandCount;
+        compressNext = false;
+        contentBytes = 0;
+        wireBytes = 0;
+    }
+
+    /**
+     * @return 自上次markOperation()以来发送的命令数
+     */
+    public int getOperationCommandCount() {
+        return (int) (commandCount - operationStart);
+    }
+
+    /**
+     * @return 自上次markOperation()以来，压缩传输的数据连接上的内容（解压后）字节数
+     */
+    public long getOperationContentBytes() {
+        return contentBytes;
+    }
+
+    /**
+     * @return 自上次markOperation()以来，压缩传输的数据连接上实际传输（压缩后）的字节数
+     */
+    public long getOperationWireBytes() {
+        return wireBytes;
+    }
+
+    /**
+     * @return 最近一次收到服务器应答的时间（毫秒）
+     */
+    public long getLastUsedMillis() {
+        return lastUsedMillis;
+    }
+
+    /**
+     * @return 连接建立以来发送的命令数
+     */
+    public long getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * @return 当前工作目录，未知时为null
+     */
+    public String getTrackedWorkingDirectory() {
+        return workingDirectory;
+    }
+
+    /**
+     * 清除记录的当前工作目录，下一次CWD一定发送（如上传失败时，目录可能已被其他进程删除）
+     */
+    public void forgetWorkingDirectory() {
+        workingDirectory = null;
+    }
+
+    private void resetSessionState() {
+        workingDirectory = null;
+        fileType = -1;
+        transferMode = FTP.STREAM_TRANSFER_MODE;
+        deflateSupported = null;
+        compressNext = false;
+        hashAlgorithm = null;
+    }
+
+    private int streamBufferSize() {
+        return getBufferSize() > 0 ? getBufferSize() : 8192;
+    }
+
+    /**
+     * 计算切换后的工作目录
+     *
+     * @param pathname CWD的参数
+     * @return 切换后的绝对路径，无法确定时为null
+     */
+    private String resolve(String pathname) {
+        if (pathname == null || pathname.isEmpty()) {
+            return null;
+        }
+        String base;
+        if (pathname.startsWith("/")) {
+            base = "";
+        } else if (workingDirectory != null) {
+            base = "/".equals(workingDirectory) ? "" : workingDirectory;
+        } else {
+            return null;
+        }
+        StringBuilder resolved = new StringBuilder(base);
+        for (String segment : pathname.split("/")) {
+            if (segment.isEmpty() || ".".equals(segment)) {
+                continue;
+            }
+            if ("..".equals(segment)) {
+                //  上级目录可能是符号链接，交给服务器处理
+                return null;
+            }
+            resolved.append('/').append(segment);
+        }
+        return resolved.length() == 0 ? "/" : resolved.toString();
+    }
+
+    /**
+     * MODE Z的数据连接：读取时解压，写入时压缩，并统计内容字节数和实际传输的字节数
+     * <p>
+     * FTPClient只使用数据连接的输入输出流和close()，其余方法委托给实际的数据连接。
+     */
+    private class DeflateSocket extends Socket {
+
+        private final Socket socket;
+
+        DeflateSocket(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            CountingInputStream wire = new CountingInputStream(socket.getInputStream());
+            return new InflaterInputStream(wire, new Inflater(), streamBufferSize()) {
+                private boolean closed;
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = super.read(b, off, len);
+                    if (n > 0) {
+                        contentBytes += n;
+                    }
+                    return n;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (closed) {
+                        return;
+                    }
+                    closed = true;
+                    try {
+                        super.close();
+                    } finally {
+                        inf.end();
+                        wireBytes += wire.getCount();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            CountingOutputStream wire = new CountingOutputStream(socket.getOutputStream());
+            return new DeflaterOutputStream(wire, new Deflater(deflateLevel), streamBufferSize()) {
+                private boolean closed;
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    super.write(b, off, len);
+                    contentBytes += len;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (closed) {
+                        return;
+                    }
+                    closed = true;
+                    try {
+                        //  写入zlib结束标记后关闭数据连接
+                        super.close();
+                    } finally {
+                        def.end();
+                        wireBytes += wire.getCount();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+
+        @Override
+        public boolean isClosed() {
+            return socket.isClosed();
+        }
+
+        @Override
+        public boolean isConnected() {
+            return socket.isConnected();
+        }
+
+        @Override
+        public void setSoTimeout(int timeout) throws SocketException {
+            socket.setSoTimeout(timeout);
+        }
+
+        @Override
+        public int getSoTimeout() throws SocketException {
+            return socket.getSoTimeout();
+        }
+
+        @Override
+        public InetAddress getInetAddress() {
+            return socket.getInetAddress();
+        }
+
+        @Override
+        public int getPort() {
+            return socket.getPort();
+        }
+
+        @Override
+        public void shutdownInput() throws IOException {
+            socket.shutdownInput();
+        }
+
+        @Override
+        public void shutdownOutput() throws IOException {
+            socket.shutdownOutput();
+        }
+
+        @Override
+        public String toString() {
+            return "MODE Z " + socket;
+        }
+    }
+}
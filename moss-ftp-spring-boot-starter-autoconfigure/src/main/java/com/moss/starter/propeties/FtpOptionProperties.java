@@ -1,13 +1,20 @@
 package com.moss.starter.propeties;
 
+import com.moss.starter.io.FtpChecksumAlgorithm;
+import com.moss.starter.pool.FtpRoutingStrategy;
+import com.moss.starter.service.FtpWalkErrorPolicy;
 import lombok.Data;
 import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.stereotype.Component;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Ftp配置类
@@ -41,9 +48,9 @@ public class FtpOptionProperties {
      **/
     private String password;
     /**
-     * 缓冲区大小（默认1024）
+     * 缓冲区大小（默认64KB），文件大小未知时按该大小从传输缓冲区池中获取缓冲区
      **/
-    private int bufferSize = 1024;
+    private int bufferSize = 64 * 1024;
     /**
      * 初始化大小
      **/
@@ -56,10 +63,22 @@ public class FtpOptionProperties {
      * 获取ftpClient的尝试数（默认为3）
      **/
     private Integer tryNum = 3;
+    /**
+     * 获取ftpClient失败后重试前的等待时间（毫秒，默认为100），每次重试翻倍并加入随机抖动；为0时立即重试
+     **/
+    private long tryBackoffMillis = 100;
+    /**
+     * 获取ftpClient失败后重试前的最长等待时间（毫秒，默认为2秒）
+     **/
+    private long maxTryBackoffMillis = 2000;
     /**
      * 连接超时时间(秒)
      **/
     private Integer connectTimeout = 30000;
+    /**
+     * 按行读取文件时的默认编码（默认为UTF-8）
+     **/
+    private String lineCharset = StandardCharsets.UTF_8.name();
     /**
      * 传输文件类型
      **/
@@ -72,5 +91,550 @@ public class FtpOptionProperties {
      * 存储空间名称
      **/
     private String bucketName;
+    /**
+     * 多服务器配置，为空时使用host、port、username、password连接单台服务器
+     **/
+    private List<Server> servers = new ArrayList<>();
+    /**
+     * 多服务器路由配置
+     **/
+    private Routing routing = new Routing();
+    /**
+     * 连接池配置（多服务器时每台服务器各自使用一个该配置的连接池）
+     **/
+    private Pool pool = new Pool();
+    /**
+     * 熔断配置
+     **/
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+    /**
+     * 舱壁隔离配置
+     **/
+    private Bulkhead bulkhead = new Bulkhead();
+    /**
+     * 并行传输（打包预取、分段下载、批量操作等）使用的线程数（默认为8）
+     **/
+    private int transferThreads = 8;
+    /**
+     * 打包下载配置
+     **/
+    private Zip zip = new Zip();
+    /**
+     * 分段下载配置
+     **/
+    private Segment segment = new Segment();
+    /**
+     * 批量操作配置
+     **/
+    private Batch batch = new Batch();
+    /**
+     * 已知目录缓存配置
+     **/
+    private DirectoryCache directoryCache = new DirectoryCache();
+    /**
+     * 目录列表缓存配置
+     **/
+    private ListingCache listingCache = new ListingCache();
+    /**
+     * 忽略大小写下载时使用的文件名索引配置
+     **/
+    private NameIndex nameIndex = new NameIndex();
+    /**
+     * 文件内容缓存配置
+     **/
+    private ContentCache contentCache = new ContentCache();
+    /**
+     * 断点续传上传配置
+     **/
+    private Resumable resumable = new Resumable();
+    /**
+     * 压缩传输（MODE Z）配置
+     **/
+    private Compression compression = new Compression();
+    /**
+     * 传输缓冲区池配置
+     **/
+    private Buffer buffer = new Buffer();
+    /**
+     * 目录树遍历配置
+     **/
+    private Walk walk = new Walk();
+    /**
+     * 目录同步配置
+     **/
+    private Sync sync = new Sync();
+    /**
+     * 传输校验配置
+     **/
+    private Checksum checksum = new Checksum();
+    /**
+     * 响应式服务配置
+     **/
+    private Reactive reactive = new Reactive();
+    /**
+     * 异步方法（*Async）配置
+     **/
+    private Async async = new Async();
+
+    /**
+     * 服务器配置
+     */
+    @Data
+    public static class Server {
+        /**
+         * 连接ftp的IP
+         **/
+        private String host;
+        /**
+         * 连接ftp的端口（默认为21）
+         **/
+        private int port = FTPClient.DEFAULT_PORT;
+        /**
+         * 连接ftp的用户名，为空时使用moss.ftp.username
+         **/
+        private String username;
+        /**
+         * 连接ftp的密码，为空时使用moss.ftp.password
+         **/
+        private String password;
+    }
+
+    /**
+     * 多服务器路由配置
+     */
+    @Data
+    public static class Routing {
+        /**
+         * 路由策略：least-active（默认）、round-robin、consistent-hash（按远程目录分片）
+         **/
+        private FtpRoutingStrategy strategy = FtpRoutingStrategy.LEAST_ACTIVE;
+        /**
+         * 一致性哈希时每台服务器的虚拟节点数（默认为160）
+         **/
+        private int virtualNodes = 160;
+        /**
+         * 连续建立或验证连接失败多少次后摘除服务器（默认为3，小于等于0时不摘除）
+         **/
+        private int failureThreshold = 3;
+        /**
+         * 首次摘除时间（毫秒，默认为5秒），再次摘除时翻倍
+         **/
+        private long ejectionMillis = 5000;
+        /**
+         * 最长摘除时间（毫秒，默认为5分钟）
+         **/
+        private long maxEjectionMillis = 5 * 60 * 1000;
+    }
+
+    /**
+     * 熔断配置：连续建立或验证连接失败时断开，断开期间获取连接立即失败，不再等待连接超时
+     */
+    @Data
+    public static class CircuitBreaker {
+        /**
+         * 是否开启（默认为true）；多服务器时按routing配置摘除服务器，所有服务器都被摘除时立即失败
+         **/
+        private boolean enabled = true;
+        /**
+         * 单服务器时连续建立或验证连接失败多少次后断开（默认为5）
+         **/
+        private int failureThreshold = 5;
+        /**
+         * 单服务器时首次断开时间（毫秒，默认为5秒），到期后放行一个请求尝试，再次失败时断开时间翻倍
+         **/
+        private long openMillis = 5000;
+        /**
+         * 单服务器时最长断开时间（毫秒，默认为1分钟）
+         **/
+        private long maxOpenMillis = 60 * 1000;
+    }
+
+    /**
+     * 舱壁隔离配置：按操作类型限制同时占用的连接数（占所有服务器最大连接数之和的比例），为其他类型的操作保留连接
+     * <p>
+     * 默认不开启；开启后按默认比例，maxTotal为8时批量操作最多同时占用4个连接、列出目录最多占用2个连接，
+     * 超出的请求等待其他同类操作归还连接（默认一直等待，见maxWaitMillis）
+     */
+    @Data
+    public static class Bulkhead {
+        /**
+         * 是否开启（默认为false）
+         **/
+        private boolean enabled = false;
+        /**
+         * 单文件上传、下载、删除等操作最多占用的连接比例（默认为1，不限制）
+         **/
+        private double smallShare = 1.0;
+        /**
+         * 打包下载、批量操作、分段下载、断点续传等操作最多占用的连接比例（默认为0.5）
+         **/
+        private double bulkShare = 0.5;
+        /**
+         * 列出目录、遍历目录树等操作最多占用的连接比例（默认为0.25）
+         **/
+        private double listingShare = 0.25;
+        /**
+         * 等待连接额度的最长时间（毫秒，默认为-1，一直等待），超时后获取连接失败
+         **/
+        private long maxWaitMillis = -1;
+    }
+
+    /**
+     * 连接池配置
+     */
+    @Data
+    public static class Pool {
+        /**
+         * 最大连接数（默认为8）
+         **/
+        private int maxTotal = GenericObjectPoolConfig.DEFAULT_MAX_TOTAL;
+        /**
+         * 最大空闲连接数（默认为8）
+         **/
+        private int maxIdle = GenericObjectPoolConfig.DEFAULT_MAX_IDLE;
+        /**
+         * 最小空闲连接数（默认为0）
+         **/
+        private int minIdle = GenericObjectPoolConfig.DEFAULT_MIN_IDLE;
+        /**
+         * 连接池耗尽时获取连接的最大等待时间（毫秒，默认为-1，一直等待）
+         **/
+        private long maxWaitMillis = GenericObjectPoolConfig.DEFAULT_MAX_WAIT_MILLIS;
+        /**
+         * 获取连接时是否校验（默认为true）
+         **/
+        private boolean testOnBorrow = true;
+        /**
+         * 归还连接时是否校验（默认为false）
+         **/
+        private boolean testOnReturn = false;
+        /**
+         * 空闲时是否校验（默认为true）
+         **/
+        private boolean testWhileIdle = true;
+        /**
+         * 连接空闲多久后可被回收（毫秒，默认为60秒）
+         **/
+        private long minEvictableIdleTimeMillis = 60000;
+        /**
+         * 连接空闲多久后可被回收，保留minIdle个连接（毫秒，默认为50秒）
+         **/
+        private long softMinEvictableIdleTimeMillis = 50000;
+        /**
+         * 空闲连接回收线程的运行间隔（毫秒，默认为30秒）
+         **/
+        private long timeBetweenEvictionRunsMillis = 30000;
+        /**
+         * 校验时发送NOOP的空闲时间阈值（毫秒，默认为10秒）：距最近一次收到服务器应答不到该值的连接视为可用，不发送NOOP；为0时每次校验都发送NOOP
+         **/
+        private long validationIdleThresholdMillis = 10000;
+        /**
+         * 预加载initialSize个连接时的并行数（默认为4）
+         **/
+        private int warmUpParallelism = 4;
+        /**
+         * 是否在应用启动完成（ApplicationReadyEvent）后异步预加载连接，不阻塞应用启动（默认为false）
+         **/
+        private boolean warmUpAsync = false;
+        /**
+         * 连接池耗尽时等待的线程是否按先来后到的顺序获取连接（默认为true）
+         **/
+        private boolean fairness = true;
+    }
+
+    /**
+     * 打包下载配置
+     */
+    @Data
+    public static class Zip {
+        /**
+         * 写入当前条目时，使用额外连接预取后续条目的个数（为0时按顺序逐个下载）
+         **/
+        private int prefetchCount = 2;
+        /**
+         * 所有打包下载共享的预取缓冲区上限（字节，默认32MB），超出后剩余内容改为直接流式写入
+         **/
+        private int prefetchBufferBytes = 32 * 1024 * 1024;
+    }
+
+    /**
+     * 分段下载配置
+     */
+    @Data
+    public static class Segment {
+        /**
+         * 启用分段下载的最小文件大小（字节，默认16MB），小于该值时按单连接下载
+         **/
+        private long minFileSize = 16 * 1024 * 1024;
+        /**
+         * 每个分段的大小（字节，默认8MB）
+         **/
+        private long segmentSize = 8 * 1024 * 1024;
+        /**
+         * 单个文件同时使用的最大连接数（默认为4）
+         **/
+        private int maxConnections = 4;
+    }
+
+    /**
+     * 批量操作配置
+     */
+    @Data
+    public static class Batch {
+        /**
+         * 批量操作同时使用的最大连接数（默认为4）
+         **/
+        private int concurrency = 4;
+        /**
+         * 批量删除、移动时每个连接上未收到应答的命令数上限（默认为1，逐个发送并等待应答）；
+         * RFC 959不保证服务器能正确处理未等待应答就连续发送的命令，确认服务器支持后再设置为大于1的值
+         **/
+        private int pipelineDepth = 1;
+    }
+
+    /**
+     * 已知目录缓存配置（上传时跳过已存在目录的逐级检查）
+     */
+    @Data
+    public static class DirectoryCache {
+        /**
+         * 是否开启（默认为true）
+         **/
+        private boolean enabled = true;
+        /**
+         * 最大缓存目录数（默认为10000）
+         **/
+        private int maxSize = 10000;
+        /**
+         * 缓存过期时间（毫秒，默认为10分钟）
+         **/
+        private long ttlMillis = 10 * 60 * 1000;
+    }
+
+    /**
+     * 目录列表缓存配置（retrieveFtpFiles、retrieveFileNames），通过MossFtpService上传、删除、创建目录时自动失效
+     */
+    @Data
+    public static class ListingCache {
+        /**
+         * 是否开启（默认为false）
+         **/
+        private boolean enabled = false;
+        /**
+         * 最大缓存目录数（默认为1000）
+         **/
+        private int maxSize = 1000;
+        /**
+         * 缓存过期时间（毫秒，默认为30秒）
+         **/
+        private long ttlMillis = 30 * 1000;
+    }
+
+    /**
+     * 文件名索引配置（downLoadFile忽略大小写时使用），通过MossFtpService上传、删除文件时自动失效
+     */
+    @Data
+    public static class NameIndex {
+        /**
+         * 最大缓存目录数（默认为100）
+         **/
+        private int maxSize = 100;
+        /**
+         * 缓存过期时间（毫秒，默认为60秒）
+         **/
+        private long ttlMillis = 60 * 1000;
+    }
+
+    /**
+     * 文件内容缓存配置（downLoadFileToStream、downLoadFileToResponse），通过MossFtpService上传、删除文件时自动失效
+     */
+    @Data
+    public static class ContentCache {
+        /**
+         * 是否开启（默认为false）
+         **/
+        private boolean enabled = false;
+        /**
+         * 堆外内存缓存的字节数上限（默认64MB）
+         **/
+        private long memoryMaxBytes = 64 * 1024 * 1024;
+        /**
+         * 缓存在堆外内存中的单个文件大小上限（默认1MB），更大的文件缓存在磁盘中
+         **/
+        private long memoryMaxEntryBytes = 1024 * 1024;
+        /**
+         * 磁盘缓存目录（默认为java.io.tmpdir下的moss-ftp-cache），启动时清空目录中的缓存文件
+         **/
+        private String diskDirectory;
+        /**
+         * 磁盘缓存的字节数上限（默认1GB，为0时不使用磁盘缓存）
+         **/
+        private long diskMaxBytes = 1024 * 1024 * 1024;
+        /**
+         * 缓存在磁盘中的单个文件大小上限（默认256MB）
+         **/
+        private long diskMaxEntryBytes = 256 * 1024 * 1024;
+        /**
+         * 距上次验证多久后，使用缓存前需要通过SIZE、MDTM与服务器比对（毫秒，默认为5秒，为0时每次都比对）
+         **/
+        private long revalidateAfterMillis = 5000;
+    }
+
+    /**
+     * 断点续传上传配置（uploadFileResumable）
+     */
+    @Data
+    public static class Resumable {
+        /**
+         * 上传过程中临时文件名的后缀（默认为.part），上传完成后重命名为目标文件
+         **/
+        private String tempSuffix = ".part";
+        /**
+         * 本地检查点目录（默认为java.io.tmpdir下的moss-ftp-resume）
+         **/
+        private String checkpointDirectory;
+        /**
+         * 连接中断时的最大尝试次数（默认为5）
+         **/
+        private int maxAttempts = 5;
+        /**
+         * 重试间隔（毫秒，默认为1秒）
+         **/
+        private long retryDelayMillis = 1000;
+    }
+
+    /**
+     * 压缩传输（MODE Z）配置，服务器在FEAT中未声明MODE Z时自动按MODE S传输
+     */
+    @Data
+    public static class Compression {
+        /**
+         * 是否开启（默认为false）
+         **/
+        private boolean enabled = false;
+        /**
+         * 需要压缩传输的文件扩展名（未注册FtpCompressionPolicy时生效）
+         **/
+        private List<String> extensions = new ArrayList<>(Arrays.asList(
+                "csv", "tsv", "txt", "log", "json", "xml", "html", "htm", "sql", "yml", "yaml"));
+        /**
+         * 上传时的压缩级别（0-9，默认为-1，即zlib默认级别）
+         **/
+        private int level = -1;
+    }
+
+    /**
+     * 传输缓冲区池配置：缓冲区按2的幂分级，根据文件大小选择，传输结束后归还复用
+     */
+    @Data
+    public static class Buffer {
+        /**
+         * 最小缓冲区大小（默认为8KB），小文件使用该大小的缓冲区
+         **/
+        private int minSize = 8 * 1024;
+        /**
+         * 最大缓冲区大小（默认为1MB），大文件使用该大小的缓冲区
+         **/
+        private int maxSize = 1024 * 1024;
+        /**
+         * 池中保留的空闲缓冲区总字节数上限（默认为32MB），为0时不复用
+         **/
+        private long maxPooledBytes = 32L * 1024 * 1024;
+        /**
+         * 数据连接的Socket发送和接收缓冲区大小（默认为256KB），为0时使用系统默认值
+         **/
+        private int socketBufferSize = 256 * 1024;
+    }
+
+    /**
+     * 目录树遍历（walkTree）配置
+     */
+    @Data
+    public static class Walk {
+        /**
+         * 同时列出的目录数（默认为8），同时不超过连接池的最大连接数
+         **/
+        private int concurrency = 8;
+        /**
+         * 列出目录失败时的处理方式：SKIP（跳过该目录，默认）；FAIL（停止遍历）
+         **/
+        private FtpWalkErrorPolicy errorPolicy = FtpWalkErrorPolicy.SKIP;
+    }
+
+    /**
+     * 目录同步（syncDirectory）配置
+     */
+    @Data
+    public static class Sync {
+        /**
+         * 是否使用本地清单记录同步后ftp目录中的文件（默认为false），清单有效时不再列出ftp目录
+         **/
+        private boolean manifestEnabled = false;
+        /**
+         * 清单目录（默认为java.io.tmpdir下的moss-ftp-sync）
+         **/
+        private String manifestDirectory;
+        /**
+         * 使用清单时重新列出ftp目录的间隔（毫秒，默认为1小时），用于发现其他程序对ftp目录的修改；为0时始终使用清单
+         **/
+        private long rescanIntervalMillis = 60 * 60 * 1000;
+    }
+
+    /**
+     * 传输校验配置：上传、下载时在传输的同时计算摘要，传输结束后与服务器计算的摘要比较
+     */
+    @Data
+    public static class Checksum {
+        /**
+         * 是否校验上传、下载的文件（默认为false）
+         **/
+        private boolean enabled = false;
+        /**
+         * 摘要算法：CRC32（默认，计算最快，服务器可通过XCRC、HASH CRC32校验）；CRC32C；MD5；SHA_256（计算较慢）
+         **/
+        private FtpChecksumAlgorithm algorithm = FtpChecksumAlgorithm.CRC32;
+        /**
+         * 服务器不支持HASH、XCRC、XMD5等命令时，上传后是否把摘要保存为同名的sidecar文件（如a.txt.crc32），下载后读取该文件校验（默认为true）
+         **/
+        private boolean sidecarEnabled = true;
+        /**
+         * 是否校验下载的文件（默认为true），为false时只计算摘要
+         **/
+        private boolean verifyDownloads = true;
+    }
+
+    /**
+     * 响应式服务（ReactiveMossFtpService）配置，存在Reactor时生效
+     */
+    @Data
+    public static class Reactive {
+        /**
+         * 执行阻塞操作的线程数（默认为16），并发操作数不超过连接池最大连接数且小于线程数
+         **/
+        private int threads = 16;
+        /**
+         * 等待执行的任务队列长度，队列已满时操作以RejectedExecutionException失败（默认为10000）
+         **/
+        private int queueCapacity = 10000;
+    }
+
+    /**
+     * 异步方法（*Async）配置
+     */
+    @Data
+    public static class Async {
+        /**
+         * 线程池类型：bounded（固定线程数、有界队列，默认）；virtual（每个任务一个虚拟线程，需要JDK 21及以上，否则使用bounded）
+         **/
+        private String executor = "bounded";
+        /**
+         * bounded线程池的线程数（默认为32）
+         **/
+        private int threads = 32;
+        /**
+         * bounded线程池的任务队列长度，队列已满时以RejectedExecutionException结束（默认为10000）
+         **/
+        private int queueCapacity = 10000;
+    }
 
 }
@@ -0,0 +1,214 @@
+package com.moss.starter.service;
+
+import com.moss.starter.dto.FtpOperationResultDto;
+import com.moss.starter.pool.FtpOperationClass;
+import com.moss.starter.pool.FtpPipelineException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.net.ftp.FTPClient;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 批量操作执行器
+ * <p>
+ * 将条目按所在目录分组，分组分配到多个工作线程上执行；每个工作线程在整个批次中持有同一个ftpClient，
+ * 每个分组只进入（或创建）一次目录，然后连续执行该分组内的所有命令。
+ * 条目集中在少数目录时，较大的分组再按工作线程数拆分，使所有工作线程都能分到条目。
+ *
+ * @param <T> 条目类型
+ * @author lwj
+ */
+@Slf4j
+class FtpBatchExecutor<T> {
+
+    private final MossFtpService ftpService;
+    private final ExecutorService executor;
+    private final int concurrency;
+
+    FtpBatchExecutor(MossFtpService ftpService, ExecutorService executor, int concurrency) {
+        this.ftpService = ftpService;
+        this.executor = executor;
+        this.concurrency = Math.max(concurrency, 1);
+    }
+
+    /**
+     * 执行批量操作
+     *
+     * @param items       条目
+     * @param directoryOf 获取条目所在目录
+     * @param task        分组内执行的操作
+     * @return 按条目顺序排列的执行结果
+     */
+    CompletableFuture<List<FtpOperationResultDto>> execute(Collection<T> items, Function<T, String> directoryOf, BatchTask<T> task) {
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        List<T> list = new ArrayList<>(items);
+        for (int i = 0; i < list.size(); i++) {
+            groups.computeIfAbsent(directoryOf.apply(list.get(i)), key -> new ArrayList<>()).add(i);
+        }
+        ConcurrentLinkedQueue<Map.Entry<String, List<Integer>>> pending = new ConcurrentLinkedQueue<>(partition(groups, list.size()));
+        FtpOperationResultDto[] results = new FtpOperationResultDto[list.size()];
+        int workers = Math.min(concurrency, pending.size());
+        if (executor == null || workers <= 1) {
+            runWorker(pending, list, task, results);
+            return CompletableFuture.completedFuture(Arrays.asList(results));
+        }
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[workers];
+        for (int i = 0; i < workers; i++) {
+            futures[i] = CompletableFuture.runAsync(() -> runWorker(pending, list, task, results), executor);
+        }
+        return CompletableFuture.allOf(futures).thenApply(ignored -> Arrays.asList(results));
+    }
+
+    /**
+     * 拆分超过平均每个工作线程条目数的分组
+     */
+    private List<Map.Entry<String, List<Integer>>> partition(Map<String, List<Integer>> groups, int total) {
+        int limit = Math.max((total + concurrency - 1) / concurrency, 1);
+        List<Map.Entry<String, List<Integer>>> partitions = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> group : groups.entrySet()) {
+            List<Integer> indexes = group.getValue();
+            for (int from = 0; from < indexes.size(); from += limit) {
+                partitions.add(new AbstractMap.SimpleImmutableEntry<>(group.getKey(),
+                        indexes.subList(from, Math.min(from + limit, indexes.size()))));
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * 工作线程：使用同一个ftpClient依次处理队列中的分组
+     */
+    private void runWorker(ConcurrentLinkedQueue<Map.Entry<String, List<Integer>>> pending, List<T> items,
+                           BatchTask<T> task, FtpOperationResultDto[] results) {
+        FTPClient ftpClient = null;
+        Map.Entry<String, List<Integer>> group;
+        try {
+            while ((group = pending.poll()) != null) {
+                String directory = group.getKey();
+                String routingKey = MossFtpService.normalizeDirectory(directory);
+                try {
+                    if (ftpClient != null && !ftpService.isRoutedTo(ftpClient, routingKey)) {
+                        //  多服务器分片存储时，该目录在其他服务器上
+                        ftpService.releaseFtpClient(ftpClient);
+                        ftpClient = null;
+                    }
+                    if (ftpClient == null) {
+                        ftpClient = ftpService.getFtpClient(routingKey, FtpOperationClass.BULK);
+                    }
+                    task.prepare(ftpClient, directory);
+                } catch (Exception e) {
+                    log.error("-----------------------批量操作进入目录[" + directory + "]失败！错误原因{}-----------------------", e.getMessage());
+                    for (Integer index : group.getValue()) {
+                        results[index] = task.failed(items.get(index), e.getMessage());
+                    }
+                    ftpClient = discardOnFtpFailure(ftpClient, e);
+                    continue;
+                }
+                List<Integer> indexes = group.getValue();
+                int[] next = {0};
+                while (next[0] < indexes.size()) {
+                    List<T> rest = new ArrayList<>(indexes.size() - next[0]);
+                    for (Integer index : indexes.subList(next[0], indexes.size())) {
+                        rest.add(items.get(index));
+                    }
+                    int first = next[0];
+                    try {
+                        if (ftpClient == null) {
+                            ftpClient = ftpService.getFtpClient(routingKey, FtpOperationClass.BULK);
+                            task.prepare(ftpClient, directory);
+                        }
+                        task.executeAll(ftpClient, directory, rest, result -> results[indexes.get(next[0]++)] = result);
+                    } catch (Exception e) {
+                        log.error("-----------------------批量操作[" + directory + "]失败！错误原因{}-----------------------", e.getMessage());
+                        if ((!(e instanceof FtpPipelineException) || next[0] == first) && next[0] < indexes.size()) {
+                            //  第一个没有结果的条目记为失败；FtpPipelineException时结果未知的条目已由task记录，没有任何进展时同样记为失败
+                            Integer index = indexes.get(next[0]++);
+                            results[index] = task.failed(items.get(index), e.getMessage());
+                        }
+                        ftpClient = discardOnFtpFailure(ftpClient, e);
+                    }
+                }
+            }
+        } finally {
+            ftpService.releaseFtpClient(ftpClient);
+        }
+    }
+
+    /**
+     * FTP命令或连接出现IOException时连接状态不确定，销毁连接，之后的条目使用新的连接继续处理；
+     * 其他异常（本地错误）不影响连接，继续使用
+     *
+     * @return 继续使用的ftpClient，已销毁时为null
+     */
+    private FTPClient discardOnFtpFailure(FTPClient ftpClient, Exception e) {
+        if (ftpClient == null || (!(e instanceof IOException) && ftpClient.isConnected())) {
+            return ftpClient;
+        }
+        ftpService.invalidateFtpClient(ftpClient);
+        return null;
+    }
+
+    /**
+     * 分组内执行的操作
+     *
+     * @param <T> 条目类型
+     */
+    interface BatchTask<T> {
+
+        /**
+         * 进入分组所在目录，每个分组只调用一次
+         *
+         * @param ftpClient 当前工作线程持有的ftpClient
+         * @param directory 分组目录
+         */
+        void prepare(FTPClient ftpClient, String directory) throws IOException;
+
+        /**
+         * 处理单个条目；只影响该条目的本地错误（如本地文件不存在）应返回失败结果，不抛出异常
+         *
+         * @param ftpClient 当前工作线程持有的ftpClient
+         * @param directory 分组目录
+         * @param item      条目
+         * @return 执行结果
+         */
+        FtpOperationResultDto execute(FTPClient ftpClient, String directory, T item) throws IOException;
+
+        /**
+         * 按顺序处理分组内的条目，默认逐个调用execute；可以覆盖该方法一次处理多个条目（如流水线发送命令）
+         *
+         * @param ftpClient 当前工作线程持有的ftpClient
+         * @param directory 分组目录
+         * @param items     条目
+         * @param results   按条目顺序接收执行结果
+         * @throws IOException 连接中断等，第一个没有结果的条目记为失败，其余条目使用新的连接继续处理；
+         *                     抛出FtpPipelineException前需记录已发送命令的条目的结果（结果未知）
+         */
+        default void executeAll(FTPClient ftpClient, String directory, List<T> items,
+                                Consumer<FtpOperationResultDto> results) throws IOException {
+            for (T item : items) {
+                results.accept(execute(ftpClient, directory, item));
+            }
+        }
+
+        /**
+         * 生成失败结果
+         *
+         * @param item    条目
+         * @param message 失败原因
+         * @return 执行结果
+         */
+        FtpOperationResultDto failed(T item, String message);
+    }
+}
@@ -0,0 +1,47 @@
+package com.moss.starter.service;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 压缩传输策略：决定一次传输是否值得使用MODE Z压缩
+ * <p>
+ * 开启moss.ftp.compression.enabled后默认按文件扩展名判断；需要按调用方、目录等规则判断时，
+ * 注册一个该类型的Bean即可替换默认策略。
+ *
+ * @author lwj
+ */
+@FunctionalInterface
+public interface FtpCompressionPolicy {
+
+    /**
+     * @param operation  操作名称，如upload、downloadToStream
+     * @param remotePath 远程文件路径
+     * @return 是否使用MODE Z压缩传输
+     */
+    boolean shouldCompress(String operation, String remotePath);
+
+    /**
+     * 按文件扩展名判断（不区分大小写）
+     *
+     * @param extensions 需要压缩传输的扩展名，如csv、json、log
+     * @return 压缩传输策略
+     */
+    static FtpCompressionPolicy byExtension(Collection<String> extensions) {
+        Set<String> normalized = extensions.stream()
+                .map(extension -> extension.trim().toLowerCase(Locale.ROOT))
+                .map(extension -> extension.startsWith(".") ? extension.substring(1) : extension)
+                .filter(extension -> !extension.isEmpty())
+                .collect(Collectors.toSet());
+        return (operation, remotePath) -> {
+            if (remotePath == null) {
+                return false;
+            }
+            int slash = remotePath.lastIndexOf('/');
+            int dot = remotePath.lastIndexOf('.');
+            return dot > slash && normalized.contains(remotePath.substring(dot + 1).toLowerCase(Locale.ROOT));
+        };
+    }
+}
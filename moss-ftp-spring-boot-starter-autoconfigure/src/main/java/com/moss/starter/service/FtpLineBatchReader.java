@@ -0,0 +1,173 @@
+package com.moss.starter.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * 按行分批读取器
+ * <p>
+ * 读取线程从行的流中按批取出数据，通过有界队列交给调用线程处理，读取和处理同时进行；
+ * 处理较慢时队列已满，读取线程暂停，数据连接随之被TCP流控暂停。
+ *
+ * @author lwj
+ */
+class FtpLineBatchReader {
+
+    /**
+     * 读取线程和处理线程之间最多缓存的批数
+     */
+    private static final int QUEUE_CAPACITY = 2;
+
+    /**
+     * 读取结束标识
+     */
+    private static final List<String> END = Collections.emptyList();
+
+    private final Stream<String> lines;
+    private final int batchSize;
+    private final ExecutorService executor;
+    private volatile Throwable error;
+
+    FtpLineBatchReader(Stream<String> lines, int batchSize, ExecutorService executor) {
+        this.lines = lines;
+        this.batchSize = batchSize;
+        this.executor = executor;
+    }
+
+    /**
+     * 读取所有行，按批交给consumer处理（在调用线程执行），完成后关闭行的流
+     *
+     * @param consumer 每一批的处理
+     */
+    void read(Consumer<List<String>> consumer) throws IOException {
+        if (executor == null) {
+            try {
+                produce(batch -> {
+                    consumer.accept(batch);
+                    return true;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                lines.close();
+            }
+            return;
+        }
+        BlockingQueue<List<String>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Future<?> producer;
+        try {
+            producer = executor.submit(() -> {
+                try {
+                    produce(batch -> offer(queue, batch, cancelled));
+                } catch (Throwable e) {
+                    error = e;
+                } finally {
+                    lines.close();
+                    offer(queue, END, cancelled);
+                }
+            });
+        } catch (RuntimeException e) {
+            lines.close();
+            throw e;
+        }
+        try {
+            List<String> batch;
+            while ((batch = queue.take()) != END) {
+                consumer.accept(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled.set(true);
+            throw new InterruptedIOException("Interrupted while waiting for lines");
+        } catch (RuntimeException | Error e) {
+            cancelled.set(true);
+            throw e;
+        } finally {
+            queue.clear();
+            awaitQuietly(producer);
+        }
+        if (error instanceof UncheckedIOException) {
+            throw ((UncheckedIOException) error).getCause();
+        }
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        }
+        if (error != null) {
+            throw new IOException("read lines failed", error);
+        }
+    }
+
+    /**
+     * 按批取出行，handoff返回false时停止
+     */
+    private void produce(Predicate<List<String>> handoff) {
+        Iterator<String> iterator = lines.iterator();
+        List<String> batch = new ArrayList<>(batchSize);
+        while (iterator.hasNext()) {
+            batch.add(iterator.next());
+            if (batch.size() == batchSize) {
+                if (!handoff.test(batch)) {
+                    return;
+                }
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            handoff.test(batch);
+        }
+    }
+
+    /**
+     * 放入队列，队列已满时等待，处理线程已停止时放弃
+     *
+     * @return 是否已放入队列
+     */
+    private static boolean offer(BlockingQueue<List<String>> queue, List<String> batch, AtomicBoolean cancelled) {
+        try {
+            while (!cancelled.get()) {
+                if (queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * 等待读取线程结束（关闭数据连接并归还ftpClient）
+     */
+    private static void awaitQuietly(Future<?> future) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                future.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                break;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.moss.starter.service;
+
+import com.moss.starter.io.FtpIoUtils;
+import com.moss.starter.pool.FtpOperationClass;
+import com.moss.starter.propeties.FtpOptionProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.net.ftp.FTPClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 分段下载器
+ * <p>
+ * 按SIZE将文件拆分为多个分段，每个分段使用独立的ftpClient通过REST偏移量下载，
+ * 并按位置并行写入预先分配好大小的临时文件（本地文件名+.part），全部完成后重命名为本地文件。
+ * 分段的内容写入磁盘（force）后才记录到本地清单文件中，下载中断后再次下载时只重新下载未完成的分段；
+ * 清单中同时记录服务器文件的大小和修改时间（MDTM），服务器文件已变化时重新下载所有分段。
+ *
+ * @author lwj
+ */
+@Slf4j
+class FtpSegmentedDownloader {
+
+    /**
+     * 分段清单文件后缀
+     */
+    private static final String MANIFEST_SUFFIX = ".segments";
+    /**
+     * 下载中的临时文件后缀
+     */
+    private static final String PART_SUFFIX = ".part";
+
+    private final MossFtpService ftpService;
+    private final ExecutorService executor;
+    private final FtpOptionProperties.Segment segment;
+    private final int tryNum;
+
+    FtpSegmentedDownloader(MossFtpService ftpService, ExecutorService executor, FtpOptionProperties.Segment segment, int tryNum) {
+        this.ftpService = ftpService;
+        this.executor = executor;
+        this.segment = segment;
+        this.tryNum = Math.max(tryNum, 1);
+    }
+
+    /**
+     * 分段下载文件
+     *
+     * @param remotePath       文件路径（path+fileName）
+     * @param fileSize         文件大小
+     * @param modificationTime 文件修改时间（MDTM应答），服务器不支持时为null
+     * @param localFile        本地文件
+     * @return true：成功；false：失败
+     */
+    boolean download(String remotePath, long fileSize, String modificationTime, File localFile) throws IOException {
+        long segmentSize = Math.max(segment.getSegmentSize(), 1);
+        int segmentCount = (int) ((fileSize + segmentSize - 1) / segmentSize);
+        File manifestFile = new File(localFile.getPath() + MANIFEST_SUFFIX);
+        File partFile = new File(localFile.getPath() + PART_SUFFIX);
+        Manifest manifest = Manifest.load(manifestFile, remotePath, fileSize, modificationTime, segmentSize);
+        if (manifest == null || !partFile.exists()) {
+            manifest = new Manifest(manifestFile, remotePath, fileSize, modificationTime, segmentSize);
+        } else {
+            log.info("-----------------------继续下载[" + remotePath + "]，已完成{}/{}个分段-----------------------", manifest.done.cardinality(), segmentCount);
+        }
+        ConcurrentLinkedQueue<Integer> pending = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < segmentCount; i++) {
+            if (!manifest.done.get(i)) {
+                pending.add(i);
+            }
+        }
+        boolean flag = true;
+        try (RandomAccessFile raf = new RandomAccessFile(partFile, "rw")) {
+            raf.setLength(fileSize);
+            FileChannel channel = raf.getChannel();
+            manifest.save();
+            int workers = Math.min(Math.max(segment.getMaxConnections(), 1), pending.size());
+            List<Future<Boolean>> futures = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                final Manifest current = manifest;
+                futures.add(executor.submit(() -> runWorker(remotePath, fileSize, segmentSize, pending, channel, current)));
+            }
+            for (Future<Boolean> future : futures) {
+                flag &= await(future);
+            }
+            if (flag) {
+                channel.force(false);
+            }
+        }
+        if (flag) {
+            //  全部分段完成后才出现本地文件，失败时不会留下大小完整但内容不完整的文件
+            Files.move(partFile.toPath(), localFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.deleteIfExists(manifestFile.toPath());
+        }
+        return flag;
+    }
+
+    /**
+     * 下载线程：使用同一个ftpClient依次下载队列中的分段
+     */
+    private boolean runWorker(String remotePath, long fileSize, long segmentSize, ConcurrentLinkedQueue<Integer> pending,
+                              FileChannel channel, Manifest manifest) {
+        boolean flag = true;
+        FTPClient ftpClient = null;
+        Integer index;
+        try {
+            while ((index = pending.poll()) != null) {
+                long start = index * segmentSize;
+                long length = Math.min(segmentSize, fileSize - start);
+                boolean done = false;
+                for (int i = 0; i < tryNum && !done; i++) {
+                    if (ftpClient == null) {
+                        ftpClient = ftpService.getFtpClient(MossFtpService.routingKeyOfFile(remotePath), FtpOperationClass.BULK);
+                    }
+                    try {
+                        boolean reusable = downloadSegment(ftpClient, remotePath, start, length, start + length == fileSize, channel);
+                        done = true;
+                        if (!reusable) {
+                            ftpService.invalidateFtpClient(ftpClient);
+                            ftpClient = null;
+                        }
+                    } catch (IOException e) {
+                        log.warn("-----------------------下载分段[" + remotePath + "#" + index + "]失败，第{}次尝试，错误原因{}-----------------------", i + 1, e.getMessage());
+                        ftpService.invalidateFtpClient(ftpClient);
+                        ftpClient = null;
+                    }
+                }
+                if (done) {
+                    //  分段内容写入磁盘后再记录为已完成，避免中断后跳过未写入磁盘的分段
+                    channel.force(false);
+                    manifest.markDone(index);
+                } else {
+                    flag = false;
+                }
+            }
+        } catch (Exception e) {
+            flag = false;
+            log.error("-----------------------分段下载[" + remotePath + "]失败！错误原因{}-----------------------", e.getMessage());
+        } finally {
+            ftpService.releaseFtpClient(ftpClient);
+        }
+        return flag;
+    }
+
+    /**
+     * 下载单个分段并写入本地文件的对应位置
+     *
+     * @return ftpClient是否可以继续使用
+     */
+    private boolean downloadSegment(FTPClient ftpClient, String remotePath, long start, long length, boolean last,
+                                    FileChannel channel) throws IOException {
+        InputStream in = null;
+        try {
+            ftpClient.setRestartOffset(start);
+            in = ftpClient.retrieveFileStream(remotePath);
+            if (in == null) {
+                throw new IOException("retrieve file failed, reply: " + ftpClient.getReplyString());
+            }
+            byte[] buffer = ftpService.getBufferPool().acquireFor(length);
+            long position = start;
+            long end = start + length;
+            try {
+                while (position < end) {
+                    int len = in.read(buffer, 0, (int) Math.min(buffer.length, end - position));
+                    if (len == -1) {
+                        throw new IOException("unexpected end of file at " + position);
+                    }
+                    ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, len);
+                    while (byteBuffer.hasRemaining()) {
+                        position += channel.write(byteBuffer, position);
+                    }
+                }
+            } finally {
+                ftpService.getBufferPool().release(buffer);
+            }
+            in.close();
+            in = null;
+            if (last) {
+                return ftpClient.completePendingCommand();
+            }
+            return ftpService.finishPartialTransfer(ftpClient);
+        } finally {
+            FtpIoUtils.closeQuietly(in);
+        }
+    }
+
+    private static boolean await(Future<Boolean> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            log.error("segment worker failed...", e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * 分段下载清单
+     */
+    private static class Manifest {
+        private final File file;
+        private final String remotePath;
+        private final long fileSize;
+        private final String modificationTime;
+        private final long segmentSize;
+        private final BitSet done = new BitSet();
+
+        Manifest(File file, String remotePath, long fileSize, String modificationTime, long segmentSize) {
+            this.file = file;
+            this.remotePath = remotePath;
+            this.fileSize = fileSize;
+            this.modificationTime = modificationTime != null ? modificationTime : "";
+            this.segmentSize = segmentSize;
+        }
+
+        /**
+         * 读取清单，清单不存在或与当前文件不一致（大小、修改时间或分段大小不同）时返回null
+         */
+        static Manifest load(File file, String remotePath, long fileSize, String modificationTime, long segmentSize) {
+            if (!file.exists()) {
+                return null;
+            }
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                log.warn("读取分段清单[{}]失败：{}", file, e.getMessage());
+                return null;
+            }
+            if (!remotePath.equals(properties.getProperty("remotePath"))
+                    || !String.valueOf(fileSize).equals(properties.getProperty("fileSize"))
+                    || !(modificationTime != null ? modificationTime : "").equals(properties.getProperty("modificationTime"))
+                    || !String.valueOf(segmentSize).equals(properties.getProperty("segmentSize"))) {
+                return null;
+            }
+            Manifest manifest = new Manifest(file, remotePath, fileSize, modificationTime, segmentSize);
+            for (String index : properties.getProperty("done", "").split(",")) {
+                if (!index.isEmpty()) {
+                    manifest.done.set(Integer.parseInt(index));
+                }
+            }
+            return manifest;
+        }
+
+        synchronized void markDone(int index) throws IOException {
+            done.set(index);
+            save();
+        }
+
+        synchronized void save() throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("remotePath", remotePath);
+            properties.setProperty("fileSize", String.valueOf(fileSize));
+            properties.setProperty("modificationTime", modificationTime);
+            properties.setProperty("segmentSize", String.valueOf(segmentSize));
+            StringBuilder indexes = new StringBuilder();
+            for (int i = done.nextSetBit(0); i >= 0; i = done.nextSetBit(i + 1)) {
+                indexes.append(indexes.length() > 0 ? "," : "").append(i);
+            }
+            properties.setProperty("done", indexes.toString());
+            try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                properties.store(writer, null);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.moss.starter.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+/**
+ * 下载到Response时使用的当前请求和响应
+ * <p>
+ * Servlet API只在该类中使用：只有存在Servlet API时才注册该bean，MossFtpService本身不依赖Servlet API，
+ * 在WebFlux（Netty）等非Servlet应用中也可以加载；此时下载到Response的方法直接返回失败。
+ *
+ * @author lwj
+ */
+@Slf4j
+public class FtpServletSupport {
+
+    private final ObjectProvider<HttpServletRequest> request;
+    private final ObjectProvider<HttpServletResponse> response;
+
+    public FtpServletSupport(ObjectProvider<HttpServletRequest> request, ObjectProvider<HttpServletResponse> response) {
+        this.request = request;
+        this.response = response;
+    }
+
+    /**
+     * @return 是否可以获取当前请求的响应（非Web应用中没有Request、Response）
+     */
+    boolean isAvailable() {
+        return response.getIfAvailable() != null;
+    }
+
+    /**
+     * 设置下载的响应头并解析Range请求
+     *
+     * @param fileName 文件真实名称
+     * @param fileSize 文件大小，未知时为-1
+     * @return {起始位置, 长度}（长度为-1时读取到文件末尾）；Range请求无法满足时返回null（已设置416响应）
+     */
+    long[] prepareDownload(String fileName, long fileSize) throws UnsupportedEncodingException {
+        HttpServletResponse httpResponse = response.getObject();
+        prepareAttachment(httpResponse, fileName);
+        long offset = 0;
+        long length = fileSize;
+        if (fileSize >= 0) {
+            httpResponse.setHeader("Accept-Ranges", "bytes");
+            HttpServletRequest httpRequest = request.getIfAvailable();
+            long[] range = MossFtpService.resolveRange(httpRequest != null ? httpRequest.getHeader("Range") : null, fileSize);
+            if (range == MossFtpService.UNSATISFIABLE_RANGE) {
+                httpResponse.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                httpResponse.setHeader("Content-Range", "bytes */" + fileSize);
+                log.warn("-----------------------下载文件[" + fileName + "]的Range请求无法满足，文件大小{}-----------------------", fileSize);
+                return null;
+            }
+            if (range != null) {
+                offset = range[0];
+                length = range[1] - range[0] + 1;
+                httpResponse.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                httpResponse.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + fileSize);
+            }
+            httpResponse.setContentLengthLong(length);
+        }
+        return new long[]{offset, length};
+    }
+
+    /**
+     * 设置打包下载的响应头
+     *
+     * @param zipName zip打包的真实名称
+     */
+    void prepareZip(String zipName) throws UnsupportedEncodingException {
+        prepareAttachment(response.getObject(), zipName);
+    }
+
+    OutputStream getOutputStream() throws IOException {
+        return response.getObject().getOutputStream();
+    }
+
+    void flushBuffer() throws IOException {
+        response.getObject().flushBuffer();
+    }
+
+    private static void prepareAttachment(HttpServletResponse httpResponse, String fileName) throws UnsupportedEncodingException {
+        httpResponse.setContentType("application/OCTET-STREAM;charset=utf-8");
+        httpResponse.setHeader("Content-Disposition", "attachment;filename=\"" + URLEncoder.encode(fileName, "UTF-8").replace("+", "%20") + "\"");
+    }
+}
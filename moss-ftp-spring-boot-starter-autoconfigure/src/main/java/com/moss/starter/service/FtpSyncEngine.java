@@ -0,0 +1,278 @@
+package com.moss.starter.service;
+
+import cn.hutool.core.util.StrUtil;
+import com.moss.starter.dto.FtpOperationResultDto;
+import com.moss.starter.dto.FtpSyncPlanDto;
+import com.moss.starter.dto.FtpSyncResultDto;
+import com.moss.starter.dto.FtpUploadFileDto;
+import com.moss.starter.dto.FtpWalkResultDto;
+import com.moss.starter.propeties.FtpOptionProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * 本地目录到ftp目录的增量同步
+ * <p>
+ * 先扫描本地目录，再获取ftp目录中文件的状态：清单有效时使用清单，否则并行列出ftp目录，
+ * 大小相同的文件再批量查询MDTM。大小不同、或ftp文件的修改时间早于本地文件时重新上传；
+ * 上传后通过MFMT把ftp文件的修改时间设置为本地文件的修改时间（服务器不支持时为上传时间，同样不早于本地文件）。
+ *
+ * @author lwj
+ */
+@Slf4j
+class FtpSyncEngine {
+
+    private final MossFtpService ftpService;
+    private final FtpOptionProperties.Sync properties;
+    private final Path localRoot;
+    private final String remoteRoot;
+
+    /**
+     * 本地文件：相对路径 -> [文件大小, 修改时间（毫秒）]
+     */
+    private final Map<String, long[]> localFiles = new TreeMap<>();
+    /**
+     * ftp文件：相对路径 -> [文件大小, 修改时间（毫秒），未知时为-1]
+     */
+    private Map<String, long[]> remoteFiles;
+    /**
+     * 未发生变化的文件（相对路径）
+     */
+    private final List<String> unchanged = new ArrayList<>();
+    private FtpSyncManifest manifest;
+    private long scannedAt;
+
+    FtpSyncEngine(MossFtpService ftpService, FtpOptionProperties.Sync properties, String localDirectory, String remoteDirectory) {
+        this.ftpService = ftpService;
+        this.properties = properties;
+        this.localRoot = Paths.get(localDirectory).toAbsolutePath().normalize();
+        this.remoteRoot = MossFtpService.normalizeDirectory(remoteDirectory);
+    }
+
+    /**
+     * 计算需要上传和删除的文件
+     *
+     * @return 同步计划
+     * @throws IOException 本地目录不存在、读取本地文件失败，或列出ftp子目录失败（无法确定哪些文件需要同步）
+     */
+    FtpSyncPlanDto plan() throws IOException {
+        scanLocal();
+        if (properties.isManifestEnabled()) {
+            manifest = FtpSyncManifest.load(manifestDirectory(), localRoot.toString(), remoteRoot);
+        }
+        FtpSyncPlanDto plan = new FtpSyncPlanDto();
+        plan.setLocalDirectory(localRoot.toString());
+        plan.setRemoteDirectory(remoteRoot);
+        plan.setFromManifest(manifest != null && manifest.isFresh(properties.getRescanIntervalMillis()));
+        if (plan.isFromManifest()) {
+            remoteFiles = manifest.getFiles();
+            scannedAt = manifest.getScannedAt();
+        } else {
+            scannedAt = System.currentTimeMillis();
+            remoteFiles = listRemote();
+        }
+        List<String> sameSize = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : localFiles.entrySet()) {
+            long[] local = entry.getValue();
+            long[] remote = remoteFiles.get(entry.getKey());
+            if (remote == null) {
+                plan.getAdded().add(entry.getKey());
+            } else if (remote[0] != local[0]) {
+                plan.getChanged().add(entry.getKey());
+            } else if (!plan.isFromManifest()) {
+                sameSize.add(entry.getKey());
+            } else if (remote[1] == local[1]) {
+                unchanged.add(entry.getKey());
+            } else {
+                plan.getChanged().add(entry.getKey());
+            }
+        }
+        if (!sameSize.isEmpty()) {
+            //  LIST中的时间通常只精确到分钟，使用MDTM比对
+            List<String> paths = new ArrayList<>(sameSize.size());
+            for (String relative : sameSize) {
+                paths.add(remotePath(relative));
+            }
+            Map<String, Long> modificationTimes = ftpService.modificationTimes(paths);
+            for (int i = 0; i < sameSize.size(); i++) {
+                Long remoteModified = modificationTimes.get(paths.get(i));
+                long localModified = localFiles.get(sameSize.get(i))[1] / 1000 * 1000;
+                if (remoteModified != null && remoteModified >= localModified) {
+                    unchanged.add(sameSize.get(i));
+                } else {
+                    plan.getChanged().add(sameSize.get(i));
+                }
+            }
+            Collections.sort(plan.getChanged());
+        }
+        for (String relative : remoteFiles.keySet()) {
+            if (!localFiles.containsKey(relative)) {
+                plan.getOrphans().add(relative);
+            }
+        }
+        plan.setUnchangedCount(unchanged.size());
+        for (String relative : plan.getAdded()) {
+            plan.setUploadBytes(plan.getUploadBytes() + localFiles.get(relative)[0]);
+        }
+        for (String relative : plan.getChanged()) {
+            plan.setUploadBytes(plan.getUploadBytes() + localFiles.get(relative)[0]);
+        }
+        return plan;
+    }
+
+    /**
+     * 执行同步计划：并行上传新增和变化的文件，删除孤立文件，并更新清单
+     *
+     * @param plan          plan()返回的同步计划
+     * @param deleteOrphans 是否删除本地已不存在的ftp文件
+     * @return 同步结果
+     */
+    FtpSyncResultDto execute(FtpSyncPlanDto plan, boolean deleteOrphans) throws IOException {
+        FtpSyncResultDto result = new FtpSyncResultDto();
+        result.setPlan(plan);
+        List<String> uploads = new ArrayList<>(plan.getAdded().size() + plan.getChanged().size());
+        uploads.addAll(plan.getAdded());
+        uploads.addAll(plan.getChanged());
+        if (!uploads.isEmpty()) {
+            List<FtpUploadFileDto> files = new ArrayList<>(uploads.size());
+            for (String relative : uploads) {
+                FtpUploadFileDto file = new FtpUploadFileDto();
+                file.setPath(MossFtpService.routingKeyOfFile(remotePath(relative)));
+                file.setFileName(MossFtpService.fileNameOf(relative));
+                file.setOriginFileName(localRoot.resolve(relative).toString());
+                file.setModificationTime(localFiles.get(relative)[1]);
+                files.add(file);
+            }
+            result.setUploads(ftpService.uploadFiles(files));
+        }
+        if (deleteOrphans && !plan.getOrphans().isEmpty()) {
+            List<String> paths = new ArrayList<>(plan.getOrphans().size());
+            for (String relative : plan.getOrphans()) {
+                paths.add(remotePath(relative));
+            }
+            result.setDeletes(ftpService.deleteFiles(paths));
+        }
+        for (FtpOperationResultDto operation : result.getUploads()) {
+            result.setFailedCount(result.getFailedCount() + (operation.isSuccess() ? 0 : 1));
+        }
+        for (FtpOperationResultDto operation : result.getDeletes()) {
+            result.setFailedCount(result.getFailedCount() + (operation.isSuccess() ? 0 : 1));
+        }
+        if (manifest != null) {
+            saveManifest(plan, uploads, result);
+        }
+        return result;
+    }
+
+    /**
+     * 按同步结果更新清单：上传成功的文件记录本地文件的状态，删除成功的文件从清单中移除
+     */
+    private void saveManifest(FtpSyncPlanDto plan, List<String> uploads, FtpSyncResultDto result) throws IOException {
+        Map<String, long[]> files = new TreeMap<>();
+        if (plan.isFromManifest()) {
+            files.putAll(remoteFiles);
+        } else {
+            for (String relative : unchanged) {
+                files.put(relative, localFiles.get(relative));
+            }
+            for (String relative : plan.getOrphans()) {
+                files.put(relative, new long[]{remoteFiles.get(relative)[0], -1});
+            }
+        }
+        for (int i = 0; i < uploads.size(); i++) {
+            if (result.getUploads().get(i).isSuccess()) {
+                files.put(uploads.get(i), localFiles.get(uploads.get(i)));
+            }
+        }
+        for (int i = 0; i < result.getDeletes().size(); i++) {
+            if (result.getDeletes().get(i).isSuccess()) {
+                files.remove(plan.getOrphans().get(i));
+            }
+        }
+        manifest.save(localRoot.toString(), remoteRoot, files, scannedAt);
+    }
+
+    /**
+     * 扫描本地目录中的所有文件（不进入符号链接指向的目录）
+     * <p>
+     * 只跳过扫描过程中被删除的文件；存在但无法读取的文件或目录使扫描失败，
+     * 否则这些文件会被当作孤立文件，删除孤立文件时误删ftp上的文件。
+     *
+     * @throws IOException 本地目录不存在，或读取本地文件、目录失败
+     */
+    private void scanLocal() throws IOException {
+        if (!Files.isDirectory(localRoot)) {
+            throw new IOException("本地目录[" + localRoot + "]不存在");
+        }
+        try (Stream<Path> paths = Files.walk(localRoot)) {
+            Iterator<Path> iterator = paths.iterator();
+            while (iterator.hasNext()) {
+                Path path = iterator.next();
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+                        //  指向的文件不存在的符号链接
+                        throw e;
+                    }
+                    log.warn("本地文件[{}]在扫描过程中被删除", path);
+                    continue;
+                }
+                if (attributes.isRegularFile()) {
+                    String relative = localRoot.relativize(path).toString().replace('\\', '/');
+                    localFiles.put(relative, new long[]{attributes.size(), attributes.lastModifiedTime().toMillis()});
+                }
+            }
+        } catch (UncheckedIOException e) {
+            //  Files.walk遍历中读取目录失败
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 并行列出ftp目录中的所有文件；ftp目录不存在时视为空目录
+     */
+    private Map<String, long[]> listRemote() throws IOException {
+        Map<String, long[]> files = new TreeMap<>();
+        String prefix = "/".equals(remoteRoot) ? "/" : remoteRoot + "/";
+        FtpWalkResultDto walk = ftpService.walkTree(remoteRoot, Integer.MAX_VALUE, null, FtpWalkErrorPolicy.SKIP, (directory, file) -> {
+            //  上传时保存摘要的sidecar文件不参与同步
+            if (file.isFile() && !ftpService.isChecksumSidecar(file.getName())) {
+                String relative = directory.equals(remoteRoot) ? file.getName()
+                        : directory.substring(prefix.length()) + "/" + file.getName();
+                files.put(relative, new long[]{file.getSize(), file.getTimestamp() != null ? file.getTimestamp().getTimeInMillis() : -1});
+            }
+        });
+        List<String> failed = walk.getFailedDirectories();
+        if (!failed.isEmpty() && !(walk.getDirectoryCount() == 0 && failed.equals(Collections.singletonList(remoteRoot)))) {
+            throw new IOException("列出ftp目录" + failed + "失败");
+        }
+        return files;
+    }
+
+    private String remotePath(String relative) {
+        return MossFtpService.joinPath(remoteRoot, relative);
+    }
+
+    private Path manifestDirectory() {
+        return StrUtil.isEmpty(properties.getManifestDirectory())
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "moss-ftp-sync")
+                : Paths.get(properties.getManifestDirectory());
+    }
+}
@@ -0,0 +1,124 @@
+package com.moss.starter.service;
+
+import cn.hutool.crypto.SecureUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * 目录同步的本地清单
+ * <p>
+ * 每组同步目录（本地目录+ftp目录）对应清单目录下的一个properties文件，记录上次同步后ftp目录中每个文件的大小，
+ * 以及上传该文件时本地文件的修改时间。清单有效时直接与本地文件比对，不需要列出ftp目录；
+ * 超过重新列出间隔后重新列出ftp目录，发现其他程序对ftp目录的修改。
+ *
+ * @author lwj
+ */
+@Slf4j
+class FtpSyncManifest {
+
+    private static final String FILE_PREFIX = "file.";
+    private static final String LOCAL_DIRECTORY = "localDirectory";
+    private static final String REMOTE_DIRECTORY = "remoteDirectory";
+    private static final String SCANNED_AT = "scannedAt";
+
+    private final Path file;
+    private final Map<String, long[]> files = new TreeMap<>();
+    private long scannedAt;
+    private boolean loaded;
+
+    private FtpSyncManifest(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * 读取同步目录的清单，不存在或无法读取时返回空的清单
+     *
+     * @param directory       清单目录
+     * @param localDirectory  本地目录的绝对路径
+     * @param remoteDirectory ftp目录的绝对路径
+     * @return 清单
+     */
+    static FtpSyncManifest load(Path directory, String localDirectory, String remoteDirectory) throws IOException {
+        Files.createDirectories(directory);
+        String key = SecureUtil.md5(remoteDirectory + "\n" + localDirectory);
+        FtpSyncManifest manifest = new FtpSyncManifest(directory.resolve(key + ".manifest"));
+        if (!Files.isRegularFile(manifest.file)) {
+            return manifest;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(manifest.file)) {
+            properties.load(in);
+            manifest.scannedAt = Long.parseLong(properties.getProperty(SCANNED_AT, "0"));
+            for (String name : properties.stringPropertyNames()) {
+                if (name.startsWith(FILE_PREFIX)) {
+                    String[] values = properties.getProperty(name).split(",");
+                    manifest.files.put(name.substring(FILE_PREFIX.length()),
+                            new long[]{Long.parseLong(values[0]), Long.parseLong(values[1])});
+                }
+            }
+            manifest.loaded = true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("读取同步清单[{}]失败：{}", manifest.file, e.getMessage());
+            manifest.files.clear();
+        }
+        return manifest;
+    }
+
+    /**
+     * @param rescanIntervalMillis 重新列出ftp目录的间隔（毫秒），为0时清单始终有效
+     * @return 是否可以使用清单代替列出ftp目录
+     */
+    boolean isFresh(long rescanIntervalMillis) {
+        return loaded && (rescanIntervalMillis <= 0 || System.currentTimeMillis() - scannedAt < rescanIntervalMillis);
+    }
+
+    /**
+     * @return 相对路径 -> [文件大小, 上传时本地文件的修改时间（毫秒），未知时为-1]
+     */
+    Map<String, long[]> getFiles() {
+        return files;
+    }
+
+    /**
+     * @return 上次列出ftp目录的时间
+     */
+    long getScannedAt() {
+        return scannedAt;
+    }
+
+    /**
+     * 保存清单（先写入临时文件再替换，进程在写入过程中退出时不会留下不完整的清单）
+     *
+     * @param localDirectory  本地目录的绝对路径
+     * @param remoteDirectory ftp目录的绝对路径
+     * @param newFiles        同步后ftp目录中的文件
+     * @param newScannedAt    上次列出ftp目录的时间
+     */
+    void save(String localDirectory, String remoteDirectory, Map<String, long[]> newFiles, long newScannedAt) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(LOCAL_DIRECTORY, localDirectory);
+        properties.setProperty(REMOTE_DIRECTORY, remoteDirectory);
+        properties.setProperty(SCANNED_AT, String.valueOf(newScannedAt));
+        for (Map.Entry<String, long[]> entry : newFiles.entrySet()) {
+            properties.setProperty(FILE_PREFIX + entry.getKey(), entry.getValue()[0] + "," + entry.getValue()[1]);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, null);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        files.clear();
+        files.putAll(newFiles);
+        scannedAt = newScannedAt;
+        loaded = true;
+    }
+}
@@ -0,0 +1,172 @@
+package com.moss.starter.service;
+
+import com.moss.starter.io.ChecksumInputStream;
+import com.moss.starter.io.FtpChecksumAlgorithm;
+import com.moss.starter.metrics.FtpMetricsRecorder;
+import com.moss.starter.pool.MossFtpClient;
+import com.moss.starter.propeties.FtpOptionProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.net.ftp.FTPClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * 传输校验
+ * <p>
+ * 上传、下载时用{@link ChecksumInputStream}包装传输的流，复制内容的同时计算摘要，不需要再读取或下载一遍文件。
+ * 传输结束后通过HASH、XCRC、XMD5等命令由服务器计算同一文件的摘要进行比较（只多一次控制连接上的往返）；
+ * 服务器都不支持时，上传后把摘要写入同名的sidecar文件（sha256sum格式），下载后读取sidecar文件比较，
+ * sidecar文件不存在时只返回计算的摘要。
+ * <p>
+ * 每次传输使用一个实例。
+ *
+ * @author lwj
+ */
+@Slf4j
+class FtpTransferChecksum {
+
+    /**
+     * sidecar文件的最大字节数（摘要加文件名）
+     */
+    static final int MAX_SIDECAR_BYTES = 4096;
+
+    private final MossFtpService ftpService;
+    private final FtpOptionProperties.Checksum options;
+    private final FtpMetricsRecorder metricsRecorder;
+    private ChecksumInputStream stream;
+
+    FtpTransferChecksum(MossFtpService ftpService, FtpOptionProperties.Checksum options, FtpMetricsRecorder metricsRecorder) {
+        this.ftpService = ftpService;
+        this.options = options;
+        this.metricsRecorder = metricsRecorder;
+    }
+
+    /**
+     * 包装传输的输入流，未开启校验时直接返回原输入流
+     */
+    InputStream wrap(InputStream in) {
+        if (!options.isEnabled() || in == null) {
+            return in;
+        }
+        stream = new ChecksumInputStream(in, options.getAlgorithm());
+        return stream;
+    }
+
+    /**
+     * @return 传输内容的摘要，未开启校验时为null
+     */
+    String getDigest() {
+        return stream != null ? stream.getHexDigest() : null;
+    }
+
+    /**
+     * 上传完成后校验
+     *
+     * @param operation  操作名称
+     * @param ftpClient  上传使用的ftpClient
+     * @param remotePath 文件的绝对路径（未编码）
+     * @return 摘要不一致的原因，一致或无法校验时为null
+     */
+    String verifyUpload(String operation, FTPClient ftpClient, String remotePath) throws IOException {
+        String digest = getDigest();
+        if (digest == null) {
+            return null;
+        }
+        FtpChecksumAlgorithm algorithm = options.getAlgorithm();
+        String remote = remoteChecksum(ftpClient, remotePath);
+        if (remote != null) {
+            return compare(operation, remotePath, digest, remote);
+        }
+        if (!options.isSidecarEnabled()) {
+            metricsRecorder.recordChecksum(operation, "unverified");
+            return null;
+        }
+        byte[] content = (digest + " *" + remotePath.substring(remotePath.lastIndexOf('/') + 1) + "\n").getBytes(StandardCharsets.UTF_8);
+        if (ftpClient.storeFile(ftpService.encodingFileName(remotePath + algorithm.getSidecarSuffix()), new ByteArrayInputStream(content))) {
+            metricsRecorder.recordChecksum(operation, "sidecar");
+        } else {
+            //  sidecar文件写入失败不影响上传结果
+            log.warn("-----------------------写入摘要文件[{}]失败！错误原因{}-----------------------",
+                    remotePath + algorithm.getSidecarSuffix(), ftpClient.getReplyString());
+            metricsRecorder.recordChecksum(operation, "unverified");
+        }
+        return null;
+    }
+
+    /**
+     * 下载完成后校验（数据连接的应答已读取）
+     *
+     * @param operation  操作名称
+     * @param ftpClient  下载使用的ftpClient
+     * @param remotePath 文件的绝对路径（未编码）
+     * @return 摘要不一致的原因，一致或无法校验时为null
+     */
+    String verifyDownload(String operation, FTPClient ftpClient, String remotePath) throws IOException {
+        String digest = getDigest();
+        if (digest == null || !options.isVerifyDownloads()) {
+            return null;
+        }
+        String remote = remoteChecksum(ftpClient, remotePath);
+        if (remote == null && options.isSidecarEnabled()) {
+            remote = readSidecar(ftpClient, remotePath + options.getAlgorithm().getSidecarSuffix());
+        }
+        if (remote == null) {
+            metricsRecorder.recordChecksum(operation, "unverified");
+            return null;
+        }
+        return compare(operation, remotePath, digest, remote);
+    }
+
+    private String remoteChecksum(FTPClient ftpClient, String remotePath) throws IOException {
+        return ftpClient instanceof MossFtpClient
+                ? ((MossFtpClient) ftpClient).remoteChecksum(options.getAlgorithm(), ftpService.encodingFileName(remotePath)) : null;
+    }
+
+    /**
+     * 读取sidecar文件中的摘要，文件不存在时返回null
+     *
+     * @throws IOException sidecar文件超过{@link #MAX_SIDECAR_BYTES}字节（不是本组件写入的sidecar文件）
+     */
+    private String readSidecar(FTPClient ftpClient, String sidecarPath) throws IOException {
+        InputStream in = ftpClient.retrieveFileStream(ftpService.encodingFileName(sidecarPath));
+        if (in == null) {
+            return null;
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream(128);
+        try {
+            byte[] buffer = new byte[128];
+            int len;
+            while (content.size() <= MAX_SIDECAR_BYTES && (len = in.read(buffer)) != -1) {
+                content.write(buffer, 0, len);
+            }
+        } finally {
+            in.close();
+        }
+        //  提前关闭数据连接时服务器回复426，仍需读取该应答，控制连接才能继续使用
+        boolean completed = ftpClient.completePendingCommand();
+        if (content.size() > MAX_SIDECAR_BYTES) {
+            throw new IOException("sidecar文件[" + sidecarPath + "]超过" + MAX_SIDECAR_BYTES + "字节");
+        }
+        if (!completed) {
+            return null;
+        }
+        String[] tokens = new String(content.toByteArray(), StandardCharsets.UTF_8).trim().split("\\s+");
+        return tokens[0].isEmpty() ? null : tokens[0].toLowerCase(Locale.ROOT);
+    }
+
+    private String compare(String operation, String remotePath, String digest, String remote) {
+        if (digest.equalsIgnoreCase(remote)) {
+            metricsRecorder.recordChecksum(operation, "verified");
+            return null;
+        }
+        metricsRecorder.recordChecksum(operation, "mismatch");
+        String reason = "文件[" + remotePath + "]的" + options.getAlgorithm() + "摘要不一致：本地" + digest + "，服务器" + remote;
+        log.error("-----------------------{}-----------------------", reason);
+        return reason;
+    }
+}
@@ -0,0 +1,140 @@
+package com.moss.starter.service;
+
+import com.moss.starter.dto.FtpWalkResultDto;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPFileFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * 并行遍历目录树
+ * <p>
+ * 每个目录是ForkJoinPool中的一个任务：从连接池获取连接列出目录后立即归还，输出目录中的条目，
+ * 再为每个子目录派生一个任务。空闲的工作线程从其他线程的队列中窃取子目录任务，
+ * 因此同时列出的目录数等于ForkJoinPool的并行度，与目录树的形状无关。
+ * 任务之间不互相等待（CountedCompleter在所有子任务完成后才完成父任务），工作线程只阻塞在网络读写上。
+ *
+ * @author lwj
+ */
+@Slf4j
+class FtpTreeWalker {
+
+    private final MossFtpService ftpService;
+    private final int maxDepth;
+    private final FTPFileFilter filter;
+    private final FtpWalkErrorPolicy errorPolicy;
+    private final BiConsumer<String, FTPFile> consumer;
+
+    private final LongAdder directoryCount = new LongAdder();
+    private final LongAdder entryCount = new LongAdder();
+    private final Queue<String> failedDirectories = new ConcurrentLinkedQueue<>();
+    /**
+     * 停止遍历的原因（FAIL策略下列出目录失败，或consumer抛出异常）
+     */
+    private volatile Throwable failure;
+
+    FtpTreeWalker(MossFtpService ftpService, int maxDepth, FTPFileFilter filter, FtpWalkErrorPolicy errorPolicy,
+                  BiConsumer<String, FTPFile> consumer) {
+        this.ftpService = ftpService;
+        this.maxDepth = maxDepth;
+        this.filter = filter;
+        this.errorPolicy = errorPolicy;
+        this.consumer = consumer;
+    }
+
+    /**
+     * 遍历目录树
+     *
+     * @param pool 执行遍历的ForkJoinPool
+     * @param root 根目录
+     * @return 遍历结果
+     */
+    FtpWalkResultDto walk(ForkJoinPool pool, String root) throws IOException {
+        pool.invoke(new ListTask(null, MossFtpService.normalizeDirectory(root), 1));
+        Throwable cause = failure;
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause != null) {
+            throw new IOException(cause);
+        }
+        FtpWalkResultDto result = new FtpWalkResultDto();
+        result.setDirectoryCount(directoryCount.sum());
+        result.setEntryCount(entryCount.sum());
+        result.setFailedDirectories(new ArrayList<>(failedDirectories));
+        return result;
+    }
+
+    /**
+     * consumer不要求线程安全，同一时刻只在一个线程中调用
+     */
+    private synchronized void emit(String directory, FTPFile file) {
+        consumer.accept(directory, file);
+        entryCount.increment();
+    }
+
+    /**
+     * 列出一个目录的任务
+     */
+    private class ListTask extends CountedCompleter<Void> {
+
+        private final String directory;
+        private final int depth;
+
+        ListTask(CountedCompleter<?> parent, String directory, int depth) {
+            super(parent);
+            this.directory = directory;
+            this.depth = depth;
+        }
+
+        @Override
+        public void compute() {
+            try {
+                if (failure == null) {
+                    list();
+                }
+            } catch (IOException e) {
+                if (errorPolicy == FtpWalkErrorPolicy.FAIL) {
+                    failure = e;
+                } else {
+                    log.warn("-----------------------遍历目录[{}]失败，跳过该目录！错误原因{}-----------------------", directory, e.getMessage());
+                    failedDirectories.add(directory);
+                }
+            } catch (RuntimeException | Error e) {
+                failure = e;
+            }
+            tryComplete();
+        }
+
+        private void list() throws IOException {
+            FTPFile[] files = ftpService.listDirectory(directory);
+            directoryCount.increment();
+            for (FTPFile file : files) {
+                if (failure != null) {
+                    return;
+                }
+                if (file == null || ".".equals(file.getName()) || "..".equals(file.getName())
+                        || (filter != null && !filter.accept(file))) {
+                    continue;
+                }
+                emit(directory, file);
+                //  不进入符号链接，避免循环
+                if (file.isDirectory() && depth < maxDepth) {
+                    addToPendingCount(1);
+                    new ListTask(this, MossFtpService.joinPath(directory, file.getName()), depth + 1).fork();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.moss.starter.service;
+
+import cn.hutool.crypto.SecureUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * 断点续传上传的本地检查点
+ * <p>
+ * 每个上传任务（远程文件+本地文件）对应检查点目录下的一个properties文件，记录本地文件的大小、修改时间和已确认上传的字节数。
+ * 远程临时文件的实际大小以SIZE为准，检查点只用于确认临时文件是由同一个本地文件上传的：
+ * 进程重启后再次上传时，本地文件未发生变化才从临时文件续传，否则从头上传。
+ *
+ * @author lwj
+ */
+@Slf4j
+class FtpUploadCheckpoint {
+
+    private static final String LOCAL_PATH = "localPath";
+    private static final String LOCAL_SIZE = "localSize";
+    private static final String LOCAL_MODIFIED = "localModified";
+    private static final String REMOTE_PATH = "remotePath";
+    private static final String OFFSET = "offset";
+
+    private final Path file;
+    private final Properties properties = new Properties();
+
+    private FtpUploadCheckpoint(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * 读取上传任务的检查点，不存在或无法读取时返回空的检查点
+     *
+     * @param directory  检查点目录
+     * @param remotePath 远程文件的绝对路径
+     * @param localFile  本地文件
+     * @return 检查点
+     */
+    static FtpUploadCheckpoint load(Path directory, String remotePath, File localFile) throws IOException {
+        Files.createDirectories(directory);
+        String key = SecureUtil.md5(remotePath + "\n" + localFile.getAbsolutePath());
+        FtpUploadCheckpoint checkpoint = new FtpUploadCheckpoint(directory.resolve(key + ".checkpoint"));
+        if (Files.isRegularFile(checkpoint.file)) {
+            try (InputStream in = Files.newInputStream(checkpoint.file)) {
+                checkpoint.properties.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("读取上传检查点[{}]失败：{}", checkpoint.file, e.getMessage());
+                checkpoint.properties.clear();
+            }
+        }
+        checkpoint.properties.setProperty(REMOTE_PATH, remotePath);
+        return checkpoint;
+    }
+
+    /**
+     * @param localFile 本地文件
+     * @return 检查点是否由该本地文件的当前内容生成（大小和修改时间均未变化）
+     */
+    boolean matches(File localFile) {
+        return localFile.getAbsolutePath().equals(properties.getProperty(LOCAL_PATH))
+                && String.valueOf(localFile.length()).equals(properties.getProperty(LOCAL_SIZE))
+                && String.valueOf(localFile.lastModified()).equals(properties.getProperty(LOCAL_MODIFIED));
+    }
+
+    /**
+     * @return 上次保存时已确认上传的字节数
+     */
+    long getOffset() {
+        return Long.parseLong(properties.getProperty(OFFSET, "0"));
+    }
+
+    /**
+     * 保存检查点（先写入临时文件再替换，进程在写入过程中退出时不会留下不完整的检查点）
+     *
+     * @param localFile 本地文件
+     * @param offset    已确认上传的字节数
+     */
+    void save(File localFile, long offset) throws IOException {
+        properties.setProperty(LOCAL_PATH, localFile.getAbsolutePath());
+        properties.setProperty(LOCAL_SIZE, String.valueOf(localFile.length()));
+        properties.setProperty(LOCAL_MODIFIED, String.valueOf(localFile.lastModified()));
+        properties.setProperty(OFFSET, String.valueOf(offset));
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, null);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 上传完成后删除检查点
+     */
+    void delete() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除上传检查点[{}]失败：{}", file, e.getMessage());
+        }
+    }
+}
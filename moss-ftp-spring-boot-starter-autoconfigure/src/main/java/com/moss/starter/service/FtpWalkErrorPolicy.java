@@ -0,0 +1,19 @@
+package com.moss.starter.service;
+
+/**
+ * 遍历目录树时列出某个目录失败的处理方式
+ *
+ * @author lwj
+ */
+public enum FtpWalkErrorPolicy {
+
+    /**
+     * 跳过该目录（记录在遍历结果的failedDirectories中），继续遍历其他目录
+     */
+    SKIP,
+
+    /**
+     * 停止遍历，walkTree抛出该目录的异常
+     */
+    FAIL
+}
@@ -0,0 +1,337 @@
+package com.moss.starter.service;
+
+import com.moss.starter.dto.FtpFileDto;
+import com.moss.starter.io.FtpBufferPool;
+import com.moss.starter.io.FtpIoUtils;
+import com.moss.starter.pool.FtpOperationClass;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.net.ftp.FTPClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 打包下载管道
+ * <p>
+ * 当前条目从FTP数据连接直接流式写入ZipOutputStream，同时使用连接池中其他空闲的连接预取后续条目到有界缓冲区中（不为预取创建新连接）。
+ * 预取时若缓冲区额度不足，则保留已读取的部分和未读完的数据连接，轮到该条目时继续流式写入剩余内容，
+ * 因此内存占用不超过共享的缓冲区上限，且任何条目都不会被重复下载。
+ *
+ * @author lwj
+ */
+@Slf4j
+class FtpZipPipeline {
+
+    private final MossFtpService ftpService;
+    private final ExecutorService executor;
+    private final int prefetchCount;
+    private final Semaphore bufferBudget;
+    private final FtpBufferPool bufferPool;
+    private final int bufferSize;
+
+    FtpZipPipeline(MossFtpService ftpService, ExecutorService executor, int prefetchCount, Semaphore bufferBudget,
+                   FtpBufferPool bufferPool) {
+        this.ftpService = ftpService;
+        this.executor = executor;
+        this.prefetchCount = executor == null ? 0 : Math.max(prefetchCount, 0);
+        this.bufferBudget = bufferBudget;
+        this.bufferPool = bufferPool;
+        //  条目大小未知，预取块和流式写入都使用默认大小的缓冲区
+        this.bufferSize = bufferPool.sizeFor(-1);
+    }
+
+    /**
+     * 将一组文件依次写入zip
+     *
+     * @param fileDtoS        需要打包的一组文件
+     * @param zipOutputStream zip输出流
+     * @param ftpClient       写入线程使用的ftpClient（用于未被预取的条目）
+     * @return 写入的文件内容字节数（压缩前）
+     */
+    long write(List<FtpFileDto> fileDtoS, ZipOutputStream zipOutputStream, FTPClient ftpClient) throws IOException {
+        List<PrefetchTask> tasks = new ArrayList<>(fileDtoS.size());
+        int next = 0;
+        long bytes = 0;
+        try {
+            for (int i = 0; i < fileDtoS.size(); i++) {
+                //  维持预取窗口：当前条目之后的prefetchCount个条目
+                while (next < fileDtoS.size() && next <= i + prefetchCount) {
+                    tasks.add(next == i ? null : new PrefetchTask(fileDtoS.get(next)));
+                    next++;
+                }
+                FtpFileDto ftpFileDto = fileDtoS.get(i);
+                PrefetchTask task = tasks.get(i);
+                tasks.set(i, null);
+                //  预取还未开始执行时（并行传输线程都被占用）由写入线程认领，直接下载，不持有连接等待排队的任务；
+                //  预取已开始时等待其结果
+                PrefetchedEntry entry = task == null || task.claim() ? null : task.await();
+                try {
+                    if (entry == null) {
+                        bytes += writeDirectly(ftpFileDto, zipOutputStream, ftpClient);
+                    } else {
+                        bytes += writePrefetched(ftpFileDto, entry, zipOutputStream);
+                    }
+                } catch (IOException ex) {
+                    log.error("-----------------------下载文件[" + ftpFileDto.getFileName() + "]失败！错误原因{}-----------------------", ex.getMessage());
+                }
+            }
+            return bytes;
+        } finally {
+            //  出现异常时释放尚未消费的预取结果
+            for (PrefetchTask task : tasks) {
+                if (task == null || task.claim()) {
+                    continue;
+                }
+                try {
+                    PrefetchedEntry entry = task.await();
+                    if (entry != null) {
+                        entry.discard();
+                    }
+                } catch (IOException e) {
+                    log.error("release prefetched entry failed...", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 使用写入线程的ftpClient直接流式写入条目
+     */
+    private long writeDirectly(FtpFileDto ftpFileDto, ZipOutputStream zipOutputStream, FTPClient ftpClient) throws IOException {
+        String routingKey = MossFtpService.routingKeyOfFile(ftpFileDto.getPath());
+        if (ftpService.isRoutedTo(ftpClient, routingKey)) {
+            return retrieveEntry(ftpFileDto, zipOutputStream, ftpClient);
+        }
+        //  多服务器分片存储时，该文件在其他服务器上，使用该服务器的ftpClient
+        FTPClient entryClient = ftpService.getFtpClient(routingKey);
+        try {
+            return retrieveEntry(ftpFileDto, zipOutputStream, entryClient);
+        } finally {
+            ftpService.releaseFtpClient(entryClient);
+        }
+    }
+
+    private long retrieveEntry(FtpFileDto ftpFileDto, ZipOutputStream zipOutputStream, FTPClient ftpClient) throws IOException {
+        InputStream in = null;
+        try {
+            ftpService.compressIfWorthwhile(ftpClient, "downloadZip", MossFtpService.absolutePath(ftpFileDto.getPath()));
+            in = ftpClient.retrieveFileStream(MossFtpService.absolutePath(ftpFileDto.getPath()));
+            if (in == null) {
+                log.error("-----------------------下载文件[" + ftpFileDto.getFileName() + "]失败！错误原因{}-----------------------", ftpClient.getReplyString());
+                return 0;
+            }
+            zipOutputStream.putNextEntry(new ZipEntry(ftpFileDto.getFileName()));
+            long bytes = ftpService.copyPooled(in, zipOutputStream, -1);
+            zipOutputStream.closeEntry();
+            in.close();
+            in = null;
+            ftpClient.completePendingCommand();
+            log.info("------------------reply-------------{}", ftpClient.getReplyCode());
+            return bytes;
+        } finally {
+            FtpIoUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * 写入预取的条目：先写入已缓冲的内容，再流式写入未读完的部分
+     */
+    private long writePrefetched(FtpFileDto ftpFileDto, PrefetchedEntry entry, ZipOutputStream zipOutputStream) throws IOException {
+        if (entry.error != null) {
+            log.error("-----------------------下载文件[" + ftpFileDto.getFileName() + "]失败！错误原因{}-----------------------", entry.error);
+            entry.discard();
+            return 0;
+        }
+        try {
+            long bytes = 0;
+            zipOutputStream.putNextEntry(new ZipEntry(ftpFileDto.getFileName()));
+            for (int i = 0; i < entry.chunks.size(); i++) {
+                zipOutputStream.write(entry.chunks.get(i), 0, entry.chunkLengths.get(i));
+                bytes += entry.chunkLengths.get(i);
+            }
+            entry.releaseBuffer();
+            if (entry.remaining != null) {
+                bytes += ftpService.copyPooled(entry.remaining, zipOutputStream, -1);
+                entry.finish();
+            }
+            zipOutputStream.closeEntry();
+            return bytes;
+        } finally {
+            entry.discard();
+        }
+    }
+
+    /**
+     * 预取条目（在连接池中没有空闲连接时放弃预取，由写入线程自行下载）
+     */
+    private PrefetchedEntry prefetch(FtpFileDto ftpFileDto) {
+        FTPClient ftpClient = ftpService.tryGetFtpClient(MossFtpService.routingKeyOfFile(ftpFileDto.getPath()), FtpOperationClass.BULK);
+        if (ftpClient == null) {
+            return null;
+        }
+        PrefetchedEntry entry = new PrefetchedEntry(ftpClient);
+        try {
+            ftpService.compressIfWorthwhile(ftpClient, "downloadZip", MossFtpService.absolutePath(ftpFileDto.getPath()));
+            InputStream in = ftpClient.retrieveFileStream(MossFtpService.absolutePath(ftpFileDto.getPath()));
+            if (in == null) {
+                entry.error = ftpClient.getReplyString();
+                return entry;
+            }
+            entry.remaining = in;
+            while (bufferBudget.tryAcquire(bufferSize)) {
+                entry.reserved += bufferSize;
+                byte[] chunk = bufferPool.acquire(bufferSize);
+                int len;
+                try {
+                    len = readFully(in, chunk);
+                } catch (IOException e) {
+                    bufferPool.release(chunk);
+                    throw e;
+                }
+                if (len > 0) {
+                    entry.chunks.add(chunk);
+                    entry.chunkLengths.add(len);
+                } else {
+                    bufferPool.release(chunk);
+                }
+                if (len < chunk.length) {
+                    //  已读取完毕，归还多预留的额度
+                    int unused = chunk.length - Math.max(len, 0);
+                    bufferBudget.release(unused);
+                    entry.reserved -= unused;
+                    entry.finish();
+                    return entry;
+                }
+            }
+            return entry;
+        } catch (Exception e) {
+            entry.error = e.getMessage();
+            return entry;
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int len = in.read(buffer, total, buffer.length - total);
+            if (len == -1) {
+                return total == 0 ? -1 : total;
+            }
+            total += len;
+        }
+        return total;
+    }
+
+    /**
+     * 预取任务
+     * <p>
+     * 执行预取的线程和写入线程通过claimed认领条目：预取开始前被写入线程认领时不再执行，
+     * 否则写入线程必须等待预取结果并使用或释放它（Future.cancel对已开始执行的任务同样返回true，不能据此判断）。
+     */
+    private class PrefetchTask {
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final Future<PrefetchedEntry> future;
+
+        PrefetchTask(FtpFileDto ftpFileDto) {
+            this.future = executor.submit(() -> claimed.compareAndSet(false, true) ? prefetch(ftpFileDto) : null);
+        }
+
+        /**
+         * 写入线程认领条目
+         *
+         * @return true：预取尚未开始，不会再执行；false：预取已开始，需要等待结果
+         */
+        boolean claim() {
+            if (!claimed.compareAndSet(false, true)) {
+                return false;
+            }
+            future.cancel(false);
+            return true;
+        }
+
+        PrefetchedEntry await() throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for prefetched entry", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Prefetch entry failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * 预取结果
+     */
+    private class PrefetchedEntry {
+        private final List<byte[]> chunks = new ArrayList<>();
+        private final List<Integer> chunkLengths = new ArrayList<>();
+        private FTPClient ftpClient;
+        /**
+         * 未读完的数据连接
+         */
+        private InputStream remaining;
+        private int reserved;
+        private String error;
+
+        PrefetchedEntry(FTPClient ftpClient) {
+            this.ftpClient = ftpClient;
+        }
+
+        /**
+         * 数据连接已读取完毕，结束传输并归还ftpClient
+         */
+        void finish() throws IOException {
+            InputStream in = remaining;
+            remaining = null;
+            in.close();
+            FTPClient client = ftpClient;
+            ftpClient = null;
+            try {
+                client.completePendingCommand();
+            } finally {
+                ftpService.releaseFtpClient(client);
+            }
+        }
+
+        void releaseBuffer() {
+            for (byte[] chunk : chunks) {
+                bufferPool.release(chunk);
+            }
+            chunks.clear();
+            chunkLengths.clear();
+            if (reserved > 0) {
+                bufferBudget.release(reserved);
+                reserved = 0;
+            }
+        }
+
+        /**
+         * 释放所有资源；数据连接未读完时无法确定控制连接状态，直接销毁ftpClient
+         */
+        void discard() {
+            releaseBuffer();
+            if (ftpClient == null) {
+                return;
+            }
+            if (remaining != null) {
+                FtpIoUtils.closeQuietly(remaining);
+                remaining = null;
+                ftpService.invalidateFtpClient(ftpClient);
+            } else {
+                ftpService.releaseFtpClient(ftpClient);
+            }
+            ftpClient = null;
+        }
+    }
+}
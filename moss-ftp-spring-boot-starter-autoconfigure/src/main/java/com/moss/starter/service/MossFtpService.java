@@ -2,28 +2,77 @@ package com.moss.starter.service;
 
 import cn.hutool.core.util.ArrayUtil;
 import cn.hutool.core.util.StrUtil;
+import com.moss.starter.cache.FtpContentCache;
+import com.moss.starter.cache.FtpTtlCache;
 import com.moss.starter.dto.FtpFileDto;
+import com.moss.starter.dto.FtpMoveFileDto;
+import com.moss.starter.dto.FtpOperationResultDto;
+import com.moss.starter.dto.FtpSyncPlanDto;
+import com.moss.starter.dto.FtpSyncResultDto;
+import com.moss.starter.dto.FtpUploadFileDto;
+import com.moss.starter.dto.FtpWalkResultDto;
+import com.moss.starter.io.CountingInputStream;
+import com.moss.starter.io.FtpBufferPool;
+import com.moss.starter.io.FtpIoUtils;
+import com.moss.starter.io.PooledByteArrayOutputStream;
+import com.moss.starter.io.TeeOutputStream;
+import com.moss.starter.metrics.FtpMetricsRecorder;
+import com.moss.starter.pool.FtpBulkhead;
+import com.moss.starter.pool.FtpCircuitOpenException;
+import com.moss.starter.pool.FtpClientPoolGroup;
+import com.moss.starter.pool.FtpOperationClass;
+import com.moss.starter.pool.FtpPipelineException;
+import com.moss.starter.pool.MossFtpClient;
 import com.moss.starter.propeties.FtpOptionProperties;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPFileFilter;
+import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.ftp.parser.MLSxEntryParser;
 import org.apache.commons.pool2.impl.GenericObjectPool;
-import org.apache.tomcat.util.http.fileupload.IOUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.Assert;
 
-import javax.servlet.http.HttpServletResponse;
 import java.io.*;
-import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
+import java.util.stream.Stream;
 import java.util.zip.ZipOutputStream;
 
 /**
@@ -42,12 +91,85 @@ public class MossFtpService {
     private boolean hasInit = false;
 
     /**
-     * ftpClient连接池
+     * ftpClient连接池（每台服务器一个连接池）
      */
-    private GenericObjectPool<FTPClient> ftpClientPool;
+    private FtpClientPoolGroup ftpClientPools;
 
-    @Autowired
-    private HttpServletResponse response;
+    /**
+     * 文件内容缓存，为null时不缓存
+     */
+    private FtpContentCache contentCache;
+
+    /**
+     * 目录列表缓存，为null时不缓存
+     */
+    private FtpTtlCache<String, FTPFile[]> listingCache;
+
+    /**
+     * 忽略大小写下载时使用的文件名索引（目录 -> 小写文件名 -> 文件名），为null时不缓存
+     */
+    private FtpTtlCache<String, Map<String, String>> nameIndexCache;
+
+    /**
+     * 压缩传输策略，为null时不使用压缩传输
+     */
+    private FtpCompressionPolicy compressionPolicy;
+
+    /**
+     * 操作指标记录器
+     */
+    private FtpMetricsRecorder metricsRecorder = FtpMetricsRecorder.NOOP;
+
+    /**
+     * 已知存在的目录缓存，为null时不缓存
+     */
+    private FtpTtlCache<String, Boolean> directoryCache;
+
+    /**
+     * 并行传输使用的线程池（打包预取等），为null时按顺序执行
+     */
+    private ExecutorService transferExecutor;
+
+    /**
+     * *Async方法使用的线程池，为null时使用transferExecutor
+     */
+    private ExecutorService asyncExecutor;
+
+    /**
+     * 遍历目录树使用的ForkJoinPool，为null时每次遍历临时创建
+     */
+    private ForkJoinPool walkPool;
+
+    /**
+     * 按操作类型隔离的连接额度，为null时不隔离
+     */
+    private FtpBulkhead bulkhead;
+
+    /**
+     * 打包下载共享的预取缓冲区额度（字节）
+     */
+    private Semaphore zipPrefetchBudget;
+
+    /**
+     * 传输缓冲区池，未配置时不复用缓冲区
+     */
+    private FtpBufferPool bufferPool = new FtpBufferPool(8 * 1024, 1024 * 1024, 64 * 1024, 0);
+
+    /**
+     * 无法满足的Range请求标识
+     */
+    static final long[] UNSATISFIABLE_RANGE = new long[0];
+
+    /**
+     * MDTM、MFMT使用的时间格式（UTC）
+     */
+    private static final DateTimeFormatter MODIFICATION_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC);
+
+    /**
+     * 下载到Response时使用的当前请求和响应，不存在Servlet API或不是Web应用时为null
+     */
+    @Autowired(required = false)
+    private FtpServletSupport servletSupport;
     @Autowired
     private FtpOptionProperties ftpOptionProperties;
 
@@ -60,24 +182,36 @@ public class MossFtpService {
      * @return true：成功；false：失败
      */
     public boolean uploadFile(String pathName, String fileName, String originFileName) {
-        boolean flag;
+        long start = System.nanoTime();
+        boolean flag = false;
         InputStream inputStream;
         FTPClient ftpClient = null;
+        FtpTransferChecksum checksum = transferChecksum();
         try {
-            ftpClient = getFtpClient();
+            ftpClient = getFtpClient(normalizeDirectory(pathName));
             log.info("-----------------------开始上传[" + fileName + "]文件！------------------------");
-            inputStream = new FileInputStream(new File(originFileName));
+            File originFile = new File(originFileName);
+            inputStream = checksum.wrap(new FileInputStream(originFile));
             // 设置传输的文件类型(BINARY_FILE_TYPE：二进制文件类型 ASCII_FILE_TYPE：ASCII传输方式，这是默认的方式)
             ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
             createDirectory(pathName, ftpClient);
-            ftpClient.makeDirectory(pathName);
-            flag = ftpClient.storeFile(encodingFileName(fileName), inputStream);
+            compressIfWorthwhile(ftpClient, "upload", joinPath(pathName, fileName));
+            flag = storeFile(ftpClient, encodingFileName(fileName), inputStream, originFile.length());
             inputStream.close();
+            invalidateListing(pathName);
+            invalidateContent(joinPath(pathName, fileName));
+            if (flag) {
+                metricsRecorder.recordBytes("upload", "upload", originFile.length());
+                flag = checksum.verifyUpload("upload", ftpClient, absolutePath(joinPath(pathName, fileName))) == null;
+            } else {
+                onStoreFailed(pathName, ftpClient);
+            }
         } catch (Exception e) {
             flag = false;
             log.error("-----------------------上传[" + fileName + "]文件失败！错误原因{}-----------------------", e.getMessage());
             e.printStackTrace();
         } finally {
+            recordOperation("upload", start, flag, ftpClient);
             releaseFtpClient(ftpClient);
         }
         if (flag) {
@@ -95,29 +229,206 @@ public class MossFtpService {
      * @return true：成功；false：失败
      */
     public boolean uploadFile(String pathName, String fileName, InputStream inputStream) {
-        boolean flag;
+        return uploadFileWithChecksum(pathName, fileName, inputStream).isSuccess();
+    }
+
+    /**
+     * 上传文件（传入文件流的方式上传），返回上传结果和上传内容的摘要
+     * <p>
+     * 开启moss.ftp.checksum时，上传的同时计算摘要，上传后与服务器计算的摘要比较（不一致时上传失败），
+     * 服务器不支持HASH、XCRC、XMD5等命令时把摘要保存为sidecar文件。
+     *
+     * @param pathName    ftp服务保存地址
+     * @param fileName    上传到ftp的文件名
+     * @param inputStream 输入文件流
+     * @return 上传结果，checksum为上传内容的摘要（未开启校验时为null）
+     */
+    public FtpOperationResultDto uploadFileWithChecksum(String pathName, String fileName, InputStream inputStream) {
+        long start = System.nanoTime();
+        boolean flag = false;
+        String message = null;
         FTPClient ftpClient = null;
+        FtpTransferChecksum checksum = transferChecksum();
         try {
-            ftpClient = getFtpClient();
+            ftpClient = getFtpClient(normalizeDirectory(pathName));
             log.info("-----------------------开始上传[" + fileName + "]文件！------------------------");
             ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
             createDirectory(pathName, ftpClient);
-            ftpClient.makeDirectory(pathName);
-            ftpClient.changeWorkingDirectory(pathName);
-            flag = ftpClient.storeFile(encodingFileName(fileName), inputStream);
-
+            CountingInputStream countingStream = new CountingInputStream(checksum.wrap(inputStream));
+            compressIfWorthwhile(ftpClient, "upload", joinPath(pathName, fileName));
+            flag = storeFile(ftpClient, encodingFileName(fileName), countingStream, -1);
+            invalidateListing(pathName);
+            invalidateContent(joinPath(pathName, fileName));
+            metricsRecorder.recordBytes("upload", "upload", countingStream.getCount());
+            if (flag) {
+                message = checksum.verifyUpload("upload", ftpClient, absolutePath(joinPath(pathName, fileName)));
+                flag = message == null;
+            } else {
+                message = ftpClient.getReplyString();
+                onStoreFailed(pathName, ftpClient);
+            }
         } catch (Exception e) {
             flag = false;
+            message = e.getMessage();
             log.info("-----------------------上传文件[" + fileName + "]失败！错误原因{}-----------------------", e.getMessage());
             e.printStackTrace();
         } finally {
-            IOUtils.closeQuietly(inputStream);
+            FtpIoUtils.closeQuietly(inputStream);
+            recordOperation("upload", start, flag, ftpClient);
             releaseFtpClient(ftpClient);
         }
         if (flag) {
             log.info("-----------------------上传文件[" + fileName + "]成功！-----------------------");
         }
-        return flag;
+        return new FtpOperationResultDto(pathName, fileName, flag, message, checksum.getDigest());
+    }
+
+    /**
+     * 上传文件（异步，在moss.ftp.async配置的线程池上执行）
+     *
+     * @param pathName    ftp服务保存地址
+     * @param fileName    上传到ftp的文件名
+     * @param inputStream 输入文件流
+     * @return true：成功；false：失败
+     * @see #uploadFile(String, String, InputStream)
+     */
+    public CompletableFuture<Boolean> uploadFileAsync(String pathName, String fileName, InputStream inputStream) {
+        return runAsync(() -> uploadFile(pathName, fileName, inputStream));
+    }
+
+    /**
+     * 断点续传上传文件（适用于大文件）
+     * <p>
+     * 先上传到临时文件（文件名+moss.ftp.resumable.temp-suffix），校验大小后重命名为目标文件。
+     * 连接中断时使用新的连接重试（最多moss.ftp.resumable.max-attempts次），通过SIZE确认临时文件已上传的字节数，
+     * 从该位置继续读取本地文件并上传（REST+STOR，服务器不支持REST时使用APPE）。
+     * 检查点保存在本地，进程重启后再次调用时，本地文件未发生变化即从上次确认的位置继续。
+     *
+     * @param pathName       ftp服务保存地址
+     * @param fileName       上传到ftp的文件名
+     * @param originFileName 待上传文件的名称（绝对地址）
+     * @return true：成功；false：失败
+     */
+    public boolean uploadFileResumable(String pathName, String fileName, String originFileName) {
+        FtpOptionProperties.Resumable resumable = ftpOptionProperties.getResumable();
+        File localFile = new File(originFileName);
+        String tempName = fileName + resumable.getTempSuffix();
+        if (!localFile.isFile()) {
+            log.error("-----------------------断点续传上传[" + fileName + "]文件失败！本地文件[{}]不存在-----------------------", originFileName);
+            return false;
+        }
+        log.info("-----------------------开始断点续传上传[" + fileName + "]文件！------------------------");
+        try {
+            FtpUploadCheckpoint checkpoint = FtpUploadCheckpoint.load(checkpointDirectory(resumable),
+                    absolutePath(joinPath(pathName, fileName)), localFile);
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    if (uploadResumableAttempt(pathName, fileName, tempName, localFile, checkpoint)) {
+                        checkpoint.delete();
+                        log.info("-----------------------断点续传上传[" + fileName + "]文件成功！-----------------------");
+                        return true;
+                    }
+                    return false;
+                } catch (IOException e) {
+                    if (attempt >= resumable.getMaxAttempts()) {
+                        throw e;
+                    }
+                    log.warn("-----------------------断点续传上传[" + fileName + "]第{}次失败，{}毫秒后重试！错误原因{}-----------------------",
+                            attempt, resumable.getRetryDelayMillis(), e.getMessage());
+                    Thread.sleep(resumable.getRetryDelayMillis());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("-----------------------断点续传上传[" + fileName + "]文件被中断！-----------------------");
+        } catch (Exception e) {
+            log.error("-----------------------断点续传上传[" + fileName + "]文件失败！错误原因{}-----------------------", e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * 断点续传上传文件（异步）
+     *
+     * @see #uploadFileResumable(String, String, String)
+     */
+    public CompletableFuture<Boolean> uploadFileResumableAsync(String pathName, String fileName, String originFileName) {
+        return runAsync(() -> uploadFileResumable(pathName, fileName, originFileName));
+    }
+
+    /**
+     * 批量上传文件
+     * <p>
+     * 文件按保存地址分组，使用最多moss.ftp.batch.concurrency个连接并行上传；每个分组的目录只在一个连接上创建和进入一次，
+     * 文件集中在少数目录时较大的分组拆分到多个连接上。本地文件无法读取时只有该文件失败，不影响连接。
+     *
+     * @param files 待上传的文件
+     * @return 按传入顺序排列的每个文件的上传结果
+     */
+    public List<FtpOperationResultDto> uploadFiles(Collection<FtpUploadFileDto> files) {
+        return uploadFilesAsync(files).join();
+    }
+
+    /**
+     * 批量上传文件（异步）
+     *
+     * @param files 待上传的文件
+     * @return 按传入顺序排列的每个文件的上传结果
+     * @see #uploadFiles(Collection)
+     */
+    public CompletableFuture<List<FtpOperationResultDto>> uploadFilesAsync(Collection<FtpUploadFileDto> files) {
+        checkFtpClientPoolAvailable();
+        log.info("-----------------------开始批量上传{}个文件！------------------------", files.size());
+        return new FtpBatchExecutor<FtpUploadFileDto>(this, transferExecutor, ftpOptionProperties.getBatch().getConcurrency())
+                .execute(files, FtpUploadFileDto::getPath, new FtpBatchExecutor.BatchTask<FtpUploadFileDto>() {
+                    @Override
+                    public void prepare(FTPClient ftpClient, String directory) throws IOException {
+                        ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
+                        createDirectory(directory, ftpClient);
+                    }
+
+                    @Override
+                    public FtpOperationResultDto execute(FTPClient ftpClient, String directory, FtpUploadFileDto file) throws IOException {
+                        long start = System.nanoTime();
+                        FtpTransferChecksum checksum = transferChecksum();
+                        InputStream source;
+                        try {
+                            source = file.getInputStream() != null ? file.getInputStream() : new FileInputStream(file.getOriginFileName());
+                        } catch (IOException e) {
+                            //  本地文件错误只影响该文件，不影响连接
+                            log.error("-----------------------批量上传读取本地文件[" + file.getOriginFileName() + "]失败！错误原因{}-----------------------", e.getMessage());
+                            recordOperation("uploadBatch", start, false, ftpClient);
+                            return failed(file, "读取本地文件失败：" + e.getMessage());
+                        }
+                        try (CountingInputStream inputStream = new CountingInputStream(checksum.wrap(source))) {
+                            compressIfWorthwhile(ftpClient, "uploadBatch", joinPath(directory, file.getFileName()));
+                            boolean stored = storeFile(ftpClient, encodingFileName(file.getFileName()), inputStream,
+                                    file.getInputStream() != null ? -1 : new File(file.getOriginFileName()).length());
+                            String message = stored
+                                    ? checksum.verifyUpload("uploadBatch", ftpClient, absolutePath(joinPath(directory, file.getFileName())))
+                                    : ftpClient.getReplyString();
+                            boolean flag = stored && message == null;
+                            if (flag && file.getModificationTime() != null) {
+                                setModificationTime(ftpClient, joinPath(directory, file.getFileName()), file.getModificationTime());
+                            }
+                            invalidateListing(directory);
+                            invalidateContent(joinPath(directory, file.getFileName()));
+                            metricsRecorder.recordBytes("uploadBatch", "upload", inputStream.getCount());
+                            recordOperation("uploadBatch", start, flag, ftpClient);
+                            if (!stored) {
+                                onStoreFailed(directory, ftpClient);
+                            }
+                            return new FtpOperationResultDto(directory, file.getFileName(), flag, message, checksum.getDigest());
+                        }
+                    }
+
+                    @Override
+                    public FtpOperationResultDto failed(FtpUploadFileDto file, String message) {
+                        FtpIoUtils.closeQuietly(file.getInputStream());
+                        return new FtpOperationResultDto(file.getPath(), file.getFileName(), false, message);
+                    }
+                });
     }
 
     /**
@@ -129,35 +440,160 @@ public class MossFtpService {
      * @return true：成功；false：失败
      */
     public boolean downLoadFile(String pathName, String fileName, String localPath) {
-        boolean flag = true;
-        OutputStream os = null;
+        return downLoadFile(pathName, fileName, localPath, false);
+    }
+
+    /**
+     * 下载文件（下载到本地的某个位置）
+     * <p>
+     * 直接按文件名下载，通过MLST（服务器不支持时使用SIZE）确认文件存在，不列出整个目录。
+     * ignoreCase为true时，找不到同名文件后通过目录的文件名索引查找大小写不同的文件，
+     * 索引由NLST生成并按moss.ftp.name-index缓存，通过MossFtpService上传、删除文件时自动失效。
+     *
+     * @param pathName   FTP服务器文件目录
+     * @param fileName   文件名称
+     * @param localPath  下载后的文件路径
+     * @param ignoreCase 是否忽略文件名大小写
+     * @return true：成功；false：失败
+     */
+    public boolean downLoadFile(String pathName, String fileName, String localPath, boolean ignoreCase) {
+        return downLoad(pathName, fileName, localPath, ignoreCase).isSuccess();
+    }
+
+    /**
+     * 下载文件（下载到本地的某个位置），返回下载结果和下载内容的摘要
+     * <p>
+     * 开启moss.ftp.checksum时，下载的同时计算摘要，下载后与服务器计算的摘要（或上传时保存的sidecar文件）比较，
+     * 不一致时删除本地文件，下载失败。
+     *
+     * @param pathName  FTP服务器文件目录
+     * @param fileName  文件名称
+     * @param localPath 下载后的文件路径
+     * @return 下载结果，checksum为下载内容的摘要（未开启校验时为null）
+     */
+    public FtpOperationResultDto downLoadFileWithChecksum(String pathName, String fileName, String localPath) {
+        return downLoad(pathName, fileName, localPath, false);
+    }
+
+    private FtpOperationResultDto downLoad(String pathName, String fileName, String localPath, boolean ignoreCase) {
+        long start = System.nanoTime();
+        boolean flag = false;
+        String message = null;
+        boolean reusable = true;
         FTPClient ftpClient = null;
+        Path localFile = null;
+        FtpTransferChecksum checksum = transferChecksum();
         try {
-            ftpClient = getFtpClient();
+            ftpClient = getFtpClient(normalizeDirectory(pathName));
             log.info("-----------------------开始下载[" + fileName + "]文件！------------------------");
-            ftpClient.changeWorkingDirectory(pathName);
-            FTPFile[] ftpFiles = ftpClient.listFiles();
-            for (FTPFile ftpFile : ftpFiles) {
-                if (fileName.equalsIgnoreCase(ftpFile.getName())) {
-                    File localFile = new File(localPath + "/" + ftpFile.getName());
-                    os = new FileOutputStream(localFile);
-                    flag = ftpClient.retrieveFile(encodingFileName(fileName), os);
-                    os.close();
+            String remoteName = fileName;
+            long size = statRemoteFile(absolutePath(joinPath(pathName, fileName)), ftpClient);
+            if (size < 0 && ignoreCase) {
+                remoteName = resolveNameIgnoreCase(pathName, fileName, ftpClient);
+                if (remoteName != null) {
+                    size = statRemoteFile(absolutePath(joinPath(pathName, remoteName)), ftpClient);
                 }
             }
+            if (size < 0) {
+                throw new FileNotFoundException("文件[" + joinPath(pathName, fileName) + "]不存在");
+            }
+            String remotePath = absolutePath(joinPath(pathName, remoteName));
+            //  本地文件使用服务器上的文件名
+            localFile = Paths.get(localPath, remoteName);
+            compressIfWorthwhile(ftpClient, "download", remotePath);
+            reusable = false;
+            long bytes = retrieveToFile(remotePath, size, localFile, ftpClient, checksum);
+            reusable = true;
+            metricsRecorder.recordBytes("download", "download", bytes);
+            if (bytes != size && ftpOptionProperties.getTransferFileType() == FTP.BINARY_FILE_TYPE) {
+                throw new IOException("下载的文件不完整：" + bytes + "/" + size + "字节");
+            }
+            String mismatch = checksum.verifyDownload("download", ftpClient, remotePath);
+            if (mismatch != null) {
+                throw new IOException(mismatch);
+            }
+            flag = true;
         } catch (Exception e) {
-            flag = false;
+            message = e.getMessage();
             log.error("-----------------------下载文件[" + fileName + "]失败！错误原因{}-----------------------", e.getMessage());
             e.printStackTrace();
-        } finally {
-            releaseFtpClient(ftpClient);
-            if (os != null) {
+            if (localFile != null) {
                 try {
-                    os.close();
+                    Files.deleteIfExists(localFile);
                 } catch (IOException ioe) {
                     ioe.printStackTrace();
                 }
             }
+        } finally {
+            recordOperation("download", start, flag, ftpClient);
+            if (reusable) {
+                releaseFtpClient(ftpClient);
+            } else {
+                //  数据连接未读完时无法确定控制连接的状态
+                invalidateFtpClient(ftpClient);
+            }
+        }
+        return new FtpOperationResultDto(pathName, fileName, flag, message, checksum.getDigest());
+    }
+
+    /**
+     * 下载文件到本地（异步）
+     *
+     * @param pathName  FTP服务器文件目录
+     * @param fileName  文件名称
+     * @param localPath 下载后的文件路径
+     * @return true：成功；false：失败
+     * @see #downLoadFile(String, String, String)
+     */
+    public CompletableFuture<Boolean> downLoadFileAsync(String pathName, String fileName, String localPath) {
+        return runAsync(() -> downLoadFile(pathName, fileName, localPath));
+    }
+
+    /**
+     * 分段下载文件（下载到本地的某个位置）
+     * <p>
+     * 文件大于moss.ftp.segment.min-file-size时，按分段使用多个连接并行下载到临时文件（.part），完成后重命名；
+     * 中断后再次调用只下载未完成的分段（服务器文件的大小或修改时间已变化时重新下载）；否则按单连接下载。
+     *
+     * @param pathName  FTP服务器文件目录
+     * @param fileName  文件名称
+     * @param localPath 下载后的文件路径
+     * @return true：成功；false：失败
+     */
+    public boolean downLoadFileSegmented(String pathName, String fileName, String localPath) {
+        FtpOptionProperties.Segment segment = ftpOptionProperties.getSegment();
+        String remotePath = absolutePath(joinPath(pathName, encodingFileName(fileName)));
+        long fileSize;
+        String modificationTime;
+        FTPClient ftpClient = null;
+        try {
+            ftpClient = getFtpClient(normalizeDirectory(pathName));
+            fileSize = remoteFileSize(remotePath, ftpClient);
+            modificationTime = fileSize >= segment.getMinFileSize() ? ftpClient.getModificationTime(remotePath) : null;
+        } catch (Exception e) {
+            log.error("-----------------------下载文件[" + fileName + "]失败！错误原因{}-----------------------", e.getMessage());
+            return false;
+        } finally {
+            releaseFtpClient(ftpClient);
+        }
+        if (transferExecutor == null || fileSize < 0 || fileSize < segment.getMinFileSize()) {
+            return downLoadFile(pathName, fileName, localPath);
+        }
+        log.info("-----------------------开始分段下载[" + fileName + "]文件，文件大小{}！------------------------", fileSize);
+        long start = System.nanoTime();
+        boolean flag;
+        try {
+            flag = new FtpSegmentedDownloader(this, transferExecutor, segment, ftpOptionProperties.getTryNum())
+                    .download(remotePath, fileSize, modificationTime, new File(localPath, fileName));
+        } catch (Exception e) {
+            flag = false;
+            log.error("-----------------------下载文件[" + fileName + "]失败！错误原因{}-----------------------", e.getMessage());
+            e.printStackTrace();
+        }
+        recordOperation("downloadSegmented", start, flag, null);
+        if (flag) {
+            metricsRecorder.recordBytes("downloadSegmented", "download", fileSize);
+            log.info("-----------------------下载文件[" + fileName + "]成功！-----------------------");
         }
         return flag;
     }
@@ -167,80 +603,221 @@ public class MossFtpService {
      *
      * @param pathName 文件的相对地址
      * @param fileName 文件真实名称
-     * @return 文件流
+     * @return 文件流（读取完毕后需关闭，关闭后缓冲区归还到缓冲区池）
      */
     public InputStream downLoadFileToStream(String pathName, String fileName) throws Exception {
-        FTPClient ftpClient = ftpClientPool.borrowObject();
+        String remotePath = absolutePath(pathName);
+        FtpContentCache.Entry cached = cachedContent(remotePath);
+        InputStream cachedStream = cached != null ? contentCache.open(cached) : null;
+        if (cachedStream != null) {
+            log.info("-----------------------从缓存获取文件流[" + fileName + "]！-----------------------");
+            metricsRecorder.recordBytes("downloadToStream", "cache", cached.getSize());
+            return cachedStream;
+        }
+        long start = System.nanoTime();
+        FTPClient ftpClient = getFtpClient(routingKeyOfFile(pathName));
+        FtpContentCache.Writer cacheWriter = null;
         InputStream stream1 = null;
-        try (InputStream inputStream = ftpClient.retrieveFileStream(pathName);) {
+        FtpTransferChecksum checksum = transferChecksum();
+        boolean completed = false;
+        boolean reusable = true;
+        try {
             log.info("-----------------------开始下载[" + fileName + "]文件！------------------------");
             ftpClient.enterLocalPassiveMode();
-            ByteArrayOutputStream baos = cloneInputStream(inputStream);
-            stream1 = new ByteArrayInputStream(baos.toByteArray());
-            //  关闭字节流
-            IOUtils.closeQuietly(baos);
+            cacheWriter = admitContent(remotePath, ftpClient);
+            compressIfWorthwhile(ftpClient, "downloadToStream", remotePath);
+            InputStream inputStream = ftpClient.retrieveFileStream(remotePath);
+            if (inputStream == null) {
+                //  没有打开数据连接（如550），最终应答已读取，不需要completePendingCommand
+                log.error("-----------------------获取文件流[" + fileName + "]失败！错误原因{}-----------------------", ftpClient.getReplyString());
+                return null;
+            }
+            //  数据连接已打开，传输未正常结束时控制连接的应答状态无法确定
+            reusable = false;
+            PooledByteArrayOutputStream content = new PooledByteArrayOutputStream(bufferPool, -1);
+            try (InputStream checked = checksum.wrap(inputStream)) {
+                content.readFrom(checked);
+                if (cacheWriter != null) {
+                    content.writeTo(cacheWriter);
+                }
+            } catch (IOException e) {
+                content.release();
+                throw e;
+            }
+            //  直接读取缓冲块，不再复制一份字节数组；关闭后缓冲块归还到缓冲区池
+            stream1 = content.toInputStream();
+            completed = ftpClient.completePendingCommand();
+            reusable = true;
+            if (!completed) {
+                //  传输未正常结束（如426），读取到的内容可能不完整
+                log.error("-----------------------获取文件流[" + fileName + "]失败！错误原因{}-----------------------", ftpClient.getReplyString());
+                stream1.close();
+                stream1 = null;
+            } else if (checksum.verifyDownload("downloadToStream", ftpClient, remotePath) != null) {
+                stream1.close();
+                stream1 = null;
+            } else {
+                metricsRecorder.recordBytes("downloadToStream", "download", content.size());
+            }
             log.info("------------------reply-------------{}", ftpClient.getReplyCode());
         } catch (Exception e) {
             log.error("-----------------------获取文件流[" + fileName + "]失败！错误原因{}-----------------------", e.getMessage());
-            e.printStackTrace();
+            FtpIoUtils.closeQuietly(stream1);
+            stream1 = null;
+            reusable = false;
         } finally {
-            ftpClient.completePendingCommand();
-            releaseFtpClient(ftpClient);
+            finishContent(cacheWriter, completed && stream1 != null);
+            recordOperation("downloadToStream", start, stream1 != null, ftpClient);
+            if (reusable) {
+                releaseFtpClient(ftpClient);
+            } else {
+                invalidateFtpClient(ftpClient);
+            }
         }
         return stream1;
     }
 
     /**
-     * 下载文件到Response
+     * 获取文件流（异步）
+     *
+     * @param pathName 文件的相对地址
+     * @param fileName 文件真实名称
+     * @return 文件流
+     * @see #downLoadFileToStream(String, String)
+     */
+    public CompletableFuture<InputStream> downLoadFileToStreamAsync(String pathName, String fileName) {
+        return runAsync(() -> downLoadFileToStream(pathName, fileName));
+    }
+
+    /**
+     * 下载文件到Response（流式传输，支持HTTP Range断点续传）
+     * <p>
+     * 文件内容通过固定大小的缓冲区从FTP数据连接直接写入Response，不在内存中缓存整个文件；
+     * Content-Length取自FTP的SIZE应答，Range请求的起始位置映射为FTP的REST偏移量。
      *
      * @param pathName FTP服务器文件的相对地址
      * @param fileName 文件真实名称
      * @return true：成功；false：失败
      */
     public boolean downLoadFileToResponse(String pathName, String fileName) throws Exception {
+        if (servletSupport == null || !servletSupport.isAvailable()) {
+            log.error("-----------------------下载文件[" + fileName + "]失败！错误原因{}-----------------------", "response is null");
+            return false;
+        }
+        String remotePath = absolutePath(pathName);
+        FtpContentCache.Entry cached = cachedContent(remotePath);
+        InputStream cachedStream = cached != null ? contentCache.open(cached) : null;
+        if (cachedStream != null) {
+            return downLoadCachedToResponse(cachedStream, cached.getSize(), fileName);
+        }
+        long start = System.nanoTime();
         boolean flag = true;
+        boolean reusable = true;
         InputStream inputStream = null;
-        FTPClient ftpClient = ftpClientPool.borrowObject();
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        if (response != null) {
-            try (OutputStream os = response.getOutputStream()) {
-                log.info("-----------------------开始下载[" + fileName + "]文件！------------------------");
-                ftpClient.enterLocalPassiveMode();
-                inputStream = ftpClient.retrieveFileStream(pathName);
-                //  为了返回文件流到http响应中，此处不能关闭文件流
-//                inputStream.close();
-//                ftpClient.completePendingCommand();
-
-                //写流文件
-                byte[] buffer = new byte[ftpClient.getBufferSize()];
-                int len;
-                while ((len = inputStream.read(buffer)) != -1) {
-                    baos.write(buffer, 0, len);
+        FtpContentCache.Writer cacheWriter = null;
+        boolean completed = false;
+        FtpTransferChecksum checksum = null;
+        FTPClient ftpClient = getFtpClient(routingKeyOfFile(pathName));
+        try {
+            log.info("-----------------------开始下载[" + fileName + "]文件！------------------------");
+            ftpClient.enterLocalPassiveMode();
+            long fileSize = remoteFileSize(remotePath, ftpClient);
+            long[] range = servletSupport.prepareDownload(fileName, fileSize);
+            if (range == null) {
+                return false;
+            }
+            long offset = range[0];
+            long length = range[1];
+            if (offset > 0) {
+                ftpClient.setRestartOffset(offset);
+            } else if (length == fileSize) {
+                //  只缓存、校验完整下载的文件
+                cacheWriter = admitContent(remotePath, fileSize, ftpClient);
+                checksum = transferChecksum();
+            }
+            //  设置了REST偏移量时不压缩
+            compressIfWorthwhile(ftpClient, "downloadToResponse", remotePath);
+            inputStream = ftpClient.retrieveFileStream(remotePath);
+            if (checksum != null) {
+                inputStream = checksum.wrap(inputStream);
+            }
+            if (inputStream == null) {
+                throw new IOException("retrieve file failed, reply: " + ftpClient.getReplyString());
+            }
+            OutputStream os = servletSupport.getOutputStream();
+            long transferred = copyPooled(inputStream, cacheWriter != null ? new TeeOutputStream(os, cacheWriter) : os, length);
+            os.flush();
+            metricsRecorder.recordBytes("downloadToResponse", "download", transferred);
+            boolean partial = length >= 0 && (length != fileSize - offset || transferred != length);
+            inputStream.close();
+            inputStream = null;
+            if (partial) {
+                //  只读取了部分数据时提前关闭了数据连接，需确认控制连接应答已同步
+                reusable = finishPartialTransfer(ftpClient);
+            } else {
+                completed = ftpClient.completePendingCommand();
+                //  内容已写入Response，摘要不一致时只能通过返回值通知调用方，不缓存该文件
+                if (completed && checksum != null && checksum.verifyDownload("downloadToResponse", ftpClient, remotePath) != null) {
+                    flag = false;
                 }
-                //写response
-                response.setContentType("application/OCTET-STREAM;charset=utf-8");
-                response.setContentLength(baos.size());
-                response.setHeader("Content-Disposition", "attachment;filename=\"" + URLEncoder.encode(fileName, "UTF-8").replace("+", "%20") + "\"");
-                baos.writeTo(os);
-                os.flush();
-                log.info("------------------reply-------------{}", ftpClient.getReply());
-            } catch (Exception e) {
-                flag = false;
-                log.error("-----------------------下载文件[" + fileName + "]失败！错误原因{}-----------------------", e.getMessage());
-                e.printStackTrace();
-            } finally {
-                IOUtils.closeQuietly(inputStream);
-                IOUtils.closeQuietly(baos);
+            }
+            log.info("------------------reply-------------{}", ftpClient.getReplyCode());
+        } catch (Exception e) {
+            flag = false;
+            reusable = false;
+            log.error("-----------------------下载文件[" + fileName + "]失败！错误原因{}-----------------------", e.getMessage());
+            e.printStackTrace();
+        } finally {
+            FtpIoUtils.closeQuietly(inputStream);
+            finishContent(cacheWriter, flag && completed);
+            recordOperation("downloadToResponse", start, flag, ftpClient);
+            if (reusable) {
                 releaseFtpClient(ftpClient);
-                if (flag) {
-                    log.info("-----------------------下载文件[" + fileName + "]成功！-----------------------");
-                } else {
-                    log.error("-----------------------下载文件[" + fileName + "]失败！错误原因{}-----------------------", "response is null");
+            } else {
+                invalidateFtpClient(ftpClient);
+            }
+        }
+        if (flag) {
+            log.info("-----------------------下载文件[" + fileName + "]成功！-----------------------");
+        }
+        return flag;
+    }
+
+    /**
+     * 从内容缓存下载文件到Response（支持HTTP Range）
+     *
+     * @param cachedStream 缓存内容
+     * @param fileSize     文件大小
+     * @param fileName     文件真实名称
+     * @return true：成功；false：失败
+     */
+    private boolean downLoadCachedToResponse(InputStream cachedStream, long fileSize, String fileName) {
+        long start = System.nanoTime();
+        boolean flag = false;
+        try {
+            long[] range = servletSupport.prepareDownload(fileName, fileSize);
+            if (range == null) {
+                return false;
+            }
+            long skipped = 0;
+            while (skipped < range[0]) {
+                long n = cachedStream.skip(range[0] - skipped);
+                if (n <= 0) {
+                    throw new IOException("cached content is shorter than " + range[0]);
                 }
+                skipped += n;
             }
-        } else {
-            log.error("-----------------------下载文件[" + fileName + "]失败！错误原因{}-----------------------", "response is null");
-            return false;
+            OutputStream os = servletSupport.getOutputStream();
+            long transferred = copyPooled(cachedStream, os, range[1]);
+            os.flush();
+            metricsRecorder.recordBytes("downloadToResponse", "cache", transferred);
+            flag = true;
+            log.info("-----------------------从缓存下载文件[" + fileName + "]成功！-----------------------");
+        } catch (IOException e) {
+            log.error("-----------------------下载文件[" + fileName + "]失败！错误原因{}-----------------------", e.getMessage());
+        } finally {
+            FtpIoUtils.closeQuietly(cachedStream);
+            recordOperation("downloadToResponse", start, flag, null);
         }
         return flag;
     }
@@ -253,32 +830,27 @@ public class MossFtpService {
      * @return true：成功；false：失败
      */
     public boolean downLoadFileByZipToResponse(List<FtpFileDto> fileDtoS, String zipName) {
+        if (servletSupport == null || !servletSupport.isAvailable()) {
+            log.error("-----------------------下载Zip文件[" + zipName + "]失败！错误原因{}-----------------------", "response is null");
+            return false;
+        }
+        long start = System.nanoTime();
         boolean flag = true;
-        FTPClient ftpClient = getFtpClient();
-        try (OutputStream outputStream = response.getOutputStream(); ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
-            response.setContentType("application/OCTET-STREAM;charset=utf-8");
-            response.setHeader("Content-Disposition", "attachment;filename=\"" + URLEncoder.encode(zipName, "UTF-8").replace("+", "%20") + "\"");
-            for (FtpFileDto ftpFileDto : fileDtoS) {
-                int len = 0;
-                try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); InputStream in = ftpClient.retrieveFileStream(ftpFileDto.getPath())) {
-                    byte[] buffer = new byte[4096];
-                    while ((len = in.read(buffer)) != -1) {
-                        baos.write(buffer, 0, len);
-                    }
-                    zipOutputStream.putNextEntry(new ZipEntry(ftpFileDto.getFileName()));
-                    zipOutputStream.write(baos.toByteArray(), 0, baos.toByteArray().length);
-                    log.info("------------------reply-------------{}", ftpClient.getReply());
-                } catch (Exception ex) {
-                    log.error("-----------------------下载文件[" + ftpFileDto.getFileName() + "]失败！错误原因{}-----------------------", ex.getMessage());
-                }
-            }
+        FTPClient ftpClient = getFtpClient(null, FtpOperationClass.BULK);
+        try (OutputStream outputStream = servletSupport.getOutputStream(); ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+            servletSupport.prepareZip(zipName);
+            FtpOptionProperties.Zip zip = ftpOptionProperties.getZip();
+            long bytes = new FtpZipPipeline(this, transferExecutor, zip.getPrefetchCount(), zipPrefetchBudget(), bufferPool)
+                    .write(fileDtoS, zipOutputStream, ftpClient);
+            metricsRecorder.recordBytes("downloadZip", "download", bytes);
             zipOutputStream.flush();
-            response.flushBuffer();
+            servletSupport.flushBuffer();
         } catch (Exception e) {
             flag = false;
             log.error("-----------------------下载Zip文件[" + zipName + "]失败！错误原因{}-----------------------", e.getMessage());
             e.printStackTrace();
         } finally {
+            recordOperation("downloadZip", start, flag, ftpClient);
             releaseFtpClient(ftpClient);
         }
         if (flag) {
@@ -295,19 +867,20 @@ public class MossFtpService {
      * @return true：成功；false：失败
      */
     public boolean deleteFile(String path, String fileName) {
+        long start = System.nanoTime();
         boolean flag = false;
         FTPClient ftpClient = null;
         try {
-            ftpClient = getFtpClient();
+            ftpClient = getFtpClient(routingKeyOfFile(path));
             log.info("-----------------------开始删除[" + fileName + "]文件！------------------------");
             //  从path中截取中间的文件夹路径
-            final String absolutePath = path.trim().substring(0, path.trim().lastIndexOf('/') + 1);
+            final String directory = absolutePath(path.trim().substring(0, path.trim().lastIndexOf('/') + 1));
             //  获取文件的uuid名称
             final String fileUniqueId = path.trim().substring(path.trim().lastIndexOf('/') + 1);
-            //  切换到文件在FTP服务器上的目录
-            ftpClient.changeWorkingDirectory(absolutePath);
-            //  通过文件名删除文件
-            boolean delFlag = ftpClient.deleteFile(encodingFileName(fileUniqueId));
+            //  使用绝对路径删除文件，不切换目录
+            boolean delFlag = ftpClient.deleteFile(joinPath(directory, encodingFileName(fileUniqueId)));
+            invalidateListing(directory);
+            invalidateContent(joinPath(directory, fileUniqueId));
             if (!delFlag) {
                 log.info("【文件删除】删除文件失败，文件名={}", fileName);
             }
@@ -317,44 +890,610 @@ public class MossFtpService {
             log.error("-----------------------删除文件[" + fileName + "]失败！------------------------");
             e.printStackTrace();
         } finally {
+            recordOperation("delete", start, flag, ftpClient);
             releaseFtpClient(ftpClient);
         }
         return flag;
     }
 
     /**
-     * 按行读取FTP文件
+     * 删除文件（异步）
      *
-     * @param remoteFilePath 文件路径（path+fileName）
-     * @return 文件名列表
+     * @param path     文件路径
+     * @param fileName 文件名
+     * @return true：成功；false：失败
+     * @see #deleteFile(String, String)
      */
-    public List<String> readFileByLine(String remoteFilePath) throws IOException {
-        FTPClient ftpClient = getFtpClient();
-        try (InputStream in = ftpClient.retrieveFileStream(encodingPath(remoteFilePath));
-             BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
-            return br.lines().map(StrUtil::trimToEmpty)
-                    .filter(StrUtil::isNotEmpty).collect(Collectors.toList());
-        } finally {
-            ftpClient.completePendingCommand();
+    public CompletableFuture<Boolean> deleteFileAsync(String path, String fileName) {
+        return runAsync(() -> deleteFile(path, fileName));
+    }
+
+    /**
+     * 批量删除文件
+     * <p>
+     * 文件按所在目录分组，使用最多moss.ftp.batch.concurrency个连接并行删除；每个连接在整个批次中持续使用。
+     * moss.ftp.batch.pipeline-depth大于1时连续发送DELE命令，不必每个文件等待一次往返（需服务器支持）。
+     * 连接在收到应答前中断时，已发送命令的文件结果为未知（unknown为true），未发送的文件使用新的连接继续删除。
+     *
+     * @param paths 文件路径（path+fileName）
+     * @return 按传入顺序排列的每个文件的删除结果
+     */
+    public List<FtpOperationResultDto> deleteFiles(Collection<String> paths) {
+        return deleteFilesAsync(paths).join();
+    }
+
+    /**
+     * 批量删除文件（异步）
+     *
+     * @param paths 文件路径（path+fileName）
+     * @return 按传入顺序排列的每个文件的删除结果
+     * @see #deleteFiles(Collection)
+     */
+    public CompletableFuture<List<FtpOperationResultDto>> deleteFilesAsync(Collection<String> paths) {
+        checkFtpClientPoolAvailable();
+        log.info("-----------------------开始批量删除{}个文件！------------------------", paths.size());
+        return new FtpBatchExecutor<String>(this, transferExecutor, ftpOptionProperties.getBatch().getConcurrency())
+                .execute(paths, MossFtpService::routingKeyOfFile, new FtpBatchExecutor.BatchTask<String>() {
+                    @Override
+                    public void prepare(FTPClient ftpClient, String directory) {
+                        //  使用绝对路径删除文件，不切换目录
+                    }
+
+                    @Override
+                    public FtpOperationResultDto execute(FTPClient ftpClient, String directory, String path) throws IOException {
+                        FtpOperationResultDto[] result = new FtpOperationResultDto[1];
+                        executeAll(ftpClient, directory, Collections.singletonList(path), r -> result[0] = r);
+                        return result[0];
+                    }
+
+                    @Override
+                    public void executeAll(FTPClient ftpClient, String directory, List<String> items,
+                                           Consumer<FtpOperationResultDto> results) throws IOException {
+                        long start = System.nanoTime();
+                        List<String[]> commands = new ArrayList<>(items.size());
+                        for (String path : items) {
+                            commands.add(new String[]{"DELE", encodingFileName(absolutePath(path))});
+                        }
+                        int[] next = {0};
+                        boolean[] success = {true};
+                        try {
+                            sendPipelined(ftpClient, commands, (replyCode, reply) -> {
+                                String path = items.get(next[0]++);
+                                boolean flag = FTPReply.isPositiveCompletion(replyCode);
+                                success[0] &= flag;
+                                invalidateContent(path);
+                                results.accept(new FtpOperationResultDto(directory, fileNameOf(path), flag, flag ? null : reply.trim()));
+                            });
+                        } catch (FtpPipelineException e) {
+                            success[0] = false;
+                            while (next[0] < e.getSent()) {
+                                String path = items.get(next[0]++);
+                                invalidateContent(path);
+                                results.accept(unknownResult(directory, path, e));
+                            }
+                            throw e;
+                        } finally {
+                            invalidateListing(directory);
+                            recordOperation("deleteBatch", start, success[0] && next[0] == items.size(), ftpClient);
+                        }
+                    }
+
+                    @Override
+                    public FtpOperationResultDto failed(String path, String message) {
+                        return new FtpOperationResultDto(routingKeyOfFile(path), fileNameOf(path), false, message);
+                    }
+                });
+    }
+
+    /**
+     * 批量移动（重命名）文件
+     * <p>
+     * 使用RNFR/RNTO在服务器上移动，文件内容不经过本地；按源文件所在目录分组并行执行，
+     * 每个连接连续发送命令，与{@link #deleteFiles(Collection)}相同。目标目录不存在时先创建；
+     * 多服务器分片存储时，目标目录与源目录不在同一台服务器上的文件移动失败。
+     *
+     * @param moves 源文件路径和目标文件路径
+     * @return 按传入顺序排列的每个文件的移动结果（path、fileName为源文件）
+     */
+    public List<FtpOperationResultDto> moveFiles(Collection<FtpMoveFileDto> moves) {
+        return moveFilesAsync(moves).join();
+    }
+
+    /**
+     * 批量移动（重命名）文件（异步）
+     *
+     * @param moves 源文件路径和目标文件路径
+     * @return 按传入顺序排列的每个文件的移动结果
+     * @see #moveFiles(Collection)
+     */
+    public CompletableFuture<List<FtpOperationResultDto>> moveFilesAsync(Collection<FtpMoveFileDto> moves) {
+        checkFtpClientPoolAvailable();
+        log.info("-----------------------开始批量移动{}个文件！------------------------", moves.size());
+        return new FtpBatchExecutor<FtpMoveFileDto>(this, transferExecutor, ftpOptionProperties.getBatch().getConcurrency())
+                .execute(moves, move -> routingKeyOfFile(move.getSource()), new FtpBatchExecutor.BatchTask<FtpMoveFileDto>() {
+                    @Override
+                    public void prepare(FTPClient ftpClient, String directory) {
+                        //  使用绝对路径移动文件，不切换目录
+                    }
+
+                    @Override
+                    public FtpOperationResultDto execute(FTPClient ftpClient, String directory, FtpMoveFileDto move) throws IOException {
+                        FtpOperationResultDto[] result = new FtpOperationResultDto[1];
+                        executeAll(ftpClient, directory, Collections.singletonList(move), r -> result[0] = r);
+                        return result[0];
+                    }
+
+                    @Override
+                    public void executeAll(FTPClient ftpClient, String directory, List<FtpMoveFileDto> items,
+                                           Consumer<FtpOperationResultDto> results) throws IOException {
+                        long start = System.nanoTime();
+                        //  先检查并创建目标目录，无法移动的文件不发送命令
+                        String[] rejected = new String[items.size()];
+                        Map<String, String> targetDirectories = new HashMap<>();
+                        List<String[]> commands = new ArrayList<>(items.size() * 2);
+                        for (int i = 0; i < items.size(); i++) {
+                            String targetDirectory = routingKeyOfFile(items.get(i).getTarget());
+                            if (!targetDirectories.containsKey(targetDirectory)) {
+                                targetDirectories.put(targetDirectory, prepareTargetDirectory(targetDirectory, ftpClient));
+                            }
+                            rejected[i] = targetDirectories.get(targetDirectory);
+                            if (rejected[i] == null) {
+                                commands.add(new String[]{"RNFR", encodingFileName(absolutePath(items.get(i).getSource()))});
+                                commands.add(new String[]{"RNTO", encodingFileName(absolutePath(items.get(i).getTarget()))});
+                            }
+                        }
+                        int[] next = {0};
+                        boolean[] success = {true};
+                        String[] renameFrom = new String[1];
+                        Runnable acceptRejected = () -> {
+                            while (next[0] < items.size() && rejected[next[0]] != null) {
+                                success[0] = false;
+                                results.accept(failed(items.get(next[0]), rejected[next[0]++]));
+                            }
+                        };
+                        try {
+                            acceptRejected.run();
+                            sendPipelined(ftpClient, commands, (replyCode, reply) -> {
+                                if (renameFrom[0] == null) {
+                                    //  RNFR的应答，成功时为350
+                                    renameFrom[0] = FTPReply.isPositiveIntermediate(replyCode) ? "" : reply.trim();
+                                    return;
+                                }
+                                FtpMoveFileDto move = items.get(next[0]++);
+                                boolean flag = renameFrom[0].isEmpty() && FTPReply.isPositiveCompletion(replyCode);
+                                String message = flag ? null : (renameFrom[0].isEmpty() ? reply.trim() : renameFrom[0]);
+                                renameFrom[0] = null;
+                                success[0] &= flag;
+                                invalidateContent(move.getSource());
+                                invalidateContent(move.getTarget());
+                                invalidateListing(routingKeyOfFile(move.getTarget()));
+                                results.accept(new FtpOperationResultDto(directory, fileNameOf(move.getSource()), flag, message));
+                                acceptRejected.run();
+                            });
+                        } catch (FtpPipelineException e) {
+                            //  RNTO已发送的文件结果未知；只发送了RNFR的文件没有移动，使用新的连接重试
+                            success[0] = false;
+                            for (int pair = e.getReceived() / 2; pair < e.getSent() / 2; pair++) {
+                                FtpMoveFileDto move = items.get(next[0]++);
+                                invalidateContent(move.getSource());
+                                invalidateContent(move.getTarget());
+                                invalidateListing(routingKeyOfFile(move.getTarget()));
+                                results.accept(unknownResult(directory, move.getSource(), e));
+                                acceptRejected.run();
+                            }
+                            throw e;
+                        } finally {
+                            invalidateListing(directory);
+                            recordOperation("moveBatch", start, success[0] && next[0] == items.size(), ftpClient);
+                        }
+                    }
+
+                    @Override
+                    public FtpOperationResultDto failed(FtpMoveFileDto move, String message) {
+                        return new FtpOperationResultDto(routingKeyOfFile(move.getSource()), fileNameOf(move.getSource()), false, message);
+                    }
+                });
+    }
+
+    /**
+     * 按行读取FTP文件（去除首尾空白，忽略空行）
+     * <p>
+     * 会将整个文件读入内存，大文件请使用{@link #streamFileByLine(String, Charset)}或{@link #readFileByLineInBatches}
+     *
+     * @param remoteFilePath 文件路径（path+fileName）
+     * @return 文件名列表
+     */
+    public List<String> readFileByLine(String remoteFilePath) throws IOException {
+        try (Stream<String> lines = streamFileByLine(remoteFilePath, lineCharset())) {
+            return lines.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * 按行读取FTP文件，逐行回调（去除首尾空白，忽略空行）
+     *
+     * @param remoteFilePath 文件路径（path+fileName）
+     * @param charset        文件编码
+     * @param consumer       每一行的处理
+     */
+    public void readFileByLine(String remoteFilePath, Charset charset, Consumer<String> consumer) throws IOException {
+        try (Stream<String> lines = streamFileByLine(remoteFilePath, charset)) {
+            lines.forEach(consumer);
+        }
+    }
+
+    /**
+     * 按行读取FTP文件（使用moss.ftp.line-charset编码）
+     *
+     * @param remoteFilePath 文件路径（path+fileName）
+     * @return 行的流，使用完毕后必须关闭
+     * @see #streamFileByLine(String, Charset)
+     */
+    public Stream<String> streamFileByLine(String remoteFilePath) throws IOException {
+        return streamFileByLine(remoteFilePath, lineCharset());
+    }
+
+    /**
+     * 按行读取FTP文件（去除首尾空白，忽略空行）
+     * <p>
+     * 返回的流在消费时才从数据连接读取，内存占用与文件大小无关；ftpClient在流关闭前一直被占用，
+     * 因此必须在try-with-resources中使用。未读取完就关闭时提前结束数据连接。
+     *
+     * @param remoteFilePath 文件路径（path+fileName）
+     * @param charset        文件编码
+     * @return 行的流，使用完毕后必须关闭
+     */
+    public Stream<String> streamFileByLine(String remoteFilePath, Charset charset) throws IOException {
+        long start = System.nanoTime();
+        FTPClient ftpClient = getFtpClient(routingKeyOfFile(remoteFilePath));
+        CountingInputStream in;
+        try {
+            compressIfWorthwhile(ftpClient, "readLines", absolutePath(remoteFilePath));
+            InputStream inputStream = ftpClient.retrieveFileStream(encodingPath(absolutePath(remoteFilePath)));
+            if (inputStream == null) {
+                throw new IOException("retrieve file failed, reply: " + ftpClient.getReplyString());
+            }
+            in = new CountingInputStream(inputStream);
+        } catch (IOException | RuntimeException e) {
+            recordOperation("readLines", start, false, ftpClient);
             releaseFtpClient(ftpClient);
+            throw e;
         }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset), Math.max(ftpClient.getBufferSize(), 8192));
+        AtomicBoolean closed = new AtomicBoolean();
+        return reader.lines().map(StrUtil::trimToEmpty).filter(StrUtil::isNotEmpty).onClose(() -> {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            boolean eof = in.isEof();
+            FtpIoUtils.closeQuietly(reader);
+            boolean reusable;
+            boolean flag = eof;
+            if (eof) {
+                try {
+                    flag = ftpClient.completePendingCommand();
+                    reusable = true;
+                } catch (IOException e) {
+                    reusable = false;
+                }
+            } else {
+                //  未读取完时提前关闭了数据连接
+                reusable = finishPartialTransfer(ftpClient);
+                flag = true;
+            }
+            metricsRecorder.recordBytes("readLines", "download", in.getCount());
+            recordOperation("readLines", start, flag, ftpClient);
+            if (reusable) {
+                releaseFtpClient(ftpClient);
+            } else {
+                invalidateFtpClient(ftpClient);
+            }
+        });
+    }
+
+    /**
+     * 按行分批读取FTP文件（去除首尾空白，忽略空行）
+     * <p>
+     * 在并行传输线程池上读取数据连接，每batchSize行交给调用线程处理；读取与处理同时进行，
+     * 两者之间最多缓存两批，处理较慢时暂停读取，内存占用与文件大小无关。
+     * consumer抛出异常时停止读取并结束数据连接，异常原样抛出。
+     *
+     * @param remoteFilePath 文件路径（path+fileName）
+     * @param charset        文件编码
+     * @param batchSize      每批行数
+     * @param consumer       每一批的处理（在调用线程执行）
+     */
+    public void readFileByLineInBatches(String remoteFilePath, Charset charset, int batchSize, Consumer<List<String>> consumer) throws IOException {
+        Assert.isTrue(batchSize > 0, "batchSize must be greater than 0");
+        new FtpLineBatchReader(streamFileByLine(remoteFilePath, charset), batchSize, transferExecutor).read(consumer);
     }
 
+
     /**
      * 获取指定路径下FTP文件
+     * <p>
+     * 开启moss.ftp.listing-cache时优先返回缓存的目录列表
      *
      * @param remotePath 路径
      * @return FTPFile数组
      */
     public FTPFile[] retrieveFtpFiles(String remotePath) throws IOException {
-        FTPClient ftpClient = getFtpClient();
+        String cacheKey = normalizeDirectory(remotePath);
+        FTPFile[] cached = listingCache != null ? listingCache.get(cacheKey) : null;
+        if (cached != null) {
+            return cached.clone();
+        }
+        long start = System.nanoTime();
+        FTPFile[] ftpFiles = null;
+        FTPClient ftpClient = getFtpClient(cacheKey, FtpOperationClass.LISTING);
         try {
-            return ftpClient.listFiles(encodingPath(remotePath + "/"), file -> file != null && file.getSize() > 0);
+            ftpFiles = ftpClient.listFiles(encodingPath(cacheKey + "/"), file -> file != null && file.getSize() > 0);
+            if (listingCache != null) {
+                listingCache.put(cacheKey, ftpFiles.clone());
+            }
+            return ftpFiles;
         } finally {
+            recordOperation("list", start, ftpFiles != null, ftpClient);
             releaseFtpClient(ftpClient);
         }
     }
 
+    /**
+     * 获取指定路径下的FTP文件（异步）
+     *
+     * @param remotePath 路径
+     * @return FTPFile数组
+     * @see #retrieveFtpFiles(String)
+     */
+    public CompletableFuture<FTPFile[]> retrieveFtpFilesAsync(String remotePath) {
+        return runAsync(() -> retrieveFtpFiles(remotePath));
+    }
+
+    /**
+     * 并行遍历目录树
+     * <p>
+     * 子目录分配到moss.ftp.walk.concurrency个工作线程上并行列出，每个目录使用连接池中的一个连接，
+     * 列出后立即归还；条目列出后即输出给consumer，不在内存中保存整个目录树。
+     * 列出某个目录失败时按moss.ftp.walk.error-policy处理。
+     *
+     * @param root     根目录
+     * @param maxDepth 列出的目录层数，为1时只列出根目录
+     * @param filter   条目过滤器，为null时输出所有条目；不满足条件的目录既不输出也不进入
+     * @param consumer 接收条目（所在目录和条目），同一时刻只在一个线程中调用
+     * @return 遍历结果
+     * @throws IOException 错误处理方式为FAIL时，列出目录失败的异常
+     */
+    public FtpWalkResultDto walkTree(String root, int maxDepth, FTPFileFilter filter,
+                                     BiConsumer<String, FTPFile> consumer) throws IOException {
+        return walkTree(root, maxDepth, filter, ftpOptionProperties.getWalk().getErrorPolicy(), consumer);
+    }
+
+    /**
+     * 并行遍历目录树
+     *
+     * @param root        根目录
+     * @param maxDepth    列出的目录层数，为1时只列出根目录
+     * @param filter      条目过滤器，为null时输出所有条目；不满足条件的目录既不输出也不进入
+     * @param errorPolicy 列出目录失败时的处理方式
+     * @param consumer    接收条目（所在目录和条目），同一时刻只在一个线程中调用
+     * @return 遍历结果
+     * @throws IOException 错误处理方式为FAIL时，列出目录失败的异常
+     * @see #walkTree(String, int, FTPFileFilter, BiConsumer)
+     */
+    public FtpWalkResultDto walkTree(String root, int maxDepth, FTPFileFilter filter, FtpWalkErrorPolicy errorPolicy,
+                                     BiConsumer<String, FTPFile> consumer) throws IOException {
+        checkFtpClientPoolAvailable();
+        long start = System.nanoTime();
+        boolean flag = false;
+        ForkJoinPool pool = walkPool != null ? walkPool : new ForkJoinPool(Math.max(ftpOptionProperties.getWalk().getConcurrency(), 1));
+        log.info("-----------------------开始遍历目录[" + root + "]！------------------------");
+        try {
+            FtpWalkResultDto result = new FtpTreeWalker(this, maxDepth, filter, errorPolicy, consumer).walk(pool, root);
+            flag = result.getFailedDirectories().isEmpty();
+            log.info("-----------------------遍历目录[{}]完成，共{}个目录、{}个条目，{}个目录失败！-----------------------",
+                    root, result.getDirectoryCount(), result.getEntryCount(), result.getFailedDirectories().size());
+            return result;
+        } finally {
+            if (pool != walkPool) {
+                pool.shutdown();
+            }
+            recordOperation("walkTree", start, flag, null);
+        }
+    }
+
+    /**
+     * 并行遍历目录树（异步）
+     *
+     * @param root     根目录
+     * @param maxDepth 列出的目录层数，为1时只列出根目录
+     * @param filter   条目过滤器，为null时输出所有条目
+     * @param consumer 接收条目（所在目录和条目），同一时刻只在一个线程中调用
+     * @return 遍历结果
+     * @see #walkTree(String, int, FTPFileFilter, BiConsumer)
+     */
+    public CompletableFuture<FtpWalkResultDto> walkTreeAsync(String root, int maxDepth, FTPFileFilter filter,
+                                                             BiConsumer<String, FTPFile> consumer) {
+        return runAsync(() -> walkTree(root, maxDepth, filter, consumer));
+    }
+
+    /**
+     * 计算本地目录同步到ftp目录需要上传和删除的文件（不传输文件）
+     * <p>
+     * 比对方式与{@link #syncDirectory(String, String, boolean)}相同，可以在同步前查看计划的变更。
+     *
+     * @param localDirectory  本地目录
+     * @param remoteDirectory ftp目录
+     * @return 同步计划
+     * @throws IOException 本地目录不存在、读取本地文件失败，或列出ftp子目录失败
+     */
+    public FtpSyncPlanDto planSync(String localDirectory, String remoteDirectory) throws IOException {
+        checkFtpClientPoolAvailable();
+        return new FtpSyncEngine(this, ftpOptionProperties.getSync(), localDirectory, remoteDirectory).plan();
+    }
+
+    /**
+     * 增量同步本地目录到ftp目录
+     * <p>
+     * 只上传ftp上不存在的文件，以及大小不同或ftp文件修改时间（MDTM）早于本地文件的文件，
+     * 使用最多moss.ftp.batch.concurrency个连接并行上传，上传后把ftp文件的修改时间设置为本地文件的修改时间。
+     * 开启moss.ftp.sync.manifest-enabled时，同步结果记录在本地清单中，下次同步直接与清单比对，不需要列出ftp目录。
+     *
+     * @param localDirectory  本地目录
+     * @param remoteDirectory ftp目录
+     * @param deleteOrphans   是否删除本地已不存在的ftp文件（不删除空目录）
+     * @return 同步结果
+     * @throws IOException 本地目录不存在、读取本地文件失败，或列出ftp子目录失败
+     */
+    public FtpSyncResultDto syncDirectory(String localDirectory, String remoteDirectory, boolean deleteOrphans) throws IOException {
+        checkFtpClientPoolAvailable();
+        long start = System.nanoTime();
+        boolean flag = false;
+        log.info("-----------------------开始同步目录[" + localDirectory + "]到[" + remoteDirectory + "]！------------------------");
+        try {
+            FtpSyncEngine engine = new FtpSyncEngine(this, ftpOptionProperties.getSync(), localDirectory, remoteDirectory);
+            FtpSyncPlanDto plan = engine.plan();
+            FtpSyncResultDto result = engine.execute(plan, deleteOrphans);
+            flag = result.getFailedCount() == 0;
+            log.info("-----------------------同步目录[{}]完成，新增{}个、更新{}个、未变化{}个、删除{}个文件，{}个失败！-----------------------",
+                    remoteDirectory, plan.getAdded().size(), plan.getChanged().size(), plan.getUnchangedCount(),
+                    result.getDeletes().size(), result.getFailedCount());
+            return result;
+        } finally {
+            recordOperation("sync", start, flag, null);
+        }
+    }
+
+    /**
+     * 增量同步本地目录到ftp目录（异步）
+     *
+     * @param localDirectory  本地目录
+     * @param remoteDirectory ftp目录
+     * @param deleteOrphans   是否删除本地已不存在的ftp文件
+     * @return 同步结果
+     * @see #syncDirectory(String, String, boolean)
+     */
+    public CompletableFuture<FtpSyncResultDto> syncDirectoryAsync(String localDirectory, String remoteDirectory, boolean deleteOrphans) {
+        return runAsync(() -> syncDirectory(localDirectory, remoteDirectory, deleteOrphans));
+    }
+
+    /**
+     * 批量查询文件的修改时间（MDTM）
+     * <p>
+     * 文件按所在目录分组并行查询，每个连接连续发送MDTM命令，与{@link #deleteFiles(Collection)}相同。
+     *
+     * @param paths 文件路径（path+fileName）
+     * @return 文件路径 -> 修改时间（毫秒，精确到秒）；文件不存在或服务器不支持MDTM时不包含该文件
+     */
+    Map<String, Long> modificationTimes(Collection<String> paths) {
+        Map<String, Long> modificationTimes = new ConcurrentHashMap<>();
+        new FtpBatchExecutor<String>(this, transferExecutor, ftpOptionProperties.getBatch().getConcurrency())
+                .execute(paths, MossFtpService::routingKeyOfFile, new FtpBatchExecutor.BatchTask<String>() {
+                    @Override
+                    public void prepare(FTPClient ftpClient, String directory) {
+                        //  使用绝对路径查询，不切换目录
+                    }
+
+                    @Override
+                    public FtpOperationResultDto execute(FTPClient ftpClient, String directory, String path) throws IOException {
+                        FtpOperationResultDto[] result = new FtpOperationResultDto[1];
+                        executeAll(ftpClient, directory, Collections.singletonList(path), r -> result[0] = r);
+                        return result[0];
+                    }
+
+                    @Override
+                    public void executeAll(FTPClient ftpClient, String directory, List<String> items,
+                                           Consumer<FtpOperationResultDto> results) throws IOException {
+                        long start = System.nanoTime();
+                        List<String[]> commands = new ArrayList<>(items.size());
+                        for (String path : items) {
+                            commands.add(new String[]{"MDTM", encodingFileName(absolutePath(path))});
+                        }
+                        int[] next = {0};
+                        try {
+                            sendPipelined(ftpClient, commands, (replyCode, reply) -> {
+                                String path = items.get(next[0]++);
+                                long modificationTime = FTPReply.isPositiveCompletion(replyCode) ? parseModificationTime(reply) : -1;
+                                if (modificationTime >= 0) {
+                                    modificationTimes.put(path, modificationTime);
+                                }
+                                results.accept(new FtpOperationResultDto(directory, fileNameOf(path), modificationTime >= 0,
+                                        modificationTime >= 0 ? null : reply.trim()));
+                            });
+                        } finally {
+                            recordOperation("mdtmBatch", start, next[0] == items.size(), ftpClient);
+                        }
+                    }
+
+                    @Override
+                    public FtpOperationResultDto failed(String path, String message) {
+                        return new FtpOperationResultDto(routingKeyOfFile(path), fileNameOf(path), false, message);
+                    }
+                }).join();
+        return modificationTimes;
+    }
+
+    /**
+     * 设置ftp文件的修改时间（MFMT），服务器不支持时忽略
+     *
+     * @param ftpClient        当前获取到的ftpClient
+     * @param remoteFilePath   文件路径（path+fileName）
+     * @param modificationTime 修改时间（毫秒）
+     */
+    private void setModificationTime(FTPClient ftpClient, String remoteFilePath, long modificationTime) throws IOException {
+        String timeval = MODIFICATION_TIME_FORMAT.format(Instant.ofEpochMilli(modificationTime));
+        if (!ftpClient.setModificationTime(encodingFileName(absolutePath(remoteFilePath)), timeval)) {
+            log.debug("设置文件[{}]的修改时间失败：{}", remoteFilePath, ftpClient.getReplyString());
+        }
+    }
+
+    /**
+     * 解析MDTM应答
+     *
+     * @param reply 应答，格式：213 YYYYMMDDhhmmss[.sss]（UTC）
+     * @return 修改时间（毫秒，精确到秒），无法解析时返回-1
+     */
+    static long parseModificationTime(String reply) {
+        String value = reply.trim();
+        value = value.substring(value.lastIndexOf(' ') + 1);
+        try {
+            return LocalDateTime.parse(value.substring(0, Math.min(value.length(), 14)), MODIFICATION_TIME_FORMAT)
+                    .toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            log.warn("无法解析MDTM应答：{}", reply.trim());
+            return -1;
+        }
+    }
+
+    /**
+     * 列出目录中的所有条目（包括大小为0的文件和子目录），不使用目录列表缓存
+     *
+     * @param directory 规范化后的目录
+     * @return 目录中的条目
+     * @throws IOException 目录不存在、无权限或连接中断
+     */
+    FTPFile[] listDirectory(String directory) throws IOException {
+        long start = System.nanoTime();
+        boolean flag = false;
+        boolean reusable = false;
+        FTPClient ftpClient = getFtpClient(directory, FtpOperationClass.LISTING);
+        try {
+            FTPFile[] ftpFiles = ftpClient.listFiles(encodingPath(directory + "/"));
+            reusable = true;
+            if (!FTPReply.isPositiveCompletion(ftpClient.getReplyCode())) {
+                throw new IOException("列出目录[" + directory + "]失败：" + ftpClient.getReplyString().trim());
+            }
+            flag = true;
+            return ftpFiles;
+        } finally {
+            recordOperation("walkList", start, flag, ftpClient);
+            if (reusable) {
+                releaseFtpClient(ftpClient);
+            } else {
+                invalidateFtpClient(ftpClient);
+            }
+        }
+    }
+
     /**
      * 获取指定路径下FTP文件名称
      *
@@ -366,8 +1505,469 @@ public class MossFtpService {
         if (ArrayUtil.isEmpty(ftpFiles)) {
             return new ArrayList<>();
         }
-        return Arrays.stream(ftpFiles).filter(Objects::isNull)
-                .map(ftpFile -> ftpFile != null ? ftpFile.getName() : null).collect(Collectors.toList());
+        return Arrays.stream(ftpFiles).filter(Objects::nonNull)
+                .map(FTPFile::getName).collect(Collectors.toList());
+    }
+
+    /**
+     * 获取指定路径下FTP文件名称（异步）
+     *
+     * @param remotePath 路径
+     * @return ftp文件名称列表
+     * @see #retrieveFileNames(String)
+     */
+    public CompletableFuture<List<String>> retrieveFileNamesAsync(String remotePath) {
+        return runAsync(() -> retrieveFileNames(remotePath));
+    }
+
+    /**
+     * 通过SIZE命令获取FTP服务器文件大小
+     *
+     * @param remotePath 文件路径
+     * @param ftpClient  当前获取到的ftpClient
+     * @return 文件大小，服务器不支持或文件不存在时返回-1
+     */
+    private long remoteFileSize(String remotePath, FTPClient ftpClient) throws IOException {
+        if (!FTPReply.isPositiveCompletion(ftpClient.sendCommand("SIZE", remotePath))) {
+            return -1;
+        }
+        //  应答格式：213 <size>
+        String reply = ftpClient.getReplyString().trim();
+        try {
+            return Long.parseLong(reply.substring(reply.lastIndexOf(' ') + 1));
+        } catch (NumberFormatException e) {
+            log.warn("无法解析SIZE应答：{}", reply);
+            return -1;
+        }
+    }
+
+    /**
+     * 查询远程文件：服务器支持MLST时使用MLST（可以区分文件和目录），否则使用SIZE
+     *
+     * @param remotePath 文件的绝对路径
+     * @param ftpClient  当前获取到的ftpClient
+     * @return 文件大小，文件不存在或是目录时返回-1
+     */
+    private long statRemoteFile(String remotePath, FTPClient ftpClient) throws IOException {
+        if (!ftpClient.hasFeature("MLST")) {
+            return remoteFileSize(encodingFileName(remotePath), ftpClient);
+        }
+        if (!FTPReply.isPositiveCompletion(ftpClient.sendCommand("MLST", encodingFileName(remotePath)))) {
+            return -1;
+        }
+        //  应答的第二行为"<空格>facts; pathname"，部分服务器省略了开头的空格，不使用mlistFile()的严格解析
+        String[] replies = ftpClient.getReplyStrings();
+        if (replies.length < 2) {
+            return -1;
+        }
+        String entry = replies[1].startsWith(" ") ? replies[1].substring(1) : replies[1];
+        FTPFile ftpFile = MLSxEntryParser.parseEntry(entry);
+        return ftpFile != null && ftpFile.isFile() ? ftpFile.getSize() : -1;
+    }
+
+    /**
+     * 在目录的文件名索引中查找大小写不同的同名文件，找不到时重新生成一次索引（索引可能已过期）
+     *
+     * @param pathName  FTP服务器文件目录
+     * @param fileName  文件名称
+     * @param ftpClient 当前获取到的ftpClient
+     * @return 服务器上的文件名，不存在时返回null
+     */
+    private String resolveNameIgnoreCase(String pathName, String fileName, FTPClient ftpClient) throws IOException {
+        String directory = normalizeDirectory(pathName);
+        String key = fileName.toLowerCase(Locale.ROOT);
+        Map<String, String> index = nameIndexCache != null ? nameIndexCache.get(directory) : null;
+        if (index != null && index.containsKey(key)) {
+            return index.get(key);
+        }
+        String[] names = ftpClient.listNames(encodingFileName(directory));
+        if (names == null) {
+            return null;
+        }
+        index = new HashMap<>(names.length * 4 / 3 + 1);
+        for (String name : names) {
+            //  部分服务器的NLST返回完整路径
+            String simpleName = name.substring(name.lastIndexOf('/') + 1);
+            index.putIfAbsent(simpleName.toLowerCase(Locale.ROOT), simpleName);
+        }
+        if (nameIndexCache != null) {
+            nameIndexCache.put(directory, index);
+        }
+        return index.get(key);
+    }
+
+    /**
+     * 下载文件到本地：通过FileChannel写入，按文件大小从缓冲区池获取缓冲区
+     *
+     * @param remotePath 文件的绝对路径
+     * @param size       文件大小
+     * @param localFile  本地文件
+     * @param ftpClient  当前获取到的ftpClient
+     * @param checksum   下载的同时计算摘要
+     * @return 下载的字节数
+     */
+    private long retrieveToFile(String remotePath, long size, Path localFile, FTPClient ftpClient,
+                                FtpTransferChecksum checksum) throws IOException {
+        try (FileChannel channel = FileChannel.open(localFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            InputStream inputStream = checksum.wrap(ftpClient.retrieveFileStream(encodingFileName(remotePath)));
+            if (inputStream == null) {
+                throw new IOException("retrieve file failed, reply: " + ftpClient.getReplyString());
+            }
+            long bytes;
+            try {
+                bytes = copyPooled(inputStream, Channels.newOutputStream(channel), size, -1);
+            } finally {
+                inputStream.close();
+            }
+            if (!ftpClient.completePendingCommand()) {
+                throw new IOException("retrieve file failed, reply: " + ftpClient.getReplyString());
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * 断点续传上传的一次尝试：从临时文件已确认的位置继续上传，完成后校验大小并重命名
+     *
+     * @return true：成功；false：服务器拒绝（不再重试）
+     * @throws IOException 连接中断或服务器暂时不可用，可以重试
+     */
+    private boolean uploadResumableAttempt(String pathName, String fileName, String tempName, File localFile,
+                                           FtpUploadCheckpoint checkpoint) throws IOException {
+        long start = System.nanoTime();
+        boolean flag = false;
+        boolean reusable = false;
+        FTPClient ftpClient = null;
+        try {
+            ftpClient = getFtpClient(normalizeDirectory(pathName), FtpOperationClass.BULK);
+            ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
+            createDirectory(pathName, ftpClient);
+            long length = localFile.length();
+            long offset = 0;
+            if (checkpoint.matches(localFile)) {
+                //  已上传的字节数以服务器上临时文件的实际大小为准
+                long remoteSize = remoteFileSize(encodingFileName(tempName), ftpClient);
+                offset = remoteSize >= 0 && remoteSize <= length ? remoteSize : 0;
+                log.info("-----------------------从检查点恢复[" + fileName + "]：检查点{}字节，服务器确认{}字节-----------------------",
+                        checkpoint.getOffset(), offset);
+            }
+            checkpoint.save(localFile, offset);
+            if (offset < length || length == 0) {
+                long sent = storeFrom(localFile, offset, encodingFileName(tempName), ftpClient);
+                if (sent < 0) {
+                    onStoreFailed(pathName, ftpClient);
+                    reusable = true;
+                    return retryOrGiveUp(ftpClient, "上传临时文件失败：");
+                }
+                metricsRecorder.recordBytes("uploadResumable", "upload", sent);
+            }
+            long remoteSize = remoteFileSize(encodingFileName(tempName), ftpClient);
+            if (remoteSize >= 0 && remoteSize != length) {
+                checkpoint.save(localFile, Math.min(remoteSize, length));
+                reusable = true;
+                throw new IOException("临时文件大小" + remoteSize + "与本地文件大小" + length + "不一致");
+            }
+            if (!ftpClient.rename(encodingFileName(tempName), encodingFileName(fileName))) {
+                //  部分服务器不允许重命名为已存在的文件
+                ftpClient.deleteFile(encodingFileName(fileName));
+                if (!ftpClient.rename(encodingFileName(tempName), encodingFileName(fileName))) {
+                    reusable = true;
+                    return retryOrGiveUp(ftpClient, "重命名临时文件失败：");
+                }
+            }
+            invalidateListing(pathName);
+            invalidateContent(joinPath(pathName, fileName));
+            flag = true;
+            reusable = true;
+            return true;
+        } finally {
+            recordOperation("uploadResumable", start, flag, ftpClient);
+            if (reusable) {
+                releaseFtpClient(ftpClient);
+            } else {
+                //  连接中断时无法确定控制连接的状态
+                invalidateFtpClient(ftpClient);
+            }
+        }
+    }
+
+    /**
+     * 从本地文件的指定位置开始上传：offset大于0时使用REST+STOR，服务器不支持REST时使用APPE
+     *
+     * @param localFile  本地文件
+     * @param offset     开始位置
+     * @param remoteName 远程文件名（已编码）
+     * @param ftpClient  当前获取到的ftpClient
+     * @return 上传的字节数，服务器拒绝时返回-1
+     */
+    private long storeFrom(File localFile, long offset, String remoteName, FTPClient ftpClient) throws IOException {
+        try (FileChannel channel = FileChannel.open(localFile.toPath(), StandardOpenOption.READ)) {
+            channel.position(offset);
+            CountingInputStream inputStream = new CountingInputStream(Channels.newInputStream(channel));
+            long expectedBytes = localFile.length() - offset;
+            if (offset == 0) {
+                return storeFile(ftpClient, remoteName, inputStream, expectedBytes) ? inputStream.getCount() : -1;
+            }
+            ftpClient.setRestartOffset(offset);
+            if (storeFile(ftpClient, remoteName, inputStream, expectedBytes)) {
+                return inputStream.getCount();
+            }
+            ftpClient.setRestartOffset(0);
+            int replyCode = ftpClient.getReplyCode();
+            boolean restRejected = inputStream.getCount() == 0 && (replyCode == FTPReply.UNRECOGNIZED_COMMAND
+                    || replyCode == FTPReply.COMMAND_NOT_IMPLEMENTED
+                    || replyCode == FTPReply.COMMAND_NOT_IMPLEMENTED_FOR_PARAMETER);
+            if (!restRejected) {
+                return -1;
+            }
+            log.info("-----------------------服务器不支持REST，使用APPE续传[{}]-----------------------", remoteName);
+            return appendFile(ftpClient, remoteName, inputStream, expectedBytes) ? inputStream.getCount() : -1;
+        }
+    }
+
+    /**
+     * 服务器暂时不可用（4xx）时抛出异常以便重试，否则放弃
+     *
+     * @return false
+     * @throws IOException 应答码为4xx
+     */
+    private boolean retryOrGiveUp(FTPClient ftpClient, String message) throws IOException {
+        if (FTPReply.isNegativeTransient(ftpClient.getReplyCode())) {
+            throw new IOException(message + ftpClient.getReplyString());
+        }
+        log.error("-----------------------" + message + "{}-----------------------", ftpClient.getReplyString());
+        return false;
+    }
+
+    /**
+     * 断点续传检查点目录
+     */
+    private static Path checkpointDirectory(FtpOptionProperties.Resumable resumable) {
+        return StrUtil.isEmpty(resumable.getCheckpointDirectory())
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "moss-ftp-resume")
+                : Paths.get(resumable.getCheckpointDirectory());
+    }
+
+    /**
+     * 结束提前关闭了数据连接的传输，并确认控制连接的应答已同步
+     * <p>
+     * 提前关闭数据连接后，服务器可能回复426或226，部分服务器还会多回复一次；
+     * 读取传输应答后发送NOOP，只有收到的恰好是NOOP的200应答时才认为该连接可以继续使用。
+     *
+     * @param ftpClient 当前获取到的ftpClient
+     * @return ftpClient是否可以继续使用
+     */
+    boolean finishPartialTransfer(FTPClient ftpClient) {
+        try {
+            ftpClient.completePendingCommand();
+            return ftpClient.sendCommand("NOOP") == FTPReply.COMMAND_OK;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 拼接FTP路径
+     *
+     * @param pathName 目录
+     * @param fileName 文件名
+     * @return 文件路径
+     */
+    static String joinPath(String pathName, String fileName) {
+        if (StrUtil.isEmpty(pathName)) {
+            return fileName;
+        }
+        return StrUtil.removeSuffix(pathName, "/") + "/" + fileName;
+    }
+
+    /**
+     * 解析HTTP Range请求头（仅支持单个区间，多区间请求按完整文件返回）
+     *
+     * @param rangeHeader Range请求头
+     * @param fileSize    文件大小
+     * @return [起始位置, 结束位置]；无Range或忽略时返回null；无法满足时返回UNSATISFIABLE_RANGE
+     */
+    static long[] resolveRange(String rangeHeader, long fileSize) {
+        if (StrUtil.isBlank(rangeHeader) || !rangeHeader.startsWith("bytes=") || rangeHeader.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = rangeHeader.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                //  bytes=-N 表示最后N个字节
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return UNSATISFIABLE_RANGE;
+                }
+                start = Math.max(0, fileSize - suffix);
+                end = fileSize - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? fileSize - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), fileSize - 1);
+            }
+            if (start >= fileSize || start > end) {
+                return UNSATISFIABLE_RANGE;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 按顺序发送一组命令并接收应答；moss.ftp.batch.pipeline-depth大于1时连续发送（需服务器支持），
+     * 否则逐个发送并等待应答
+     *
+     * @param ftpClient 当前获取到的ftpClient
+     * @param commands  命令，每项为命令名和参数
+     * @param replies   按命令顺序接收应答码和应答内容
+     * @throws FtpPipelineException 连接中断，记录已发送和已收到应答的命令数
+     */
+    private void sendPipelined(FTPClient ftpClient, List<String[]> commands, BiConsumer<Integer, String> replies) throws IOException {
+        int depth = ftpOptionProperties.getBatch().getPipelineDepth();
+        if (ftpClient instanceof MossFtpClient && depth > 1) {
+            ((MossFtpClient) ftpClient).pipeline(commands, depth, replies);
+            return;
+        }
+        for (int i = 0; i < commands.size(); i++) {
+            int replyCode;
+            try {
+                replyCode = ftpClient.sendCommand(commands.get(i)[0], commands.get(i)[1]);
+            } catch (IOException e) {
+                throw new FtpPipelineException(e, i + 1, i);
+            }
+            replies.accept(replyCode, ftpClient.getReplyString());
+        }
+    }
+
+    /**
+     * 连接中断时已发送命令、未收到应答的条目的结果
+     *
+     * @param directory 分组目录
+     * @param path      文件路径
+     * @param e         连接中断的异常
+     * @return 结果未知的执行结果
+     */
+    private static FtpOperationResultDto unknownResult(String directory, String path, FtpPipelineException e) {
+        return new FtpOperationResultDto(directory, fileNameOf(path), false, "连接中断，执行结果未知：" + e.getMessage(), null, true);
+    }
+
+    /**
+     * 批量移动前创建目标目录
+     *
+     * @param directory 目标目录
+     * @param ftpClient 当前获取到的ftpClient
+     * @return 无法移动到该目录的原因，可以移动时返回null
+     */
+    private String prepareTargetDirectory(String directory, FTPClient ftpClient) throws IOException {
+        if (!isRoutedTo(ftpClient, directory)) {
+            return "目标目录[" + directory + "]与源文件不在同一台服务器上";
+        }
+        try {
+            createDirectory(directory, ftpClient);
+            return null;
+        } catch (IOException e) {
+            if (!ftpClient.isConnected()) {
+                throw e;
+            }
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * 使用固定大小的缓冲区复制流
+     *
+     * @param in     输入流
+     * @param out    输出流
+     * @param buffer 缓冲区
+     * @param limit  最多复制的字节数，小于0时复制到输入流结束
+     * @return 实际复制的字节数
+     */
+    static long copyStream(InputStream in, OutputStream out, byte[] buffer, long limit) throws IOException {
+        long total = 0;
+        while (limit < 0 || total < limit) {
+            int toRead = limit < 0 ? buffer.length : (int) Math.min(buffer.length, limit - total);
+            int len = in.read(buffer, 0, toRead);
+            if (len == -1) {
+                break;
+            }
+            out.write(buffer, 0, len);
+            total += len;
+        }
+        return total;
+    }
+
+    /**
+     * 使用缓冲区池中的缓冲区复制流，缓冲区大小按需要复制的字节数选择
+     *
+     * @param in    输入流
+     * @param out   输出流
+     * @param limit 最多复制的字节数，小于0时复制到输入流结束
+     * @return 实际复制的字节数
+     */
+    long copyPooled(InputStream in, OutputStream out, long limit) throws IOException {
+        return copyPooled(in, out, limit, limit);
+    }
+
+    /**
+     * 使用缓冲区池中的缓冲区复制流
+     *
+     * @param in            输入流
+     * @param out           输出流
+     * @param expectedBytes 预计复制的字节数（用于选择缓冲区大小），小于0表示未知
+     * @param limit         最多复制的字节数，小于0时复制到输入流结束
+     * @return 实际复制的字节数
+     */
+    long copyPooled(InputStream in, OutputStream out, long expectedBytes, long limit) throws IOException {
+        byte[] buffer = bufferPool.acquireFor(expectedBytes);
+        try {
+            return copyStream(in, out, buffer, limit);
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * 上传文件：使用缓冲区池中的缓冲区复制（FTPClient.storeFile每次上传都会分配新的缓冲区）
+     *
+     * @param ftpClient     当前获取到的ftpClient
+     * @param remoteName    远程文件名（已编码）
+     * @param inputStream   输入流
+     * @param expectedBytes 需要上传的字节数，小于0表示未知
+     * @return true：成功；false：服务器拒绝
+     */
+    private boolean storeFile(FTPClient ftpClient, String remoteName, InputStream inputStream, long expectedBytes) throws IOException {
+        return writeData(ftpClient, ftpClient.storeFileStream(remoteName), inputStream, expectedBytes);
+    }
+
+    /**
+     * 追加上传（APPE）：使用缓冲区池中的缓冲区复制
+     *
+     * @see #storeFile(FTPClient, String, InputStream, long)
+     */
+    private boolean appendFile(FTPClient ftpClient, String remoteName, InputStream inputStream, long expectedBytes) throws IOException {
+        return writeData(ftpClient, ftpClient.appendFileStream(remoteName), inputStream, expectedBytes);
+    }
+
+    private boolean writeData(FTPClient ftpClient, OutputStream outputStream, InputStream inputStream, long expectedBytes) throws IOException {
+        if (outputStream == null) {
+            return false;
+        }
+        try {
+            copyPooled(inputStream, outputStream, expectedBytes, -1);
+        } catch (IOException e) {
+            FtpIoUtils.closeQuietly(outputStream);
+            throw e;
+        }
+        outputStream.close();
+        return ftpClient.completePendingCommand();
     }
 
     /**
@@ -388,76 +1988,271 @@ public class MossFtpService {
      * @param fileName 附件名称
      * @return 编码后的文件名
      */
-    private String encodingFileName(String fileName) {
+    String encodingFileName(String fileName) {
         return new String(fileName.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
     }
 
     /**
      * 释放ftpClient
+     * <p>
+     * 不再切换回根目录：所有操作都使用绝对路径或先进入目标目录，不依赖ftpClient的当前工作目录。
      *
      * @param ftpClient 使用的ftpClient
      */
-    private void releaseFtpClient(FTPClient ftpClient) {
+    void releaseFtpClient(FTPClient ftpClient) {
         if (ftpClient == null) {
             return;
         }
         try {
-            //  切换文件地址
-            boolean flag = this.changeWorkingDirectory("/", ftpClient);
-            if (!flag) {
-                ftpClient.disconnect();
-                log.info("将FtpClient放回到pool中时，重置FtpClient所在文件夹失败");
-            } else {
-                ftpClientPool.returnObject(ftpClient);
-            }
+            ftpClientPools.returnObject(ftpClient);
         } catch (Exception e) {
             log.error("Could not return ftpClient to the pool", e);
             //  destroyFtpClient
-            try {
-                ftpClient.disconnect();
-            } catch (IOException ioe) {
-                log.error("Could not disconnect ftpClient");
+            invalidateFtpClient(ftpClient);
+        } finally {
+            if (bulkhead != null) {
+                bulkhead.release(ftpClient);
+            }
+        }
+    }
+
+    /**
+     * 销毁ftpClient（连接状态不确定时使用，不再放回连接池）
+     *
+     * @param ftpClient 使用的ftpClient
+     */
+    void invalidateFtpClient(FTPClient ftpClient) {
+        if (ftpClient == null) {
+            return;
+        }
+        try {
+            ftpClientPools.invalidateObject(ftpClient);
+        } catch (Exception e) {
+            log.error("Could not invalidate ftpClient", e);
+        } finally {
+            if (bulkhead != null) {
+                bulkhead.release(ftpClient);
             }
         }
     }
 
     /**
-     * 创建多层目录文件，如果有ftp服务器已存在该文件，则不创建，如果无，则创建
+     * 创建多层目录文件，如果有ftp服务器已存在该文件，则不创建，如果无，则创建；完成后进入该目录
+     * <p>
+     * 已知存在的目录记录在目录缓存中：命中缓存时直接进入目录，否则从最深的已知上级目录开始逐级进入或创建。
      *
      * @param remote    ftp路径
      * @param ftpClient 当前获取到的ftpClient
      */
-    private void createDirectory(String remote, FTPClient ftpClient) throws IOException {
-        String directory = remote + "/";
-        //  如果目录不存在，则递归创建远程服务器目录
-        if (!"/".equalsIgnoreCase(directory) && !changeWorkingDirectory(encodingPath(directory), ftpClient)) {
-            int start = 0;
-            int end = 0;
-            if (directory.startsWith("/")) {
-                start = 1;
-            }
-            end = directory.indexOf("/", start);
-            String path = "";
-            StringBuilder paths = new StringBuilder();
-            do {
-                String subDirectory = new String(remote.substring(start, end).getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
-                path = "/" + subDirectory;
-                if (!existFile(path, ftpClient)) {
-                    if (makeDirectory(subDirectory, ftpClient)) {
-                        changeWorkingDirectory(subDirectory, ftpClient);
-                    } else {
-                        System.out.println("创建目录[" + subDirectory + "]失败！");
-                        changeWorkingDirectory(subDirectory, ftpClient);
-                    }
-                } else {
-                    changeWorkingDirectory(subDirectory, ftpClient);
+    void createDirectory(String remote, FTPClient ftpClient) throws IOException {
+        String directory = normalizeDirectory(remote);
+        if ("/".equals(directory)) {
+            if (!changeWorkingDirectory("/", ftpClient)) {
+                throw new IOException("进入根目录失败：" + ftpClient.getReplyString());
+            }
+            return;
+        }
+        boolean known = directoryCache != null && directoryCache.get(directory) != null;
+        if (changeWorkingDirectory(encodingPath(directory), ftpClient)) {
+            if (!known && directoryCache != null) {
+                directoryCache.put(directory, Boolean.TRUE);
+            }
+            return;
+        }
+        if (known) {
+            //  目录已被外部删除
+            directoryCache.invalidate(directory);
+        }
+        //  从最深的已知上级目录开始，逐级进入或创建目录
+        String[] segments = directory.substring(1).split("/");
+        int depth = segments.length - 1;
+        while (depth > 0 && (directoryCache == null || directoryCache.get(joinSegments(segments, depth)) == null)) {
+            depth--;
+        }
+        String base = depth > 0 ? joinSegments(segments, depth) : "/";
+        if (!changeWorkingDirectory(encodingPath(base), ftpClient)) {
+            if (directoryCache != null) {
+                directoryCache.invalidate(base);
+            }
+            depth = 0;
+            changeWorkingDirectory("/", ftpClient);
+        }
+        for (int i = depth; i < segments.length; i++) {
+            String subDirectory = new String(segments[i].getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+            if (!changeWorkingDirectory(subDirectory, ftpClient)) {
+                //  并发创建同一目录时MKD可能失败，以能否进入目录为准
+                makeDirectory(subDirectory, ftpClient);
+                invalidateListing(i > 0 ? joinSegments(segments, i) : "/");
+                if (!changeWorkingDirectory(subDirectory, ftpClient)) {
+                    throw new IOException("创建目录[" + joinSegments(segments, i + 1) + "]失败：" + ftpClient.getReplyString());
                 }
-                paths.append("/").append(subDirectory);
-                start = end + 1;
-                end = directory.indexOf("/", start);
-                //  检查所有目录是否创建完毕
-            } while (end > start);
+            }
+            if (directoryCache != null) {
+                directoryCache.put(joinSegments(segments, i + 1), Boolean.TRUE);
+            }
+        }
+    }
+
+    /**
+     * 上传失败时清除ftpClient记录的当前工作目录，下一次上传重新发送CWD（目录已被删除时重新创建）；
+     * 若服务器回复550（目录不存在或无权限），同时移除目录缓存
+     *
+     * @param pathName  ftp服务保存地址
+     * @param ftpClient 当前获取到的ftpClient
+     */
+    void onStoreFailed(String pathName, FTPClient ftpClient) {
+        if (ftpClient instanceof MossFtpClient) {
+            ((MossFtpClient) ftpClient).forgetWorkingDirectory();
+        }
+        if (directoryCache != null && ftpClient != null && ftpClient.getReplyCode() == FTPReply.FILE_UNAVAILABLE) {
+            directoryCache.invalidate(normalizeDirectory(pathName));
+        }
+    }
+
+    /**
+     * @return 一次传输使用的传输校验
+     */
+    FtpTransferChecksum transferChecksum() {
+        return new FtpTransferChecksum(this, ftpOptionProperties.getChecksum(), metricsRecorder);
+    }
+
+    /**
+     * @param fileName 文件名
+     * @return 是否为上传时保存摘要的sidecar文件
+     */
+    boolean isChecksumSidecar(String fileName) {
+        FtpOptionProperties.Checksum checksum = ftpOptionProperties.getChecksum();
+        return checksum.isEnabled() && checksum.isSidecarEnabled() && fileName.endsWith(checksum.getAlgorithm().getSidecarSuffix());
+    }
+
+    /**
+     * 目录内容发生变化时，移除该目录的列表缓存和文件名索引
+     *
+     * @param directory ftp目录
+     */
+    void invalidateListing(String directory) {
+        if (nameIndexCache != null) {
+            nameIndexCache.invalidate(normalizeDirectory(directory));
+        }
+        if (listingCache != null) {
+            listingCache.invalidate(normalizeDirectory(directory));
+        }
+    }
+
+    /**
+     * 文件被上传或删除时，移除该文件的内容缓存
+     *
+     * @param remoteFilePath 文件路径（path+fileName）
+     */
+    void invalidateContent(String remoteFilePath) {
+        if (contentCache != null) {
+            contentCache.invalidate(absolutePath(remoteFilePath));
+        }
+    }
+
+    /**
+     * 从内容缓存中获取文件：超过验证间隔的条目先使用SIZE、MDTM与服务器比对，一致时继续使用
+     *
+     * @param remotePath 文件的绝对路径
+     * @return 可以使用的缓存条目，未开启缓存、未缓存或已失效时返回null
+     */
+    private FtpContentCache.Entry cachedContent(String remotePath) {
+        if (contentCache == null) {
+            return null;
+        }
+        FtpContentCache.Entry entry = contentCache.get(remotePath);
+        if (entry == null || contentCache.isFresh(entry)) {
+            return entry;
+        }
+        long start = System.nanoTime();
+        boolean valid = false;
+        FTPClient ftpClient = null;
+        try {
+            ftpClient = getFtpClient(routingKeyOfFile(remotePath));
+            valid = contentCache.revalidate(entry, remoteFileSize(remotePath, ftpClient), ftpClient.getModificationTime(remotePath));
+        } catch (Exception e) {
+            log.warn("-----------------------验证缓存[" + remotePath + "]失败！错误原因{}-----------------------", e.getMessage());
+            contentCache.invalidate(remotePath);
+        } finally {
+            recordOperation("revalidate", start, valid, ftpClient);
+            releaseFtpClient(ftpClient);
+        }
+        return valid ? entry : null;
+    }
+
+    /**
+     * 开始缓存即将下载的文件
+     *
+     * @param remotePath 文件的绝对路径
+     * @param ftpClient  当前获取到的ftpClient
+     * @return 缓存写入器，不缓存时返回null
+     */
+    private FtpContentCache.Writer admitContent(String remotePath, FTPClient ftpClient) {
+        if (contentCache == null) {
+            return null;
+        }
+        try {
+            return admitContent(remotePath, remoteFileSize(remotePath, ftpClient), ftpClient);
+        } catch (IOException e) {
+            log.warn("-----------------------获取文件[" + remotePath + "]大小失败！错误原因{}-----------------------", e.getMessage());
+            return null;
+        }
+    }
+
+    private FtpContentCache.Writer admitContent(String remotePath, long fileSize, FTPClient ftpClient) {
+        if (contentCache == null || fileSize < 0) {
+            return null;
         }
+        try {
+            return contentCache.admit(remotePath, fileSize, ftpClient.getModificationTime(remotePath));
+        } catch (IOException e) {
+            log.warn("-----------------------获取文件[" + remotePath + "]修改时间失败！错误原因{}-----------------------", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 下载结束，完整下载时将内容加入缓存，否则放弃
+     */
+    private static void finishContent(FtpContentCache.Writer cacheWriter, boolean complete) {
+        if (cacheWriter == null) {
+            return;
+        }
+        if (complete) {
+            cacheWriter.commit();
+        } else {
+            cacheWriter.abort();
+        }
+    }
+
+    /**
+     * 规范化目录路径：以/开头，去除重复和末尾的/
+     *
+     * @param remote ftp路径
+     * @return 规范化后的路径
+     */
+    static String normalizeDirectory(String remote) {
+        StringBuilder directory = new StringBuilder();
+        for (String segment : StrUtil.nullToEmpty(remote).split("/")) {
+            if (!segment.isEmpty() && !".".equals(segment)) {
+                directory.append('/').append(segment);
+            }
+        }
+        return directory.length() == 0 ? "/" : directory.toString();
+    }
+
+    /**
+     * 文件或目录的绝对路径（相对路径视为相对于根目录）
+     *
+     * @param remote ftp路径
+     * @return 以/开头的路径
+     */
+    static String absolutePath(String remote) {
+        return normalizeDirectory(remote);
+    }
+
+    private static String joinSegments(String[] segments, int count) {
+        return "/" + String.join("/", Arrays.copyOf(segments, count));
     }
 
     /**
@@ -483,46 +2278,286 @@ public class MossFtpService {
     }
 
     /**
-     * 判断ftp服务器文件是否存在
+     * 获取ftpClient
      *
-     * @param path      文件路径
-     * @param ftpClient 当前获取到的ftpClient
-     * @return true：成功；false：失败
+     * @return ftpClient
      */
-    private boolean existFile(String path, FTPClient ftpClient) throws IOException {
-        boolean flag = false;
-        FTPFile[] ftpFileArr = ftpClient.listFiles(path);
-        if (ftpFileArr.length > 0) {
-            flag = true;
-        }
-        return flag;
+    FTPClient getFtpClient() {
+        return getFtpClient(null);
     }
 
+    /**
+     * 获取ftpClient（单文件操作）
+     *
+     * @param routingKey 路由键（远程目录），多服务器一致性哈希时用于选择服务器
+     * @return ftpClient
+     */
+    FTPClient getFtpClient(String routingKey) {
+        return getFtpClient(routingKey, FtpOperationClass.SMALL);
+    }
 
     /**
      * 获取ftpClient
+     * <p>
+     * 开启舱壁隔离时先获取操作类型的连接额度；获取失败时按moss.ftp.try-backoff-millis退避后重试，
+     * 服务器处于熔断状态时立即失败，不再重试。
      *
+     * @param routingKey     路由键（远程目录），多服务器一致性哈希时用于选择服务器
+     * @param operationClass 操作类型
      * @return ftpClient
      */
-    private FTPClient getFtpClient() {
+    FTPClient getFtpClient(String routingKey, FtpOperationClass operationClass) {
         checkFtpClientPoolAvailable();
+        acquireBulkhead(operationClass);
         FTPClient ftpClient = null;
         Exception ex = null;
-        //  获取连接数默认尝试3次
-        for (int i = 0; i < ftpOptionProperties.getTryNum(); i++) {
-            try {
-                ftpClient = ftpClientPool.borrowObject();
-                break;
-            } catch (Exception e) {
-                ex = e;
+        try {
+            //  获取连接数默认尝试3次
+            for (int i = 0; i < ftpOptionProperties.getTryNum(); i++) {
+                if (i > 0 && !backoff(i)) {
+                    break;
+                }
+                long start = System.nanoTime();
+                try {
+                    ftpClient = ftpClientPools.borrowObject(routingKey, -1);
+                    metricsRecorder.recordBorrow(System.nanoTime() - start, true);
+                    markOperation(ftpClient);
+                    break;
+                } catch (FtpCircuitOpenException e) {
+                    metricsRecorder.recordBorrow(System.nanoTime() - start, false);
+                    ex = e;
+                    break;
+                } catch (Exception e) {
+                    metricsRecorder.recordBorrow(System.nanoTime() - start, false);
+                    ex = e;
+                }
+            }
+        } finally {
+            if (ftpClient == null && bulkhead != null) {
+                bulkhead.release(operationClass);
             }
         }
         if (ftpClient == null) {
             throw new RuntimeException("Could not get a ftpClient from the pool", ex);
         }
+        if (bulkhead != null) {
+            bulkhead.bind(ftpClient, operationClass);
+        }
+        return ftpClient;
+    }
+
+    /**
+     * 尝试获取空闲的ftpClient，连接池中没有空闲连接或操作类型的连接额度已用完时立即返回（不创建新连接）
+     *
+     * @param routingKey     路由键（远程目录）
+     * @param operationClass 操作类型
+     * @return ftpClient，获取失败时返回null
+     */
+    FTPClient tryGetFtpClient(String routingKey, FtpOperationClass operationClass) {
+        checkFtpClientPoolAvailable();
+        try {
+            if (bulkhead != null && !bulkhead.acquire(operationClass, 0)) {
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        try {
+            FTPClient ftpClient = markOperation(ftpClientPools.borrowIdleObject(routingKey));
+            if (bulkhead != null) {
+                bulkhead.bind(ftpClient, operationClass);
+            }
+            return ftpClient;
+        } catch (Exception e) {
+            if (bulkhead != null) {
+                bulkhead.release(operationClass);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 获取操作类型的连接额度
+     *
+     * @param operationClass 操作类型
+     */
+    private void acquireBulkhead(FtpOperationClass operationClass) {
+        if (bulkhead == null) {
+            return;
+        }
+        try {
+            if (!bulkhead.acquire(operationClass, ftpOptionProperties.getBulkhead().getMaxWaitMillis())) {
+                throw new RuntimeException("Could not get a ftpClient, the " + operationClass + " bulkhead is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the " + operationClass + " bulkhead", e);
+        }
+    }
+
+    /**
+     * 获取ftpClient失败后，重试前按指数退避等待（加入随机抖动，避免所有线程同时重试）
+     *
+     * @param attempt 第几次重试
+     * @return false：等待时被中断，不再重试
+     */
+    private boolean backoff(int attempt) {
+        long base = ftpOptionProperties.getTryBackoffMillis();
+        if (base <= 0) {
+            return true;
+        }
+        long delay = Math.min(base << Math.min(attempt - 1, 20), Math.max(ftpOptionProperties.getMaxTryBackoffMillis(), base));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(delay / 2, delay + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static FTPClient markOperation(FTPClient ftpClient) {
+        if (ftpClient instanceof MossFtpClient) {
+            ((MossFtpClient) ftpClient).markOperation();
+        }
         return ftpClient;
     }
 
+    /**
+     * 判断ftpClient能否访问路由键对应的文件（多服务器一致性哈希时，不同服务器存储的文件不同）
+     *
+     * @param ftpClient  借出的ftpClient
+     * @param routingKey 路由键（远程目录）
+     * @return true：可以使用
+     */
+    boolean isRoutedTo(FTPClient ftpClient, String routingKey) {
+        return ftpClient != null && ftpClientPools.isRoutedTo(ftpClient, routingKey);
+    }
+
+    /**
+     * 文件所在目录作为路由键
+     *
+     * @param remoteFilePath 文件路径（path+fileName）
+     * @return 规范化后的上级目录
+     */
+    static String routingKeyOfFile(String remoteFilePath) {
+        String path = normalizeDirectory(remoteFilePath);
+        int index = path.lastIndexOf('/');
+        return index > 0 ? path.substring(0, index) : "/";
+    }
+
+    /**
+     * @param remoteFilePath 文件路径（path+fileName）
+     * @return 文件名
+     */
+    static String fileNameOf(String remoteFilePath) {
+        String path = normalizeDirectory(remoteFilePath);
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * 单服务器时的连接池；多服务器时返回第一台服务器的连接池
+     *
+     * @return 连接池
+     */
+    public GenericObjectPool<FTPClient> getFtpClientPool() {
+        return ftpClientPools != null ? ftpClientPools.getNodes().get(0).getPool() : null;
+    }
+
+    /**
+     * 使用单服务器连接池
+     *
+     * @param ftpClientPool 连接池
+     */
+    public void setFtpClientPool(GenericObjectPool<FTPClient> ftpClientPool) {
+        this.ftpClientPools = FtpClientPoolGroup.single(ftpClientPool);
+    }
+
+    /**
+     * 获取打包下载共享的预取缓冲区额度
+     *
+     * @return 预取缓冲区额度
+     */
+    private synchronized Semaphore zipPrefetchBudget() {
+        if (zipPrefetchBudget == null) {
+            zipPrefetchBudget = new Semaphore(ftpOptionProperties.getZip().getPrefetchBufferBytes());
+        }
+        return zipPrefetchBudget;
+    }
+
+    /**
+     * 在异步线程池上执行操作；未配置异步线程池时使用并行传输线程池，都未配置时在当前线程执行
+     *
+     * @param task 操作
+     * @return 操作结果，线程池拒绝任务时以RejectedExecutionException结束
+     */
+    private <T> CompletableFuture<T> runAsync(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable runnable = () -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        };
+        Executor executor = asyncExecutor != null ? asyncExecutor : transferExecutor;
+        if (executor == null) {
+            runnable.run();
+            return future;
+        }
+        try {
+            executor.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 按行读取时使用的默认编码
+     */
+    private Charset lineCharset() {
+        return Charset.forName(ftpOptionProperties.getLineCharset());
+    }
+
+    /**
+     * 记录操作耗时和结果（需在释放ftpClient之前调用，以获取操作的应答码）
+     *
+     * @param operation 操作名称
+     * @param start     开始时间（System.nanoTime()）
+     * @param success   是否成功
+     * @param ftpClient 使用的ftpClient
+     */
+    void recordOperation(String operation, long start, boolean success, FTPClient ftpClient) {
+        metricsRecorder.recordOperation(operation, System.nanoTime() - start, success, ftpClient != null ? ftpClient.getReplyCode() : 0);
+        if (ftpClient instanceof MossFtpClient) {
+            //  同一个ftpClient连续执行多个操作（如批量上传）时，每个操作分别统计
+            MossFtpClient client = (MossFtpClient) ftpClient;
+            metricsRecorder.recordRoundTrips(operation, client.getOperationCommandCount());
+            if (client.getOperationWireBytes() > 0) {
+                metricsRecorder.recordCompression(operation, client.getOperationContentBytes(), client.getOperationWireBytes());
+                log.debug("-----------------------压缩传输[{}]：内容{}字节，实际传输{}字节-----------------------",
+                        operation, client.getOperationContentBytes(), client.getOperationWireBytes());
+            }
+            client.markOperation();
+        }
+    }
+
+    /**
+     * 按压缩策略决定下一次数据连接是否使用MODE Z，服务器不支持MODE Z时按MODE S传输
+     *
+     * @param ftpClient  执行传输的ftpClient
+     * @param operation  操作名称
+     * @param remotePath 远程文件路径
+     */
+    void compressIfWorthwhile(FTPClient ftpClient, String operation, String remotePath) throws IOException {
+        if (compressionPolicy != null && ftpClient instanceof MossFtpClient
+                && compressionPolicy.shouldCompress(operation, remotePath)) {
+            ((MossFtpClient) ftpClient).compressNextTransfer();
+        }
+    }
+
     /**
      * 检查ftpClientPool是否可用
      */
@@ -543,7 +2578,6 @@ public class MossFtpService {
             flag = ftpClient.changeWorkingDirectory(new String(directory.getBytes(), FTP.DEFAULT_CONTROL_ENCODING));
             if (flag) {
                 System.out.println("-----------------------进入文件夹[ " + directory + " ]成功！-----------------------");
-                System.out.println("-----------------------进入文件夹[ " + ftpClient.printWorkingDirectory() + " ]成功！-----------------------");
             } else {
                 System.out.println("-----------------------进入文件夹[ " + directory + " ]失败-----------------------");
             }
@@ -552,26 +2586,4 @@ public class MossFtpService {
         }
         return flag;
     }
-
-    /**
-     * 关闭文件流
-     *
-     * @param input 文件流
-     */
-    private static ByteArrayOutputStream cloneInputStream(InputStream input) {
-        try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            byte[] buffer = new byte[1024];
-            int len;
-            while ((len = input.read(buffer)) > -1) {
-                baos.write(buffer, 0, len);
-            }
-            baos.flush();
-            return baos;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return null;
-        }
-    }
-
 }
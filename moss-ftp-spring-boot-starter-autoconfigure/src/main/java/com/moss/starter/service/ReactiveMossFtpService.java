@@ -0,0 +1,461 @@
+package com.moss.starter.service;
+
+import com.moss.starter.io.FtpIoUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.SynchronousSink;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 响应式ftp服务端（WebFlux）
+ * <p>
+ * 借用连接、读写数据连接等阻塞操作都在有界的scheduler上执行，不占用事件循环线程；
+ * 下载按下游的请求量逐块读取数据连接，上传按写入速度向上游请求数据，内存占用只与并发数和缓冲区大小有关。
+ * <p>
+ * 每个操作在进入scheduler之前先获取传输许可，许可数不超过连接池最大连接数且小于线程数：
+ * 等待许可不占用线程，也就不会出现所有线程都阻塞在借用连接上、持有连接的传输却没有线程可用的情况。
+ *
+ * @author lwj
+ */
+@Slf4j
+public class ReactiveMossFtpService {
+
+    /**
+     * 上传时预取的DataBuffer个数
+     */
+    private static final int UPLOAD_PREFETCH = 4;
+
+    private final MossFtpService ftpService;
+    private final Scheduler scheduler;
+    private final TransferPermits permits;
+    private final DataBufferFactory bufferFactory;
+
+    /**
+     * @param ftpService             ftp服务端
+     * @param scheduler              执行阻塞操作的scheduler
+     * @param maxConcurrentTransfers 最大并发操作数，应不超过连接池最大连接数且小于scheduler的线程数
+     */
+    public ReactiveMossFtpService(MossFtpService ftpService, Scheduler scheduler, int maxConcurrentTransfers) {
+        this(ftpService, scheduler, maxConcurrentTransfers, new DefaultDataBufferFactory());
+    }
+
+    public ReactiveMossFtpService(MossFtpService ftpService, Scheduler scheduler, int maxConcurrentTransfers, DataBufferFactory bufferFactory) {
+        this.ftpService = ftpService;
+        this.scheduler = scheduler;
+        this.permits = new TransferPermits(maxConcurrentTransfers);
+        this.bufferFactory = bufferFactory;
+    }
+
+    /**
+     * 下载文件
+     *
+     * @param pathName FTP服务器文件的相对地址
+     * @return 文件内容
+     */
+    public Flux<DataBuffer> download(String pathName) {
+        return download(pathName, 0, -1);
+    }
+
+    /**
+     * 下载文件的一部分（起始位置映射为FTP的REST偏移量）
+     *
+     * @param pathName FTP服务器文件的相对地址
+     * @param offset   起始位置
+     * @param length   读取的字节数，小于0时读取到文件结束
+     * @return 文件内容
+     */
+    public Flux<DataBuffer> download(String pathName, long offset, long length) {
+        return withPermit(Flux.<DataBuffer, DownloadTransfer>generate(
+                () -> openDownload(pathName, offset, length),
+                (transfer, sink) -> {
+                    transfer.next(sink);
+                    return transfer;
+                },
+                transfer -> runOnScheduler(transfer::cancel))
+                .subscribeOn(scheduler));
+    }
+
+    /**
+     * 上传文件
+     *
+     * @param pathName ftp服务保存地址
+     * @param fileName 上传到ftp的文件名
+     * @param content  文件内容
+     * @return true：成功；false：失败
+     */
+    public Mono<Boolean> upload(String pathName, String fileName, Publisher<DataBuffer> content) {
+        Mono<Boolean> upload = Mono.using(
+                () -> openUpload(pathName, fileName),
+                transfer -> Flux.from(content)
+                        .publishOn(scheduler, UPLOAD_PREFETCH)
+                        .handle((DataBuffer buffer, SynchronousSink<Object> sink) -> {
+                            try {
+                                transfer.write(buffer);
+                            } catch (IOException e) {
+                                sink.error(e);
+                            }
+                        })
+                        .then(Mono.fromCallable(transfer::complete)),
+                transfer -> runOnScheduler(transfer::cancel))
+                .subscribeOn(scheduler);
+        return withPermit(upload.flux()).next()
+                .onErrorResume(e -> {
+                    log.error("-----------------------上传文件[" + fileName + "]失败！错误原因{}-----------------------", e.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    /**
+     * 删除文件
+     *
+     * @param path     文件路径
+     * @param fileName 文件名
+     * @return true：成功；false：失败
+     * @see MossFtpService#deleteFile(String, String)
+     */
+    public Mono<Boolean> deleteFile(String path, String fileName) {
+        return withPermit(Mono.fromCallable(() -> ftpService.deleteFile(path, fileName)).subscribeOn(scheduler).flux()).next();
+    }
+
+    /**
+     * 获取指定路径下FTP文件名称
+     *
+     * @param remotePath 路径
+     * @return ftp文件名称
+     * @see MossFtpService#retrieveFileNames(String)
+     */
+    public Flux<String> retrieveFileNames(String remotePath) {
+        return withPermit(Mono.fromCallable(() -> ftpService.retrieveFileNames(remotePath))
+                .subscribeOn(scheduler)
+                .flatMapIterable((List<String> names) -> names));
+    }
+
+    /**
+     * 关闭scheduler
+     */
+    public void dispose() {
+        scheduler.dispose();
+    }
+
+    /**
+     * 获取传输许可后再订阅操作，操作结束、出错或取消时归还许可
+     */
+    private <T> Flux<T> withPermit(Flux<T> operation) {
+        return Flux.usingWhen(permits.acquire(), permit -> operation,
+                permit -> permits.release(), permit -> permits.release(), permit -> permits.release());
+    }
+
+    private DownloadTransfer openDownload(String pathName, long offset, long length) throws IOException {
+        long start = System.nanoTime();
+        FTPClient ftpClient = ftpService.getFtpClient(MossFtpService.routingKeyOfFile(pathName));
+        try {
+            if (offset > 0) {
+                ftpClient.setRestartOffset(offset);
+            }
+            ftpService.compressIfWorthwhile(ftpClient, "reactiveDownload", MossFtpService.absolutePath(pathName));
+            InputStream inputStream = ftpClient.retrieveFileStream(MossFtpService.absolutePath(pathName));
+            if (inputStream == null) {
+                throw new IOException("retrieve file failed, reply: " + ftpClient.getReplyString());
+            }
+            return new DownloadTransfer(ftpClient, inputStream, length, start);
+        } catch (IOException | RuntimeException e) {
+            log.error("-----------------------下载文件[" + pathName + "]失败！错误原因{}-----------------------", e.getMessage());
+            ftpService.recordOperation("reactiveDownload", start, false, ftpClient);
+            ftpService.releaseFtpClient(ftpClient);
+            throw e;
+        }
+    }
+
+    private UploadTransfer openUpload(String pathName, String fileName) throws IOException {
+        long start = System.nanoTime();
+        FTPClient ftpClient = ftpService.getFtpClient(MossFtpService.normalizeDirectory(pathName));
+        try {
+            ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
+            ftpService.createDirectory(pathName, ftpClient);
+            ftpService.compressIfWorthwhile(ftpClient, "reactiveUpload", MossFtpService.joinPath(pathName, fileName));
+            OutputStream outputStream = ftpClient.storeFileStream(ftpService.encodingFileName(fileName));
+            if (outputStream == null) {
+                ftpService.onStoreFailed(pathName, ftpClient);
+                throw new IOException("store file failed, reply: " + ftpClient.getReplyString());
+            }
+            return new UploadTransfer(ftpClient, outputStream, pathName, fileName, start);
+        } catch (IOException | RuntimeException e) {
+            ftpService.recordOperation("reactiveUpload", start, false, ftpClient);
+            ftpService.releaseFtpClient(ftpClient);
+            throw e;
+        }
+    }
+
+    /**
+     * 在scheduler上执行清理（取消信号可能来自事件循环线程），scheduler已满或已关闭时直接执行
+     */
+    private void runOnScheduler(Runnable task) {
+        try {
+            scheduler.schedule(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    /**
+     * 进行中的下载
+     */
+    private class DownloadTransfer {
+        private final FTPClient ftpClient;
+        private final InputStream inputStream;
+        private final byte[] chunk;
+        private final long start;
+        /**
+         * 剩余需要读取的字节数，小于0时读取到文件结束
+         */
+        private long remaining;
+        private long bytes;
+        private volatile boolean finished;
+
+        DownloadTransfer(FTPClient ftpClient, InputStream inputStream, long length, long start) {
+            this.ftpClient = ftpClient;
+            this.inputStream = inputStream;
+            this.chunk = ftpService.getBufferPool().acquireFor(length);
+            this.remaining = length;
+            this.start = start;
+        }
+
+        /**
+         * 读取下一块数据
+         */
+        void next(SynchronousSink<DataBuffer> sink) {
+            try {
+                int len = remaining == 0 ? -1 : inputStream.read(chunk, 0, remaining < 0 ? chunk.length : (int) Math.min(chunk.length, remaining));
+                if (len == -1) {
+                    if (remaining > 0) {
+                        throw new IOException("unexpected end of file, " + remaining + " bytes remaining");
+                    }
+                    finish(remaining == 0);
+                    sink.complete();
+                    return;
+                }
+                bytes += len;
+                if (remaining > 0) {
+                    remaining -= len;
+                }
+                DataBuffer buffer = bufferFactory.allocateBuffer(len);
+                buffer.write(chunk, 0, len);
+                sink.next(buffer);
+            } catch (IOException e) {
+                abort(false);
+                sink.error(e);
+            }
+        }
+
+        /**
+         * 读取完毕，结束传输并归还ftpClient
+         *
+         * @param partial 是否提前结束了数据连接
+         */
+        private void finish(boolean partial) throws IOException {
+            finished = true;
+            ftpService.getBufferPool().release(chunk);
+            inputStream.close();
+            boolean reusable = partial ? ftpService.finishPartialTransfer(ftpClient) : ftpClient.completePendingCommand();
+            ftpService.getMetricsRecorder().recordBytes("reactiveDownload", "download", bytes);
+            ftpService.recordOperation("reactiveDownload", start, true, ftpClient);
+            if (reusable) {
+                ftpService.releaseFtpClient(ftpClient);
+            } else {
+                ftpService.invalidateFtpClient(ftpClient);
+            }
+        }
+
+        /**
+         * 下游取消订阅
+         */
+        void cancel() {
+            abort(true);
+        }
+
+        private void abort(boolean cancelled) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (!cancelled) {
+                //  取消信号可能在读取过程中到达，只在读取线程上归还缓冲区，取消时交给GC回收
+                ftpService.getBufferPool().release(chunk);
+            }
+            FtpIoUtils.closeQuietly(inputStream);
+            boolean reusable = cancelled && ftpService.finishPartialTransfer(ftpClient);
+            ftpService.getMetricsRecorder().recordBytes("reactiveDownload", "download", bytes);
+            ftpService.recordOperation("reactiveDownload", start, cancelled, ftpClient);
+            if (reusable) {
+                ftpService.releaseFtpClient(ftpClient);
+            } else {
+                ftpService.invalidateFtpClient(ftpClient);
+            }
+        }
+    }
+
+    /**
+     * 进行中的上传
+     */
+    private class UploadTransfer {
+        private final FTPClient ftpClient;
+        private final OutputStream outputStream;
+        private final String pathName;
+        private final String fileName;
+        private final byte[] chunk;
+        private final long start;
+        private long bytes;
+        private volatile boolean finished;
+
+        UploadTransfer(FTPClient ftpClient, OutputStream outputStream, String pathName, String fileName, long start) {
+            this.ftpClient = ftpClient;
+            this.outputStream = outputStream;
+            this.pathName = pathName;
+            this.fileName = fileName;
+            this.chunk = ftpService.getBufferPool().acquireFor(-1);
+            this.start = start;
+        }
+
+        void write(DataBuffer buffer) throws IOException {
+            try {
+                int readable;
+                while ((readable = buffer.readableByteCount()) > 0) {
+                    int len = Math.min(readable, chunk.length);
+                    buffer.read(chunk, 0, len);
+                    outputStream.write(chunk, 0, len);
+                    bytes += len;
+                }
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+        }
+
+        /**
+         * 上游数据写入完毕，结束传输并归还ftpClient
+         */
+        boolean complete() throws IOException {
+            finished = true;
+            //  所有数据已写入，归还缓冲区（取消时可能仍在写入，不归还）
+            ftpService.getBufferPool().release(chunk);
+            boolean flag = false;
+            boolean reusable = false;
+            try {
+                outputStream.close();
+                flag = ftpClient.completePendingCommand();
+                reusable = true;
+                ftpService.invalidateListing(pathName);
+                ftpService.invalidateContent(MossFtpService.joinPath(pathName, fileName));
+                ftpService.getMetricsRecorder().recordBytes("reactiveUpload", "upload", bytes);
+                if (!flag) {
+                    ftpService.onStoreFailed(pathName, ftpClient);
+                }
+                return flag;
+            } finally {
+                ftpService.recordOperation("reactiveUpload", start, flag, ftpClient);
+                if (reusable) {
+                    ftpService.releaseFtpClient(ftpClient);
+                } else {
+                    ftpService.invalidateFtpClient(ftpClient);
+                }
+            }
+        }
+
+        /**
+         * 上游出错或取消订阅：未写完的数据连接无法确定控制连接状态，直接销毁ftpClient
+         */
+        void cancel() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            FtpIoUtils.closeQuietly(outputStream);
+            ftpService.invalidateListing(pathName);
+            ftpService.invalidateContent(MossFtpService.joinPath(pathName, fileName));
+            ftpService.recordOperation("reactiveUpload", start, false, ftpClient);
+            ftpService.invalidateFtpClient(ftpClient);
+        }
+    }
+
+    /**
+     * 传输许可：不阻塞线程的公平信号量，按请求顺序发放许可
+     */
+    private static class TransferPermits {
+        private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+        private int available;
+
+        TransferPermits(int permits) {
+            this.available = Math.max(permits, 1);
+        }
+
+        Mono<Boolean> acquire() {
+            return Mono.create(sink -> {
+                Waiter waiter = new Waiter(sink);
+                synchronized (this) {
+                    if (available > 0 && waiters.isEmpty()) {
+                        available--;
+                        waiter.state.set(Waiter.GRANTED);
+                    } else {
+                        waiters.add(waiter);
+                    }
+                }
+                if (waiter.state.get() == Waiter.GRANTED) {
+                    sink.success(Boolean.TRUE);
+                    return;
+                }
+                sink.onCancel(() -> {
+                    if (waiter.state.compareAndSet(Waiter.WAITING, Waiter.CANCELLED)) {
+                        waiters.remove(waiter);
+                    }
+                });
+            });
+        }
+
+        Mono<Void> release() {
+            return Mono.fromRunnable(() -> {
+                Waiter next;
+                synchronized (this) {
+                    do {
+                        next = waiters.poll();
+                    } while (next != null && !next.state.compareAndSet(Waiter.WAITING, Waiter.GRANTED));
+                    if (next == null) {
+                        available++;
+                    }
+                }
+                if (next != null) {
+                    next.sink.success(Boolean.TRUE);
+                }
+            });
+        }
+
+        private static class Waiter {
+            static final int WAITING = 0;
+            static final int GRANTED = 1;
+            static final int CANCELLED = 2;
+
+            final MonoSink<Boolean> sink;
+            final AtomicInteger state = new AtomicInteger(WAITING);
+
+            Waiter(MonoSink<Boolean> sink) {
+                this.sink = sink;
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.moss.starter;
+
+import com.moss.starter.config.FtpConfiguration;
+import com.moss.starter.propeties.FtpOptionProperties;
+import org.apache.ftpserver.ConnectionConfigFactory;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ftplet.Authority;
+import org.apache.ftpserver.ftplet.Ftplet;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.usermanager.impl.ConcurrentLoginPermission;
+import org.apache.ftpserver.usermanager.impl.WritePermission;
+import org.junit.rules.ExternalResource;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 测试使用的嵌入式FTP服务器（Apache FtpServer），根目录为临时目录，用户名u，密码p
+ *
+ * @author lwj
+ */
+public class EmbeddedFtpServer extends ExternalResource {
+
+    public static final String USERNAME = "u";
+    public static final String PASSWORD = "p";
+
+    private final TemporaryFolder folder = new TemporaryFolder();
+    private final Map<String, Ftplet> ftplets = new LinkedHashMap<>();
+    private FtpServer server;
+    private int port;
+
+    /**
+     * 添加Ftplet（在服务器启动前调用），用于模拟服务器的异常行为
+     */
+    public EmbeddedFtpServer withFtplet(String name, Ftplet ftplet) {
+        ftplets.put(name, ftplet);
+        return this;
+    }
+
+    @Override
+    protected void before() throws Throwable {
+        folder.create();
+        port = freePort();
+        FtpServerFactory serverFactory = new FtpServerFactory();
+        ListenerFactory listenerFactory = new ListenerFactory();
+        listenerFactory.setPort(port);
+        serverFactory.addListener("default", listenerFactory.createListener());
+        BaseUser user = new BaseUser();
+        user.setName(USERNAME);
+        user.setPassword(PASSWORD);
+        user.setHomeDirectory(folder.getRoot().getAbsolutePath());
+        List<Authority> authorities = new ArrayList<>();
+        authorities.add(new WritePermission());
+        authorities.add(new ConcurrentLoginPermission(100, 100));
+        user.setAuthorities(authorities);
+        serverFactory.getUserManager().save(user);
+        ConnectionConfigFactory connectionConfig = new ConnectionConfigFactory();
+        connectionConfig.setMaxLogins(100);
+        connectionConfig.setAnonymousLoginEnabled(false);
+        serverFactory.setConnectionConfig(connectionConfig.createConnectionConfig());
+        serverFactory.setFtplets(ftplets);
+        server = serverFactory.createServer();
+        server.start();
+    }
+
+    @Override
+    protected void after() {
+        if (server != null) {
+            server.stop();
+        }
+        folder.delete();
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return 连接到该服务器的自动配置上下文
+     */
+    public ApplicationContextRunner contextRunner() {
+        return new ApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(FtpConfiguration.class))
+                .withUserConfiguration(FtpOptionProperties.class)
+                .withPropertyValues("moss.ftp.host=127.0.0.1", "moss.ftp.port=" + port,
+                        "moss.ftp.username=" + USERNAME, "moss.ftp.password=" + PASSWORD);
+    }
+
+    /**
+     * @return FTP服务器的根目录
+     */
+    public File getRoot() {
+        return folder.getRoot();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
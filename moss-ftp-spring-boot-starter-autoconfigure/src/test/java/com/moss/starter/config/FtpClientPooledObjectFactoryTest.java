@@ -0,0 +1,52 @@
+package com.moss.starter.config;
+
+import com.moss.starter.EmbeddedFtpServer;
+import com.moss.starter.pool.FtpNodeHealth;
+import com.moss.starter.pool.MossFtpClient;
+import com.moss.starter.propeties.FtpOptionProperties;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 连接的建立、验证结果与服务器节点健康状态
+ *
+ * @author lwj
+ */
+public class FtpClientPooledObjectFactoryTest {
+
+    @ClassRule
+    public static final EmbeddedFtpServer SERVER = new EmbeddedFtpServer();
+
+    @Test
+    public void staleIdleConnectionsDoNotEjectHealthyServer() throws Exception {
+        FtpOptionProperties props = new FtpOptionProperties();
+        props.setUsername(EmbeddedFtpServer.USERNAME);
+        props.setPassword(EmbeddedFtpServer.PASSWORD);
+        FtpOptionProperties.Server server = new FtpOptionProperties.Server();
+        server.setHost("127.0.0.1");
+        server.setPort(SERVER.getPort());
+        FtpNodeHealth health = new FtpNodeHealth("test", 5, 60000, 60000);
+        FtpConfiguration.FtpClientPooledObjectFactory factory = new FtpConfiguration.FtpClientPooledObjectFactory(props, server, health);
+
+        FTPClient healthy = factory.create();
+        try {
+            //  被服务器空闲超时断开的连接验证失败，与验证成功的连接交替出现
+            for (int round = 0; round < 2; round++) {
+                for (int i = 0; i < 4; i++) {
+                    assertFalse(factory.validateObject(new DefaultPooledObject<>(new MossFtpClient())));
+                }
+                assertTrue(factory.validateObject(new DefaultPooledObject<>(healthy)));
+            }
+            assertEquals(0, health.getConsecutiveFailures());
+            assertFalse(health.isEjected(System.currentTimeMillis()));
+        } finally {
+            healthy.disconnect();
+        }
+    }
+}
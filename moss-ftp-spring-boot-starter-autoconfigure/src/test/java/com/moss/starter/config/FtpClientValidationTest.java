@@ -0,0 +1,58 @@
+package com.moss.starter.config;
+
+import com.moss.starter.EmbeddedFtpServer;
+import com.moss.starter.service.MossFtpService;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.ftpserver.ftplet.DefaultFtplet;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.ftplet.FtpSession;
+import org.apache.ftpserver.ftplet.FtpletResult;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 连接校验按最近一次使用的时间决定是否发送NOOP
+ *
+ * @author lwj
+ */
+public class FtpClientValidationTest {
+
+    private static final AtomicInteger NOOP_COUNT = new AtomicInteger();
+
+    @ClassRule
+    public static final EmbeddedFtpServer SERVER = new EmbeddedFtpServer().withFtplet("noop", new DefaultFtplet() {
+        @Override
+        public FtpletResult beforeCommand(FtpSession session, FtpRequest request) {
+            if ("NOOP".equals(request.getCommand())) {
+                NOOP_COUNT.incrementAndGet();
+            }
+            return FtpletResult.DEFAULT;
+        }
+    });
+
+    @Test
+    public void returnValidationUsesLastUse() {
+        SERVER.contextRunner().withPropertyValues("moss.ftp.pool.max-total=1", "moss.ftp.pool.test-on-borrow=false",
+                "moss.ftp.pool.test-on-return=true", "moss.ftp.pool.test-while-idle=false",
+                "moss.ftp.pool.validation-idle-threshold-millis=200").run(context -> {
+            GenericObjectPool<FTPClient> pool = context.getBean(MossFtpService.class).getFtpClientPools().getNodes().get(0).getPool();
+            FTPClient ftpClient = pool.borrowObject();
+            ftpClient.printWorkingDirectory();
+            pool.returnObject(ftpClient);
+            //  刚收到过应答，不发送NOOP
+            assertEquals(0, NOOP_COUNT.get());
+
+            //  借出后长时间未使用，归还时在池中的空闲时间为0，但仍需发送NOOP
+            ftpClient = pool.borrowObject();
+            Thread.sleep(300);
+            pool.returnObject(ftpClient);
+            assertEquals(1, NOOP_COUNT.get());
+            assertEquals(0, pool.getDestroyedCount());
+        });
+    }
+}
@@ -0,0 +1,72 @@
+package com.moss.starter.config;
+
+import com.moss.starter.EmbeddedFtpServer;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * 在只有Reactor、没有Servlet API（WebFlux/Netty应用）的类路径上加载自动配置并使用响应式服务
+ * <p>
+ * 测试类路径去掉Servlet API、Tomcat和Spring Web MVC的jar后，在独立的类加载器中启动上下文，
+ * 缺少Servlet类时会直接抛出NoClassDefFoundError或NoSuchBeanDefinitionException。
+ *
+ * @author lwj
+ */
+public class FtpConfigurationWithoutServletTest {
+
+    private static final Pattern SERVLET_JARS = Pattern.compile(
+            "(javax\\.servlet-api|jakarta\\.servlet-api|tomcat-[^/\\\\]*|spring-webmvc|spring-boot-starter-web|spring-boot-starter-tomcat)[^/\\\\]*\\.jar$");
+
+    @ClassRule
+    public static final EmbeddedFtpServer SERVER = new EmbeddedFtpServer();
+
+    @Test
+    public void reactiveServiceLoadsWithoutServletApi() throws Exception {
+        byte[] content = "reactive without servlet".getBytes(StandardCharsets.UTF_8);
+        try (URLClassLoader classLoader = new URLClassLoader(classPathWithoutServlet(), ClassLoader.getSystemClassLoader().getParent())) {
+            try {
+                Class.forName("javax.servlet.http.HttpServletResponse", false, classLoader);
+                fail("servlet api is still on the class path");
+            } catch (ClassNotFoundException expected) {
+                //  已去掉Servlet API
+            }
+            Thread thread = Thread.currentThread();
+            ClassLoader previous = thread.getContextClassLoader();
+            thread.setContextClassLoader(classLoader);
+            try {
+                Method run = classLoader.loadClass(NoServletApplication.class.getName()).getMethod("run", int.class, byte[].class);
+                run.invoke(null, SERVER.getPort(), content);
+            } catch (InvocationTargetException e) {
+                throw (Exception) (e.getCause() instanceof Exception ? e.getCause() : e);
+            } finally {
+                thread.setContextClassLoader(previous);
+            }
+        }
+        assertArrayEquals(content, Files.readAllBytes(new File(SERVER.getRoot(), "reactive/a.txt").toPath()));
+    }
+
+    private static URL[] classPathWithoutServlet() throws Exception {
+        String classPath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+        List<URL> urls = new ArrayList<>();
+        for (String entry : classPath.split(File.pathSeparator)) {
+            if (!entry.isEmpty() && !SERVLET_JARS.matcher(entry).find()) {
+                urls.add(new File(entry).toURI().toURL());
+            }
+        }
+        return urls.toArray(new URL[0]);
+    }
+}
@@ -0,0 +1,55 @@
+package com.moss.starter.config;
+
+import com.moss.starter.EmbeddedFtpServer;
+import com.moss.starter.propeties.FtpOptionProperties;
+import com.moss.starter.service.FtpServletSupport;
+import com.moss.starter.service.MossFtpService;
+import com.moss.starter.service.ReactiveMossFtpService;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 由FtpConfigurationWithoutServletTest在没有Servlet API的类加载器中运行
+ *
+ * @author lwj
+ */
+public final class NoServletApplication {
+
+    private NoServletApplication() {
+    }
+
+    public static void run(int port, byte[] content) {
+        new ApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(FtpConfiguration.class))
+                .withUserConfiguration(FtpOptionProperties.class)
+                .withPropertyValues("moss.ftp.host=127.0.0.1", "moss.ftp.port=" + port,
+                        "moss.ftp.username=" + EmbeddedFtpServer.USERNAME, "moss.ftp.password=" + EmbeddedFtpServer.PASSWORD)
+                .run(context -> {
+                    assertThat(context).hasNotFailed();
+                    assertEquals(0, context.getBeansOfType(FtpServletSupport.class).size());
+                    ReactiveMossFtpService reactive = context.getBean(ReactiveMossFtpService.class);
+                    DataBuffer buffer = new DefaultDataBufferFactory().wrap(content);
+                    assertTrue(reactive.upload("/reactive", "a.txt", Flux.just(buffer)).block());
+                    byte[] downloaded = DataBufferUtils.join(reactive.download("/reactive/a.txt"))
+                            .map(joined -> {
+                                byte[] bytes = new byte[joined.readableByteCount()];
+                                joined.read(bytes);
+                                DataBufferUtils.release(joined);
+                                return bytes;
+                            }).block();
+                    assertArrayEquals(content, downloaded);
+                    //  没有Response时下载到Response直接返回失败
+                    assertFalse(context.getBean(MossFtpService.class).downLoadFileToResponse("/reactive/a.txt", "a.txt"));
+                });
+    }
+}
@@ -0,0 +1,65 @@
+package com.moss.starter.pool;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.junit.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 按操作类型隔离的连接额度
+ *
+ * @author lwj
+ */
+public class FtpBulkheadTest {
+
+    @Test
+    public void limitsPerOperationClass() throws Exception {
+        FtpBulkhead bulkhead = bulkhead(8);
+        assertEquals(8, bulkhead.getLimit(FtpOperationClass.SMALL));
+        assertEquals(4, bulkhead.getLimit(FtpOperationClass.BULK));
+        assertEquals(2, bulkhead.getLimit(FtpOperationClass.LISTING));
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(bulkhead.acquire(FtpOperationClass.BULK, 0));
+        }
+        assertFalse(bulkhead.acquire(FtpOperationClass.BULK, 10));
+        assertEquals(1, bulkhead.getRejectedCount(FtpOperationClass.BULK));
+        //  批量操作用完额度时，其他类型不受影响
+        assertTrue(bulkhead.acquire(FtpOperationClass.SMALL, 0));
+        assertTrue(bulkhead.acquire(FtpOperationClass.LISTING, 0));
+        assertEquals(4, bulkhead.getInUse(FtpOperationClass.BULK));
+        assertEquals(1, bulkhead.getInUse(FtpOperationClass.SMALL));
+
+        bulkhead.release(FtpOperationClass.BULK);
+        assertTrue(bulkhead.acquire(FtpOperationClass.BULK, 0));
+    }
+
+    @Test
+    public void boundPermitIsReleasedOnce() throws Exception {
+        FtpBulkhead bulkhead = bulkhead(2);
+        assertEquals(1, bulkhead.getLimit(FtpOperationClass.BULK));
+        FTPClient ftpClient = new FTPClient();
+        assertTrue(bulkhead.acquire(FtpOperationClass.BULK, 0));
+        bulkhead.bind(ftpClient, FtpOperationClass.BULK);
+        assertFalse(bulkhead.acquire(FtpOperationClass.BULK, 0));
+
+        bulkhead.release(ftpClient);
+        //  归还后又销毁同一个ftpClient时不重复释放
+        bulkhead.release(ftpClient);
+        assertEquals(0, bulkhead.getInUse(FtpOperationClass.BULK));
+        assertTrue(bulkhead.acquire(FtpOperationClass.BULK, 0));
+        assertFalse(bulkhead.acquire(FtpOperationClass.BULK, 0));
+    }
+
+    private static FtpBulkhead bulkhead(int maxConnections) {
+        Map<FtpOperationClass, Double> shares = new EnumMap<>(FtpOperationClass.class);
+        shares.put(FtpOperationClass.BULK, 0.5);
+        shares.put(FtpOperationClass.LISTING, 0.25);
+        return new FtpBulkhead(maxConnections, shares);
+    }
+}
@@ -0,0 +1,135 @@
+package com.moss.starter.pool;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 多服务器连接池：获取空闲连接、熔断
+ *
+ * @author lwj
+ */
+public class FtpClientPoolGroupTest {
+
+    @Test
+    public void borrowIdleObjectDoesNotCreate() throws Exception {
+        GenericObjectPool<FTPClient> pool = newPool();
+        FtpClientPoolGroup group = FtpClientPoolGroup.single(pool);
+        try {
+            group.borrowIdleObject(null);
+            fail("no idle ftpClient expected");
+        } catch (NoSuchElementException e) {
+            assertEquals(0, pool.getCreatedCount());
+        }
+
+        pool.addObject();
+        FTPClient ftpClient = group.borrowIdleObject(null);
+        assertNotNull(ftpClient);
+        assertEquals(1, pool.getCreatedCount());
+        group.returnObject(ftpClient);
+        assertEquals(1, pool.getNumIdle());
+        pool.close();
+    }
+
+    @Test
+    public void probeWithIdleConnectionClosesCircuit() throws Exception {
+        GenericObjectPool<FTPClient> pool = newPool();
+        pool.addObject();
+        FtpNodeHealth health = new FtpNodeHealth("test", 1, 1, 1);
+        FtpClientPoolGroup group = failFastGroup(pool, health);
+        health.recordFailure();
+        Thread.sleep(5);
+
+        //  半开状态的尝试请求取得空闲连接（不经过建立或验证），同样关闭熔断
+        FTPClient ftpClient = group.borrowObject(null, 0);
+        long now = System.currentTimeMillis();
+        assertTrue(health.tryAcquire(now));
+        assertTrue(health.tryAcquire(now));
+        group.returnObject(ftpClient);
+        pool.close();
+    }
+
+    @Test
+    public void openCircuitFailsFast() throws Exception {
+        GenericObjectPool<FTPClient> pool = newPool();
+        FtpNodeHealth health = new FtpNodeHealth("test", 1, 60000, 60000);
+        FtpClientPoolGroup group = failFastGroup(pool, health);
+        health.recordFailure();
+        try {
+            group.borrowObject(null, -1);
+            fail("circuit open expected");
+        } catch (FtpCircuitOpenException e) {
+            //  不尝试获取连接
+            assertEquals(0, pool.getCreatedCount());
+            assertEquals(1, group.getRejectedCount());
+        }
+        pool.close();
+    }
+
+    @Test
+    public void failedProbeIsReleased() throws Exception {
+        GenericObjectPool<FTPClient> pool = new GenericObjectPool<>(new BasePooledObjectFactory<FTPClient>() {
+            @Override
+            public FTPClient create() throws Exception {
+                throw new Exception("connection refused");
+            }
+
+            @Override
+            public PooledObject<FTPClient> wrap(FTPClient ftpClient) {
+                return new DefaultPooledObject<>(ftpClient);
+            }
+        });
+        FtpNodeHealth health = new FtpNodeHealth("test", 1, 1, 1);
+        FtpClientPoolGroup group = failFastGroup(pool, health);
+        health.recordFailure();
+        Thread.sleep(5);
+
+        //  尝试请求获取连接失败后释放半开状态，下一个请求仍可尝试，而不是一直熔断
+        for (int i = 0; i < 2; i++) {
+            try {
+                group.borrowObject(null, 0);
+                fail("connection refused expected");
+            } catch (FtpCircuitOpenException e) {
+                fail("probe was not released");
+            } catch (Exception e) {
+                assertEquals("connection refused", e.getMessage());
+            }
+        }
+        assertEquals(0, group.getRejectedCount());
+        pool.close();
+    }
+
+    private static FtpClientPoolGroup failFastGroup(GenericObjectPool<FTPClient> pool, FtpNodeHealth health) {
+        FtpClientPoolGroup group = new FtpClientPoolGroup(
+                Collections.singletonList(new FtpServerNode("test", pool, health)), FtpRoutingStrategy.ROUND_ROBIN, 1);
+        group.setFailFast(true);
+        return group;
+    }
+
+    private static GenericObjectPool<FTPClient> newPool() {
+        GenericObjectPool<FTPClient> pool = new GenericObjectPool<>(new BasePooledObjectFactory<FTPClient>() {
+            @Override
+            public FTPClient create() {
+                return new FTPClient();
+            }
+
+            @Override
+            public PooledObject<FTPClient> wrap(FTPClient ftpClient) {
+                return new DefaultPooledObject<>(ftpClient);
+            }
+        });
+        pool.setMaxTotal(4);
+        return pool;
+    }
+}
@@ -0,0 +1,63 @@
+package com.moss.starter.pool;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 节点健康状态作为熔断器：断开、半开、恢复
+ *
+ * @author lwj
+ */
+public class FtpNodeHealthTest {
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        FtpNodeHealth health = new FtpNodeHealth("test", 3, 1000, 4000);
+        long now = System.currentTimeMillis();
+        health.recordFailure();
+        health.recordFailure();
+        assertTrue(health.tryAcquire(now));
+        health.release();
+        health.recordFailure();
+        assertTrue(health.isEjected(now));
+        assertFalse(health.tryAcquire(now));
+    }
+
+    @Test
+    public void halfOpenAllowsSingleProbe() {
+        FtpNodeHealth health = new FtpNodeHealth("test", 1, 1000, 4000);
+        health.recordFailure();
+        long later = health.getEjectedUntil();
+        assertTrue(health.tryAcquire(later));
+        assertFalse(health.tryAcquire(later));
+
+        //  尝试请求没有结果就结束时，下一个请求继续尝试
+        health.release();
+        assertTrue(health.tryAcquire(later));
+        assertFalse(health.tryAcquire(later));
+
+        health.recordSuccess();
+        assertTrue(health.tryAcquire(later));
+        assertTrue(health.tryAcquire(later));
+        assertEquals(0, health.getConsecutiveFailures());
+    }
+
+    @Test
+    public void failedProbeReopensWithLongerBackoff() throws Exception {
+        FtpNodeHealth health = new FtpNodeHealth("test", 1, 20, 30);
+        health.recordFailure();
+        long firstOpen = health.getEjectedUntil() - System.currentTimeMillis();
+        assertTrue(firstOpen <= 20);
+
+        Thread.sleep(25);
+        assertTrue(health.tryAcquire(System.currentTimeMillis()));
+        health.recordFailure();
+        //  尝试请求失败时立即以翻倍（不超过上限）的时间再次断开
+        long secondOpen = health.getEjectedUntil() - System.currentTimeMillis();
+        assertTrue(secondOpen > 20 && secondOpen <= 30);
+        assertFalse(health.tryAcquire(System.currentTimeMillis()));
+    }
+}
@@ -0,0 +1,48 @@
+package com.moss.starter.pool;
+
+import com.moss.starter.io.FtpChecksumAlgorithm;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * HASH、XCRC、XMD5、MD5应答中摘要的解析
+ *
+ * @author lwj
+ */
+public class MossFtpClientChecksumTest {
+
+    private static final String MD5 = "0cc175b9c0f1b6a831c399e269772661";
+
+    @Test
+    public void hashReplyUsesFieldAfterRange() {
+        //  文件名恰好也是十六进制字符串，不能被当作摘要
+        assertEquals(MD5, MossFtpClient.parseChecksum(FtpChecksumAlgorithm.MD5, "HASH",
+                "213 MD5 0-1 " + MD5.toUpperCase() + " ffffffffffffffffffffffffffffffff\r\n"));
+        assertEquals("0000abcd", MossFtpClient.parseChecksum(FtpChecksumAlgorithm.CRC32, "HASH",
+                "213 CRC32 0-49 ABCD file name.txt"));
+        assertNull(MossFtpClient.parseChecksum(FtpChecksumAlgorithm.MD5, "HASH", "213 MD5 0-1"));
+    }
+
+    @Test
+    public void xcrcReplyUsesFirstField() {
+        assertEquals("e8b7be43", MossFtpClient.parseChecksum(FtpChecksumAlgorithm.CRC32, "XCRC", "250 E8B7BE43\r\n"));
+        assertEquals("0000beef", MossFtpClient.parseChecksum(FtpChecksumAlgorithm.CRC32, "XCRC", "250 beef"));
+        //  第一个字段不是摘要时不在应答的其他位置查找
+        assertNull(MossFtpClient.parseChecksum(FtpChecksumAlgorithm.CRC32, "XCRC", "250 CRC e8b7be43"));
+    }
+
+    @Test
+    public void xmd5ReplyUsesFirstField() {
+        assertEquals(MD5, MossFtpClient.parseChecksum(FtpChecksumAlgorithm.MD5, "XMD5", "250 " + MD5));
+        assertNull(MossFtpClient.parseChecksum(FtpChecksumAlgorithm.MD5, "XMD5", "250 " + MD5.substring(1)));
+        assertNull(MossFtpClient.parseChecksum(FtpChecksumAlgorithm.MD5, "XMD5", "250"));
+    }
+
+    @Test
+    public void md5ReplyUsesLastField() {
+        assertEquals(MD5, MossFtpClient.parseChecksum(FtpChecksumAlgorithm.MD5, "MD5",
+                "251 \"/dir/a b.txt\" " + MD5 + "\r\n"));
+    }
+}
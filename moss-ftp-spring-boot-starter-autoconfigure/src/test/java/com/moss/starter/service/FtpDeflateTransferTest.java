@@ -0,0 +1,106 @@
+package com.moss.starter.service;
+
+import com.moss.starter.EmbeddedFtpServer;
+import com.moss.starter.pool.MossFtpClient;
+import org.apache.commons.net.ftp.FTP;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MODE Z数据连接（DeflateSocket）的上传、下载和提前关闭
+ *
+ * @author lwj
+ */
+public class FtpDeflateTransferTest {
+
+    @ClassRule
+    public static final EmbeddedFtpServer SERVER = new EmbeddedFtpServer();
+
+    private static final byte[] CONTENT = content();
+
+    private MossFtpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        new File(SERVER.getRoot(), "deflate").mkdirs();
+        client = new MossFtpClient();
+        client.connect("127.0.0.1", SERVER.getPort());
+        assertTrue(client.login(EmbeddedFtpServer.USERNAME, EmbeddedFtpServer.PASSWORD));
+        client.setFileType(FTP.BINARY_FILE_TYPE);
+        client.enterLocalPassiveMode();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.disconnect();
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        client.markOperation();
+        assertTrue(client.compressNextTransfer());
+        assertTrue(client.storeFile("/deflate/a.csv", new ByteArrayInputStream(CONTENT)));
+        //  服务器解压后保存原始内容
+        assertArrayEquals(CONTENT, Files.readAllBytes(new File(SERVER.getRoot(), "deflate/a.csv").toPath()));
+        assertEquals(CONTENT.length, client.getOperationContentBytes());
+        assertTrue(client.getOperationWireBytes() < CONTENT.length / 4);
+
+        client.markOperation();
+        assertTrue(client.compressNextTransfer());
+        ByteArrayOutputStream downloaded = new ByteArrayOutputStream();
+        assertTrue(client.retrieveFile("/deflate/a.csv", downloaded));
+        assertArrayEquals(CONTENT, downloaded.toByteArray());
+        assertEquals(CONTENT.length, client.getOperationContentBytes());
+        assertTrue(client.getOperationWireBytes() < CONTENT.length / 4);
+    }
+
+    @Test
+    public void partialReadThenFinishPartialTransfer() throws IOException {
+        Files.write(new File(SERVER.getRoot(), "deflate/b.csv").toPath(), CONTENT);
+        assertTrue(client.compressNextTransfer());
+        InputStream in = client.retrieveFileStream("/deflate/b.csv");
+        assertNotNull(in);
+        byte[] head = new byte[100];
+        int read = 0;
+        while (read < head.length) {
+            read += in.read(head, read, head.length - read);
+        }
+        in.close();
+        assertArrayEquals(Arrays.copyOf(CONTENT, head.length), head);
+        //  提前关闭数据连接后控制连接的应答已同步，连接可以继续使用
+        assertTrue(new MossFtpService().finishPartialTransfer(client));
+
+        assertTrue(client.compressNextTransfer());
+        ByteArrayOutputStream downloaded = new ByteArrayOutputStream();
+        assertTrue(client.retrieveFile("/deflate/b.csv", downloaded));
+        assertArrayEquals(CONTENT, downloaded.toByteArray());
+        downloaded.reset();
+        //  之后的传输恢复为MODE S
+        assertTrue(client.retrieveFile("/deflate/b.csv", downloaded));
+        assertArrayEquals(CONTENT, downloaded.toByteArray());
+    }
+
+    private static byte[] content() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            builder.append(i).append(",name-").append(i % 100).append(",value\n");
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,123 @@
+package com.moss.starter.service;
+
+import com.moss.starter.EmbeddedFtpServer;
+import org.apache.ftpserver.ftplet.DefaultFtplet;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.ftplet.FtpSession;
+import org.apache.ftpserver.ftplet.FtpletResult;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 分段下载：临时文件、清单和继续下载
+ *
+ * @author lwj
+ */
+public class FtpSegmentedDownloaderTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+    private static final AtomicInteger RETRIEVED = new AtomicInteger();
+    private static volatile long failOffset = -1;
+
+    /**
+     * 统计RETR次数；failOffset对应的分段下载时断开连接
+     */
+    @ClassRule
+    public static final EmbeddedFtpServer SERVER = new EmbeddedFtpServer().withFtplet("segment", new DefaultFtplet() {
+        @Override
+        public FtpletResult onDownloadStart(FtpSession session, FtpRequest request) {
+            RETRIEVED.incrementAndGet();
+            return session.getFileOffset() == failOffset ? FtpletResult.DISCONNECT : FtpletResult.DEFAULT;
+        }
+    });
+
+    @Rule
+    public final TemporaryFolder local = new TemporaryFolder();
+
+    private File remote;
+
+    @Before
+    public void setUp() throws IOException {
+        new File(SERVER.getRoot(), "segment").mkdirs();
+        remote = new File(SERVER.getRoot(), "segment/a.bin");
+        Files.write(remote.toPath(), content(1));
+        RETRIEVED.set(0);
+        failOffset = -1;
+    }
+
+    @Test
+    public void downloadsThroughPartFile() {
+        runner().run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            assertTrue(service.downLoadFileSegmented("/segment", "a.bin", local.getRoot().getPath()));
+            assertArrayEquals(content(1), Files.readAllBytes(new File(local.getRoot(), "a.bin").toPath()));
+            assertFalse(new File(local.getRoot(), "a.bin.part").exists());
+            assertFalse(new File(local.getRoot(), "a.bin.segments").exists());
+            assertEquals(4, RETRIEVED.get());
+        });
+    }
+
+    @Test
+    public void failedDownloadLeavesNoLocalFileAndResumes() {
+        runner().run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            failOffset = SEGMENT_SIZE;
+            assertFalse(service.downLoadFileSegmented("/segment", "a.bin", local.getRoot().getPath()));
+            //  失败时只有临时文件和清单，没有看起来完整的本地文件
+            assertFalse(new File(local.getRoot(), "a.bin").exists());
+            assertTrue(new File(local.getRoot(), "a.bin.part").exists());
+            assertTrue(new File(local.getRoot(), "a.bin.segments").exists());
+
+            failOffset = -1;
+            RETRIEVED.set(0);
+            assertTrue(service.downLoadFileSegmented("/segment", "a.bin", local.getRoot().getPath()));
+            assertEquals(1, RETRIEVED.get());
+            assertArrayEquals(content(1), Files.readAllBytes(new File(local.getRoot(), "a.bin").toPath()));
+        });
+    }
+
+    @Test
+    public void changedRemoteFileRestartsAllSegments() {
+        runner().run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            failOffset = SEGMENT_SIZE;
+            assertFalse(service.downLoadFileSegmented("/segment", "a.bin", local.getRoot().getPath()));
+
+            //  服务器上的文件被替换为大小相同、内容不同的文件
+            Files.write(remote.toPath(), content(2));
+            assertTrue(remote.setLastModified(remote.lastModified() + 60_000));
+            failOffset = -1;
+            RETRIEVED.set(0);
+            assertTrue(service.downLoadFileSegmented("/segment", "a.bin", local.getRoot().getPath()));
+            assertEquals(4, RETRIEVED.get());
+            assertArrayEquals(content(2), Files.readAllBytes(new File(local.getRoot(), "a.bin").toPath()));
+        });
+    }
+
+    private static ApplicationContextRunner runner() {
+        return SERVER.contextRunner().withPropertyValues("moss.ftp.try-num=1",
+                "moss.ftp.segment.min-file-size=1", "moss.ftp.segment.segment-size=" + SEGMENT_SIZE,
+                "moss.ftp.segment.max-connections=2");
+    }
+
+    private static byte[] content(long seed) {
+        byte[] content = new byte[SEGMENT_SIZE * 4];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+}
@@ -0,0 +1,90 @@
+package com.moss.starter.service;
+
+import org.junit.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 下载到Response时的响应头和Range处理
+ *
+ * @author lwj
+ */
+public class FtpServletSupportTest {
+
+    @Test
+    public void fullDownload() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        long[] range = support(new MockHttpServletRequest(), response).prepareDownload("a b.txt", 100);
+        assertArrayEquals(new long[]{0, 100}, range);
+        assertEquals(200, response.getStatus());
+        assertEquals("100", response.getHeader("Content-Length"));
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertEquals("attachment;filename=\"a%20b.txt\"", response.getHeader("Content-Disposition"));
+    }
+
+    @Test
+    public void partialDownload() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=-10");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertArrayEquals(new long[]{90, 10}, support(request, response).prepareDownload("a.txt", 100));
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 90-99/100", response.getHeader("Content-Range"));
+        assertEquals("10", response.getHeader("Content-Length"));
+    }
+
+    @Test
+    public void unsatisfiableRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=0-");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertNull(support(request, response).prepareDownload("empty.txt", 0));
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */0", response.getHeader("Content-Range"));
+    }
+
+    @Test
+    public void zeroLengthFileWithoutRange() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertArrayEquals(new long[]{0, 0}, support(new MockHttpServletRequest(), response).prepareDownload("empty.txt", 0));
+        assertEquals(200, response.getStatus());
+        assertEquals("0", response.getHeader("Content-Length"));
+    }
+
+    @Test
+    public void withoutRequest() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FtpServletSupport support = support(null, response);
+        assertTrue(support.isAvailable());
+        assertArrayEquals(new long[]{0, 100}, support.prepareDownload("a.txt", 100));
+    }
+
+    @Test
+    public void withoutResponse() {
+        assertFalse(support(null, null).isAvailable());
+    }
+
+    private static FtpServletSupport support(HttpServletRequest request, HttpServletResponse response) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        if (request != null) {
+            beanFactory.registerSingleton("request", request);
+        }
+        if (response != null) {
+            beanFactory.registerSingleton("response", response);
+        }
+        ObjectProvider<HttpServletRequest> requestProvider = beanFactory.getBeanProvider(HttpServletRequest.class);
+        ObjectProvider<HttpServletResponse> responseProvider = beanFactory.getBeanProvider(HttpServletResponse.class);
+        return new FtpServletSupport(requestProvider, responseProvider);
+    }
+}
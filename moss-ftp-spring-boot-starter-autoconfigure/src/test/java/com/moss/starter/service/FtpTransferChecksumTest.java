@@ -0,0 +1,57 @@
+package com.moss.starter.service;
+
+import com.moss.starter.EmbeddedFtpServer;
+import com.moss.starter.dto.FtpOperationResultDto;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 服务器不支持摘要命令时通过sidecar文件校验下载
+ *
+ * @author lwj
+ */
+public class FtpTransferChecksumTest {
+
+    @ClassRule
+    public static final EmbeddedFtpServer SERVER = new EmbeddedFtpServer();
+
+    @Rule
+    public final TemporaryFolder local = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        File directory = new File(SERVER.getRoot(), "sidecar");
+        directory.mkdirs();
+        Files.write(new File(directory, "big.txt").toPath(), "big".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(directory, "big.txt.crc32c").toPath(), new byte[FtpTransferChecksum.MAX_SIDECAR_BYTES * 4]);
+        Files.write(new File(directory, "plain.txt").toPath(), "plain".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void oversizedSidecarIsRejected() {
+        //  CRC32C没有对应的服务器命令，只能通过sidecar文件校验
+        SERVER.contextRunner().withPropertyValues("moss.ftp.pool.max-total=1", "moss.ftp.checksum.enabled=true",
+                "moss.ftp.checksum.algorithm=crc32c").run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            FtpOperationResultDto result = service.downLoadFileWithChecksum("/sidecar", "big.txt", local.getRoot().getPath());
+            assertFalse(result.isSuccess());
+            assertTrue(result.getMessage(), result.getMessage().contains("sidecar"));
+
+            //  读取sidecar的应答已处理，连接可以继续使用
+            assertTrue(service.downLoadFileWithChecksum("/sidecar", "plain.txt", local.getRoot().getPath()).isSuccess());
+            assertEquals(1, service.getFtpClientPools().getNodes().get(0).getPool().getCreatedCount());
+        });
+    }
+}
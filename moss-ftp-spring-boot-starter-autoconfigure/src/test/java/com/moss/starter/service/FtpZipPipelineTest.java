@@ -0,0 +1,121 @@
+package com.moss.starter.service;
+
+import com.moss.starter.EmbeddedFtpServer;
+import com.moss.starter.dto.FtpFileDto;
+import com.moss.starter.pool.FtpOperationClass;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.ftpserver.ftplet.DefaultFtplet;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.ftplet.FtpSession;
+import org.apache.ftpserver.ftplet.FtpletResult;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 打包下载时预取条目的认领与释放
+ *
+ * @author lwj
+ */
+public class FtpZipPipelineTest {
+
+    /**
+     * 预取slow.txt开始后，写入线程才开始下载first.txt；slow.txt的RETR延迟应答，写入线程到达该条目时预取仍在执行
+     */
+    private static final CountDownLatch PREFETCH_STARTED = new CountDownLatch(1);
+
+    @ClassRule
+    public static final EmbeddedFtpServer SERVER = new EmbeddedFtpServer().withFtplet("slow", new DefaultFtplet() {
+        @Override
+        public FtpletResult onDownloadStart(FtpSession session, FtpRequest request) {
+            try {
+                if (request.getArgument().contains("slow")) {
+                    PREFETCH_STARTED.countDown();
+                    Thread.sleep(500);
+                } else if (request.getArgument().contains("first")) {
+                    PREFETCH_STARTED.await(5, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return FtpletResult.DEFAULT;
+        }
+    });
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        File directory = new File(SERVER.getRoot(), "zip");
+        directory.mkdirs();
+        Files.write(new File(directory, "first.txt").toPath(), "first".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(directory, "slow.txt").toPath(), "slow".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void runningPrefetchIsAwaitedAndReleased() {
+        SERVER.contextRunner().withPropertyValues("moss.ftp.pool.max-total=4", "moss.ftp.bulkhead.enabled=true",
+                "moss.ftp.bulkhead.bulk-share=1.0").run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            GenericObjectPool<FTPClient> pool = service.getFtpClientPools().getNodes().get(0).getPool();
+            Semaphore budget = new Semaphore(1024 * 1024);
+            FtpZipPipeline pipeline = new FtpZipPipeline(service, service.getTransferExecutor(), 1, budget, service.getBufferPool());
+
+            //  预取只使用空闲连接
+            pool.addObject();
+            pool.addObject();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            FTPClient ftpClient = service.getFtpClient("/zip");
+            try (ZipOutputStream zipOutputStream = new ZipOutputStream(out)) {
+                assertEquals(9, pipeline.write(Arrays.asList(file("first.txt"), file("slow.txt")), zipOutputStream, ftpClient));
+            } finally {
+                service.releaseFtpClient(ftpClient);
+            }
+
+            Map<String, String> entries = read(out.toByteArray());
+            assertEquals(Arrays.asList("first.txt", "slow.txt"), Arrays.asList(entries.keySet().toArray()));
+            assertEquals("slow", entries.get("slow.txt"));
+            //  预取结果被使用，连接、连接额度和缓冲区额度全部归还
+            assertEquals(0, pool.getNumActive());
+            assertEquals(0, service.getBulkhead().getInUse(FtpOperationClass.BULK));
+            assertEquals(0, service.getBulkhead().getInUse(FtpOperationClass.SMALL));
+            assertEquals(1024 * 1024, budget.availablePermits());
+        });
+    }
+
+    private static FtpFileDto file(String fileName) {
+        FtpFileDto ftpFileDto = new FtpFileDto();
+        ftpFileDto.setPath("/zip/" + fileName);
+        ftpFileDto.setFileName(fileName);
+        return ftpFileDto;
+    }
+
+    private static Map<String, String> read(byte[] zip) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                entries.put(entry.getName(), StreamUtils.copyToString(in, StandardCharsets.UTF_8));
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,203 @@
+package com.moss.starter.service;
+
+import com.moss.starter.EmbeddedFtpServer;
+import com.moss.starter.dto.FtpMoveFileDto;
+import com.moss.starter.dto.FtpOperationResultDto;
+import com.moss.starter.dto.FtpUploadFileDto;
+import com.moss.starter.propeties.FtpOptionProperties;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.ftpserver.ftplet.DefaultFtplet;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.ftplet.FtpSession;
+import org.apache.ftpserver.ftplet.FtpletResult;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 批量删除、移动（逐个发送和流水线发送命令）
+ *
+ * @author lwj
+ */
+public class MossFtpServiceBatchTest {
+
+    /**
+     * 删除名称以drop开头的文件时断开连接，模拟应答前连接中断
+     */
+    @ClassRule
+    public static final EmbeddedFtpServer SERVER = new EmbeddedFtpServer().withFtplet("drop", new DefaultFtplet() {
+        @Override
+        public FtpletResult onDeleteStart(FtpSession session, FtpRequest request) {
+            return request.getArgument().contains("/drop") ? FtpletResult.DISCONNECT : FtpletResult.DEFAULT;
+        }
+    });
+
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = new File(SERVER.getRoot(), "batch");
+        root.mkdirs();
+        for (String name : Arrays.asList("a.txt", "b.txt", "c.txt", "d.txt", "drop.txt")) {
+            Files.write(new File(root, name).toPath(), name.getBytes());
+        }
+    }
+
+    @Test
+    public void pipeliningIsOffByDefault() {
+        assertEquals(1, new FtpOptionProperties().getBatch().getPipelineDepth());
+    }
+
+    @Test
+    public void deleteFilesOneByOne() {
+        runner(1).run(context -> {
+            List<FtpOperationResultDto> results = context.getBean(MossFtpService.class)
+                    .deleteFiles(Arrays.asList("/batch/a.txt", "/batch/missing.txt", "/batch/b.txt"));
+            assertTrue(results.get(0).isSuccess());
+            assertFalse(results.get(1).isSuccess());
+            assertFalse(results.get(1).isUnknown());
+            assertTrue(results.get(2).isSuccess());
+            assertFalse(new File(root, "a.txt").exists());
+            assertFalse(new File(root, "b.txt").exists());
+        });
+    }
+
+    @Test
+    public void deleteFilesPipelined() {
+        runner(16).run(context -> {
+            List<FtpOperationResultDto> results = context.getBean(MossFtpService.class)
+                    .deleteFiles(Arrays.asList("/batch/a.txt", "/batch/missing.txt", "/batch/b.txt", "/batch/c.txt"));
+            assertTrue(results.get(0).isSuccess());
+            assertFalse(results.get(1).isSuccess());
+            assertTrue(results.get(2).isSuccess());
+            assertTrue(results.get(3).isSuccess());
+            assertFalse(new File(root, "c.txt").exists());
+        });
+    }
+
+    @Test
+    public void moveFilesPipelined() {
+        runner(16).run(context -> {
+            List<FtpOperationResultDto> results = context.getBean(MossFtpService.class).moveFiles(Arrays.asList(
+                    new FtpMoveFileDto("/batch/a.txt", "/batch/moved/a.txt"),
+                    new FtpMoveFileDto("/batch/missing.txt", "/batch/moved/missing.txt"),
+                    new FtpMoveFileDto("/batch/b.txt", "/batch/moved/b.txt")));
+            assertTrue(results.get(0).isSuccess());
+            //  RNFR失败时RNTO同样失败，不影响之后的文件
+            assertFalse(results.get(1).isSuccess());
+            assertTrue(results.get(2).isSuccess());
+            assertTrue(new File(root, "moved/a.txt").exists());
+            assertTrue(new File(root, "moved/b.txt").exists());
+        });
+    }
+
+    @Test
+    public void pipelinedCommandsWithoutReplyAreUnknown() {
+        runner(16).run(context -> {
+            List<FtpOperationResultDto> results = context.getBean(MossFtpService.class).deleteFiles(Arrays.asList(
+                    "/batch/a.txt", "/batch/drop.txt", "/batch/c.txt", "/batch/d.txt"));
+            assertTrue(results.get(0).isSuccess());
+            //  连接中断时已发送的命令结果未知，不记为失败
+            for (FtpOperationResultDto result : results.subList(1, 4)) {
+                assertFalse(result.isSuccess());
+                assertTrue(result.getMessage(), result.isUnknown());
+            }
+        });
+    }
+
+    @Test
+    public void unsentCommandsContinueOnNewConnection() {
+        runner(1).run(context -> {
+            List<FtpOperationResultDto> results = context.getBean(MossFtpService.class).deleteFiles(Arrays.asList(
+                    "/batch/a.txt", "/batch/drop.txt", "/batch/c.txt", "/batch/d.txt"));
+            assertTrue(results.get(0).isSuccess());
+            assertTrue(results.get(1).isUnknown());
+            assertTrue(results.get(2).isSuccess());
+            assertTrue(results.get(3).isSuccess());
+            assertFalse(new File(root, "d.txt").exists());
+        });
+    }
+
+    @Test
+    public void localErrorFailsOnlyThatFile() {
+        runner(1).run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            List<FtpOperationResultDto> results = service.uploadFiles(Arrays.asList(
+                    upload("/batch/up", "a.txt", new ByteArrayInputStream(new byte[]{1})),
+                    upload("/batch/up", "missing.txt", null),
+                    upload("/batch/up", "b.txt", new ByteArrayInputStream(new byte[]{2}))));
+            assertTrue(results.get(0).isSuccess());
+            assertFalse(results.get(1).isSuccess());
+            assertTrue(results.get(2).isSuccess());
+            //  本地文件不存在不销毁连接
+            GenericObjectPool<FTPClient> pool = service.getFtpClientPools().getNodes().get(0).getPool();
+            assertEquals(0, pool.getDestroyedCount());
+            assertEquals(1, pool.getCreatedCount());
+        });
+    }
+
+    @Test
+    public void singleDirectoryIsSplitAcrossConnections() {
+        runner(1).withPropertyValues("moss.ftp.batch.concurrency=4").run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            List<FtpUploadFileDto> files = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                files.add(upload("/batch/fan", i + ".txt", new SlowInputStream(new byte[]{(byte) i})));
+            }
+            List<FtpOperationResultDto> results = service.uploadFiles(files);
+            for (FtpOperationResultDto result : results) {
+                assertTrue(result.getMessage(), result.isSuccess());
+            }
+            assertEquals(8, new File(root, "fan").list().length);
+            assertEquals(4, service.getFtpClientPools().getNodes().get(0).getPool().getCreatedCount());
+        });
+    }
+
+    private static FtpUploadFileDto upload(String path, String fileName, InputStream inputStream) {
+        FtpUploadFileDto file = new FtpUploadFileDto();
+        file.setPath(path);
+        file.setFileName(fileName);
+        file.setInputStream(inputStream);
+        file.setOriginFileName(new File(SERVER.getRoot(), "local-" + fileName).getAbsolutePath());
+        return file;
+    }
+
+    /**
+     * 读取较慢的流，保证多个连接同时在传输
+     */
+    private static class SlowInputStream extends ByteArrayInputStream {
+
+        SlowInputStream(byte[] content) {
+            super(content);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.read(b, off, len);
+        }
+    }
+
+    private static ApplicationContextRunner runner(int pipelineDepth) {
+        return SERVER.contextRunner().withPropertyValues("moss.ftp.batch.concurrency=1", "moss.ftp.batch.pipeline-depth=" + pipelineDepth);
+    }
+}
@@ -0,0 +1,112 @@
+package com.moss.starter.service;
+
+import com.moss.starter.EmbeddedFtpServer;
+import com.moss.starter.pool.MossFtpClient;
+import org.apache.ftpserver.ftplet.DefaultFtpReply;
+import org.apache.ftpserver.ftplet.DefaultFtplet;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.FtpReply;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.ftplet.FtpSession;
+import org.apache.ftpserver.ftplet.FtpletResult;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 目录被其他进程删除后，连接记录的当前工作目录和已知目录缓存的恢复
+ *
+ * @author lwj
+ */
+public class MossFtpServiceDirectoryTest {
+
+    private static final AtomicInteger CWD_COUNT = new AtomicInteger();
+
+    @ClassRule
+    public static final EmbeddedFtpServer SERVER = new EmbeddedFtpServer().withFtplet("reject", new DefaultFtplet() {
+        @Override
+        public FtpletResult beforeCommand(FtpSession session, FtpRequest request) throws FtpException, IOException {
+            if ("CWD".equals(request.getCommand())) {
+                CWD_COUNT.incrementAndGet();
+            }
+            return super.beforeCommand(session, request);
+        }
+
+        @Override
+        public FtpletResult onUploadStart(FtpSession session, FtpRequest request) throws FtpException {
+            if (!request.getArgument().contains("reject")) {
+                return FtpletResult.DEFAULT;
+            }
+            session.write(new DefaultFtpReply(FtpReply.REPLY_550_REQUESTED_ACTION_NOT_TAKEN, "rejected"));
+            return FtpletResult.SKIP;
+        }
+    });
+
+    @Test
+    public void failedStoreResendsChangeWorkingDirectory() {
+        SERVER.contextRunner().withPropertyValues("moss.ftp.pool.max-total=1").run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            //  创建目录时进入子目录失败，不记录工作目录；第二次上传使用绝对路径CWD后开始记录
+            assertTrue(service.uploadFile("/store/day", "a.txt", new ByteArrayInputStream(new byte[]{1})));
+            assertTrue(service.uploadFile("/store/day", "a.txt", new ByteArrayInputStream(new byte[]{1})));
+            //  工作目录未变化时不再发送CWD
+            int count = CWD_COUNT.get();
+            assertTrue(service.uploadFile("/store/day", "b.txt", new ByteArrayInputStream(new byte[]{2})));
+            assertEquals(count, CWD_COUNT.get());
+
+            assertFalse(service.uploadFile("/store/day", "reject.txt", new ByteArrayInputStream(new byte[]{3})));
+            //  上传失败后不再信任记录的工作目录，重新发送CWD
+            assertTrue(service.uploadFile("/store/day", "c.txt", new ByteArrayInputStream(new byte[]{4})));
+            assertTrue(CWD_COUNT.get() > count);
+            assertTrue(new File(SERVER.getRoot(), "store/day/c.txt").exists());
+        });
+    }
+
+    @Test
+    public void deletedDirectoryIsRecreated() {
+        SERVER.contextRunner().withPropertyValues("moss.ftp.pool.max-total=1").run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            File directory = new File(SERVER.getRoot(), "recreate/day");
+            assertTrue(service.uploadFile("/recreate/day", "a.txt", new ByteArrayInputStream(new byte[]{1})));
+            assertTrue(new File(directory, "a.txt").exists());
+
+            FileSystemUtils.deleteRecursively(new File(SERVER.getRoot(), "recreate"));
+            //  连接记录的工作目录和目录缓存仍指向已删除的目录，本次上传是否成功取决于服务器
+            service.uploadFile("/recreate/day", "b.txt", new ByteArrayInputStream(new byte[]{2}));
+            //  失败后重新发送CWD并创建目录
+            assertTrue(service.uploadFile("/recreate/day", "c.txt", new ByteArrayInputStream(new byte[]{3})));
+            assertTrue(new File(directory, "c.txt").exists());
+            assertEquals(1, service.getFtpClientPools().getNodes().get(0).getPool().getCreatedCount());
+        });
+    }
+
+    @Test
+    public void failedChangeWorkingDirectoryIsNotTracked() throws Exception {
+        new File(SERVER.getRoot(), "tracked").mkdirs();
+        MossFtpClient client = new MossFtpClient();
+        client.connect("127.0.0.1", SERVER.getPort());
+        try {
+            assertTrue(client.login(EmbeddedFtpServer.USERNAME, EmbeddedFtpServer.PASSWORD));
+            assertTrue(client.changeWorkingDirectory("/tracked"));
+            assertEquals("/tracked", client.getTrackedWorkingDirectory());
+            assertFalse(client.changeWorkingDirectory("/missing"));
+            assertNull(client.getTrackedWorkingDirectory());
+
+            assertTrue(client.changeWorkingDirectory("/tracked"));
+            assertFalse(client.makeDirectory("/missing/child"));
+            assertNull(client.getTrackedWorkingDirectory());
+        } finally {
+            client.disconnect();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.moss.starter.service;
+
+import com.moss.starter.EmbeddedFtpServer;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.ftpserver.ftplet.DefaultFtpReply;
+import org.apache.ftpserver.ftplet.DefaultFtplet;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.FtpReply;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.ftplet.FtpSession;
+import org.apache.ftpserver.ftplet.FtpletResult;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 下载失败时连接的归还与销毁
+ *
+ * @author lwj
+ */
+public class MossFtpServiceDownloadTest {
+
+    /**
+     * 下载名称以drop开头的文件时断开连接；下载名称以abort开头的文件时只传输一部分内容，然后回复426
+     */
+    @ClassRule
+    public static final EmbeddedFtpServer SERVER = new EmbeddedFtpServer().withFtplet("drop", new DefaultFtplet() {
+        @Override
+        public FtpletResult onDownloadStart(FtpSession session, FtpRequest request) throws FtpException, IOException {
+            if (request.getArgument().contains("/drop")) {
+                return FtpletResult.DISCONNECT;
+            }
+            if (!request.getArgument().contains("/abort")) {
+                return FtpletResult.DEFAULT;
+            }
+            session.write(new DefaultFtpReply(FtpReply.REPLY_150_FILE_STATUS_OKAY, "Opening data connection"));
+            try {
+                session.getDataConnection().openConnection().transferToClient(session,
+                        new ByteArrayInputStream(CONTENT.substring(0, 4).getBytes(StandardCharsets.UTF_8)));
+            } catch (Exception e) {
+                throw new IOException(e);
+            } finally {
+                session.getDataConnection().closeDataConnection();
+            }
+            session.write(new DefaultFtpReply(FtpReply.REPLY_426_CONNECTION_CLOSED_TRANSFER_ABORTED, "Transfer aborted"));
+            return FtpletResult.SKIP;
+        }
+    });
+
+    private static final String CONTENT = "download content";
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        File directory = new File(SERVER.getRoot(), "download");
+        directory.mkdirs();
+        Files.write(new File(directory, "a.txt").toPath(), CONTENT.getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(directory, "drop.txt").toPath(), CONTENT.getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(directory, "abort.txt").toPath(), CONTENT.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void missingFileKeepsConnection() {
+        runner().run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            GenericObjectPool<FTPClient> pool = pool(service);
+            //  550时没有数据连接，不等待传输完成的应答，连接可以继续使用
+            assertNull(service.downLoadFileToStream("/download/missing.txt", "missing.txt"));
+            assertEquals(0, pool.getNumActive());
+            assertEquals(0, pool.getDestroyedCount());
+            assertEquals(CONTENT, read(service.downLoadFileToStream("/download/a.txt", "a.txt")));
+            assertEquals(1, pool.getCreatedCount());
+        });
+    }
+
+    @Test
+    public void interruptedTransferInvalidatesConnection() {
+        runner().run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            GenericObjectPool<FTPClient> pool = pool(service);
+            assertNull(service.downLoadFileToStream("/download/drop.txt", "drop.txt"));
+            assertEquals(0, pool.getNumActive());
+            assertEquals(1, pool.getDestroyedCount());
+            assertEquals(CONTENT, read(service.downLoadFileToStream("/download/a.txt", "a.txt")));
+        });
+    }
+
+    @Test
+    public void abortedTransferReturnsNull() {
+        runner().run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            GenericObjectPool<FTPClient> pool = pool(service);
+            //  426时已读取的内容不完整，不返回也不缓存
+            assertNull(service.downLoadFileToStream("/download/abort.txt", "abort.txt"));
+            assertEquals(0, pool.getNumActive());
+            assertNull(service.getContentCache().get("/download/abort.txt"));
+            assertEquals(CONTENT, read(service.downLoadFileToStream("/download/a.txt", "a.txt")));
+        });
+    }
+
+    private static ApplicationContextRunner runner() {
+        return SERVER.contextRunner().withPropertyValues("moss.ftp.pool.max-total=1", "moss.ftp.content-cache.enabled=true");
+    }
+
+    private static GenericObjectPool<FTPClient> pool(MossFtpService service) {
+        return service.getFtpClientPools().getNodes().get(0).getPool();
+    }
+
+    private static String read(InputStream inputStream) throws IOException {
+        try (InputStream in = inputStream) {
+            return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
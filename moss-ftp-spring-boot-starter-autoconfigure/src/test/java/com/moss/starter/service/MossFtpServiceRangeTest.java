@@ -0,0 +1,73 @@
+package com.moss.starter.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * HTTP Range请求头解析
+ *
+ * @author lwj
+ */
+public class MossFtpServiceRangeTest {
+
+    @Test
+    public void closedRange() {
+        assertArrayEquals(new long[]{0, 9}, MossFtpService.resolveRange("bytes=0-9", 100));
+        assertArrayEquals(new long[]{10, 19}, MossFtpService.resolveRange("bytes=10-19", 100));
+        assertArrayEquals(new long[]{99, 99}, MossFtpService.resolveRange("bytes=99-99", 100));
+    }
+
+    @Test
+    public void endBeyondFileSizeIsClipped() {
+        assertArrayEquals(new long[]{50, 99}, MossFtpService.resolveRange("bytes=50-500", 100));
+    }
+
+    @Test
+    public void openEndedRange() {
+        assertArrayEquals(new long[]{10, 99}, MossFtpService.resolveRange("bytes=10-", 100));
+        assertArrayEquals(new long[]{0, 99}, MossFtpService.resolveRange("bytes=0-", 100));
+    }
+
+    @Test
+    public void suffixRange() {
+        assertArrayEquals(new long[]{90, 99}, MossFtpService.resolveRange("bytes=-10", 100));
+        //  后缀长度超过文件大小时返回整个文件
+        assertArrayEquals(new long[]{0, 99}, MossFtpService.resolveRange("bytes=-200", 100));
+        assertSame(MossFtpService.UNSATISFIABLE_RANGE, MossFtpService.resolveRange("bytes=-0", 100));
+    }
+
+    @Test
+    public void multiRangeFallsBackToFullFile() {
+        assertNull(MossFtpService.resolveRange("bytes=0-9,20-29", 100));
+        assertNull(MossFtpService.resolveRange("bytes=0-9, -5", 100));
+    }
+
+    @Test
+    public void unsatisfiableRange() {
+        assertSame(MossFtpService.UNSATISFIABLE_RANGE, MossFtpService.resolveRange("bytes=100-", 100));
+        assertSame(MossFtpService.UNSATISFIABLE_RANGE, MossFtpService.resolveRange("bytes=150-200", 100));
+        assertSame(MossFtpService.UNSATISFIABLE_RANGE, MossFtpService.resolveRange("bytes=20-10", 100));
+    }
+
+    @Test
+    public void zeroLengthFile() {
+        //  空文件没有可以满足的区间
+        assertSame(MossFtpService.UNSATISFIABLE_RANGE, MossFtpService.resolveRange("bytes=0-", 0));
+        assertSame(MossFtpService.UNSATISFIABLE_RANGE, MossFtpService.resolveRange("bytes=-5", 0));
+        assertSame(MossFtpService.UNSATISFIABLE_RANGE, MossFtpService.resolveRange("bytes=0-0", 0));
+        assertNull(MossFtpService.resolveRange(null, 0));
+    }
+
+    @Test
+    public void ignoredHeaders() {
+        assertNull(MossFtpService.resolveRange(null, 100));
+        assertNull(MossFtpService.resolveRange(" ", 100));
+        assertNull(MossFtpService.resolveRange("items=0-9", 100));
+        assertNull(MossFtpService.resolveRange("bytes=5", 100));
+        assertNull(MossFtpService.resolveRange("bytes=a-b", 100));
+        assertNull(MossFtpService.resolveRange("bytes=-", 100));
+    }
+}
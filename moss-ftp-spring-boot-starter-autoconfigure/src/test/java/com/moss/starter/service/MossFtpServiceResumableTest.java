@@ -0,0 +1,196 @@
+package com.moss.starter.service;
+
+import com.moss.starter.EmbeddedFtpServer;
+import org.apache.ftpserver.ftplet.DefaultFtpReply;
+import org.apache.ftpserver.ftplet.DefaultFtplet;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.FtpReply;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.ftplet.FtpSession;
+import org.apache.ftpserver.ftplet.FtpletResult;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 断点续传上传：中断后续传、本地文件变化后的检查点、目标文件已存在时的重命名
+ *
+ * @author lwj
+ */
+public class MossFtpServiceResumableTest {
+
+    private static final int INTERRUPT_AFTER = 64 * 1024;
+    /**
+     * 服务器收到的REST、DELE命令
+     */
+    private static final List<String> COMMANDS = new CopyOnWriteArrayList<>();
+    /**
+     * 第一次上传名称包含interrupt的文件时，只保存前INTERRUPT_AFTER个字节后断开连接
+     */
+    private static volatile boolean interruptNext;
+    /**
+     * 第一次重命名为已存在的文件时拒绝（模拟不允许覆盖的服务器）
+     */
+    private static volatile boolean rejectRenameOverExisting;
+
+    @ClassRule
+    public static final EmbeddedFtpServer SERVER = new EmbeddedFtpServer().withFtplet("resume", new DefaultFtplet() {
+        @Override
+        public FtpletResult beforeCommand(FtpSession session, FtpRequest request) throws FtpException, IOException {
+            String command = request.getCommand();
+            if ("REST".equals(command) || "DELE".equals(command)) {
+                COMMANDS.add(command + " " + request.getArgument());
+            }
+            if ("RNTO".equals(command) && rejectRenameOverExisting
+                    && session.getFileSystemView().getFile(request.getArgument()).doesExist()) {
+                rejectRenameOverExisting = false;
+                session.write(new DefaultFtpReply(FtpReply.REPLY_553_REQUESTED_ACTION_NOT_TAKEN_FILE_NAME_NOT_ALLOWED, "File exists"));
+                return FtpletResult.SKIP;
+            }
+            return super.beforeCommand(session, request);
+        }
+
+        @Override
+        public FtpletResult onUploadStart(FtpSession session, FtpRequest request) throws FtpException, IOException {
+            if (!interruptNext || !request.getArgument().contains("interrupt")) {
+                return FtpletResult.DEFAULT;
+            }
+            interruptNext = false;
+            session.write(new DefaultFtpReply(FtpReply.REPLY_150_FILE_STATUS_OKAY, "Opening data connection"));
+            try (OutputStream out = new TruncatingOutputStream(
+                    session.getFileSystemView().getFile(request.getArgument()).createOutputStream(0), INTERRUPT_AFTER)) {
+                session.getDataConnection().openConnection().transferFromClient(session, out);
+            } catch (Exception e) {
+                //  已保存前INTERRUPT_AFTER个字节
+            } finally {
+                session.getDataConnection().closeDataConnection();
+            }
+            return FtpletResult.DISCONNECT;
+        }
+    });
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File checkpoints;
+
+    @Before
+    public void setUp() throws IOException {
+        COMMANDS.clear();
+        checkpoints = folder.newFolder("checkpoints");
+    }
+
+    @Test
+    public void interruptedUploadResumes() throws IOException {
+        File local = localFile("interrupt.bin", 512 * 1024, 1);
+        interruptNext = true;
+        runner().run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            assertTrue(service.uploadFileResumable("/resume", "interrupt.bin", local.getPath()));
+            assertFalse(interruptNext);
+            //  第二次尝试从服务器上临时文件的大小继续上传
+            assertTrue(COMMANDS.toString(), COMMANDS.contains("REST " + INTERRUPT_AFTER));
+            assertArrayEquals(Files.readAllBytes(local.toPath()), Files.readAllBytes(remote("interrupt.bin").toPath()));
+            assertFalse(remote("interrupt.bin.part").exists());
+            assertEquals(0, checkpoints.list().length);
+        });
+    }
+
+    @Test
+    public void staleCheckpointRestartsUpload() throws IOException {
+        File local = localFile("stale.bin", 4096, 2);
+        //  上次上传留下的临时文件和检查点
+        FtpUploadCheckpoint.load(checkpoints.toPath(), "/resume/stale.bin", local).save(local, 1024);
+        File part = remote("stale.bin.part");
+        part.getParentFile().mkdirs();
+        Files.write(part.toPath(), new byte[1024]);
+        //  本地文件在两次上传之间发生变化
+        local = localFile("stale.bin", 8192, 3);
+        File changed = local;
+        runner().run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            assertTrue(service.uploadFileResumable("/resume", "stale.bin", changed.getPath()));
+            assertFalse(COMMANDS.toString(), COMMANDS.stream().anyMatch(command -> command.startsWith("REST")));
+            assertArrayEquals(Files.readAllBytes(changed.toPath()), Files.readAllBytes(remote("stale.bin").toPath()));
+        });
+    }
+
+    @Test
+    public void renameReplacesExistingFile() throws IOException {
+        File local = localFile("exists.bin", 2048, 4);
+        File target = remote("exists.bin");
+        target.getParentFile().mkdirs();
+        Files.write(target.toPath(), new byte[]{1, 2, 3});
+        rejectRenameOverExisting = true;
+        runner().run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            assertTrue(service.uploadFileResumable("/resume", "exists.bin", local.getPath()));
+            assertFalse(rejectRenameOverExisting);
+            //  重命名失败后删除目标文件再重命名
+            assertTrue(COMMANDS.toString(), COMMANDS.contains("DELE exists.bin"));
+            assertArrayEquals(Files.readAllBytes(local.toPath()), Files.readAllBytes(target.toPath()));
+            assertFalse(remote("exists.bin.part").exists());
+        });
+    }
+
+    private ApplicationContextRunner runner() {
+        return SERVER.contextRunner().withPropertyValues("moss.ftp.resumable.checkpoint-directory=" + checkpoints.getPath(),
+                "moss.ftp.resumable.retry-delay-millis=10");
+    }
+
+    private File localFile(String name, int size, long seed) throws IOException {
+        byte[] content = new byte[size];
+        new Random(seed).nextBytes(content);
+        File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    private static File remote(String name) {
+        return new File(SERVER.getRoot(), "resume/" + name);
+    }
+
+    /**
+     * 写入limit个字节后抛出异常，模拟传输中断
+     */
+    private static class TruncatingOutputStream extends FilterOutputStream {
+        private long remaining;
+
+        TruncatingOutputStream(OutputStream out, long limit) {
+            super(out);
+            this.remaining = limit;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int allowed = (int) Math.min(len, remaining);
+            out.write(b, off, allowed);
+            remaining -= allowed;
+            if (allowed < len) {
+                throw new IOException("connection reset");
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.moss.starter.service;
+
+import com.moss.starter.EmbeddedFtpServer;
+import com.moss.starter.dto.FtpSyncPlanDto;
+import com.moss.starter.dto.FtpSyncResultDto;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 本地目录到ftp目录的增量同步
+ *
+ * @author lwj
+ */
+public class MossFtpServiceSyncTest {
+
+    @ClassRule
+    public static final EmbeddedFtpServer SERVER = new EmbeddedFtpServer();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void syncDetectsAddedChangedAndUnchanged() throws IOException {
+        File local = folder.newFolder("local");
+        write(new File(local, "a.txt"), "aaaa");
+        write(new File(local, "sub/b.txt"), "bbbb");
+        write(new File(local, "sub/c.txt"), "cccc");
+        SERVER.contextRunner().run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            FtpSyncResultDto first = service.syncDirectory(local.getPath(), "/sync/detect", false);
+            assertEquals(Arrays.asList("a.txt", "sub/b.txt", "sub/c.txt"), first.getPlan().getAdded());
+            assertEquals(0, first.getFailedCount());
+            assertTrue(new File(SERVER.getRoot(), "sync/detect/sub/b.txt").exists());
+
+            //  大小变化；大小相同但本地文件更新
+            write(new File(local, "a.txt"), "aaaaaa");
+            File same = new File(local, "sub/b.txt");
+            write(same, "BBBB");
+            assertTrue(same.setLastModified(System.currentTimeMillis() + 3600 * 1000));
+            FtpSyncPlanDto plan = service.planSync(local.getPath(), "/sync/detect");
+            assertFalse(plan.isFromManifest());
+            assertTrue(plan.getAdded().isEmpty());
+            assertEquals(Arrays.asList("a.txt", "sub/b.txt"), plan.getChanged());
+            assertEquals(1, plan.getUnchangedCount());
+            assertEquals(10, plan.getUploadBytes());
+
+            FtpSyncResultDto second = service.syncDirectory(local.getPath(), "/sync/detect", false);
+            assertEquals(0, second.getFailedCount());
+            assertEquals("BBBB", read(new File(SERVER.getRoot(), "sync/detect/sub/b.txt")));
+        });
+    }
+
+    @Test
+    public void orphansAreDeletedOnlyWhenRequested() throws IOException {
+        File local = folder.newFolder("local");
+        write(new File(local, "keep.txt"), "keep");
+        write(new File(local, "gone.txt"), "gone");
+        File remoteGone = new File(SERVER.getRoot(), "sync/orphan/gone.txt");
+        SERVER.contextRunner().run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            service.syncDirectory(local.getPath(), "/sync/orphan", false);
+            assertTrue(remoteGone.exists());
+
+            Files.delete(new File(local, "gone.txt").toPath());
+            FtpSyncResultDto kept = service.syncDirectory(local.getPath(), "/sync/orphan", false);
+            assertEquals(Collections.singletonList("gone.txt"), kept.getPlan().getOrphans());
+            assertTrue(kept.getDeletes().isEmpty());
+            assertTrue(remoteGone.exists());
+
+            FtpSyncResultDto deleted = service.syncDirectory(local.getPath(), "/sync/orphan", true);
+            assertEquals(1, deleted.getDeletes().size());
+            assertEquals(0, deleted.getFailedCount());
+            assertFalse(remoteGone.exists());
+            assertTrue(new File(SERVER.getRoot(), "sync/orphan/keep.txt").exists());
+        });
+    }
+
+    @Test
+    public void unreadableLocalFileFailsSync() throws IOException {
+        File local = folder.newFolder("local");
+        write(new File(local, "a.txt"), "a");
+        write(new File(local, "b.txt"), "b");
+        File remoteB = new File(SERVER.getRoot(), "sync/unreadable/b.txt");
+        SERVER.contextRunner().run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            service.syncDirectory(local.getPath(), "/sync/unreadable", true);
+            assertTrue(remoteB.exists());
+
+            //  本地文件存在但无法读取时同步失败，而不是把它当作孤立文件删除
+            Files.delete(new File(local, "b.txt").toPath());
+            Files.createSymbolicLink(new File(local, "b.txt").toPath(), new File(local, "missing.txt").toPath());
+            try {
+                service.syncDirectory(local.getPath(), "/sync/unreadable", true);
+                fail("local scan failure expected");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("b.txt"));
+            }
+            assertTrue(remoteB.exists());
+        });
+    }
+
+    @Test
+    public void freshManifestSkipsListing() throws IOException {
+        File local = folder.newFolder("local");
+        File manifests = folder.newFolder("manifests");
+        write(new File(local, "a.txt"), "a");
+        write(new File(local, "b.txt"), "b");
+        SERVER.contextRunner().withPropertyValues("moss.ftp.sync.manifest-enabled=true",
+                "moss.ftp.sync.manifest-directory=" + manifests.getPath()).run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            FtpSyncResultDto first = service.syncDirectory(local.getPath(), "/sync/manifest", false);
+            assertFalse(first.getPlan().isFromManifest());
+            assertEquals(2, first.getPlan().getAdded().size());
+
+            //  清单有效时不列出ftp目录：直接删除的ftp文件不会被发现
+            Files.delete(new File(SERVER.getRoot(), "sync/manifest/b.txt").toPath());
+            write(new File(local, "c.txt"), "c");
+            FtpSyncPlanDto plan = service.planSync(local.getPath(), "/sync/manifest");
+            assertTrue(plan.isFromManifest());
+            assertEquals(Collections.singletonList("c.txt"), plan.getAdded());
+            assertTrue(plan.getChanged().isEmpty());
+            assertEquals(2, plan.getUnchangedCount());
+        });
+        //  未开启清单时列出ftp目录
+        SERVER.contextRunner().run(context -> {
+            FtpSyncPlanDto plan = context.getBean(MossFtpService.class).planSync(local.getPath(), "/sync/manifest");
+            assertFalse(plan.isFromManifest());
+            assertEquals(Arrays.asList("b.txt", "c.txt"), plan.getAdded());
+        });
+    }
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
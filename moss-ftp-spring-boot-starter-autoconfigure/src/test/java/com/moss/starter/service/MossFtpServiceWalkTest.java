@@ -0,0 +1,62 @@
+package com.moss.starter.service;
+
+import com.moss.starter.EmbeddedFtpServer;
+import com.moss.starter.dto.FtpWalkResultDto;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 并行遍历目录树
+ *
+ * @author lwj
+ */
+public class MossFtpServiceWalkTest {
+
+    @ClassRule
+    public static final EmbeddedFtpServer SERVER = new EmbeddedFtpServer();
+
+    @Test
+    public void walkTreeListsAllLevels() throws IOException {
+        File root = new File(SERVER.getRoot(), "walk");
+        write(new File(root, "a.txt"), "a");
+        write(new File(root, "x/b.txt"), "b");
+        write(new File(root, "x/y/c.txt"), "c");
+        write(new File(root, "z/d.txt"), "d");
+        SERVER.contextRunner().withPropertyValues("moss.ftp.walk.concurrency=2").run(context -> {
+            MossFtpService service = context.getBean(MossFtpService.class);
+            Set<String> entries = new TreeSet<>();
+            FtpWalkResultDto result = service.walkTree("/walk", Integer.MAX_VALUE, null,
+                    (directory, file) -> entries.add(MossFtpService.joinPath(directory, file.getName())));
+            assertEquals(new TreeSet<>(Arrays.asList("/walk/a.txt", "/walk/x", "/walk/x/b.txt", "/walk/x/y",
+                    "/walk/x/y/c.txt", "/walk/z", "/walk/z/d.txt")), entries);
+            assertEquals(4, result.getDirectoryCount());
+            assertEquals(7, result.getEntryCount());
+            assertTrue(result.getFailedDirectories().isEmpty());
+
+            //  只列出根目录；过滤掉的目录不进入
+            entries.clear();
+            service.walkTree("/walk", 1, null, (directory, file) -> entries.add(file.getName()));
+            assertEquals(new TreeSet<>(Arrays.asList("a.txt", "x", "z")), entries);
+            entries.clear();
+            service.walkTree("/walk", Integer.MAX_VALUE, file -> !"x".equals(file.getName()),
+                    (directory, file) -> entries.add(file.getName()));
+            assertEquals(new TreeSet<>(Arrays.asList("a.txt", "z", "d.txt")), entries);
+        });
+    }
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,81 @@
+package com.moss.starter.benchmark;
+
+import com.moss.starter.service.MossFtpService;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 基准测试公共部分：启动进程内FTP服务器和Spring上下文，准备测试文件
+ *
+ * @author lwj
+ */
+@State(Scope.Benchmark)
+public abstract class AbstractFtpBenchmark {
+
+    protected File root;
+    protected EmbeddedFtpServer server;
+    protected ConfigurableApplicationContext context;
+    protected MossFtpService ftpService;
+
+    @Setup
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("moss-ftp-benchmark").toFile();
+        prepareFiles(root);
+        server = EmbeddedFtpServer.start(root, 512);
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("moss.ftp.host", "127.0.0.1");
+        properties.put("moss.ftp.port", server.getPort());
+        properties.put("moss.ftp.username", EmbeddedFtpServer.USERNAME);
+        properties.put("moss.ftp.password", EmbeddedFtpServer.PASSWORD);
+        properties.put("moss.ftp.passive-mode", true);
+        configure(properties);
+        context = BenchmarkApplication.run(properties);
+        ftpService = context.getBean(MossFtpService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+        if (server != null) {
+            server.stop();
+        }
+        FileSystemUtils.deleteRecursively(root);
+    }
+
+    /**
+     * 在FTP服务器根目录下准备测试文件
+     *
+     * @param root FTP服务器根目录
+     */
+    protected abstract void prepareFiles(File root) throws IOException;
+
+    /**
+     * 设置moss.ftp配置项
+     *
+     * @param properties 配置项
+     */
+    protected abstract void configure(Map<String, Object> properties);
+
+    /**
+     * 写入指定大小的随机内容文件
+     */
+    protected static void writeRandomFile(File file, int size, long seed) throws IOException {
+        byte[] content = new byte[size];
+        new Random(seed).nextBytes(content);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content);
+    }
+}
@@ -0,0 +1,44 @@
+package com.moss.starter.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * 基准测试使用的Spring Boot应用，通过自动配置创建MossFtpService
+ *
+ * @author lwj
+ */
+@SpringBootApplication
+public class BenchmarkApplication {
+
+    @Bean
+    public HttpServletRequest benchmarkRequest() {
+        return BenchmarkExchange.requestProxy();
+    }
+
+    @Bean
+    public HttpServletResponse benchmarkResponse() {
+        return BenchmarkExchange.responseProxy();
+    }
+
+    /**
+     * 启动应用上下文
+     *
+     * @param properties moss.ftp等配置项
+     * @return 应用上下文
+     */
+    public static ConfigurableApplicationContext run(Map<String, Object> properties) {
+        return new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties(properties)
+                .run();
+    }
+}
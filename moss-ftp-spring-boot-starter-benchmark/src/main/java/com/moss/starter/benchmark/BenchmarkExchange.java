@@ -0,0 +1,105 @@
+package com.moss.starter.benchmark;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+
+/**
+ * 基准测试线程当前的request/response
+ * <p>
+ * MossFtpService注入的是单例的request/response，这里注入按线程转发的代理（作用与web环境下的request作用域代理相同），
+ * 使多个基准测试线程可以同时调用downLoadFileToResponse等方法；response的输出直接丢弃，只统计字节数。
+ *
+ * @author lwj
+ */
+public final class BenchmarkExchange {
+
+    private static final ThreadLocal<MockHttpServletRequest> REQUEST = ThreadLocal.withInitial(MockHttpServletRequest::new);
+    private static final ThreadLocal<DiscardingHttpServletResponse> RESPONSE = ThreadLocal.withInitial(DiscardingHttpServletResponse::new);
+
+    private BenchmarkExchange() {
+    }
+
+    /**
+     * 重置当前线程的request/response
+     *
+     * @param range Range请求头，为null时不携带
+     * @return 当前线程的response
+     */
+    public static DiscardingHttpServletResponse reset(String range) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (range != null) {
+            request.addHeader("Range", range);
+        }
+        REQUEST.set(request);
+        DiscardingHttpServletResponse response = new DiscardingHttpServletResponse();
+        RESPONSE.set(response);
+        return response;
+    }
+
+    static HttpServletRequest requestProxy() {
+        return proxy(HttpServletRequest.class, REQUEST);
+    }
+
+    static HttpServletResponse responseProxy() {
+        return proxy(HttpServletResponse.class, RESPONSE);
+    }
+
+    private static <T> T proxy(Class<T> type, ThreadLocal<? extends T> target) {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (instance, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return "toString".equals(method.getName()) ? type.getSimpleName() + " proxy" : method.invoke(target, args);
+            }
+            try {
+                return method.invoke(target.get(), args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        });
+        return type.cast(proxy);
+    }
+
+    /**
+     * 丢弃输出内容的response
+     */
+    public static class DiscardingHttpServletResponse extends MockHttpServletResponse {
+
+        private long written;
+
+        private final ServletOutputStream outputStream = new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+                written++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                written += len;
+            }
+        };
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return outputStream;
+        }
+
+        public long getWritten() {
+            return written;
+        }
+    }
+}
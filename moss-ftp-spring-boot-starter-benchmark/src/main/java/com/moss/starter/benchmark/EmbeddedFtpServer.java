@@ -0,0 +1,78 @@
+package com.moss.starter.benchmark;
+
+import org.apache.ftpserver.ConnectionConfigFactory;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ftplet.Authority;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.listener.Listener;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.usermanager.impl.ConcurrentLoginPermission;
+import org.apache.ftpserver.usermanager.impl.WritePermission;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试使用的进程内FTP服务器（Apache FtpServer，监听localhost随机端口）
+ *
+ * @author lwj
+ */
+public class EmbeddedFtpServer {
+
+    public static final String USERNAME = "moss";
+    public static final String PASSWORD = "moss";
+
+    private final FtpServer server;
+    private final int port;
+
+    private EmbeddedFtpServer(FtpServer server, int port) {
+        this.server = server;
+        this.port = port;
+    }
+
+    /**
+     * 启动FTP服务器
+     *
+     * @param homeDirectory 用户根目录
+     * @param maxLogins     最大并发登录数
+     * @return FTP服务器
+     */
+    public static EmbeddedFtpServer start(File homeDirectory, int maxLogins) throws FtpException {
+        FtpServerFactory serverFactory = new FtpServerFactory();
+        ListenerFactory listenerFactory = new ListenerFactory();
+        listenerFactory.setServerAddress("127.0.0.1");
+        listenerFactory.setPort(0);
+        serverFactory.addListener("default", listenerFactory.createListener());
+
+        BaseUser user = new BaseUser();
+        user.setName(USERNAME);
+        user.setPassword(PASSWORD);
+        user.setHomeDirectory(homeDirectory.getAbsolutePath());
+        List<Authority> authorities = new ArrayList<>();
+        authorities.add(new WritePermission());
+        authorities.add(new ConcurrentLoginPermission(maxLogins, maxLogins));
+        user.setAuthorities(authorities);
+        serverFactory.getUserManager().save(user);
+
+        ConnectionConfigFactory connectionConfigFactory = new ConnectionConfigFactory();
+        connectionConfigFactory.setMaxLogins(maxLogins);
+        connectionConfigFactory.setAnonymousLoginEnabled(false);
+        serverFactory.setConnectionConfig(connectionConfigFactory.createConnectionConfig());
+
+        FtpServer server = serverFactory.createServer();
+        server.start();
+        Listener listener = serverFactory.getListener("default");
+        return new EmbeddedFtpServer(server, listener.getPort());
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void stop() {
+        server.stop();
+    }
+}
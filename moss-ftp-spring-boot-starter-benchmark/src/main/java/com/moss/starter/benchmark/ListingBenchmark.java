@@ -0,0 +1,77 @@
+package com.moss.starter.benchmark;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 目录列表基准测试
+ *
+ * @author lwj
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(4)
+public class ListingBenchmark extends AbstractFtpBenchmark {
+
+    private static final String DIRECTORY = "/listing";
+
+    /**
+     * 目录下的文件数
+     */
+    @Param({"100", "2000"})
+    public int files;
+
+    /**
+     * 是否开启目录列表缓存
+     */
+    @Param({"false", "true"})
+    public boolean listingCache;
+
+    @Param({"8"})
+    public int poolSize;
+
+    @Override
+    protected void prepareFiles(File root) throws IOException {
+        File directory = new File(root, DIRECTORY);
+        Files.createDirectories(directory.toPath());
+        for (int i = 0; i < files; i++) {
+            Files.write(new File(directory, "file-" + i + ".txt").toPath(), new byte[]{(byte) i});
+        }
+    }
+
+    @Override
+    protected void configure(Map<String, Object> properties) {
+        properties.put("moss.ftp.pool.max-total", poolSize);
+        properties.put("moss.ftp.pool.max-idle", poolSize);
+        properties.put("moss.ftp.initial-size", poolSize);
+        properties.put("moss.ftp.listing-cache.enabled", listingCache);
+    }
+
+    @Benchmark
+    public FTPFile[] retrieveFtpFiles() throws IOException {
+        return ftpService.retrieveFtpFiles(DIRECTORY);
+    }
+
+    @Benchmark
+    public List<String> retrieveFileNames() throws IOException {
+        return ftpService.retrieveFileNames(DIRECTORY);
+    }
+}
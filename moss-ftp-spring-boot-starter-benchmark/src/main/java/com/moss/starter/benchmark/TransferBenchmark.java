@@ -0,0 +1,114 @@
+package com.moss.starter.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单文件上传/下载基准测试
+ * <p>
+ * 并发数通过JMH的-t参数调整，例如：java -jar target/benchmarks.jar TransferBenchmark -t 8 -p poolSize=4,16 -prof gc
+ *
+ * @author lwj
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(4)
+public class TransferBenchmark extends AbstractFtpBenchmark {
+
+    private static final String DIRECTORY = "/transfer";
+    private static final String FILE_NAME = "file.bin";
+
+    /**
+     * 文件大小（字节）
+     */
+    @Param({"1024", "1048576", "16777216"})
+    public int fileSize;
+
+    /**
+     * 连接池最大连接数
+     */
+    @Param({"4", "16"})
+    public int poolSize;
+
+    private byte[] content;
+
+    @Override
+    protected void prepareFiles(File root) throws IOException {
+        writeRandomFile(new File(root, DIRECTORY + "/" + FILE_NAME), fileSize, 1L);
+        content = new byte[fileSize];
+        new Random(2L).nextBytes(content);
+    }
+
+    @Override
+    protected void configure(Map<String, Object> properties) {
+        properties.put("moss.ftp.pool.max-total", poolSize);
+        properties.put("moss.ftp.pool.max-idle", poolSize);
+        properties.put("moss.ftp.initial-size", poolSize);
+    }
+
+    /**
+     * 每个基准测试线程上传到自己的文件，避免写入同一个文件
+     */
+    @State(Scope.Thread)
+    public static class UploadTarget {
+        private static final AtomicInteger SEQUENCE = new AtomicInteger();
+        String fileName;
+
+        @Setup
+        public void setUp() {
+            fileName = "upload-" + SEQUENCE.incrementAndGet() + ".bin";
+        }
+    }
+
+    @Benchmark
+    public boolean upload(UploadTarget target) {
+        return ftpService.uploadFile(DIRECTORY + "/upload", target.fileName, new ByteArrayInputStream(content));
+    }
+
+    @Benchmark
+    public int downloadToStream() throws Exception {
+        try (InputStream inputStream = ftpService.downLoadFileToStream(DIRECTORY + "/" + FILE_NAME, FILE_NAME)) {
+            return inputStream.available();
+        }
+    }
+
+    @Benchmark
+    public long downloadToResponse() throws Exception {
+        BenchmarkExchange.DiscardingHttpServletResponse response = BenchmarkExchange.reset(null);
+        ftpService.downLoadFileToResponse(DIRECTORY + "/" + FILE_NAME, FILE_NAME);
+        return response.getWritten();
+    }
+
+    /**
+     * 读取文件中间的1/4（REST偏移量+提前结束数据连接）
+     */
+    @Benchmark
+    public long downloadRangeToResponse() throws Exception {
+        int from = fileSize / 4;
+        BenchmarkExchange.DiscardingHttpServletResponse response = BenchmarkExchange.reset("bytes=" + from + "-" + (from + fileSize / 4 - 1));
+        ftpService.downLoadFileToResponse(DIRECTORY + "/" + FILE_NAME, FILE_NAME);
+        return response.getWritten();
+    }
+}
@@ -0,0 +1,86 @@
+package com.moss.starter.benchmark;
+
+import com.moss.starter.dto.FtpFileDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 打包下载基准测试
+ *
+ * @author lwj
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(1)
+public class ZipDownloadBenchmark extends AbstractFtpBenchmark {
+
+    private static final String DIRECTORY = "/zip";
+
+    /**
+     * 打包的文件数
+     */
+    @Param({"16"})
+    public int entries;
+
+    /**
+     * 单个文件大小（字节）
+     */
+    @Param({"65536", "4194304"})
+    public int entrySize;
+
+    /**
+     * 预取的文件数，0表示不预取
+     */
+    @Param({"0", "2"})
+    public int prefetchCount;
+
+    @Param({"8"})
+    public int poolSize;
+
+    private final List<FtpFileDto> files = new ArrayList<>();
+
+    @Override
+    protected void prepareFiles(File root) throws IOException {
+        files.clear();
+        for (int i = 0; i < entries; i++) {
+            String fileName = "entry-" + i + ".bin";
+            writeRandomFile(new File(root, DIRECTORY + "/" + fileName), entrySize, i);
+            FtpFileDto fileDto = new FtpFileDto();
+            fileDto.setPath(DIRECTORY + "/" + fileName);
+            fileDto.setFileName(fileName);
+            files.add(fileDto);
+        }
+    }
+
+    @Override
+    protected void configure(Map<String, Object> properties) {
+        properties.put("moss.ftp.pool.max-total", poolSize);
+        properties.put("moss.ftp.pool.max-idle", poolSize);
+        properties.put("moss.ftp.initial-size", poolSize);
+        properties.put("moss.ftp.zip.prefetch-count", prefetchCount);
+    }
+
+    @Benchmark
+    public long downloadZip() {
+        BenchmarkExchange.DiscardingHttpServletResponse response = BenchmarkExchange.reset(null);
+        ftpService.downLoadFileByZipToResponse(files, "benchmark");
+        return response.getWritten();
+    }
+}